@@ -43,6 +43,7 @@ import org.apache.tephra.TransactionFailureException;
 
 import java.io.Serializable;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
 
@@ -444,6 +445,63 @@ public abstract class JavaSparkExecutionContext implements RuntimeContext, Trans
                                                                               long startTime, long endTime,
                                                                               Class<T> dataType);
 
+  /**
+   * Creates a {@link JavaPairRDD} that represents data from the given stream for events in the given
+   * time range, with body records that pass the given filter. The first entry in the pair is a {@link Long},
+   * representing the event timestamp, while the second entry is a {@link GenericStreamEventData},
+   * which contains the given fields of the record decoded from the stream event body base on
+   * the given {@link FormatSpecification}. Formats that support it, such as CSV and TSV, only parse the fields
+   * needed by the projection and the filter.
+   *
+   * @param streamName name of the stream
+   * @param formatSpec the {@link FormatSpecification} describing the format in the stream
+   * @param startTime the starting time of the stream to be read in milliseconds (inclusive);
+   *                  passing in {@code 0} means start reading from the first event available in the stream.
+   * @param endTime the ending time of the streams to be read in milliseconds (exclusive);
+   *                passing in {@link Long#MAX_VALUE} means read up to latest event available in the stream.
+   * @param bodyProjection names of the body record fields to read, or {@code null} to read all fields
+   * @param bodyFilter map from body record field name to the string representation that the field value must have
+   *                   for the event to be read
+   * @param <T> value type
+   * @return a new {@link JavaPairRDD} instance that reads from the given stream.
+   * @throws DatasetInstantiationException if the Stream doesn't exist
+   */
+  public abstract <T> JavaPairRDD<Long, GenericStreamEventData<T>> fromStream(String streamName,
+                                                                              FormatSpecification formatSpec,
+                                                                              long startTime, long endTime,
+                                                                              @Nullable List<String> bodyProjection,
+                                                                              Map<String, String> bodyFilter,
+                                                                              Class<T> dataType);
+
+  /**
+   * Creates a {@link JavaPairRDD} that represents data from the given stream for events in the given
+   * time range, with body records that pass the given filter. The first entry in the pair is a {@link Long},
+   * representing the event timestamp, while the second entry is a {@link GenericStreamEventData},
+   * which contains the given fields of the record decoded from the stream event body base on
+   * the given {@link FormatSpecification}. Formats that support it, such as CSV and TSV, only parse the fields
+   * needed by the projection and the filter.
+   *
+   * @param namespace namespace in which the stream exists
+   * @param streamName name of the stream
+   * @param formatSpec the {@link FormatSpecification} describing the format in the stream
+   * @param startTime the starting time of the stream to be read in milliseconds (inclusive);
+   *                  passing in {@code 0} means start reading from the first event available in the stream.
+   * @param endTime the ending time of the streams to be read in milliseconds (exclusive);
+   *                passing in {@link Long#MAX_VALUE} means read up to latest event available in the stream.
+   * @param bodyProjection names of the body record fields to read, or {@code null} to read all fields
+   * @param bodyFilter map from body record field name to the string representation that the field value must have
+   *                   for the event to be read
+   * @param <T> value type
+   * @return a new {@link JavaPairRDD} instance that reads from the given stream.
+   * @throws DatasetInstantiationException if the Stream doesn't exist
+   */
+  public abstract <T> JavaPairRDD<Long, GenericStreamEventData<T>> fromStream(String namespace, String streamName,
+                                                                              FormatSpecification formatSpec,
+                                                                              long startTime, long endTime,
+                                                                              @Nullable List<String> bodyProjection,
+                                                                              Map<String, String> bodyFilter,
+                                                                              Class<T> dataType);
+
   /**
    * Saves the given {@link JavaPairRDD} to the given {@link Dataset}.
    *
@@ -242,6 +242,55 @@ trait SparkExecutionContext extends RuntimeContext with Transactional {
   def fromStream[T: ClassTag](sc: SparkContext, namespace: String, streamName: String, formatSpec: FormatSpecification,
                               startTime: Long, endTime: Long): RDD[(Long, GenericStreamEventData[T])]
 
+  /**
+    * Creates a [[org.apache.spark.rdd.RDD]] that represents data from the given stream for events in the given
+    * time range, with body records that pass the given filter. The data in the RDD is always a pair, with the first
+    * entry as a [[scala.Long]], representing the event timestamp, while the second entry is a
+    * [[co.cask.cdap.api.stream.GenericStreamEventData]], which contains the given fields of the record decoded from
+    * the stream event body base on the given [[co.cask.cdap.api.data.format.FormatSpecification]]. Formats that
+    * support it, such as CSV and TSV, only parse the fields needed by the projection and the filter.
+    *
+    * @param sc the [[org.apache.spark.SparkContext]] to use
+    * @param streamName name of the stream
+    * @param formatSpec the [[co.cask.cdap.api.data.format.FormatSpecification]] describing the format in the stream
+    * @param startTime the starting time of the stream to be read in milliseconds (inclusive)
+    * @param endTime the ending time of the streams to be read in milliseconds (exclusive)
+    * @param bodyProjection names of the body record fields to read, or `None` to read all fields
+    * @param bodyFilter map from body record field name to the string representation that the field value must have
+    *                   for the event to be read
+    * @tparam T value type
+    * @return a new [[org.apache.spark.rdd.RDD]] instance that reads from the given stream.
+    * @throws co.cask.cdap.api.data.DatasetInstantiationException if the stream doesn't exist
+    */
+  def fromStream[T: ClassTag](sc: SparkContext, streamName: String, formatSpec: FormatSpecification,
+                              startTime: Long, endTime: Long, bodyProjection: Option[Seq[String]],
+                              bodyFilter: Map[String, String]): RDD[(Long, GenericStreamEventData[T])]
+
+  /**
+    * Creates a [[org.apache.spark.rdd.RDD]] that represents data from the given stream for events in the given
+    * time range, with body records that pass the given filter. The data in the RDD is always a pair, with the first
+    * entry as a [[scala.Long]], representing the event timestamp, while the second entry is a
+    * [[co.cask.cdap.api.stream.GenericStreamEventData]], which contains the given fields of the record decoded from
+    * the stream event body base on the given [[co.cask.cdap.api.data.format.FormatSpecification]]. Formats that
+    * support it, such as CSV and TSV, only parse the fields needed by the projection and the filter.
+    *
+    * @param sc the [[org.apache.spark.SparkContext]] to use
+    * @param namespace namespace in which the stream exists
+    * @param streamName name of the stream
+    * @param formatSpec the [[co.cask.cdap.api.data.format.FormatSpecification]] describing the format in the stream
+    * @param startTime the starting time of the stream to be read in milliseconds (inclusive)
+    * @param endTime the ending time of the streams to be read in milliseconds (exclusive)
+    * @param bodyProjection names of the body record fields to read, or `None` to read all fields
+    * @param bodyFilter map from body record field name to the string representation that the field value must have
+    *                   for the event to be read
+    * @tparam T value type
+    * @return a new [[org.apache.spark.rdd.RDD]] instance that reads from the given stream.
+    * @throws co.cask.cdap.api.data.DatasetInstantiationException if the stream doesn't exist
+    */
+  def fromStream[T: ClassTag](sc: SparkContext, namespace: String, streamName: String, formatSpec: FormatSpecification,
+                              startTime: Long, endTime: Long, bodyProjection: Option[Seq[String]],
+                              bodyFilter: Map[String, String]): RDD[(Long, GenericStreamEventData[T])]
+
 
   /**
     * Saves the given [[org.apache.spark.rdd.RDD]] to the given [[co.cask.cdap.api.dataset.Dataset]].
@@ -153,7 +153,7 @@ public abstract class Input {
    * @param endTime End timestamp in milliseconds.
    */
   public static Input ofStream(String streamName, long startTime, long endTime) {
-    return new StreamInput(streamName, startTime, endTime, null, null);
+    return new StreamInput(streamName, startTime, endTime, null, null, null, null);
   }
 
   /**
@@ -166,7 +166,7 @@ public abstract class Input {
    */
   public static Input ofStream(String streamName, long startTime,
                                long endTime, Class<? extends StreamEventDecoder> decoderType) {
-    return new StreamInput(streamName, startTime, endTime, decoderType.toString(), null);
+    return new StreamInput(streamName, startTime, endTime, decoderType.toString(), null, null, null);
   }
 
   /**
@@ -179,7 +179,25 @@ public abstract class Input {
    */
   public static Input ofStream(String streamName, long startTime,
                                long endTime, FormatSpecification bodyFormatSpec) {
-    return new StreamInput(streamName, startTime, endTime, null, bodyFormatSpec);
+    return new StreamInput(streamName, startTime, endTime, null, bodyFormatSpec, null, null);
+  }
+
+  /**
+   * Returns an Input defined by a stream with the given properties, which only reads some fields of the body records
+   * of the events that pass the given filter. Formats that support it, such as CSV and TSV, only parse the fields
+   * needed by the projection and the filter.
+   *
+   * @param streamName Name of the stream
+   * @param startTime Start timestamp in milliseconds (inclusive) of stream events provided to the job
+   * @param endTime End timestamp in milliseconds (exclusive) of stream events provided to the job
+   * @param bodyFormatSpec The {@link FormatSpecification} class for decoding {@link StreamEvent}
+   * @param bodyProjection Names of the body record fields to read, or {@code null} to read all fields
+   * @param bodyFilter Map from body record field name to the string representation that the field value must have
+   *                   for the event to be provided to the job
+   */
+  public static Input ofStream(String streamName, long startTime, long endTime, FormatSpecification bodyFormatSpec,
+                               @Nullable List<String> bodyProjection, Map<String, String> bodyFilter) {
+    return new StreamInput(streamName, startTime, endTime, null, bodyFormatSpec, bodyProjection, bodyFilter);
   }
 
 
@@ -236,25 +254,34 @@ public abstract class Input {
     private final long endTime;
     private final String decoderType;
     private final FormatSpecification bodyFormatSpec;
+    private final List<String> bodyProjection;
+    private final Map<String, String> bodyFilter;
 
     private StreamInput(String name, long startTime, long endTime, @Nullable String decoderType,
-                       @Nullable FormatSpecification bodyFormatSpec) {
+                        @Nullable FormatSpecification bodyFormatSpec, @Nullable List<String> bodyProjection,
+                        @Nullable Map<String, String> bodyFilter) {
       super(name);
       this.startTime = startTime;
       this.endTime = endTime;
       this.decoderType = decoderType;
       this.bodyFormatSpec = bodyFormatSpec;
+      this.bodyProjection = bodyProjection == null
+        ? null : Collections.unmodifiableList(new ArrayList<>(bodyProjection));
+      this.bodyFilter = bodyFilter == null
+        ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(new HashMap<>(bodyFilter));
     }
 
     private StreamInput(String name, long startTime, long endTime, @Nullable String decoderType,
-                        @Nullable FormatSpecification bodyFormatSpec, String namespace) {
-      this(name, startTime, endTime, decoderType, bodyFormatSpec);
+                        @Nullable FormatSpecification bodyFormatSpec, @Nullable List<String> bodyProjection,
+                        Map<String, String> bodyFilter, String namespace) {
+      this(name, startTime, endTime, decoderType, bodyFormatSpec, bodyProjection, bodyFilter);
       super.fromNamespace(namespace);
     }
 
     @Override
     public StreamInput fromNamespace(String namespace) {
-      return new StreamInput(super.name, startTime, endTime, decoderType, bodyFormatSpec, namespace);
+      return new StreamInput(super.name, startTime, endTime, decoderType, bodyFormatSpec, bodyProjection, bodyFilter,
+                             namespace);
     }
 
     public long getStartTime() {
@@ -274,6 +301,22 @@ public abstract class Input {
     public FormatSpecification getBodyFormatSpec() {
       return bodyFormatSpec;
     }
+
+    /**
+     * Returns the names of the body record fields to read, or {@code null} to read all fields.
+     */
+    @Nullable
+    public List<String> getBodyProjection() {
+      return bodyProjection;
+    }
+
+    /**
+     * Returns the map from body record field name to the string representation that the field value must have for
+     * the event to be read.
+     */
+    public Map<String, String> getBodyFilter() {
+      return bodyFilter;
+    }
   }
 
   /**
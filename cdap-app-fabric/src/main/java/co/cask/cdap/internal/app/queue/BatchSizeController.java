@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.queue;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides the batch size for dequeuing from queue readers of a process method. An adaptive controller adjusts
+ * the batch size within bounds based on the outcome of processing the dequeued batches:
+ *
+ * <ul>
+ *   <li>A failed transaction halves the batch size, so that less work is retried on conflicts.</li>
+ *   <li>A transaction taking longer than the target latency reduces the batch size proportionally.</li>
+ *   <li>A full batch means there is a backlog, hence the batch size grows as long as the projected latency
+ *   stays within the target latency.</li>
+ *   <li>A batch of less than half of the batch size means the backlog is drained, hence the batch size returns
+ *   towards the initial size. An empty batch only does that, regardless of how long the dequeue took.</li>
+ * </ul>
+ *
+ * The batch size is only accessed from the thread that invokes the process methods.
+ */
+public final class BatchSizeController {
+
+  private final int initialSize;
+  private final int minSize;
+  private final int maxSize;
+  private final long targetLatencyNanos;
+  private int size;
+
+  /**
+   * Creates a controller that always returns the given batch size.
+   */
+  public static BatchSizeController fixed(int size) {
+    return new BatchSizeController(size, size, size, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Creates a controller that adjusts the batch size between 1 and the given maximum size.
+   *
+   * @param initialSize the batch size to start with and to return to when the backlog is drained
+   * @param maxSize the maximum batch size
+   * @param targetLatency the target latency of processing a batch
+   * @param unit unit of the target latency
+   */
+  public static BatchSizeController adaptive(int initialSize, int maxSize, long targetLatency, TimeUnit unit) {
+    return new BatchSizeController(initialSize, 1, Math.max(initialSize, maxSize), targetLatency, unit);
+  }
+
+  private BatchSizeController(int initialSize, int minSize, int maxSize, long targetLatency, TimeUnit unit) {
+    Preconditions.checkArgument(minSize > 0, "Batch size should be > 0");
+    Preconditions.checkArgument(targetLatency > 0, "Target latency should be > 0");
+    this.initialSize = initialSize;
+    this.minSize = minSize;
+    this.maxSize = maxSize;
+    this.targetLatencyNanos = unit.toNanos(targetLatency);
+    this.size = initialSize;
+  }
+
+  /**
+   * Returns the current batch size.
+   */
+  public int get() {
+    return size;
+  }
+
+  /**
+   * Updates the batch size based on the outcome of processing a batch.
+   *
+   * @param dequeued number of entries in the batch
+   * @param latencyNanos time in nanoseconds it took to dequeue and process the batch, including the transaction
+   * @param committed {@code true} if the transaction was committed
+   */
+  public void update(int dequeued, long latencyNanos, boolean committed) {
+    if (minSize == maxSize) {
+      return;
+    }
+
+    if (!committed) {
+      size = Math.max(minSize, size / 2);
+    } else if (dequeued == 0) {
+      // An empty dequeue says nothing about the processing latency, only that the backlog is drained
+      if (size > initialSize) {
+        size = Math.max(initialSize, size / 2);
+      }
+    } else if (latencyNanos > targetLatencyNanos) {
+      size = Math.max(minSize, Math.min(size - 1, (int) (dequeued * targetLatencyNanos / latencyNanos)));
+    } else if (dequeued >= size) {
+      // Grow, but not beyond the size that can be processed within the target latency
+      long projectedSize = latencyNanos <= 0 ? maxSize : dequeued * targetLatencyNanos / latencyNanos;
+      size = (int) Math.min(Math.min(maxSize, size * 2L), Math.max(size, projectedSize));
+    } else if (dequeued < size / 2 && size > initialSize) {
+      size = Math.max(initialSize, size / 2);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("size", size)
+      .add("min", minSize)
+      .add("max", maxSize)
+      .toString();
+  }
+}
@@ -98,6 +98,10 @@ public class StreamInputFormatProvider implements InputFormatProvider {
       FormatSpecification formatSpec = streamInput.getBodyFormatSpec();
       if (formatSpec != null) {
         AbstractStreamInputFormat.setBodyFormatSpecification(hConf, formatSpec);
+        if (streamInput.getBodyProjection() != null) {
+          AbstractStreamInputFormat.setBodyProjection(hConf, streamInput.getBodyProjection());
+        }
+        AbstractStreamInputFormat.setBodyFilter(hConf, streamInput.getBodyFilter());
       } else {
         String decoderType = streamInput.getDecoderType();
         if (decoderType != null) {
@@ -34,45 +34,68 @@ import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
- * @param <T>
+ * {@link OutputEmitter} that encodes emitted objects with a {@link DatumWriter} and enqueues them to a queue.
+ * The encoding buffer and encoder are reused across emits, so that the only per-event allocation of the
+ * encoded data is the exact-sized array held by the {@link QueueEntry} until the transaction is committed.
+ *
+ * @param <T> type of the emitted objects
  */
 public final class DatumOutputEmitter<T> implements OutputEmitter<T> {
 
   public static final Function<Object, Integer> PARTITION_MAP_TRANSFORMER = new PartitionMapTransformer();
 
+  // Don't hold on to buffers grown by a few large events
+  private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
   private final Supplier<QueueProducer> producerSupplier;
   private final byte[] schemaHash;
   private final DatumWriter<T> writer;
+  private ByteArrayOutputStream output;
+  private BinaryEncoder encoder;
 
   public DatumOutputEmitter(Supplier<QueueProducer> producerSupplier, Schema schema, DatumWriter<T> writer) {
     this.producerSupplier = producerSupplier;
     this.schemaHash = schema.getSchemaHash().toByteArray();
     this.writer = writer;
+    resetBuffer();
   }
 
   @Override
   public void emit(T data) {
-    emit(data, ImmutableMap.<String, Object>of());
+    enqueue(data, ImmutableMap.<String, Integer>of());
   }
 
   @Override
   public void emit(T data, String partitionKey, Object partitionValue) {
-    emit(data, ImmutableMap.of(partitionKey, partitionValue));
+    enqueue(data, ImmutableMap.of(partitionKey, PARTITION_MAP_TRANSFORMER.apply(partitionValue)));
   }
 
   @Override
   public void emit(T data, Map<String, Object> partitions) {
+    enqueue(data, partitions.isEmpty() ? ImmutableMap.<String, Integer>of()
+                                       : ImmutableMap.copyOf(Maps.transformValues(partitions,
+                                                                                  PARTITION_MAP_TRANSFORMER)));
+  }
+
+  private synchronized void enqueue(T data, ImmutableMap<String, Integer> hashKeys) {
     try {
-      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      if (output.size() > MAX_RETAINED_BUFFER_SIZE) {
+        resetBuffer();
+      }
+      output.reset();
       output.write(schemaHash);
-      writer.encode(data, new BinaryEncoder(output));
-      producerSupplier.get().enqueue(new QueueEntry(Maps.transformValues(partitions, PARTITION_MAP_TRANSFORMER),
-                                                    output.toByteArray()));
+      writer.encode(data, encoder);
+      producerSupplier.get().enqueue(new QueueEntry(hashKeys, output.toByteArray()));
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
   }
 
+  private void resetBuffer() {
+    output = new ByteArrayOutputStream(256);
+    encoder = new BinaryEncoder(output);
+  }
+
   private static final class PartitionMapTransformer implements Function<Object, Integer> {
     @Override
     public Integer apply(@Nullable Object input) {
@@ -226,6 +226,7 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
 
     // Begin transaction and dequeue
     try {
+      long startNanos = System.nanoTime();
       TransactionContext txContext = dataFabricFacade.createTransactionContext();
       startTx(txContext);
 
@@ -235,6 +236,9 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
           entry.backOff();
           // End the transaction if nothing in the queue
           txContext.finish();
+          if (!entry.isRetry()) {
+            entry.getProcessSpec().getBatchSizeController().update(0, System.nanoTime() - startNanos, true);
+          }
           return false;
         }
         // Resetting back-off time to minimum back-off time,
@@ -244,7 +248,11 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
         // Call the process method and commit the transaction. The current process entry will put
         // back to queue in the postProcess method (either a retry copy or itself).
         ProcessMethod.ProcessResult<?> result = processMethod.invoke(input);
-        postProcess(processMethodCallback(processQueue, entry, input), txContext, input, result);
+        boolean committed = postProcess(processMethodCallback(processQueue, entry, input), txContext, input, result);
+        if (!entry.isRetry()) {
+          entry.getProcessSpec().getBatchSizeController().update(input.size(), System.nanoTime() - startNanos,
+                                                                 committed);
+        }
         return true;
 
       } catch (Throwable t) {
@@ -274,12 +282,15 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
 
   /**
    * Process the process result. This method never throws.
+   *
+   * @return {@code true} if the transaction was committed
    */
-  private void postProcess(ProcessMethodCallback callback, TransactionContext txContext,
-                           InputDatum input, ProcessMethod.ProcessResult result) {
+  private boolean postProcess(ProcessMethodCallback callback, TransactionContext txContext,
+                              InputDatum input, ProcessMethod.ProcessResult result) {
     InputContext inputContext = input.getInputContext();
     Throwable failureCause = null;
     FailureReason.Type failureType = FailureReason.Type.IO_ERROR;
+    boolean committed = false;
     try {
       if (result.isSuccess()) {
         // If it is a retry input, force the dequeued entries into current transaction.
@@ -287,6 +298,7 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
           input.reclaim();
         }
         txContext.finish();
+        committed = true;
       } else {
         failureCause = result.getCause();
         failureType = FailureReason.Type.USER;
@@ -318,6 +330,7 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
     } catch (Throwable t) {
       LOG.error("Failed to invoke callback.", t);
     }
+    return committed;
   }
 
   private InputAcknowledger createInputAcknowledger(final InputDatum input) {
@@ -65,6 +65,7 @@ import co.cask.cdap.data2.queue.QueueConsumer;
 import co.cask.cdap.data2.registry.RuntimeUsageRegistry;
 import co.cask.cdap.data2.transaction.queue.QueueMetrics;
 import co.cask.cdap.data2.transaction.stream.StreamConsumer;
+import co.cask.cdap.internal.app.queue.BatchSizeController;
 import co.cask.cdap.internal.app.queue.QueueReaderFactory;
 import co.cask.cdap.internal.app.queue.RoundRobinQueueReader;
 import co.cask.cdap.internal.app.queue.SimpleQueueSpecificationGenerator;
@@ -119,6 +120,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -346,7 +348,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
         Schema schema;
         TypeToken<?> dataType;
         ConsumerConfig consumerConfig;
-        int batchSize = 1;
+        BatchSizeController batchSizeController = BatchSizeController.fixed(1);
 
         if (tickAnnotation != null) {
           inputNames = ImmutableSet.of();
@@ -370,7 +372,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
                                           "Only ParameterizedType is supported for batch Iterator.");
               dataType = flowletType.resolveType(((ParameterizedType) dataType.getType()).getActualTypeArguments()[0]);
             }
-            batchSize = processBatchSize;
+            batchSizeController = createBatchSizeController(processBatchSize);
           }
 
           try {
@@ -381,7 +383,8 @@ public final class FlowletProgramRunner implements ProgramRunner {
         }
 
         ProcessSpecification processSpec = processSpecFactory.create(inputNames, schema, dataType, processMethod,
-                                                                     consumerConfig, batchSize, tickAnnotation);
+                                                                     consumerConfig, batchSizeController,
+                                                                     tickAnnotation);
         // Add processSpec
         if (processSpec != null) {
           result.add(processSpec);
@@ -446,6 +449,18 @@ public final class FlowletProgramRunner implements ProgramRunner {
     return null;
   }
 
+  /**
+   * Creates the {@link BatchSizeController} for a process method with the given batch size.
+   */
+  private BatchSizeController createBatchSizeController(int batchSize) {
+    if (!cConf.getBoolean(Constants.Flow.ADAPTIVE_BATCH_ENABLED, false)) {
+      return BatchSizeController.fixed(batchSize);
+    }
+    return BatchSizeController.adaptive(batchSize, cConf.getInt(Constants.Flow.ADAPTIVE_BATCH_MAX_SIZE),
+                                        cConf.getLong(Constants.Flow.ADAPTIVE_BATCH_TARGET_LATENCY_MS),
+                                        TimeUnit.MILLISECONDS);
+  }
+
   private int getNumGroups(Iterable<QueueSpecification> queueSpecs, QueueName queueName) {
     int numGroups = 0;
     for (QueueSpecification queueSpec : queueSpecs) {
@@ -559,7 +574,8 @@ public final class FlowletProgramRunner implements ProgramRunner {
     return new ProcessSpecificationFactory() {
       @Override
       public <T> ProcessSpecification create(Set<String> inputNames, Schema schema, TypeToken<T> dataType,
-                                             ProcessMethod<T> method, ConsumerConfig consumerConfig, int batchSize,
+                                             ProcessMethod<T> method, ConsumerConfig consumerConfig,
+                                             BatchSizeController batchSize,
                                              Tick tickAnnotation) throws Exception {
         List<QueueReader<T>> queueReaders = Lists.newLinkedList();
 
@@ -612,7 +628,8 @@ public final class FlowletProgramRunner implements ProgramRunner {
         if (!inputNames.isEmpty() && queueReaders.isEmpty()) {
           return null;
         }
-        return new ProcessSpecification<>(new RoundRobinQueueReader<>(queueReaders), method, tickAnnotation);
+        return new ProcessSpecification<>(new RoundRobinQueueReader<>(queueReaders), method, batchSize,
+                                          tickAnnotation);
       }
     };
   }
@@ -728,8 +745,8 @@ public final class FlowletProgramRunner implements ProgramRunner {
      * no input is available for the given method.
      */
     <T> ProcessSpecification create(Set<String> inputNames, Schema schema, TypeToken<T> dataType,
-                                    ProcessMethod<T> method, ConsumerConfig consumerConfig, int batchSize,
-                                    Tick tickAnnotation) throws Exception;
+                                    ProcessMethod<T> method, ConsumerConfig consumerConfig,
+                                    BatchSizeController batchSize, Tick tickAnnotation) throws Exception;
   }
 
   /**
@@ -18,6 +18,7 @@ package co.cask.cdap.internal.app.runtime.flow;
 
 import co.cask.cdap.api.annotation.Tick;
 import co.cask.cdap.app.queue.QueueReader;
+import co.cask.cdap.internal.app.queue.BatchSizeController;
 import com.google.common.base.Objects;
 
 import java.util.concurrent.TimeUnit;
@@ -29,12 +30,19 @@ final class ProcessSpecification<T> {
 
   private final QueueReader<T> queueReader;
   private final ProcessMethod<T> processMethod;
+  private final BatchSizeController batchSizeController;
   private final Tick tickAnnotation;
   private final boolean isTick;
 
   ProcessSpecification(QueueReader<T> queueReader, ProcessMethod<T> processMethod, Tick tickAnnotation) {
+    this(queueReader, processMethod, BatchSizeController.fixed(1), tickAnnotation);
+  }
+
+  ProcessSpecification(QueueReader<T> queueReader, ProcessMethod<T> processMethod,
+                       BatchSizeController batchSizeController, Tick tickAnnotation) {
     this.queueReader = queueReader;
     this.processMethod = processMethod;
+    this.batchSizeController = batchSizeController;
     this.tickAnnotation = tickAnnotation;
     this.isTick = tickAnnotation != null;
   }
@@ -47,6 +55,13 @@ final class ProcessSpecification<T> {
     return processMethod;
   }
 
+  /**
+   * Returns the {@link BatchSizeController} that provides the dequeue batch size for the queue reader.
+   */
+  BatchSizeController getBatchSizeController() {
+    return batchSizeController;
+  }
+
   long getInitialCallDelay() {
     return isTick ? convertToNano(tickAnnotation.initialDelay(), tickAnnotation.unit()) : 0L;
   }
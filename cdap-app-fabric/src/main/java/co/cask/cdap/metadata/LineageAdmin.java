@@ -46,12 +46,14 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import org.apache.twill.api.RunId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -321,40 +323,33 @@ public class LineageAdmin {
     Set<ProgramId> visitedPrograms = new HashSet<>();
     Set<ProgramId> toVisitPrograms = new HashSet<>();
 
+    // The relations of all datasets or programs of a level are fetched within one transaction
     toVisitDatasets.add(sourceData);
     for (int i = 0; i < levels; ++i) {
       LOG.trace("Level {}", i);
+      Set<NamespacedEntityId> datasets = Sets.difference(toVisitDatasets, visitedDatasets).immutableCopy();
+      visitedDatasets.addAll(datasets);
+      LOG.trace("Visiting datasets {}", datasets);
+      // Fetch related programs
+      Set<Relation> programRelations = getRelations(datasets, scanRange);
+      LOG.trace("Got program relations {}", programRelations);
+      for (Relation relation : programRelations) {
+        relations.put(new RelationKey(relation), relation);
+      }
       toVisitPrograms.clear();
-      for (NamespacedEntityId d : toVisitDatasets) {
-        if (visitedDatasets.add(d)) {
-          LOG.trace("Visiting dataset {}", d);
-          // Fetch related programs
-          Iterable<Relation> programRelations = getProgramRelations(d, scanRange.getStart(), scanRange.getEnd(),
-                                                                    scanRange.getFilter());
-          LOG.trace("Got program relations {}", programRelations);
-          for (Relation relation : programRelations) {
-            relations.put(new RelationKey(relation), relation);
-          }
-          Iterables.addAll(toVisitPrograms, Iterables.transform(programRelations, RELATION_TO_PROGRAM_FUNCTION));
-        }
+      Iterables.addAll(toVisitPrograms, Iterables.transform(programRelations, RELATION_TO_PROGRAM_FUNCTION));
+
+      Set<ProgramId> programs = Sets.difference(toVisitPrograms, visitedPrograms).immutableCopy();
+      visitedPrograms.addAll(programs);
+      LOG.trace("Visiting programs {}", programs);
+      // Fetch related datasets
+      Set<Relation> datasetRelations = getRelations(programs, scanRange);
+      LOG.trace("Got data relations {}", datasetRelations);
+      for (Relation relation : datasetRelations) {
+        relations.put(new RelationKey(relation), relation);
       }
-
       toVisitDatasets.clear();
-      for (ProgramId p : toVisitPrograms) {
-        if (visitedPrograms.add(p)) {
-          LOG.trace("Visiting program {}", p);
-          // Fetch related datasets
-          Iterable<Relation> datasetRelations = lineageStoreReader.getRelations(p, scanRange.getStart(),
-                                                                                scanRange.getEnd(),
-                                                                                scanRange.getFilter());
-          LOG.trace("Got data relations {}", datasetRelations);
-          for (Relation relation : datasetRelations) {
-            relations.put(new RelationKey(relation), relation);
-          }
-          Iterables.addAll(toVisitDatasets,
-                           Iterables.transform(datasetRelations, RELATION_TO_DATA_FUNCTION));
-        }
-      }
+      Iterables.addAll(toVisitDatasets, Iterables.transform(datasetRelations, RELATION_TO_DATA_FUNCTION));
     }
 
     if (rollup != null && rollup.contains("workflow")) {
@@ -367,17 +362,11 @@ public class LineageAdmin {
     return lineage;
   }
 
-  private Iterable<Relation> getProgramRelations(NamespacedEntityId data, long start, long end,
-                                                 Predicate<Relation> filter) {
-    if (data instanceof DatasetId) {
-      return lineageStoreReader.getRelations((DatasetId) data, start, end, filter);
+  private Set<Relation> getRelations(Set<? extends NamespacedEntityId> entities, ScanRangeWithFilter scanRange) {
+    if (entities.isEmpty()) {
+      return Collections.emptySet();
     }
-
-    if (data instanceof StreamId) {
-      return lineageStoreReader.getRelations((StreamId) data, start, end, filter);
-    }
-
-    throw new IllegalStateException("Unknown data type " + data);
+    return lineageStoreReader.getRelations(entities, scanRange.getStart(), scanRange.getEnd(), scanRange.getFilter());
   }
 
   /**
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.queue;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit test for {@link BatchSizeController}.
+ */
+public class BatchSizeControllerTest {
+
+  private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test
+  public void testFixed() {
+    BatchSizeController controller = BatchSizeController.fixed(10);
+    controller.update(10, 10 * MS, true);
+    controller.update(10, 10000 * MS, false);
+    Assert.assertEquals(10, controller.get());
+  }
+
+  @Test
+  public void testAdaptive() {
+    BatchSizeController controller = BatchSizeController.adaptive(10, 100, 1000, TimeUnit.MILLISECONDS);
+
+    // Full batches grow the batch size up to the maximum
+    controller.update(10, 10 * MS, true);
+    Assert.assertEquals(20, controller.get());
+    controller.update(20, 20 * MS, true);
+    controller.update(40, 40 * MS, true);
+    controller.update(80, 80 * MS, true);
+    Assert.assertEquals(100, controller.get());
+
+    // Growth is limited by the target latency
+    controller = BatchSizeController.adaptive(10, 100, 1000, TimeUnit.MILLISECONDS);
+    controller.update(10, 800 * MS, true);
+    Assert.assertEquals(12, controller.get());
+
+    // Too slow batches reduce the batch size
+    controller.update(12, 2400 * MS, true);
+    Assert.assertEquals(5, controller.get());
+
+    // Failed transactions halve the batch size, but not below one
+    controller.update(5, 10 * MS, false);
+    Assert.assertEquals(2, controller.get());
+    controller.update(2, 10 * MS, false);
+    controller.update(1, 10 * MS, false);
+    Assert.assertEquals(1, controller.get());
+
+    // Drained backlog returns the batch size towards the initial size, but doesn't increase it
+    controller.update(0, MS, true);
+    Assert.assertEquals(1, controller.get());
+    controller = BatchSizeController.adaptive(10, 100, 1000, TimeUnit.MILLISECONDS);
+    controller.update(10, 10 * MS, true);
+    controller.update(20, 20 * MS, true);
+    Assert.assertEquals(40, controller.get());
+    controller.update(5, MS, true);
+    Assert.assertEquals(20, controller.get());
+    controller.update(0, MS, true);
+    Assert.assertEquals(10, controller.get());
+    controller.update(0, MS, true);
+    Assert.assertEquals(10, controller.get());
+  }
+
+  @Test
+  public void testEmptyDequeue() {
+    BatchSizeController controller = BatchSizeController.adaptive(10, 100, 1000, TimeUnit.MILLISECONDS);
+
+    // A slow empty dequeue doesn't reduce the batch size, as nothing was processed
+    controller.update(0, 2000 * MS, true);
+    Assert.assertEquals(10, controller.get());
+
+    // It only returns the batch size towards the initial size
+    controller.update(10, 10 * MS, true);
+    controller.update(20, 20 * MS, true);
+    Assert.assertEquals(40, controller.get());
+    controller.update(0, 2000 * MS, true);
+    Assert.assertEquals(20, controller.get());
+    controller.update(0, 2000 * MS, true);
+    controller.update(0, 2000 * MS, true);
+    Assert.assertEquals(10, controller.get());
+  }
+}
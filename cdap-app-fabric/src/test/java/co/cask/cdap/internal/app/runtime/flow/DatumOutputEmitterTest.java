@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.flow.flowlet.OutputEmitter;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.Encoder;
+import co.cask.cdap.data2.queue.QueueEntry;
+import co.cask.cdap.data2.queue.QueueProducer;
+import co.cask.cdap.internal.io.DatumWriter;
+import co.cask.cdap.internal.io.ReflectionDatumReader;
+import co.cask.cdap.internal.io.ReflectionDatumWriter;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.base.Strings;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.reflect.TypeToken;
+import com.sun.management.ThreadMXBean;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test for {@link DatumOutputEmitter}.
+ */
+public class DatumOutputEmitterTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DatumOutputEmitterTest.class);
+
+  @Test
+  public void testReuseBuffer() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(String.class);
+    RecordingQueueProducer producer = new RecordingQueueProducer();
+    RecordingDatumWriter<String> writer = new RecordingDatumWriter<>(new ReflectionDatumWriter<String>(schema));
+    DatumOutputEmitter<String> emitter = new DatumOutputEmitter<>(Suppliers.<QueueProducer>ofInstance(producer),
+                                                                  schema, writer);
+
+    // Emit events of varying sizes, including one larger than the retained buffer size
+    List<String> events = Lists.newArrayList("a", Strings.repeat("b", 1000), "c",
+                                             Strings.repeat("d", 2 * 1024 * 1024), "e", "f");
+    emitter.emit(events.get(0));
+    emitter.emit(events.get(1), "key", "value");
+    emitter.emit(events.get(2), ImmutableMap.<String, Object>of("k1", 1, "k2", "v2"));
+    emitter.emit(events.get(3), ImmutableMap.<String, Object>of());
+    emitter.emit(events.get(4), "key", null);
+    emitter.emit(events.get(5));
+
+    Assert.assertEquals(events.size(), producer.entries.size());
+    byte[] schemaHash = schema.getSchemaHash().toByteArray();
+    ReflectionDatumReader<String> reader = new ReflectionDatumReader<>(schema, TypeToken.of(String.class));
+    for (int i = 0; i < events.size(); i++) {
+      byte[] data = producer.entries.get(i).getData();
+      ByteArrayInputStream input = new ByteArrayInputStream(data, schemaHash.length, data.length - schemaHash.length);
+      Assert.assertEquals(events.get(i), reader.read(new BinaryDecoder(input), schema));
+      Assert.assertEquals(0, input.available());
+    }
+
+    // The same encoder, hence the same buffer, is used for all events until the buffer is grown beyond the
+    // retained size. It is then replaced once, and the new one is reused again.
+    List<Encoder> encoders = writer.encoders;
+    for (int i = 1; i <= 3; i++) {
+      Assert.assertSame(encoders.get(0), encoders.get(i));
+    }
+    Assert.assertNotSame(encoders.get(3), encoders.get(4));
+    Assert.assertSame(encoders.get(4), encoders.get(5));
+
+    Assert.assertTrue(producer.entries.get(0).getHashKeys().isEmpty());
+    Assert.assertEquals(ImmutableMap.of("key", "value".hashCode()), producer.entries.get(1).getHashKeys());
+    Assert.assertEquals(ImmutableMap.of("k1", 1, "k2", "v2".hashCode()), producer.entries.get(2).getHashKeys());
+    Assert.assertTrue(producer.entries.get(3).getHashKeys().isEmpty());
+    Assert.assertEquals(ImmutableMap.of("key", 0), producer.entries.get(4).getHashKeys());
+  }
+
+  /**
+   * An allocation benchmark that reports the bytes allocated per emit of a small event with a partition key, for
+   * {@link DatumOutputEmitter} and for the emitter that allocated a new buffer and encoder for every event.
+   * It is not run as part of the build.
+   */
+  @Ignore
+  @Test
+  public void testEmitAllocation() throws Exception {
+    ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+    threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+    Schema schema = new ReflectionSchemaGenerator().generate(String.class);
+    Supplier<QueueProducer> producer = Suppliers.<QueueProducer>ofInstance(new DiscardingQueueProducer());
+    String event = Strings.repeat("x", 100);
+    int emits = 1000000;
+
+    OutputEmitter<String> baseline = new BaselineOutputEmitter<>(producer, schema,
+                                                                 new ReflectionDatumWriter<String>(schema));
+    OutputEmitter<String> emitter = new DatumOutputEmitter<>(producer, schema,
+                                                             new ReflectionDatumWriter<String>(schema));
+    // Warm up both emitters first, so that class loading and compilation are not measured
+    measureAllocation(threadMXBean, baseline, event, emits / 10);
+    measureAllocation(threadMXBean, emitter, event, emits / 10);
+
+    long baselineBytes = measureAllocation(threadMXBean, baseline, event, emits);
+    long bytes = measureAllocation(threadMXBean, emitter, event, emits);
+    LOG.info("Bytes allocated per emit of a {} bytes event: baseline emitter {}, reusing emitter {}",
+             event.length(), baselineBytes, bytes);
+  }
+
+  /**
+   * Emits the given event the given number of times and returns the average bytes allocated by the current thread
+   * per emit.
+   */
+  private long measureAllocation(ThreadMXBean threadMXBean, OutputEmitter<String> emitter, String event, int emits) {
+    long threadId = Thread.currentThread().getId();
+    long start = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < emits; i++) {
+      emitter.emit(event, "key", i);
+    }
+    return (threadMXBean.getThreadAllocatedBytes(threadId) - start) / emits;
+  }
+
+  /**
+   * A {@link QueueProducer} that keeps all enqueued entries in memory.
+   */
+  private static final class RecordingQueueProducer implements QueueProducer {
+
+    private final List<QueueEntry> entries = Lists.newArrayList();
+
+    @Override
+    public void enqueue(QueueEntry entry) throws IOException {
+      entries.add(entry);
+    }
+
+    @Override
+    public void enqueue(Iterable<QueueEntry> entries) throws IOException {
+      Iterables.addAll(this.entries, entries);
+    }
+
+    @Override
+    public void close() throws IOException {
+      // no-op
+    }
+  }
+
+  /**
+   * A {@link QueueProducer} that drops all enqueued entries.
+   */
+  private static final class DiscardingQueueProducer implements QueueProducer {
+
+    @Override
+    public void enqueue(QueueEntry entry) throws IOException {
+      // no-op
+    }
+
+    @Override
+    public void enqueue(Iterable<QueueEntry> entries) throws IOException {
+      // no-op
+    }
+
+    @Override
+    public void close() throws IOException {
+      // no-op
+    }
+  }
+
+  /**
+   * A {@link DatumWriter} that records the {@link Encoder} used for each encoded object.
+   */
+  private static final class RecordingDatumWriter<T> implements DatumWriter<T> {
+
+    private final DatumWriter<T> delegate;
+    private final List<Encoder> encoders = Lists.newArrayList();
+
+    RecordingDatumWriter(DatumWriter<T> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void encode(T data, Encoder encoder) throws IOException {
+      encoders.add(encoder);
+      delegate.encode(data, encoder);
+    }
+  }
+
+  /**
+   * The {@link OutputEmitter} as it was before {@link DatumOutputEmitter} reused its buffer, which allocates a new
+   * buffer and encoder for every event. It is only used as the baseline of {@link #testEmitAllocation()}.
+   */
+  private static final class BaselineOutputEmitter<T> implements OutputEmitter<T> {
+
+    private final Supplier<QueueProducer> producerSupplier;
+    private final byte[] schemaHash;
+    private final DatumWriter<T> writer;
+
+    BaselineOutputEmitter(Supplier<QueueProducer> producerSupplier, Schema schema, DatumWriter<T> writer) {
+      this.producerSupplier = producerSupplier;
+      this.schemaHash = schema.getSchemaHash().toByteArray();
+      this.writer = writer;
+    }
+
+    @Override
+    public void emit(T data) {
+      emit(data, ImmutableMap.<String, Object>of());
+    }
+
+    @Override
+    public void emit(T data, String partitionKey, Object partitionValue) {
+      emit(data, ImmutableMap.of(partitionKey, partitionValue));
+    }
+
+    @Override
+    public void emit(T data, Map<String, Object> partitions) {
+      try {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(schemaHash);
+        writer.encode(data, new BinaryEncoder(output));
+        producerSupplier.get().enqueue(
+          new QueueEntry(Maps.transformValues(partitions, DatumOutputEmitter.PARTITION_MAP_TRANSFORMER),
+                         output.toByteArray()));
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+    }
+  }
+}
@@ -38,6 +38,7 @@ import co.cask.cdap.etl.mock.batch.MockSink;
 import co.cask.cdap.etl.mock.batch.MockSource;
 import co.cask.cdap.etl.mock.batch.NodeStatesAction;
 import co.cask.cdap.etl.mock.batch.aggregator.FieldCountAggregator;
+import co.cask.cdap.etl.mock.batch.aggregator.FieldSumAggregator;
 import co.cask.cdap.etl.mock.batch.aggregator.IdentityAggregator;
 import co.cask.cdap.etl.mock.batch.joiner.MockJoiner;
 import co.cask.cdap.etl.mock.test.HydratorTestBase;
@@ -49,6 +50,7 @@ import co.cask.cdap.etl.proto.Engine;
 import co.cask.cdap.etl.proto.v2.ETLBatchConfig;
 import co.cask.cdap.etl.proto.v2.ETLPlugin;
 import co.cask.cdap.etl.proto.v2.ETLStage;
+import co.cask.cdap.etl.spark.SkewedKeys;
 import co.cask.cdap.proto.ProgramRunStatus;
 import co.cask.cdap.proto.RunRecord;
 import co.cask.cdap.proto.WorkflowTokenDetail;
@@ -62,9 +64,11 @@ import co.cask.cdap.test.DataSetManager;
 import co.cask.cdap.test.StreamManager;
 import co.cask.cdap.test.TestConfiguration;
 import co.cask.cdap.test.WorkflowManager;
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
 import org.junit.After;
 import org.junit.Assert;
@@ -81,6 +85,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
 
 /**
  *
@@ -656,6 +661,72 @@ public class DataPipelineTest extends HydratorTestBase {
     validateMetric(5, appId, "sink2.records.in");
   }
 
+  @Test
+  public void testMapRedCombinableAggregator() throws Exception {
+    testCombinableAggregator(Engine.MAPREDUCE);
+  }
+
+  @Test
+  public void testSparkCombinableAggregator() throws Exception {
+    testCombinableAggregator(Engine.SPARK);
+  }
+
+  private void testCombinableAggregator(Engine engine) throws Exception {
+    String sourceName = "sumInput-" + engine.name();
+    String sinkName = "sumOutput-" + engine.name();
+    ETLBatchConfig etlConfig = ETLBatchConfig.builder("* * * * *")
+      .setEngine(engine)
+      .addStage(new ETLStage("source", MockSource.getPlugin(sourceName)))
+      .addStage(new ETLStage("sink", MockSink.getPlugin(sinkName)))
+      .addStage(new ETLStage("agg", FieldSumAggregator.getPlugin("user", "item")))
+      .addConnection("source", "agg")
+      .addConnection("agg", "sink")
+      .build();
+
+    AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(APP_ARTIFACT, etlConfig);
+    ApplicationId appId = NamespaceId.DEFAULT.app("CombinableAggApp-" + engine);
+    ApplicationManager appManager = deployApplication(appId.toId(), appRequest);
+    Schema inputSchema = Schema.recordOf(
+      "testRecord",
+      Schema.Field.of("user", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("item", Schema.of(Schema.Type.LONG))
+    );
+
+    DataSetManager<Table> inputManager = getDataset(NamespaceId.DEFAULT.dataset(sourceName));
+    MockSource.writeInput(inputManager, ImmutableList.of(
+      StructuredRecord.builder(inputSchema).set("user", "samuel").set("item", 1L).build(),
+      StructuredRecord.builder(inputSchema).set("user", "samuel").set("item", 2L).build(),
+      StructuredRecord.builder(inputSchema).set("user", "samuel").set("item", 3L).build(),
+      StructuredRecord.builder(inputSchema).set("user", "john").set("item", 4L).build(),
+      StructuredRecord.builder(inputSchema).set("user", "john").set("item", 5L).build()));
+
+    WorkflowManager workflowManager = appManager.getWorkflowManager(SmartWorkflow.NAME);
+    workflowManager.start();
+    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
+
+    Schema outputSchema = Schema.recordOf(
+      "user.item.sum",
+      Schema.Field.of("user", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("item", Schema.of(Schema.Type.LONG))
+    );
+
+    // check output
+    DataSetManager<Table> sinkManager = getDataset(sinkName);
+    Set<StructuredRecord> expected = ImmutableSet.of(
+      StructuredRecord.builder(outputSchema).set("user", "all").set("item", 15L).build(),
+      StructuredRecord.builder(outputSchema).set("user", "samuel").set("item", 6L).build(),
+      StructuredRecord.builder(outputSchema).set("user", "john").set("item", 9L).build());
+    Set<StructuredRecord> actual = Sets.newHashSet(MockSink.readOutput(sinkManager));
+    Assert.assertEquals(expected, actual);
+
+    validateMetric(5, appId, "source.records.out");
+    validateMetric(5, appId, "agg.records.in");
+    // 2 users, but FieldSumAggregator always emits an 'all' group
+    validateMetric(3, appId, "agg.aggregator.groups");
+    validateMetric(3, appId, "agg.records.out");
+    validateMetric(3, appId, "sink.records.in");
+  }
+
   @Test
   public void testSparkSinkAndCompute() throws Exception {
     // use the SparkSink to train a model
@@ -846,7 +917,17 @@ public class DataPipelineTest extends HydratorTestBase {
     testInnerJoinWithMultiOutput(Engine.SPARK);
   }
 
+  @Test
+  public void testBroadcastInnerJoinSpark() throws Exception {
+    // broadcast the first required input, so that the items have to be moved to the front to be joined into
+    testInnerJoinWithMultiOutput(Engine.SPARK, "t1,t3");
+  }
+
   public void testInnerJoinWithMultiOutput(Engine engine) throws Exception {
+    testInnerJoinWithMultiOutput(engine, null);
+  }
+
+  private void testInnerJoinWithMultiOutput(Engine engine, @Nullable String broadcastInputs) throws Exception {
     Schema inputSchema1 = Schema.recordOf(
       "customerRecord",
       Schema.Field.of("customer_id", Schema.of(Schema.Type.STRING)),
@@ -868,14 +949,15 @@ public class DataPipelineTest extends HydratorTestBase {
       Schema.Field.of("c_name", Schema.of(Schema.Type.STRING))
     );
 
-    String input1Name = "source1InnerJoinInput-" + engine;
-    String input2Name = "source2InnerJoinInput-" + engine;
-    String input3Name = "source3InnerJoinInput-" + engine;
-    String outputName = "innerJoinOutput-" + engine;
-    String outputName2 = "innerJoinOutput2-" + engine;
-    String joinerName = "innerJoiner-" + engine;
-    String sinkName = "innerJoinSink-" + engine;
-    String sinkName2 = "innerJoinSink-2" + engine;
+    String suffix = broadcastInputs == null ? engine.name() : engine + "-broadcast";
+    String input1Name = "source1InnerJoinInput-" + suffix;
+    String input2Name = "source2InnerJoinInput-" + suffix;
+    String input3Name = "source3InnerJoinInput-" + suffix;
+    String outputName = "innerJoinOutput-" + suffix;
+    String outputName2 = "innerJoinOutput2-" + suffix;
+    String joinerName = "innerJoiner-" + suffix;
+    String sinkName = "innerJoinSink-" + suffix;
+    String sinkName2 = "innerJoinSink-2" + suffix;
     ETLBatchConfig etlConfig = ETLBatchConfig.builder("* * * * *")
       .addStage(new ETLStage("source1", MockSource.getPlugin(input1Name)))
       .addStage(new ETLStage("source2", MockSource.getPlugin(input2Name)))
@@ -885,7 +967,7 @@ public class DataPipelineTest extends HydratorTestBase {
       .addStage(new ETLStage("t3", FieldsPrefixTransform.getPlugin("", inputSchema3.toString())))
       .addStage(new ETLStage(joinerName, MockJoiner.getPlugin("t1.customer_id=t2.cust_id=t3.c_id&" +
                                                                   "t1.customer_name=t2.cust_name=t3.c_name",
-                                                                "t1,t2,t3", "")))
+                                                                "t1,t2,t3", "", broadcastInputs)))
       .addStage(new ETLStage(sinkName, MockSink.getPlugin(outputName)))
       .addStage(new ETLStage(sinkName2, MockSink.getPlugin(outputName2)))
       .addConnection("source1", "t1")
@@ -900,7 +982,7 @@ public class DataPipelineTest extends HydratorTestBase {
       .build();
 
     AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(APP_ARTIFACT, etlConfig);
-    ApplicationId appId = NamespaceId.DEFAULT.app("InnerJoinApp-" + engine);
+    ApplicationId appId = NamespaceId.DEFAULT.app("InnerJoinApp-" + suffix);
     ApplicationManager appManager = deployApplication(appId.toId(), appRequest);
 
     Schema outSchema = Schema.recordOf(
@@ -979,7 +1061,17 @@ public class DataPipelineTest extends HydratorTestBase {
     testOuterJoin(Engine.SPARK);
   }
 
+  @Test
+  public void testBroadcastOuterJoinSpark() throws Exception {
+    // left join items and transactions into the customers without shuffling the customers
+    testOuterJoin(Engine.SPARK, "t2,t3");
+  }
+
   public void testOuterJoin(Engine engine) throws Exception {
+    testOuterJoin(engine, null);
+  }
+
+  private void testOuterJoin(Engine engine, @Nullable String broadcastInputs) throws Exception {
     Schema inputSchema1 = Schema.recordOf(
       "customerRecord",
       Schema.Field.of("customer_id", Schema.of(Schema.Type.STRING)),
@@ -1001,12 +1093,13 @@ public class DataPipelineTest extends HydratorTestBase {
       Schema.Field.of("c_name", Schema.of(Schema.Type.STRING))
     );
 
-    String input1Name = "source1OuterJoinInput-" + engine;
-    String input2Name = "source2OuterJoinInput-" + engine;
-    String input3Name = "source3OuterJoinInput-" + engine;
-    String outputName = "outerJoinOutput-" + engine;
-    String joinerName = "outerJoiner-" + engine;
-    String sinkName = "outerJoinSink-" + engine;
+    String suffix = broadcastInputs == null ? engine.name() : engine + "-broadcast";
+    String input1Name = "source1OuterJoinInput-" + suffix;
+    String input2Name = "source2OuterJoinInput-" + suffix;
+    String input3Name = "source3OuterJoinInput-" + suffix;
+    String outputName = "outerJoinOutput-" + suffix;
+    String joinerName = "outerJoiner-" + suffix;
+    String sinkName = "outerJoinSink-" + suffix;
     ETLBatchConfig etlConfig = ETLBatchConfig.builder("* * * * *")
       .addStage(new ETLStage("source1", MockSource.getPlugin(input1Name)))
       .addStage(new ETLStage("source2", MockSource.getPlugin(input2Name)))
@@ -1015,7 +1108,8 @@ public class DataPipelineTest extends HydratorTestBase {
       .addStage(new ETLStage("t2", FieldsPrefixTransform.getPlugin("", inputSchema2.toString())))
       .addStage(new ETLStage("t3", FieldsPrefixTransform.getPlugin("", inputSchema3.toString())))
       .addStage(new ETLStage(joinerName, MockJoiner.getPlugin("t1.customer_id=t2.cust_id=t3.c_id&" +
-                                                                  "t1.customer_name=t2.cust_name=t3.c_name", "t1", "")))
+                                                                  "t1.customer_name=t2.cust_name=t3.c_name", "t1", "",
+                                                              broadcastInputs)))
       .addStage(new ETLStage(sinkName, MockSink.getPlugin(outputName)))
       .addConnection("source1", "t1")
       .addConnection("source2", "t2")
@@ -1028,7 +1122,7 @@ public class DataPipelineTest extends HydratorTestBase {
       .build();
 
     AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(APP_ARTIFACT, etlConfig);
-    ApplicationId appId = NamespaceId.DEFAULT.app("OuterJoinApp-" + engine);
+    ApplicationId appId = NamespaceId.DEFAULT.app("OuterJoinApp-" + suffix);
     ApplicationManager appManager = deployApplication(appId.toId(), appRequest);
 
     Schema outSchema = Schema.recordOf(
@@ -1102,6 +1196,101 @@ public class DataPipelineTest extends HydratorTestBase {
     validateMetric(4, appId, sinkName + ".records.in");
   }
 
+  @Test
+  public void testSkewedJoinSpark() throws Exception {
+    Schema purchaseSchema = Schema.recordOf(
+      "purchaseRecord",
+      Schema.Field.of("purchase_id", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("cust_id", Schema.of(Schema.Type.STRING))
+    );
+
+    Schema customerSchema = Schema.recordOf(
+      "customerRecord",
+      Schema.Field.of("customer_id", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("customer_name", Schema.of(Schema.Type.STRING))
+    );
+
+    // purchases are the salted side of both joins, joined with customers into 4 partitions
+    ETLBatchConfig etlConfig = ETLBatchConfig.builder("* * * * *")
+      .addStage(new ETLStage("purchases", MockSource.getPlugin("skewedJoinPurchases")))
+      .addStage(new ETLStage("customers", MockSource.getPlugin("skewedJoinCustomers")))
+      .addStage(new ETLStage("t1", FieldsPrefixTransform.getPlugin("", purchaseSchema.toString())))
+      .addStage(new ETLStage("t2", FieldsPrefixTransform.getPlugin("", customerSchema.toString())))
+      .addStage(new ETLStage("innerJoiner", MockJoiner.getPlugin("t1.cust_id=t2.customer_id", "t1,t2", "", null, 4)))
+      .addStage(new ETLStage("leftJoiner", MockJoiner.getPlugin("t1.cust_id=t2.customer_id", "t1", "", null, 4)))
+      .addStage(new ETLStage("innerSink", MockSink.getPlugin("skewedInnerJoinOutput")))
+      .addStage(new ETLStage("leftSink", MockSink.getPlugin("skewedLeftJoinOutput")))
+      .addConnection("purchases", "t1")
+      .addConnection("customers", "t2")
+      .addConnection("t1", "innerJoiner")
+      .addConnection("t2", "innerJoiner")
+      .addConnection("t1", "leftJoiner")
+      .addConnection("t2", "leftJoiner")
+      .addConnection("innerJoiner", "innerSink")
+      .addConnection("leftJoiner", "leftSink")
+      .setEngine(Engine.SPARK)
+      .build();
+
+    AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(APP_ARTIFACT, etlConfig);
+    ApplicationId appId = NamespaceId.DEFAULT.app("SkewedJoinApp");
+    ApplicationManager appManager = deployApplication(appId.toId(), appRequest);
+
+    // the hot customer has far more purchases than all other customers together, and two customer records,
+    // so that each of its purchases has multiple matches. Some purchases have no customer at all.
+    List<StructuredRecord> purchases = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      purchases.add(StructuredRecord.builder(purchaseSchema)
+                      .set("purchase_id", "hot" + i).set("cust_id", "hot").build());
+    }
+    for (int i = 0; i < 500; i++) {
+      purchases.add(StructuredRecord.builder(purchaseSchema)
+                      .set("purchase_id", "p" + i).set("cust_id", "c" + (i % 50)).build());
+    }
+    for (int i = 0; i < 20; i++) {
+      purchases.add(StructuredRecord.builder(purchaseSchema)
+                      .set("purchase_id", "u" + i).set("cust_id", "unknown" + i).build());
+    }
+    List<StructuredRecord> customers = new ArrayList<>();
+    customers.add(StructuredRecord.builder(customerSchema)
+                    .set("customer_id", "hot").set("customer_name", "hot1").build());
+    customers.add(StructuredRecord.builder(customerSchema)
+                    .set("customer_id", "hot").set("customer_name", "hot2").build());
+    for (int i = 0; i < 50; i++) {
+      customers.add(StructuredRecord.builder(customerSchema)
+                      .set("customer_id", "c" + i).set("customer_name", "name" + i).build());
+    }
+
+    DataSetManager<Table> inputManager = getDataset(NamespaceId.DEFAULT.dataset("skewedJoinPurchases"));
+    MockSource.writeInput(inputManager, purchases);
+    inputManager = getDataset(NamespaceId.DEFAULT.dataset("skewedJoinCustomers"));
+    MockSource.writeInput(inputManager, customers);
+
+    // run without skew handling first, to compare the salted joins with the regular joins
+    WorkflowManager workflowManager = appManager.getWorkflowManager(SmartWorkflow.NAME);
+    workflowManager.start();
+    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
+
+    DataSetManager<Table> innerSinkManager = getDataset("skewedInnerJoinOutput");
+    DataSetManager<Table> leftSinkManager = getDataset("skewedLeftJoinOutput");
+    Multiset<StructuredRecord> expectedInner = HashMultiset.create(MockSink.readOutput(innerSinkManager));
+    Multiset<StructuredRecord> expectedLeft = HashMultiset.create(MockSink.readOutput(leftSinkManager));
+    Assert.assertEquals(2 * 5000 + 500, expectedInner.size());
+    Assert.assertEquals(2 * 5000 + 500 + 20, expectedLeft.size());
+    MockSink.clear(innerSinkManager);
+    MockSink.clear(leftSinkManager);
+
+    workflowManager.setRuntimeArgs(ImmutableMap.of(SkewedKeys.ENABLED, "true"));
+    workflowManager.start();
+    workflowManager.waitForRuns(ProgramRunStatus.COMPLETED, 2, 5, TimeUnit.MINUTES);
+
+    Assert.assertEquals(expectedInner, HashMultiset.create(MockSink.readOutput(innerSinkManager)));
+    Assert.assertEquals(expectedLeft, HashMultiset.create(MockSink.readOutput(leftSinkManager)));
+
+    // the hot customer is the only skewed key
+    validateMetric(1, appId, "innerJoiner.join.skewed.keys");
+    validateMetric(1, appId, "leftJoiner.join.skewed.keys");
+  }
+
   @Test
   public void testMultiPhaseJoinerMR() throws Exception {
     testMultipleJoiner(Engine.MAPREDUCE);
@@ -19,6 +19,9 @@ package co.cask.cdap.datapipeline;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.etl.batch.StructuredRecordWritable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.hadoop.io.WritableComparator;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -29,6 +32,8 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  */
@@ -52,4 +57,122 @@ public class StructuredRecordWritableTest {
 
     Assert.assertEquals(writableIn.get(), record);
   }
+
+  @Test
+  public void testComplexRecord() throws IOException {
+    Schema innerSchema = Schema.recordOf("inner", Schema.Field.of("b", Schema.of(Schema.Type.BYTES)));
+    Schema schema = Schema.recordOf(
+      "complex",
+      Schema.Field.of("i", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("l", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("d", Schema.of(Schema.Type.DOUBLE)),
+      Schema.Field.of("bool", Schema.of(Schema.Type.BOOLEAN)),
+      Schema.Field.of("nullable", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("list", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.LONG))),
+      Schema.Field.of("inner", innerSchema));
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("i", -5)
+      .set("l", Long.MAX_VALUE)
+      .set("d", 3.5d)
+      .set("bool", true)
+      .set("nullable", null)
+      .set("list", ImmutableList.of("a", "b"))
+      .set("map", ImmutableMap.of("x", 1L, "y", 2L))
+      .set("inner", StructuredRecord.builder(innerSchema).set("b", new byte[] { 1, 2, 3 }).build())
+      .build();
+
+    StructuredRecord result = roundTrip(record);
+    Assert.assertEquals(Integer.valueOf(-5), result.get("i"));
+    Assert.assertEquals(Long.valueOf(Long.MAX_VALUE), result.get("l"));
+    Assert.assertEquals(Double.valueOf(3.5d), result.get("d"));
+    Assert.assertEquals(Boolean.TRUE, result.get("bool"));
+    Assert.assertNull(result.get("nullable"));
+    Assert.assertEquals(ImmutableList.of("a", "b"), result.get("list"));
+    Assert.assertEquals(ImmutableMap.of("x", 1L, "y", 2L), result.get("map"));
+    Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) result.<StructuredRecord>get("inner").get("b"));
+  }
+
+  @Test
+  public void testUnionWidening() throws IOException {
+    Schema schema = Schema.recordOf(
+      "union",
+      Schema.Field.of("l", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+      Schema.Field.of("d", Schema.unionOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.DOUBLE))));
+    // An int value is accepted for a long union branch, and a long value for a double union branch
+    StructuredRecord record = StructuredRecord.builder(schema).set("l", 5).set("d", 7L).build();
+
+    StructuredRecord result = roundTrip(record);
+    Assert.assertEquals(Long.valueOf(5L), result.get("l"));
+    Assert.assertEquals(Double.valueOf(7d), result.get("d"));
+  }
+
+  @Test
+  public void testReadInAnotherJVM() throws IOException {
+    Schema schema = Schema.recordOf("inlined", Schema.Field.of("x", Schema.of(Schema.Type.STRING)));
+    StructuredRecord record = StructuredRecord.builder(schema).set("x", "value").build();
+
+    // A schema that is not registered is written with the record, so a reader that has never seen it can read it
+    byte[] bytes = serialize(record);
+    Assert.assertTrue(new String(bytes, "UTF-8").contains(schema.toString()));
+    Assert.assertEquals(record, roundTrip(record));
+  }
+
+  @Test
+  public void testRegisteredSchema() throws IOException {
+    Schema schema = Schema.recordOf("registered", Schema.Field.of("x", Schema.of(Schema.Type.STRING)));
+    StructuredRecord record = StructuredRecord.builder(schema).set("x", "value").build();
+    byte[] inlined = serialize(record);
+
+    // A registered schema is not written with the record, only its hash is
+    StructuredRecordWritable.registerSchemas(ImmutableList.of(schema));
+    byte[] bytes = serialize(record);
+    Assert.assertFalse(new String(bytes, "UTF-8").contains(schema.toString()));
+    Assert.assertTrue(bytes.length < inlined.length);
+    Assert.assertEquals(record, roundTrip(record));
+
+    // Records with the schema inlined can still be read, and compare equal to those without it
+    StructuredRecordWritable writable = new StructuredRecordWritable();
+    writable.readFields(new DataInputStream(new ByteArrayInputStream(inlined)));
+    Assert.assertEquals(record, writable.get());
+    WritableComparator comparator = WritableComparator.get(StructuredRecordWritable.class);
+    Assert.assertEquals(0, comparator.compare(inlined, 0, inlined.length, bytes, 0, bytes.length));
+  }
+
+  @Test
+  public void testCompare() throws IOException {
+    Schema schema = Schema.recordOf("rec", Schema.Field.of("m", Schema.mapOf(Schema.of(Schema.Type.STRING),
+                                                                              Schema.of(Schema.Type.INT))));
+    Map<String, Integer> map1 = new LinkedHashMap<>();
+    map1.put("a", 1);
+    map1.put("b", 2);
+    Map<String, Integer> map2 = new LinkedHashMap<>();
+    map2.put("b", 2);
+    map2.put("a", 1);
+    StructuredRecord record1 = StructuredRecord.builder(schema).set("m", map1).build();
+    StructuredRecord record2 = StructuredRecord.builder(schema).set("m", map2).build();
+    StructuredRecord record3 = StructuredRecord.builder(schema).set("m", ImmutableMap.of("a", 2)).build();
+
+    // Equal records are serialized to the same bytes, regardless of the map iteration order
+    WritableComparator comparator = WritableComparator.get(StructuredRecordWritable.class);
+    byte[] bytes1 = serialize(record1);
+    byte[] bytes2 = serialize(record2);
+    byte[] bytes3 = serialize(record3);
+    Assert.assertEquals(0, comparator.compare(bytes1, 0, bytes1.length, bytes2, 0, bytes2.length));
+    Assert.assertNotEquals(0, comparator.compare(bytes1, 0, bytes1.length, bytes3, 0, bytes3.length));
+    Assert.assertEquals(0, new StructuredRecordWritable(record1).compareTo(new StructuredRecordWritable(record2)));
+    Assert.assertNotEquals(0, new StructuredRecordWritable(record1).compareTo(new StructuredRecordWritable(record3)));
+  }
+
+  private byte[] serialize(StructuredRecord record) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new StructuredRecordWritable(record).write(new DataOutputStream(os));
+    return os.toByteArray();
+  }
+
+  private StructuredRecord roundTrip(StructuredRecord record) throws IOException {
+    StructuredRecordWritable writable = new StructuredRecordWritable();
+    writable.readFields(new DataInputStream(new ByteArrayInputStream(serialize(record))));
+    return writable.get();
+  }
 }
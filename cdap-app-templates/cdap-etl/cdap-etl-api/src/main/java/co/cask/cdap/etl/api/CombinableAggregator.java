@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.api;
+
+import co.cask.cdap.api.annotation.Beta;
+
+import java.util.Iterator;
+
+/**
+ * An {@link Aggregator} whose group values can be combined into partial aggregates before they are grouped.
+ * This allows values with the same group key to be pre-aggregated where they are produced, so that far fewer
+ * values have to be sent to the place where groups are aggregated.
+ *
+ * A partial aggregate is of the same type as the group values, and may be passed to
+ * {@link #aggregate(Object, Iterator, Emitter)} in place of the values it was combined from. For example, an
+ * aggregator that counts values could use a count field in the group values, which is 1 for input values and
+ * is summed up by combine. Combining must be associative and commutative, as there is no guarantee in which order
+ * or how often values are combined, if at all.
+ *
+ * @param <GROUP_KEY> Type of group key
+ * @param <GROUP_VALUE> Type of values to group
+ * @param <OUT> Type of output object
+ */
+@Beta
+public interface CombinableAggregator<GROUP_KEY, GROUP_VALUE, OUT> extends Aggregator<GROUP_KEY, GROUP_VALUE, OUT> {
+
+  /**
+   * Combine two values of the same group into a partial aggregate. Each value can be either a value that was
+   * grouped, or a partial aggregate returned by a previous call to this method. The values must not be modified,
+   * as a value can be part of multiple groups.
+   *
+   * @param value1 the first value to combine
+   * @param value2 the second value to combine
+   * @return the partial aggregate of both values
+   * @throws Exception if there is some error combining the values
+   */
+  GROUP_VALUE combine(GROUP_VALUE value1, GROUP_VALUE value2) throws Exception;
+}
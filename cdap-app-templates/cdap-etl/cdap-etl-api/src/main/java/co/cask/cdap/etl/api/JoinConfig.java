@@ -16,11 +16,14 @@
 
 package co.cask.cdap.etl.api;
 
+import java.util.Collections;
+
 /**
  * Join configuration to hold information about join to be performed
  */
 public class JoinConfig {
   private Iterable<String> requiredInputs;
+  private Iterable<String> broadcastInputs;
 
   /**
    * Creates new instance of {@link JoinConfig}
@@ -30,7 +33,21 @@ public class JoinConfig {
    * meet join criteria.
    */
   public JoinConfig(Iterable<String> requiredInputs) {
+    this(requiredInputs, Collections.<String>emptyList());
+  }
+
+  /**
+   * Creates new instance of {@link JoinConfig}
+   * @param requiredInputs iterable of input stage names. This will be used to find out type of the join.
+   * See {@link #JoinConfig(Iterable)} for details.
+   * @param broadcastInputs iterable of input stage names whose records are few enough to fit in memory. This is a
+   * hint that allows the join to be performed without shuffling the other inputs, by sending all records of these
+   * inputs to every place where the other inputs are read. Engines that do not support this ignore the hint.
+   * Broadcasting is not possible if no inputs are required.
+   */
+  public JoinConfig(Iterable<String> requiredInputs, Iterable<String> broadcastInputs) {
     this.requiredInputs = requiredInputs;
+    this.broadcastInputs = broadcastInputs;
   }
 
   /**
@@ -40,4 +57,12 @@ public class JoinConfig {
   public Iterable<String> getRequiredInputs() {
     return requiredInputs;
   }
+
+  /**
+   * Returns inputs that are small enough to be broadcast.
+   * @return iterable of inputs to broadcast
+   */
+  public Iterable<String> getBroadcastInputs() {
+    return broadcastInputs;
+  }
 }
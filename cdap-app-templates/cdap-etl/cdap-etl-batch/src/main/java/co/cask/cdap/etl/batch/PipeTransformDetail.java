@@ -21,6 +21,7 @@ import co.cask.cdap.etl.api.Destroyable;
 import co.cask.cdap.etl.api.Transformation;
 import co.cask.cdap.etl.batch.mapreduce.PipeEmitter;
 import co.cask.cdap.etl.common.Destroyables;
+import co.cask.cdap.etl.common.FlushableTransformation;
 
 
 /**
@@ -52,6 +53,20 @@ public class PipeTransformDetail implements Destroyable {
     }
   }
 
+  /**
+   * Emits the output held back by the transformation, if it is a {@link FlushableTransformation}.
+   */
+  public void flush() {
+    if (!(transformation instanceof FlushableTransformation)) {
+      return;
+    }
+    try {
+      ((FlushableTransformation) transformation).flush(emitter);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   public void addTransformation(String stageName, PipeTransformDetail pipeTransformDetail) {
     emitter.addTransformDetail(stageName, pipeTransformDetail);
   }
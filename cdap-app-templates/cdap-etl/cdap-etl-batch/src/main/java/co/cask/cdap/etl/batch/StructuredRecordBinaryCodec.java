@@ -0,0 +1,349 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.batch;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Encodes and decodes the values of a {@link StructuredRecord} in a compact binary format, as directed by its
+ * {@link Schema}. The schema itself is not part of the encoding.
+ *
+ * The encoding is canonical: equal records are encoded to equal bytes. Map entries are written in the order of
+ * their encoded keys for that reason.
+ */
+public final class StructuredRecordBinaryCodec {
+
+  private static final Comparator<byte[][]> ENTRY_COMPARATOR = new Comparator<byte[][]>() {
+    @Override
+    public int compare(byte[][] entry1, byte[][] entry2) {
+      return Bytes.compareTo(entry1[0], entry2[0]);
+    }
+  };
+
+  /**
+   * Writes the values of the given record.
+   */
+  public static void encode(StructuredRecord record, DataOutput out) throws IOException {
+    writeRecord(out, record.getSchema(), record);
+  }
+
+  /**
+   * Reads the values of a record with the given schema.
+   */
+  public static StructuredRecord decode(Schema schema, DataInput in) throws IOException {
+    return readRecord(in, schema);
+  }
+
+  private static void write(DataOutput out, Schema schema, @Nullable Object value) throws IOException {
+    switch (schema.getType()) {
+      case NULL:
+        break;
+      case BOOLEAN:
+        out.writeBoolean((Boolean) value);
+        break;
+      case INT:
+        WritableUtils.writeVInt(out, ((Number) value).intValue());
+        break;
+      case LONG:
+        WritableUtils.writeVLong(out, ((Number) value).longValue());
+        break;
+      case FLOAT:
+        out.writeFloat(((Number) value).floatValue());
+        break;
+      case DOUBLE:
+        out.writeDouble(((Number) value).doubleValue());
+        break;
+      case BYTES:
+        writeBytes(out, value);
+        break;
+      case STRING:
+        writeBytes(out, Bytes.toBytes((String) value));
+        break;
+      case ENUM:
+        writeBytes(out, Bytes.toBytes(value instanceof Enum ? ((Enum) value).name() : value.toString()));
+        break;
+      case ARRAY:
+        writeArray(out, schema.getComponentSchema(), value);
+        break;
+      case MAP:
+        writeMap(out, schema.getMapSchema(), value);
+        break;
+      case RECORD:
+        writeRecord(out, schema, value);
+        break;
+      case UNION:
+        int index = findUnionIndex(schema, value);
+        WritableUtils.writeVInt(out, index);
+        write(out, schema.getUnionSchema(index), value);
+        break;
+      default:
+        throw new IOException("Unsupported schema: " + schema);
+    }
+  }
+
+  private static void writeBytes(DataOutput out, Object value) throws IOException {
+    if (value instanceof ByteBuffer) {
+      writeBytes(out, Bytes.toBytes((ByteBuffer) value));
+    } else if (value instanceof byte[]) {
+      writeBytes(out, (byte[]) value);
+    } else {
+      throw new IOException("Expects either ByteBuffer or byte[]. Got " + value.getClass());
+    }
+  }
+
+  private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+    WritableUtils.writeVInt(out, bytes.length);
+    out.write(bytes);
+  }
+
+  private static void writeArray(DataOutput out, Schema elementSchema, Object value) throws IOException {
+    if (value instanceof Collection) {
+      Collection<?> collection = (Collection<?>) value;
+      WritableUtils.writeVInt(out, collection.size());
+      for (Object element : collection) {
+        write(out, elementSchema, element);
+      }
+    } else if (value.getClass().isArray()) {
+      int length = Array.getLength(value);
+      WritableUtils.writeVInt(out, length);
+      for (int i = 0; i < length; i++) {
+        write(out, elementSchema, Array.get(value, i));
+      }
+    } else {
+      throw new IOException("Expects either Collection or array. Got: " + value.getClass());
+    }
+  }
+
+  private static void writeMap(DataOutput out, Map.Entry<Schema, Schema> mapSchema, Object value) throws IOException {
+    if (!(value instanceof Map)) {
+      throw new IOException("Expects Map. Got: " + value.getClass());
+    }
+
+    // Encode the entries separately and write them in the order of the encoded keys, so that the encoding
+    // doesn't depend on the iteration order of the map
+    Map<?, ?> map = (Map<?, ?>) value;
+    byte[][][] entries = new byte[map.size()][][];
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream entryOut = new DataOutputStream(bos);
+    int i = 0;
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      bos.reset();
+      write(entryOut, mapSchema.getKey(), entry.getKey());
+      byte[] key = bos.toByteArray();
+      bos.reset();
+      write(entryOut, mapSchema.getValue(), entry.getValue());
+      entries[i++] = new byte[][] { key, bos.toByteArray() };
+    }
+    Arrays.sort(entries, ENTRY_COMPARATOR);
+
+    WritableUtils.writeVInt(out, entries.length);
+    for (byte[][] entry : entries) {
+      out.write(entry[0]);
+      out.write(entry[1]);
+    }
+  }
+
+  private static void writeRecord(DataOutput out, Schema schema, Object value) throws IOException {
+    if (!(value instanceof StructuredRecord)) {
+      throw new IOException("Expects StructuredRecord. Got: " + value.getClass());
+    }
+
+    StructuredRecord record = (StructuredRecord) value;
+    for (Schema.Field field : schema.getFields()) {
+      Object fieldValue = record.get(field.getName());
+      Schema fieldSchema = field.getSchema();
+      // Union types encode null values through the union index, other types need a marker for absent values
+      if (fieldSchema.getType() != Schema.Type.UNION && fieldSchema.getType() != Schema.Type.NULL) {
+        out.writeBoolean(fieldValue != null);
+        if (fieldValue == null) {
+          continue;
+        }
+      }
+      write(out, fieldSchema, fieldValue);
+    }
+  }
+
+  private static int findUnionIndex(Schema unionSchema, @Nullable Object value) throws IOException {
+    List<Schema> schemas = unionSchema.getUnionSchemas();
+    int index = -1;
+    // index of a numeric schema that the value can be widened to, used if no schema matches the value type
+    int widenIndex = -1;
+    for (int i = 0; i < schemas.size(); i++) {
+      Schema schema = schemas.get(i);
+      if (value == null) {
+        if (schema.getType() == Schema.Type.NULL) {
+          return i;
+        }
+      } else if (value instanceof StructuredRecord) {
+        // Prefer the record schema of the value, as a union can contain multiple record schemas
+        if (schema.equals(((StructuredRecord) value).getSchema())) {
+          return i;
+        }
+        if (index < 0 && schema.getType() == Schema.Type.RECORD) {
+          index = i;
+        }
+      } else if (index < 0 && isInstance(schema.getType(), value)) {
+        index = i;
+      } else if (widenIndex < 0 && canWiden(schema.getType(), value)) {
+        widenIndex = i;
+      }
+    }
+    if (index < 0) {
+      index = widenIndex;
+    }
+    if (index < 0) {
+      throw new IOException("Value type " + (value == null ? null : value.getClass())
+                              + " not valid in union: " + unionSchema);
+    }
+    return index;
+  }
+
+  private static boolean isInstance(Schema.Type type, Object value) {
+    switch (type) {
+      case BOOLEAN:
+        return value instanceof Boolean;
+      case INT:
+        return value instanceof Integer || value instanceof Short || value instanceof Byte;
+      case LONG:
+        return value instanceof Long;
+      case FLOAT:
+        return value instanceof Float;
+      case DOUBLE:
+        return value instanceof Double;
+      case BYTES:
+        return value instanceof ByteBuffer || value instanceof byte[];
+      case STRING:
+        return value instanceof String;
+      case ENUM:
+        return value instanceof Enum || value instanceof String;
+      case ARRAY:
+        return value instanceof Collection || (value.getClass().isArray() && !(value instanceof byte[]));
+      case MAP:
+        return value instanceof Map;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean canWiden(Schema.Type type, Object value) {
+    switch (type) {
+      case LONG:
+        return isInstance(Schema.Type.INT, value);
+      case FLOAT:
+        return isInstance(Schema.Type.INT, value) || value instanceof Long;
+      case DOUBLE:
+        return value instanceof Number;
+      default:
+        return false;
+    }
+  }
+
+  @Nullable
+  private static Object read(DataInput in, Schema schema) throws IOException {
+    switch (schema.getType()) {
+      case NULL:
+        return null;
+      case BOOLEAN:
+        return in.readBoolean();
+      case INT:
+        return WritableUtils.readVInt(in);
+      case LONG:
+        return WritableUtils.readVLong(in);
+      case FLOAT:
+        return in.readFloat();
+      case DOUBLE:
+        return in.readDouble();
+      case BYTES:
+        return readBytes(in);
+      case STRING:
+      case ENUM:
+        // Currently there is no standard container to represent enum type
+        return Bytes.toString(readBytes(in));
+      case ARRAY:
+        return readArray(in, schema.getComponentSchema());
+      case MAP:
+        return readMap(in, schema.getMapSchema());
+      case RECORD:
+        return readRecord(in, schema);
+      case UNION:
+        return read(in, schema.getUnionSchema(WritableUtils.readVInt(in)));
+    }
+
+    throw new IOException("Unsupported schema: " + schema);
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException {
+    byte[] bytes = new byte[WritableUtils.readVInt(in)];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private static List<Object> readArray(DataInput in, Schema elementSchema) throws IOException {
+    int size = WritableUtils.readVInt(in);
+    List<Object> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(read(in, elementSchema));
+    }
+    return result;
+  }
+
+  private static Map<Object, Object> readMap(DataInput in, Map.Entry<Schema, Schema> mapSchema) throws IOException {
+    int size = WritableUtils.readVInt(in);
+    Map<Object, Object> result = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      Object key = read(in, mapSchema.getKey());
+      result.put(key, read(in, mapSchema.getValue()));
+    }
+    return result;
+  }
+
+  private static StructuredRecord readRecord(DataInput in, Schema schema) throws IOException {
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (Schema.Field field : schema.getFields()) {
+      Schema fieldSchema = field.getSchema();
+      if (fieldSchema.getType() != Schema.Type.UNION && fieldSchema.getType() != Schema.Type.NULL
+        && !in.readBoolean()) {
+        continue;
+      }
+      builder.set(field.getName(), read(in, fieldSchema));
+    }
+    return builder.build();
+  }
+
+  private StructuredRecordBinaryCodec() {
+    //inaccessible constructor for static class
+  }
+}
@@ -19,19 +19,44 @@ package co.cask.cdap.etl.batch;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
-import co.cask.cdap.format.StructuredRecordStringConverter;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Wrapper around a {@link StructuredRecord} so that it can be used as the output key and/or value of a mapper.
- * This is not very performant and must be improved soon (CDAP-5347).
+ *
+ * A record is serialized as the hash of its schema, followed by the schema itself unless the schema was
+ * registered with {@link #registerSchemas(Iterable)}, followed by the binary encoding of the record values.
+ * The map output schemas that are known when the job is configured are stored in the job configuration, and every
+ * task of the job registers them before it serializes or deserializes any record. Records of other schemas carry
+ * their schema, which is parsed only once per JVM. Serialized records are compared without deserializing them.
  */
 public class StructuredRecordWritable implements WritableComparable<StructuredRecordWritable> {
+
+  private static final int SCHEMA_HASH_SIZE = 16;
+
+  // schemas that are registered by all tasks of the job, and are therefore not written with each record
+  private static final ConcurrentMap<SchemaHash, Schema> REGISTERED_SCHEMAS = new ConcurrentHashMap<>();
+  // schemas that were read from serialized records, so that each of them is parsed once
+  private static final ConcurrentMap<SchemaHash, Schema> PARSED_SCHEMAS = new ConcurrentHashMap<>();
+  // serialized form of schemas that are written with each record, so that each of them is encoded once
+  private static final ConcurrentMap<SchemaHash, byte[]> ENCODED_SCHEMAS = new ConcurrentHashMap<>();
+
+  static {
+    WritableComparator.define(StructuredRecordWritable.class, new Comparator());
+  }
+
   private StructuredRecord record;
 
   // required by Hadoop
@@ -43,6 +68,17 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
     this.record = record;
   }
 
+  /**
+   * Registers the schemas of records that are serialized by a job, so that they are not written with every record.
+   * This must be done with the same schemas in all tasks of the job, before any record is serialized or
+   * deserialized. The schemas must therefore come from the job configuration.
+   */
+  public static void registerSchemas(Iterable<Schema> schemas) {
+    for (Schema schema : schemas) {
+      REGISTERED_SCHEMAS.putIfAbsent(schema.getSchemaHash(), schema);
+    }
+  }
+
   public void set(StructuredRecord record) {
     this.record = record;
   }
@@ -54,33 +90,62 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
   @SuppressWarnings("ConstantConditions")
   @Override
   public void write(DataOutput out) throws IOException {
-    byte[] schemaBytes = Bytes.toBytes(record.getSchema().toString());
-    out.writeInt(schemaBytes.length);
-    out.write(schemaBytes);
-
-    byte[] recordBytes = Bytes.toBytes(StructuredRecordStringConverter.toJsonString(record));
-    out.writeInt(recordBytes.length);
-    out.write(recordBytes);
+    Schema schema = record.getSchema();
+    SchemaHash schemaHash = schema.getSchemaHash();
+    out.write(schemaHash.toByteArray());
+    if (REGISTERED_SCHEMAS.containsKey(schemaHash)) {
+      WritableUtils.writeVInt(out, 0);
+    } else {
+      byte[] schemaBytes = ENCODED_SCHEMAS.get(schemaHash);
+      if (schemaBytes == null) {
+        schemaBytes = Bytes.toBytes(schema.toString());
+        ENCODED_SCHEMAS.putIfAbsent(schemaHash, schemaBytes);
+      }
+      WritableUtils.writeVInt(out, schemaBytes.length);
+      out.write(schemaBytes);
+    }
+    StructuredRecordBinaryCodec.encode(record, out);
   }
 
   @Override
   public void readFields(DataInput in) throws IOException {
-    int schemaLen = in.readInt();
-    byte[] schemaBytes = new byte[schemaLen];
-    in.readFully(schemaBytes, 0, schemaLen);
-    String schemaStr = Bytes.toString(schemaBytes);
-    Schema schema = Schema.parseJson(schemaStr);
-
-    int recordLen = in.readInt();
-    byte[] recordBytes = new byte[recordLen];
-    in.readFully(recordBytes, 0, recordLen);
-    String recordStr = Bytes.toString(recordBytes);
-    this.record = StructuredRecordStringConverter.fromJsonString(recordStr, schema);
+    byte[] hashBytes = new byte[SCHEMA_HASH_SIZE];
+    in.readFully(hashBytes);
+    SchemaHash schemaHash = new SchemaHash(ByteBuffer.wrap(hashBytes));
+
+    int schemaLen = WritableUtils.readVInt(in);
+    Schema schema;
+    if (schemaLen == 0) {
+      schema = REGISTERED_SCHEMAS.get(schemaHash);
+      if (schema == null) {
+        throw new IOException("Record schema with hash " + schemaHash + " is not registered.");
+      }
+    } else {
+      schema = PARSED_SCHEMAS.get(schemaHash);
+      if (schema == null) {
+        byte[] schemaBytes = new byte[schemaLen];
+        in.readFully(schemaBytes, 0, schemaLen);
+        schema = Schema.parseJson(Bytes.toString(schemaBytes));
+        PARSED_SCHEMAS.putIfAbsent(schemaHash, schema);
+      } else {
+        WritableUtils.skipFully(in, schemaLen);
+      }
+    }
+    this.record = StructuredRecordBinaryCodec.decode(schema, in);
   }
 
   @Override
   public int compareTo(StructuredRecordWritable o) {
-    return Integer.compare(hashCode(), o.hashCode());
+    try {
+      DataOutputBuffer buffer1 = new DataOutputBuffer();
+      write(buffer1);
+      DataOutputBuffer buffer2 = new DataOutputBuffer();
+      o.write(buffer2);
+      return Comparator.compareSerialized(buffer1.getData(), 0, buffer1.getLength(),
+                                          buffer2.getData(), 0, buffer2.getLength());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
   }
 
   @Override
@@ -101,4 +166,39 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
   public int hashCode() {
     return record != null ? record.hashCode() : 0;
   }
+
+  /**
+   * Compares serialized {@link StructuredRecordWritable} by the schema hash and the encoded record values.
+   * The inlined schema is skipped, as whether it is present depends on the schemas registered.
+   */
+  public static final class Comparator extends WritableComparator {
+
+    public Comparator() {
+      super(StructuredRecordWritable.class);
+    }
+
+    @Override
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+      try {
+        return compareSerialized(b1, s1, l1, b2, s2, l2);
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e);
+      }
+    }
+
+    static int compareSerialized(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) throws IOException {
+      int cmp = compareBytes(b1, s1, SCHEMA_HASH_SIZE, b2, s2, SCHEMA_HASH_SIZE);
+      if (cmp != 0) {
+        return cmp;
+      }
+      int skip1 = SCHEMA_HASH_SIZE + skipSchema(b1, s1 + SCHEMA_HASH_SIZE);
+      int skip2 = SCHEMA_HASH_SIZE + skipSchema(b2, s2 + SCHEMA_HASH_SIZE);
+      return compareBytes(b1, s1 + skip1, l1 - skip1, b2, s2 + skip2, l2 - skip2);
+    }
+
+    // returns the number of bytes used by the schema length and the inlined schema
+    private static int skipSchema(byte[] bytes, int offset) throws IOException {
+      return WritableUtils.decodeVIntSize(bytes[offset]) + readVInt(bytes, offset);
+    }
+  }
 }
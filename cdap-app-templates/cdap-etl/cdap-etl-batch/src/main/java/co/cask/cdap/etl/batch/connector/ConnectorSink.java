@@ -24,9 +24,11 @@ import co.cask.cdap.api.dataset.lib.PartitionedFileSetArguments;
 import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.batch.BatchSink;
 import co.cask.cdap.etl.api.batch.BatchSinkContext;
-import co.cask.cdap.format.StructuredRecordStringConverter;
-import org.apache.hadoop.io.NullWritable;
+import co.cask.cdap.etl.batch.StructuredRecordBinaryCodec;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -44,15 +46,20 @@ import java.util.Map;
  * This is because we don't want this to show up as a plugin that users can select and use, and also because
  * it uses features not exposed in the etl api (local workflow datasets).
  *
- * TODO: improve storage format. It is currently a json of the record but that is obviously not ideal
+ * Records are written to block compressed sequence files, keyed by the name of the stage that emitted them. See
+ * {@link ConnectorSource} for the format of the values.
  */
-public class ConnectorSink extends BatchSink<KeyValue<String, StructuredRecord>, NullWritable, Text> {
+public class ConnectorSink extends BatchSink<KeyValue<String, StructuredRecord>, Text, BytesWritable> {
   private final String datasetName;
   private final String phaseName;
+  private final DataOutputBuffer buffer;
+  private Schema lastSchema;
+  private byte[] lastSchemaBytes;
 
   public ConnectorSink(String datasetName, String phaseName) {
     this.datasetName = datasetName;
     this.phaseName = phaseName;
+    this.buffer = new DataOutputBuffer();
   }
 
   @Override
@@ -64,20 +71,26 @@ public class ConnectorSink extends BatchSink<KeyValue<String, StructuredRecord>,
   }
 
   @Override
-  public void transform(KeyValue<String, StructuredRecord> input, Emitter<KeyValue<NullWritable, Text>> emitter)
+  public void transform(KeyValue<String, StructuredRecord> input, Emitter<KeyValue<Text, BytesWritable>> emitter)
     throws Exception {
-    StructuredRecord modifiedRecord = modifyRecord(input);
-    emitter.emit(new KeyValue<>(NullWritable.get(), new Text(StructuredRecordStringConverter.
-      toJsonString(modifiedRecord))));
+    emitter.emit(new KeyValue<>(new Text(input.getKey()), encode(input.getValue())));
   }
 
-  private StructuredRecord modifyRecord(KeyValue<String, StructuredRecord> input) throws IOException {
-    String stageName = input.getKey();
-    Schema inputSchema = input.getValue().getSchema();
-    return StructuredRecord.builder(ConnectorSource.RECORD_WITH_SCHEMA)
-      .set("stageName", stageName)
-      .set("schema", inputSchema.toString())
-      .set("record", StructuredRecordStringConverter.toJsonString(input.getValue()))
-      .build();
+  private BytesWritable encode(StructuredRecord record) throws IOException {
+    // Records of a stage usually all have the same schema, hence only serialize it when it changes
+    Schema schema = record.getSchema();
+    if (!schema.equals(lastSchema)) {
+      lastSchemaBytes = ConnectorSource.toBytes(schema);
+      lastSchema = schema;
+    }
+
+    buffer.reset();
+    buffer.write(schema.getSchemaHash().toByteArray());
+    WritableUtils.writeVInt(buffer, lastSchemaBytes.length);
+    buffer.write(lastSchemaBytes);
+    StructuredRecordBinaryCodec.encode(record, buffer);
+    BytesWritable value = new BytesWritable();
+    value.set(buffer.getData(), 0, buffer.getLength());
+    return value;
   }
 }
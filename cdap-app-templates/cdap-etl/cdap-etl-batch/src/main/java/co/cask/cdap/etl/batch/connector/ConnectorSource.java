@@ -16,9 +16,11 @@
 
 package co.cask.cdap.etl.batch.connector;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.batch.Input;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.SchemaHash;
 import co.cask.cdap.api.dataset.lib.KeyValue;
 import co.cask.cdap.api.dataset.lib.PartitionDetail;
 import co.cask.cdap.api.dataset.lib.PartitionFilter;
@@ -30,12 +32,17 @@ import co.cask.cdap.api.workflow.WorkflowConfigurer;
 import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.batch.BatchSource;
 import co.cask.cdap.etl.api.batch.BatchSourceContext;
-import co.cask.cdap.format.StructuredRecordStringConverter;
-import org.apache.hadoop.io.LongWritable;
+import co.cask.cdap.etl.batch.StructuredRecordBinaryCodec;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
-import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import javax.annotation.Nullable;
@@ -52,21 +59,25 @@ import javax.annotation.Nullable;
  * This is because we don't want this to show up as a plugin that users can select and use, and also because
  * it uses features not exposed in the etl api (local workflow datasets).
  *
- * TODO: improve storage format. It is currently a json of the record but that is obviously not ideal
+ * The partitions are block compressed sequence files. The key of each entry is the name of the stage that emitted
+ * the record, the value is the schema hash, the length prefixed schema and the binary encoded record. The schema
+ * is repeated in each value so that files can be split anywhere, but block compression reduces it to almost
+ * nothing, and each distinct schema is only parsed once.
  */
-public class ConnectorSource extends BatchSource<LongWritable, Text, KeyValue<String, StructuredRecord>> {
-  static final Schema RECORD_WITH_SCHEMA = Schema.recordOf(
-    "record",
-    Schema.Field.of("stageName", Schema.of(Schema.Type.STRING)),
-    Schema.Field.of("schema", Schema.of(Schema.Type.STRING)),
-    Schema.Field.of("record", Schema.of(Schema.Type.STRING)));
+public class ConnectorSource extends BatchSource<Text, BytesWritable, KeyValue<String, StructuredRecord>> {
+  private static final int SCHEMA_HASH_SIZE = 16;
+
   private final String datasetName;
-  @Nullable
-  private final Schema schema;
+  private final Map<SchemaHash, Schema> schemas;
+  private final DataInputBuffer buffer;
 
   public ConnectorSource(String datasetName, @Nullable Schema schema) {
     this.datasetName = datasetName;
-    this.schema = schema;
+    this.schemas = new HashMap<>();
+    if (schema != null) {
+      schemas.put(schema.getSchemaHash(), schema);
+    }
+    this.buffer = new DataInputBuffer();
   }
 
   // not the standard configurePipeline method. Need a workflowConfigurer to create a local dataset
@@ -78,8 +89,11 @@ public class ConnectorSource extends BatchSource<LongWritable, Text, KeyValue<St
     workflowConfigurer.createLocalDataset(datasetName, PartitionedFileSet.class,
                                           PartitionedFileSetProperties.builder()
                                             .setPartitioning(partitioning)
-                                            .setInputFormat(TextInputFormat.class)
-                                            .setOutputFormat(TextOutputFormat.class)
+                                            .setInputFormat(SequenceFileInputFormat.class)
+                                            .setOutputFormat(SequenceFileOutputFormat.class)
+                                            .setOutputProperty(FileOutputFormat.COMPRESS, "true")
+                                            .setOutputProperty(FileOutputFormat.COMPRESS_TYPE,
+                                                               SequenceFile.CompressionType.BLOCK.name())
                                             .build());
   }
 
@@ -94,20 +108,29 @@ public class ConnectorSource extends BatchSource<LongWritable, Text, KeyValue<St
   }
 
   @Override
-  public void transform(KeyValue<LongWritable, Text> input,
+  public void transform(KeyValue<Text, BytesWritable> input,
                         Emitter<KeyValue<String, StructuredRecord>> emitter) throws Exception {
-    StructuredRecord output;
-    String inputStr = input.getValue().toString();
-    StructuredRecord recordWithSchema =
-      StructuredRecordStringConverter.fromJsonString(inputStr, RECORD_WITH_SCHEMA);
-    String stageName = recordWithSchema.get("stageName");
-    if (schema == null) {
-      Schema outputSchema = Schema.parseJson((String) recordWithSchema.get("schema"));
-      output = StructuredRecordStringConverter.fromJsonString((String) recordWithSchema.get("record"), outputSchema);
+    BytesWritable value = input.getValue();
+    buffer.reset(value.getBytes(), value.getLength());
+
+    SchemaHash schemaHash = new SchemaHash(ByteBuffer.wrap(value.getBytes(), 0, SCHEMA_HASH_SIZE));
+    buffer.skip(SCHEMA_HASH_SIZE);
+    int schemaLen = WritableUtils.readVInt(buffer);
+    Schema recordSchema = schemas.get(schemaHash);
+    if (recordSchema == null) {
+      byte[] schemaBytes = new byte[schemaLen];
+      buffer.readFully(schemaBytes);
+      recordSchema = Schema.parseJson(Bytes.toString(schemaBytes));
+      schemas.put(schemaHash, recordSchema);
     } else {
-      output = StructuredRecordStringConverter.fromJsonString(inputStr, schema);
+      buffer.skip(schemaLen);
     }
-    emitter.emit(new KeyValue<>(stageName, output));
+
+    StructuredRecord output = StructuredRecordBinaryCodec.decode(recordSchema, buffer);
+    emitter.emit(new KeyValue<>(input.getKey().toString(), output));
   }
 
+  static byte[] toBytes(Schema schema) {
+    return Bytes.toBytes(schema.toString());
+  }
 }
@@ -70,6 +70,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
@@ -84,9 +85,13 @@ public class ETLMapReduce extends AbstractMapReduce {
   static final String SINK_OUTPUTS_KEY = "cdap.etl.sink.outputs";
   static final String MAP_KEY_CLASS = "cdap.etl.map.key.class";
   static final String MAP_VAL_CLASS = "cdap.etl.map.val.class";
+  static final String MAP_OUTPUT_SCHEMAS_KEY = "cdap.etl.map.output.schemas";
+  static final String COMBINE_MAX_GROUPS = "cdap.etl.aggregator.combine.max.groups";
+  static final int DEFAULT_COMBINE_MAX_GROUPS = 10000;
   static final Type RUNTIME_ARGS_TYPE = new TypeToken<Map<String, Map<String, String>>>() { }.getType();
   static final Type INPUT_ALIAS_TYPE = new TypeToken<Map<String, String>>() { }.getType();
   static final Type SINK_OUTPUTS_TYPE = new TypeToken<Map<String, SinkOutput>>() { }.getType();
+  static final Type MAP_OUTPUT_SCHEMAS_TYPE = new TypeToken<Set<Schema>>() { }.getType();
   private static final Logger LOG = LoggerFactory.getLogger(ETLMapReduce.class);
   private static final Gson GSON = new GsonBuilder()
     .registerTypeAdapter(Schema.class, new SchemaTypeAdapter())
@@ -231,7 +236,17 @@ public class ETLMapReduce extends AbstractMapReduce {
                                                                    BatchJoiner.PLUGIN_TYPE);
     if (!reducers.isEmpty()) {
       job.setReducerClass(ETLReducer.class);
-      String reducerName = reducers.iterator().next().getName();
+      StageInfo reducerInfo = reducers.iterator().next();
+      String reducerName = reducerInfo.getName();
+      // records shuffled to the aggregator or joiner are usually of its input schemas. They are registered in
+      // every task, so that they don't need to be written with each record.
+      Set<Schema> mapOutputSchemas = new HashSet<>();
+      for (Schema inputSchema : reducerInfo.getInputSchemas().values()) {
+        if (inputSchema != null) {
+          mapOutputSchemas.add(inputSchema);
+        }
+      }
+      hConf.set(MAP_OUTPUT_SCHEMAS_KEY, GSON.toJson(mapOutputSchemas, MAP_OUTPUT_SCHEMAS_TYPE));
       Class<?> outputKeyClass;
       Class<?> outputValClass;
       if (!phaseSpec.getPhase().getStagesOfType(BatchAggregator.PLUGIN_TYPE).isEmpty()) {
@@ -361,6 +376,12 @@ public class ETLMapReduce extends AbstractMapReduce {
       }
     }
 
+    @Override
+    protected void cleanup(Mapper.Context context) throws IOException, InterruptedException {
+      // emit records held back by map-side combining of aggregators while the mapper can still write output
+      transformRunner.flush();
+    }
+
     @Override
     public void destroy() {
       transformRunner.destroy();
@@ -20,6 +20,7 @@ import co.cask.cdap.api.dataset.lib.KeyValue;
 import co.cask.cdap.api.mapreduce.MapReduceTaskContext;
 import co.cask.cdap.api.metrics.Metrics;
 import co.cask.cdap.etl.api.Aggregator;
+import co.cask.cdap.etl.api.CombinableAggregator;
 import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.JoinElement;
 import co.cask.cdap.etl.api.Joiner;
@@ -39,6 +40,7 @@ import co.cask.cdap.etl.common.DatasetContextLookupProvider;
 import co.cask.cdap.etl.common.DefaultEmitter;
 import co.cask.cdap.etl.common.DefaultMacroEvaluator;
 import co.cask.cdap.etl.common.DefaultStageMetrics;
+import co.cask.cdap.etl.common.FlushableTransformation;
 import co.cask.cdap.etl.common.TrackedTransform;
 import co.cask.cdap.etl.common.preview.LimitingTransform;
 import com.google.common.base.Function;
@@ -50,6 +52,7 @@ import org.apache.hadoop.mapreduce.JobContext;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import javax.annotation.Nullable;
 
@@ -63,6 +66,7 @@ public class MapReduceTransformExecutorFactory<T> extends TransformExecutorFacto
   private final MapReduceTaskContext taskContext;
   private final String mapOutputKeyClassName;
   private final String mapOutputValClassName;
+  private final int combineMaxGroups;
   private final int numberOfRecordsPreview;
 
   public MapReduceTransformExecutorFactory(MapReduceTaskContext taskContext,
@@ -80,6 +84,7 @@ public class MapReduceTransformExecutorFactory<T> extends TransformExecutorFacto
     Configuration hConf = hadoopContext.getConfiguration();
     this.mapOutputKeyClassName = hConf.get(ETLMapReduce.MAP_KEY_CLASS);
     this.mapOutputValClassName = hConf.get(ETLMapReduce.MAP_VAL_CLASS);
+    this.combineMaxGroups = hConf.getInt(ETLMapReduce.COMBINE_MAX_GROUPS, ETLMapReduce.DEFAULT_COMBINE_MAX_GROUPS);
     this.numberOfRecordsPreview = numberOfRecordsPreview;
   }
 
@@ -117,9 +122,11 @@ public class MapReduceTransformExecutorFactory<T> extends TransformExecutorFacto
       BatchRuntimeContext runtimeContext = createRuntimeContext(stageName);
       batchAggregator.initialize(runtimeContext);
       if (isMapPhase) {
-        return getTrackedEmitKeyStep(new MapperAggregatorTransformation(batchAggregator, mapOutputKeyClassName,
-                                                                        mapOutputValClassName),
-                                     stageMetrics, taskContext.getDataTracer(stageName));
+        Transformation mapperTransformation = batchAggregator instanceof CombinableAggregator ?
+          new CombiningMapperAggregatorTransformation((CombinableAggregator) batchAggregator, mapOutputKeyClassName,
+                                                      mapOutputValClassName, combineMaxGroups) :
+          new MapperAggregatorTransformation(batchAggregator, mapOutputKeyClassName, mapOutputValClassName);
+        return getTrackedEmitKeyStep(mapperTransformation, stageMetrics, taskContext.getDataTracer(stageName));
       } else {
         return getTrackedAggregateStep(new ReducerAggregatorTransformation(batchAggregator,
                                                                            mapOutputKeyClassName,
@@ -276,6 +283,63 @@ public class MapReduceTransformExecutorFactory<T> extends TransformExecutorFacto
     }
   }
 
+  /**
+   * A Transformation that uses a combinable aggregator's groupBy method, and combines the values of each group
+   * before emitting them. Partial aggregates are kept in a hash table of bounded size. When the table is full,
+   * all partial aggregates are emitted and the table is cleared. Whatever remains is emitted when the
+   * transformation is flushed at the end of the mapper.
+   *
+   * @param <GROUP_KEY> type of group key output by the aggregator
+   * @param <GROUP_VAL> type of group value used by the aggregator
+   * @param <OUT_KEY>   type of output key for mapreduce. Must implement WritableComparable
+   * @param <OUT_VAL>   type of output value for mapreduce. Must implement Writable
+   */
+  private static class CombiningMapperAggregatorTransformation<GROUP_KEY, GROUP_VAL, OUT_KEY extends Writable,
+    OUT_VAL extends Writable> implements FlushableTransformation<GROUP_VAL, KeyValue<OUT_KEY, OUT_VAL>> {
+    private final CombinableAggregator<GROUP_KEY, GROUP_VAL, ?> aggregator;
+    private final DefaultEmitter<GROUP_KEY> groupKeyEmitter;
+    private final WritableConversion<GROUP_KEY, OUT_KEY> keyConversion;
+    private final WritableConversion<GROUP_VAL, OUT_VAL> valConversion;
+    private final int maxGroups;
+    private final Map<GROUP_KEY, GROUP_VAL> partialAggregates;
+
+    CombiningMapperAggregatorTransformation(CombinableAggregator<GROUP_KEY, GROUP_VAL, ?> aggregator,
+                                            String groupKeyClassName,
+                                            String groupValClassName,
+                                            int maxGroups) {
+      this.aggregator = aggregator;
+      this.groupKeyEmitter = new DefaultEmitter<>();
+      WritableConversion<GROUP_KEY, OUT_KEY> keyConversion = WritableConversions.getConversion(groupKeyClassName);
+      WritableConversion<GROUP_VAL, OUT_VAL> valConversion = WritableConversions.getConversion(groupValClassName);
+      this.keyConversion = keyConversion == null ? new CastConversion<GROUP_KEY, OUT_KEY>() : keyConversion;
+      this.valConversion = valConversion == null ? new CastConversion<GROUP_VAL, OUT_VAL>() : valConversion;
+      this.maxGroups = Math.max(1, maxGroups);
+      this.partialAggregates = new LinkedHashMap<>();
+    }
+
+    @Override
+    public void transform(GROUP_VAL input, Emitter<KeyValue<OUT_KEY, OUT_VAL>> emitter) throws Exception {
+      groupKeyEmitter.reset();
+      aggregator.groupBy(input, groupKeyEmitter);
+      for (GROUP_KEY groupKey : groupKeyEmitter.getEntries()) {
+        GROUP_VAL partialAggregate = partialAggregates.get(groupKey);
+        if (partialAggregate == null && partialAggregates.size() >= maxGroups) {
+          flush(emitter);
+        }
+        partialAggregates.put(groupKey, partialAggregate == null ? input : aggregator.combine(partialAggregate, input));
+      }
+    }
+
+    @Override
+    public void flush(Emitter<KeyValue<OUT_KEY, OUT_VAL>> emitter) throws Exception {
+      for (Map.Entry<GROUP_KEY, GROUP_VAL> entry : partialAggregates.entrySet()) {
+        emitter.emit(new KeyValue<>(keyConversion.toWritable(entry.getKey()),
+                                    valConversion.toWritable(entry.getValue())));
+      }
+      partialAggregates.clear();
+    }
+  }
+
   /**
    * A Transformation that uses an aggregator's aggregate method. Supports applying a function to the types
    * send as input to the aggregator. These functions are used when the aggregator takes group keys that are not
@@ -43,6 +43,16 @@ public class PipeTransformExecutor<IN> implements Destroyable {
     }
   }
 
+  /**
+   * Flushes the output held back by transformations after the last input. Only aggregators hold back output,
+   * and those are always at the end of the pipeline in mappers, so the order of flushing does not matter.
+   */
+  public void flush() {
+    for (PipeTransformDetail transformDetail : transformDetailMap.values()) {
+      transformDetail.flush();
+    }
+  }
+
   @Override
   public void destroy() {
     for (Map.Entry<String, PipeTransformDetail> entry : transformDetailMap.entrySet()) {
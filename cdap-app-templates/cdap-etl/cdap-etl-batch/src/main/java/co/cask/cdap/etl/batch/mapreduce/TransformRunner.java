@@ -26,6 +26,7 @@ import co.cask.cdap.etl.api.batch.BatchAggregator;
 import co.cask.cdap.etl.api.batch.BatchJoiner;
 import co.cask.cdap.etl.batch.BatchPhaseSpec;
 import co.cask.cdap.etl.batch.PipelinePluginInstantiator;
+import co.cask.cdap.etl.batch.StructuredRecordWritable;
 import co.cask.cdap.etl.batch.TransformExecutorFactory;
 import co.cask.cdap.etl.common.Constants;
 import co.cask.cdap.etl.common.Destroyables;
@@ -91,6 +92,12 @@ public class TransformRunner<KEY, VALUE> {
     Set<StageInfo> reducers = phase.getStagesOfType(BatchAggregator.PLUGIN_TYPE, BatchJoiner.PLUGIN_TYPE);
     if (!reducers.isEmpty()) {
       String reducerName = reducers.iterator().next().getName();
+      // must happen before any record is serialized or deserialized by this task
+      Set<Schema> mapOutputSchemas = GSON.fromJson(hConf.get(ETLMapReduce.MAP_OUTPUT_SCHEMAS_KEY),
+                                                   ETLMapReduce.MAP_OUTPUT_SCHEMAS_TYPE);
+      if (mapOutputSchemas != null) {
+        StructuredRecordWritable.registerSchemas(mapOutputSchemas);
+      }
       // if we're in the mapper, get the part of the pipeline starting from sources and ending at aggregator
       if (jobContext instanceof Mapper.Context) {
         phase = phase.subsetTo(ImmutableSet.of(reducerName));
@@ -158,6 +165,10 @@ public class TransformRunner<KEY, VALUE> {
     transformExecutor.runOneIteration(input);
   }
 
+  public void flush() {
+    transformExecutor.flush();
+  }
+
   public void destroy() {
     Destroyables.destroyQuietly(transformExecutor);
   }
@@ -26,12 +26,13 @@ import javax.annotation.Nullable;
 
 /**
  * A {@link Transformation} that delegates transform operations while emitting metrics
- * around how many records were input into the transform and output by it.
+ * around how many records were input into the transform and output by it. If the delegate is a
+ * {@link FlushableTransformation}, output emitted when flushing is tracked as well.
  *
  * @param <IN> Type of input object
  * @param <OUT> Type of output object
  */
-public class TrackedTransform<IN, OUT> implements Transformation<IN, OUT>, Destroyable {
+public class TrackedTransform<IN, OUT> implements FlushableTransformation<IN, OUT>, Destroyable {
   public static final String RECORDS_IN = "records.in";
   public static final String RECORDS_OUT = "records.out";
   private final Transformation<IN, OUT> transform;
@@ -62,6 +63,14 @@ public class TrackedTransform<IN, OUT> implements Transformation<IN, OUT>, Destr
       new TrackedEmitter<>(emitter, metrics, metricOutName, dataTracer));
   }
 
+  @Override
+  public void flush(Emitter<OUT> emitter) throws Exception {
+    if (transform instanceof FlushableTransformation) {
+      ((FlushableTransformation<IN, OUT>) transform).flush(metricOutName == null ? emitter :
+        new TrackedEmitter<>(emitter, metrics, metricOutName, dataTracer));
+    }
+  }
+
   @Override
   public void destroy() {
     if (transform instanceof Destroyable) {
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.spark;
+
+import co.cask.cdap.etl.api.StageMetrics;
+import org.apache.spark.api.java.JavaPairRDD;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds the keys of a pair RDD that are much more frequent than the others, by counting keys in a sample of the RDD.
+ * When grouping or joining by key, all records of such a key end up in the same partition, which leaves a single
+ * task to process a large part of the data while the others are idle.
+ */
+public final class SkewedKeys {
+
+  /**
+   * Runtime argument that enables skew handling for the join stages of batch Spark pipelines.
+   */
+  public static final String ENABLED = "pipeline.spark.skew.handling.enabled";
+
+  private static final double SAMPLE_FRACTION = 0.01;
+  // a key is skewed if it has more records than this many times the average records per partition
+  private static final double SKEW_FACTOR = 2.0;
+  // a key must be sampled at least this many times to be skewed, so that sampling noise is not mistaken for skew
+  private static final long MIN_SAMPLED = 20;
+
+  /**
+   * Returns whether skew handling is enabled by the given runtime arguments.
+   */
+  public static boolean isEnabled(Map<String, String> arguments) {
+    return Boolean.parseBoolean(arguments.get(ENABLED));
+  }
+
+  /**
+   * Returns the skewed keys of the given RDD, each mapped to the number of partitions its records should be split
+   * into to get close to the average records per partition. The number of skewed keys and the records of the most
+   * frequent key relative to the average records per partition are emitted as the gauges
+   * {@code <metricPrefix>.skewed.keys} and {@code <metricPrefix>.max.key.skew}.
+   *
+   * @param rdd the RDD to find skewed keys of
+   * @param numPartitions number of partitions the records will be grouped into
+   * @param metrics metrics of the stage grouping the records
+   * @param metricPrefix prefix of the metric names
+   */
+  public static <K> Map<K, Integer> find(JavaPairRDD<K, ?> rdd, int numPartitions,
+                                         StageMetrics metrics, String metricPrefix) {
+    Map<K, Long> counts = rdd.keys().sample(false, SAMPLE_FRACTION).countByValue();
+    long sampled = 0;
+    long maxCount = 0;
+    for (Long count : counts.values()) {
+      sampled += count;
+      maxCount = Math.max(maxCount, count);
+    }
+
+    Map<K, Integer> skewedKeys = new HashMap<>();
+    double average = (double) sampled / Math.max(1, numPartitions);
+    for (Map.Entry<K, Long> entry : counts.entrySet()) {
+      long count = entry.getValue();
+      if (count < MIN_SAMPLED || count <= SKEW_FACTOR * average) {
+        continue;
+      }
+      int splits = (int) Math.min(numPartitions, Math.ceil(count / average));
+      if (splits > 1) {
+        skewedKeys.put(entry.getKey(), splits);
+      }
+    }
+
+    metrics.gauge(metricPrefix + ".skewed.keys", skewedKeys.size());
+    metrics.gauge(metricPrefix + ".max.key.skew", average == 0 ? 0 : Math.round(maxCount / average));
+    return skewedKeys;
+  }
+
+  private SkewedKeys() {
+  }
+}
@@ -21,6 +21,8 @@ import org.apache.spark.api.java.function.FlatMapFunction;
 import org.apache.spark.api.java.function.Function;
 import scala.Tuple2;
 
+import javax.annotation.Nullable;
+
 /**
  * Abstraction over different types of spark pair collections with common shared operations on those collections.
  * For example, both JavaPairRDD and JavaPairDStream support the flatMap operation, but don't share a higher interface.
@@ -49,6 +51,35 @@ public interface SparkPairCollection<K, V> {
 
   <T> SparkPairCollection<K, Tuple2<Optional<V>, Optional<T>>> fullOuterJoin(SparkPairCollection<K, T> other);
 
+  /**
+   * Inner join with a collection that is small enough to be held in memory. Implementations may send the other
+   * collection to every partition of this collection instead of shuffling both collections.
+   */
+  <T> SparkPairCollection<K, Tuple2<V, T>> broadcastJoin(SparkPairCollection<K, T> other);
+
+  /**
+   * Left outer join with a collection that is small enough to be held in memory. Implementations may send the other
+   * collection to every partition of this collection instead of shuffling both collections.
+   */
+  <T> SparkPairCollection<K, Tuple2<V, Optional<T>>> broadcastLeftOuterJoin(SparkPairCollection<K, T> other);
+
   <T> SparkPairCollection<K, Tuple2<Optional<V>, Optional<T>>> fullOuterJoin(SparkPairCollection<K, T> other,
                                                                              int numPartitions);
+
+  /**
+   * Inner join that spreads the records of keys that are much more frequent than others in this collection over
+   * multiple partitions, and replicates the records of those keys in the other collection to each of them.
+   * Implementations may report the skew found as metrics of the given stage.
+   */
+  <T> SparkPairCollection<K, Tuple2<V, T>> skewedJoin(String stageName, SparkPairCollection<K, T> other,
+                                                      @Nullable Integer numPartitions);
+
+  /**
+   * Left outer join that spreads the records of keys that are much more frequent than others in this collection over
+   * multiple partitions, and replicates the records of those keys in the other collection to each of them.
+   * Implementations may report the skew found as metrics of the given stage.
+   */
+  <T> SparkPairCollection<K, Tuple2<V, Optional<T>>> skewedLeftOuterJoin(String stageName,
+                                                                         SparkPairCollection<K, T> other,
+                                                                         @Nullable Integer numPartitions);
 }
@@ -18,6 +18,7 @@ package co.cask.cdap.etl.spark;
 
 import co.cask.cdap.api.macro.MacroEvaluator;
 import co.cask.cdap.api.spark.JavaSparkExecutionContext;
+import co.cask.cdap.etl.api.JoinConfig;
 import co.cask.cdap.etl.api.JoinElement;
 import co.cask.cdap.etl.api.Transform;
 import co.cask.cdap.etl.api.batch.BatchAggregator;
@@ -37,6 +38,8 @@ import co.cask.cdap.etl.spark.function.LeftJoinFlattenFunction;
 import co.cask.cdap.etl.spark.function.OuterJoinFlattenFunction;
 import co.cask.cdap.etl.spark.function.PluginFunctionContext;
 import co.cask.cdap.etl.spark.function.TransformFunction;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -150,19 +153,38 @@ public abstract class SparkPipelineRunner {
         remainingInputs.addAll(inputDataCollections.keySet());
 
         Integer numPartitions = stagePartitions.get(stageName);
+        boolean handleSkew = SkewedKeys.isEnabled(sec.getRuntimeArguments());
+
+        JoinConfig joinConfig = joiner.getJoinConfig();
+        Set<String> broadcastInputs = Sets.newHashSet(joinConfig.getBroadcastInputs());
+        // start from the first required input that is not broadcast, since the inputs are joined into the first one
+        List<String> requiredInputs = Lists.newArrayList(joinConfig.getRequiredInputs());
+        for (int i = 0; i < requiredInputs.size(); i++) {
+          if (!broadcastInputs.contains(requiredInputs.get(i))) {
+            requiredInputs.add(0, requiredInputs.remove(i));
+            break;
+          }
+        }
 
         SparkPairCollection<Object, List<JoinElement<Object>>> joinedInputs = null;
         // inner join on required inputs
-        for (final String inputStageName : joiner.getJoinConfig().getRequiredInputs()) {
+        for (final String inputStageName : requiredInputs) {
           SparkPairCollection<Object, Object> preJoinCollection = preJoinStreams.get(inputStageName);
 
           if (joinedInputs == null) {
             joinedInputs = preJoinCollection.mapValues(new InitialJoinFunction<>(inputStageName));
           } else {
             JoinFlattenFunction<Object> joinFlattenFunction = new JoinFlattenFunction<>(inputStageName);
-            joinedInputs = numPartitions == null ?
-              joinedInputs.join(preJoinCollection).mapValues(joinFlattenFunction) :
-              joinedInputs.join(preJoinCollection, numPartitions).mapValues(joinFlattenFunction);
+            if (broadcastInputs.contains(inputStageName)) {
+              joinedInputs = joinedInputs.broadcastJoin(preJoinCollection).mapValues(joinFlattenFunction);
+            } else if (handleSkew) {
+              joinedInputs = joinedInputs.skewedJoin(stageName, preJoinCollection, numPartitions)
+                .mapValues(joinFlattenFunction);
+            } else {
+              joinedInputs = numPartitions == null ?
+                joinedInputs.join(preJoinCollection).mapValues(joinFlattenFunction) :
+                joinedInputs.join(preJoinCollection, numPartitions).mapValues(joinFlattenFunction);
+            }
           }
           remainingInputs.remove(inputStageName);
         }
@@ -176,6 +198,8 @@ public abstract class SparkPipelineRunner {
             joinedInputs = preJoinStream.mapValues(new InitialJoinFunction<>(inputStageName));
           } else {
             if (isFullOuter) {
+              // records of the broadcast input without a match would be lost, hence always shuffle.
+              // Skewed keys are not split either, as unmatched records of the replicated side would be duplicated
               OuterJoinFlattenFunction<Object> flattenFunction = new OuterJoinFlattenFunction<>(inputStageName);
 
               joinedInputs = numPartitions == null ?
@@ -184,9 +208,16 @@ public abstract class SparkPipelineRunner {
             } else {
               LeftJoinFlattenFunction<Object> flattenFunction = new LeftJoinFlattenFunction<>(inputStageName);
 
-              joinedInputs = numPartitions == null ?
-                joinedInputs.leftOuterJoin(preJoinStream).mapValues(flattenFunction) :
-                joinedInputs.leftOuterJoin(preJoinStream, numPartitions).mapValues(flattenFunction);
+              if (broadcastInputs.contains(inputStageName)) {
+                joinedInputs = joinedInputs.broadcastLeftOuterJoin(preJoinStream).mapValues(flattenFunction);
+              } else if (handleSkew) {
+                joinedInputs = joinedInputs.skewedLeftOuterJoin(stageName, preJoinStream, numPartitions)
+                  .mapValues(flattenFunction);
+              } else {
+                joinedInputs = numPartitions == null ?
+                  joinedInputs.leftOuterJoin(preJoinStream).mapValues(flattenFunction) :
+                  joinedInputs.leftOuterJoin(preJoinStream, numPartitions).mapValues(flattenFunction);
+              }
             }
           }
         }
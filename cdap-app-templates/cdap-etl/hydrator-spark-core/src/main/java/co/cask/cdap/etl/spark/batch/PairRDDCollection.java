@@ -18,15 +18,31 @@ package co.cask.cdap.etl.spark.batch;
 
 import co.cask.cdap.api.data.DatasetContext;
 import co.cask.cdap.api.spark.JavaSparkExecutionContext;
+import co.cask.cdap.etl.common.DefaultStageMetrics;
+import co.cask.cdap.etl.spark.SkewedKeys;
 import co.cask.cdap.etl.spark.SparkCollection;
 import co.cask.cdap.etl.spark.SparkPairCollection;
+import co.cask.cdap.etl.spark.function.BroadcastJoinFunction;
+import co.cask.cdap.etl.spark.function.BroadcastLeftJoinFunction;
+import co.cask.cdap.etl.spark.function.ReplicateKeyFunction;
+import co.cask.cdap.etl.spark.function.SaltKeyFunction;
+import co.cask.cdap.etl.spark.function.UnsaltKeyFunction;
 import com.google.common.base.Optional;
+import org.apache.spark.HashPartitioner;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.api.java.function.FlatMapFunction;
 import org.apache.spark.api.java.function.Function;
+import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.storage.StorageLevel;
 import scala.Tuple2;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
 /**
  * Implementation of {@link SparkCollection} that is backed by a JavaPairRDD.
  *
@@ -103,6 +119,94 @@ public class PairRDDCollection<K, V> implements SparkPairCollection<K, V> {
     return wrap(pairRDD.fullOuterJoin((JavaPairRDD<K, T>) other.getUnderlying(), numPartitions));
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> SparkPairCollection<K, Tuple2<V, T>> broadcastJoin(SparkPairCollection<K, T> other) {
+    Broadcast<Map<K, List<T>>> broadcast = broadcast((JavaPairRDD<K, T>) other.getUnderlying());
+    return wrap(pairRDD.flatMapToPair(new BroadcastJoinFunction<>(broadcast)));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> SparkPairCollection<K, Tuple2<V, Optional<T>>> broadcastLeftOuterJoin(SparkPairCollection<K, T> other) {
+    Broadcast<Map<K, List<T>>> broadcast = broadcast((JavaPairRDD<K, T>) other.getUnderlying());
+    return wrap(pairRDD.flatMapToPair(new BroadcastLeftJoinFunction<>(broadcast)));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> SparkPairCollection<K, Tuple2<V, T>> skewedJoin(String stageName, SparkPairCollection<K, T> other,
+                                                             @Nullable Integer numPartitions) {
+    JavaPairRDD<K, T> otherRDD = (JavaPairRDD<K, T>) other.getUnderlying();
+    int partitions = getJoinPartitions(otherRDD, numPartitions);
+    Tuple2<Broadcast<Map<K, Integer>>, JavaPairRDD<Tuple2<K, Integer>, V>> salted = salt(stageName, partitions);
+    return wrap(salted._2()
+                  .join(otherRDD.flatMapToPair(new ReplicateKeyFunction<K, T>(salted._1())), partitions)
+                  .mapToPair(new UnsaltKeyFunction<K, Tuple2<V, T>>()));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> SparkPairCollection<K, Tuple2<V, Optional<T>>> skewedLeftOuterJoin(String stageName,
+                                                                                SparkPairCollection<K, T> other,
+                                                                                @Nullable Integer numPartitions) {
+    JavaPairRDD<K, T> otherRDD = (JavaPairRDD<K, T>) other.getUnderlying();
+    int partitions = getJoinPartitions(otherRDD, numPartitions);
+    Tuple2<Broadcast<Map<K, Integer>>, JavaPairRDD<Tuple2<K, Integer>, V>> salted = salt(stageName, partitions);
+    // every salt of a key in this collection has a copy of each record of the key in the other collection,
+    // so a record without a match in one salt has no match in any of them
+    return wrap(salted._2()
+                  .leftOuterJoin(otherRDD.flatMapToPair(new ReplicateKeyFunction<K, T>(salted._1())), partitions)
+                  .mapToPair(new UnsaltKeyFunction<K, Tuple2<V, Optional<T>>>()));
+  }
+
+  // without a given number of partitions, Spark joins into as many partitions as the larger input has
+  private int getJoinPartitions(JavaPairRDD<?, ?> other, @Nullable Integer numPartitions) {
+    if (numPartitions != null) {
+      return numPartitions;
+    }
+    return Math.max(pairRDD.partitions().size(), other.partitions().size());
+  }
+
+  /**
+   * Samples this collection for skewed keys, then salts it and shuffles it into the join partitions. Returns the
+   * broadcast skewed keys and the salted collection. Unless it already is cached, this collection is cached while
+   * sampling, so that it isn't computed twice, and released once the shuffle files of the salted collection are
+   * written. The join reads these files instead of computing this collection again, because the salted collection
+   * already is partitioned the same way as the join.
+   */
+  private Tuple2<Broadcast<Map<K, Integer>>, JavaPairRDD<Tuple2<K, Integer>, V>> salt(String stageName,
+                                                                                       int partitions) {
+    boolean cache = pairRDD.getStorageLevel().equals(StorageLevel.NONE());
+    if (cache) {
+      pairRDD.cache();
+    }
+    Broadcast<Map<K, Integer>> skewedKeys = jsc.broadcast(
+      SkewedKeys.find(pairRDD, partitions, new DefaultStageMetrics(sec.getMetrics(), stageName), "join"));
+
+    JavaPairRDD<Tuple2<K, Integer>, V> salted = pairRDD.mapToPair(new SaltKeyFunction<K, V>(skewedKeys))
+      .partitionBy(new HashPartitioner(partitions));
+    salted.count();
+    if (cache) {
+      pairRDD.unpersist(false);
+    }
+    return new Tuple2<>(skewedKeys, salted);
+  }
+
+  // collects the given RDD into a map from key to all values of that key, and broadcasts the map to all executors
+  private <T> Broadcast<Map<K, List<T>>> broadcast(JavaPairRDD<K, T> rdd) {
+    Map<K, List<T>> values = new HashMap<>();
+    for (Tuple2<K, T> entry : rdd.collect()) {
+      List<T> keyValues = values.get(entry._1());
+      if (keyValues == null) {
+        keyValues = new ArrayList<>();
+        values.put(entry._1(), keyValues);
+      }
+      keyValues.add(entry._2());
+    }
+    return jsc.broadcast(values);
+  }
+
   private <X, Y> SparkPairCollection<X, Y> wrap(JavaPairRDD<X, Y> javaPairRDD) {
     return new PairRDDCollection<>(sec, jsc, datasetContext, sinkFactory, javaPairRDD);
   }
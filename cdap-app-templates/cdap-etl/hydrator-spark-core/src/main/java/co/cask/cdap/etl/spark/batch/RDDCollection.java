@@ -18,6 +18,7 @@ package co.cask.cdap.etl.spark.batch;
 
 import co.cask.cdap.api.data.DatasetContext;
 import co.cask.cdap.api.spark.JavaSparkExecutionContext;
+import co.cask.cdap.etl.api.CombinableAggregator;
 import co.cask.cdap.etl.api.batch.SparkCompute;
 import co.cask.cdap.etl.api.batch.SparkExecutionPluginContext;
 import co.cask.cdap.etl.api.batch.SparkSink;
@@ -26,6 +27,7 @@ import co.cask.cdap.etl.planner.StageInfo;
 import co.cask.cdap.etl.spark.SparkCollection;
 import co.cask.cdap.etl.spark.SparkPairCollection;
 import co.cask.cdap.etl.spark.function.AggregatorAggregateFunction;
+import co.cask.cdap.etl.spark.function.AggregatorCombineFunction;
 import co.cask.cdap.etl.spark.function.AggregatorGroupByFunction;
 import co.cask.cdap.etl.spark.function.CountingFunction;
 import co.cask.cdap.etl.spark.function.PluginFunctionContext;
@@ -33,6 +35,7 @@ import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.api.java.function.Function2;
 import org.apache.spark.api.java.function.PairFlatMapFunction;
 import scala.Tuple2;
 
@@ -90,6 +93,14 @@ public class RDDCollection<T> implements SparkCollection<T> {
 
     JavaPairRDD<Object, T> keyedCollection = rdd.flatMapToPair(groupByFunction);
 
+    if (CombinableAggregator.class.isAssignableFrom(sec.getPluginContext().loadPluginClass(stageInfo.getName()))) {
+      // pre-aggregate values before the shuffle. Grouping the combined values again is just a local operation,
+      // since they are already partitioned by key
+      Function2<T, T, T> combineFunction = new AggregatorCombineFunction<>(pluginFunctionContext);
+      keyedCollection = partitions == null ?
+        keyedCollection.reduceByKey(combineFunction) : keyedCollection.reduceByKey(combineFunction, partitions);
+    }
+
     JavaPairRDD<Object, Iterable<T>> groupedCollection = partitions == null ?
       keyedCollection.groupByKey() : keyedCollection.groupByKey(partitions);
 
@@ -129,6 +129,8 @@ final class SparkBatchSourceFactory {
                                                   formatSpec,
                                                   streamInput.getStartTime(),
                                                   streamInput.getEndTime(),
+                                                  streamInput.getBodyProjection(),
+                                                  streamInput.getBodyFilter(),
                                                   StructuredRecord.class);
       }
 
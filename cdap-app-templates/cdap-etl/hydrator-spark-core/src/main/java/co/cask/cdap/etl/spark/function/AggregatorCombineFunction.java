@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.spark.function;
+
+import co.cask.cdap.etl.api.CombinableAggregator;
+import co.cask.cdap.etl.api.batch.BatchAggregator;
+import org.apache.spark.api.java.function.Function2;
+
+/**
+ * Function that uses a BatchAggregator that is a {@link CombinableAggregator} to combine group values
+ * into partial aggregates. Spark applies it before the shuffle as well as after it.
+ * Non-serializable fields are lazily created since this is used in a Spark closure.
+ *
+ * @param <GROUP_VAL> type of group value
+ */
+public class AggregatorCombineFunction<GROUP_VAL> implements Function2<GROUP_VAL, GROUP_VAL, GROUP_VAL> {
+  private final PluginFunctionContext pluginFunctionContext;
+  private transient CombinableAggregator<?, GROUP_VAL, ?> aggregator;
+
+  public AggregatorCombineFunction(PluginFunctionContext pluginFunctionContext) {
+    this.pluginFunctionContext = pluginFunctionContext;
+  }
+
+  @Override
+  public GROUP_VAL call(GROUP_VAL value1, GROUP_VAL value2) throws Exception {
+    if (aggregator == null) {
+      BatchAggregator<?, GROUP_VAL, ?> batchAggregator = pluginFunctionContext.createPlugin();
+      batchAggregator.initialize(pluginFunctionContext.createBatchRuntimeContext());
+      aggregator = (CombinableAggregator<?, GROUP_VAL, ?>) batchAggregator;
+    }
+    return aggregator.combine(value1, value2);
+  }
+}
@@ -40,7 +40,9 @@ public class OuterJoinFlattenFunction<T> implements
   @Override
   public List<JoinElement<T>> call(Tuple2<Optional<List<JoinElement<T>>>, Optional<T>> in) throws Exception {
 
-    List<JoinElement<T>> output = in._1().isPresent() ? in._1().get() : new ArrayList<JoinElement<T>>();
+    // copy the list, since the same list is joined with every matching object
+    List<JoinElement<T>> output = in._1().isPresent() ?
+      new ArrayList<>(in._1().get()) : new ArrayList<JoinElement<T>>();
     if (in._2().isPresent()) {
       JoinElement<T> additionalElement = new JoinElement<>(inputStageName, in._2().get());
       output.add(additionalElement);
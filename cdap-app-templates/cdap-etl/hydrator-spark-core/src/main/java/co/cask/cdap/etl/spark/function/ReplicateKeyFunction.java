@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.spark.function;
+
+import org.apache.spark.api.java.function.PairFlatMapFunction;
+import org.apache.spark.broadcast.Broadcast;
+import scala.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds every salt used by {@link SaltKeyFunction} to each key, so that records salted by that function find all
+ * their matches. Records of a skewed key are replicated once for each of its salts, all other records get a salt of 0.
+ *
+ * @param <K> type of key
+ * @param <V> type of value
+ */
+public class ReplicateKeyFunction<K, V> implements PairFlatMapFunction<Tuple2<K, V>, Tuple2<K, Integer>, V> {
+  private final Broadcast<Map<K, Integer>> skewedKeys;
+
+  public ReplicateKeyFunction(Broadcast<Map<K, Integer>> skewedKeys) {
+    this.skewedKeys = skewedKeys;
+  }
+
+  @Override
+  public Iterable<Tuple2<Tuple2<K, Integer>, V>> call(Tuple2<K, V> in) throws Exception {
+    Integer splits = skewedKeys.value().get(in._1());
+    if (splits == null) {
+      return Collections.singletonList(new Tuple2<>(new Tuple2<>(in._1(), 0), in._2()));
+    }
+    List<Tuple2<Tuple2<K, Integer>, V>> output = new ArrayList<>(splits);
+    for (int salt = 0; salt < splits; salt++) {
+      output.add(new Tuple2<>(new Tuple2<>(in._1(), salt), in._2()));
+    }
+    return output;
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.spark.function;
+
+import org.apache.spark.api.java.function.PairFunction;
+import org.apache.spark.broadcast.Broadcast;
+import scala.Tuple2;
+
+import java.util.Map;
+
+/**
+ * Adds a salt to each key, so that the records of skewed keys are spread over multiple partitions. Records of
+ * a skewed key are assigned the salts in round robin order, all other records get a salt of 0. A round robin
+ * is used instead of random salts so that a retried task assigns the same salts as the original attempt.
+ *
+ * @param <K> type of key
+ * @param <V> type of value
+ */
+public class SaltKeyFunction<K, V> implements PairFunction<Tuple2<K, V>, Tuple2<K, Integer>, V> {
+  private final Broadcast<Map<K, Integer>> skewedKeys;
+  private transient long count;
+
+  public SaltKeyFunction(Broadcast<Map<K, Integer>> skewedKeys) {
+    this.skewedKeys = skewedKeys;
+  }
+
+  @Override
+  public Tuple2<Tuple2<K, Integer>, V> call(Tuple2<K, V> in) throws Exception {
+    Integer splits = skewedKeys.value().get(in._1());
+    int salt = splits == null ? 0 : (int) (count++ % splits);
+    return new Tuple2<>(new Tuple2<>(in._1(), salt), in._2());
+  }
+}
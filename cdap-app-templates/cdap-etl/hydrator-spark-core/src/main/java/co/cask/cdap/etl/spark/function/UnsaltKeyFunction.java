@@ -0,0 +1,34 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.spark.function;
+
+import org.apache.spark.api.java.function.PairFunction;
+import scala.Tuple2;
+
+/**
+ * Removes the salt added by {@link SaltKeyFunction} from each key.
+ *
+ * @param <K> type of key
+ * @param <V> type of value
+ */
+public class UnsaltKeyFunction<K, V> implements PairFunction<Tuple2<Tuple2<K, Integer>, V>, K, V> {
+
+  @Override
+  public Tuple2<K, V> call(Tuple2<Tuple2<K, Integer>, V> in) throws Exception {
+    return new Tuple2<>(in._1()._1(), in._2());
+  }
+}
@@ -25,6 +25,8 @@ import org.apache.spark.api.java.function.Function;
 import org.apache.spark.streaming.api.java.JavaPairDStream;
 import scala.Tuple2;
 
+import javax.annotation.Nullable;
+
 /**
  * JavaPairDStream backed {@link SparkPairCollection}
  *
@@ -94,6 +96,31 @@ public class PairDStreamCollection<K, V> implements SparkPairCollection<K, V> {
     return wrap(pairStream.fullOuterJoin((JavaPairDStream<K, T>) other.getUnderlying(), numPartitions));
   }
 
+  // the inputs change with every batch, so there is nothing to broadcast once. Use regular joins instead.
+  @Override
+  public <T> SparkPairCollection<K, Tuple2<V, T>> broadcastJoin(SparkPairCollection<K, T> other) {
+    return join(other);
+  }
+
+  @Override
+  public <T> SparkPairCollection<K, Tuple2<V, Optional<T>>> broadcastLeftOuterJoin(SparkPairCollection<K, T> other) {
+    return leftOuterJoin(other);
+  }
+
+  // sampling would have to happen for every batch. Use regular joins instead.
+  @Override
+  public <T> SparkPairCollection<K, Tuple2<V, T>> skewedJoin(String stageName, SparkPairCollection<K, T> other,
+                                                             @Nullable Integer numPartitions) {
+    return numPartitions == null ? join(other) : join(other, numPartitions);
+  }
+
+  @Override
+  public <T> SparkPairCollection<K, Tuple2<V, Optional<T>>> skewedLeftOuterJoin(String stageName,
+                                                                                SparkPairCollection<K, T> other,
+                                                                                @Nullable Integer numPartitions) {
+    return numPartitions == null ? leftOuterJoin(other) : leftOuterJoin(other, numPartitions);
+  }
+
   private <T, U> PairDStreamCollection<T, U> wrap(JavaPairDStream<T, U> pairStream) {
     return new PairDStreamCollection<>(sec, pairStream);
   }
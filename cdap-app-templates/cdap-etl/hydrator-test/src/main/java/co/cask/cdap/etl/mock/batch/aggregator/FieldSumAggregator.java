@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.mock.batch.aggregator;
+
+import co.cask.cdap.api.annotation.Name;
+import co.cask.cdap.api.annotation.Plugin;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.plugin.PluginClass;
+import co.cask.cdap.api.plugin.PluginConfig;
+import co.cask.cdap.api.plugin.PluginPropertyField;
+import co.cask.cdap.etl.api.CombinableAggregator;
+import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.api.PipelineConfigurer;
+import co.cask.cdap.etl.api.batch.BatchAggregator;
+import co.cask.cdap.etl.proto.v2.ETLPlugin;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Groups on a string field and sums up a long field. Used to test map-side combining of aggregators.
+ * Like {@link FieldCountAggregator}, it always emits an 'all' group in addition to the value of the group field.
+ */
+@Plugin(type = BatchAggregator.PLUGIN_TYPE)
+@Name("FieldSum")
+public class FieldSumAggregator extends BatchAggregator<String, StructuredRecord, StructuredRecord>
+  implements CombinableAggregator<String, StructuredRecord, StructuredRecord> {
+  public static final PluginClass PLUGIN_CLASS = getPluginClass();
+  private final Config config;
+
+  public FieldSumAggregator(Config config) {
+    this.config = config;
+  }
+
+  @Override
+  public void configurePipeline(PipelineConfigurer pipelineConfigurer) throws IllegalArgumentException {
+    pipelineConfigurer.getStageConfigurer().setOutputSchema(config.getSchema());
+  }
+
+  @Override
+  public void groupBy(StructuredRecord input, Emitter<String> emitter) throws Exception {
+    emitter.emit(input.get(config.groupField).toString());
+    emitter.emit("all");
+  }
+
+  @Override
+  public StructuredRecord combine(StructuredRecord value1, StructuredRecord value2) throws Exception {
+    Schema schema = value1.getSchema();
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (Schema.Field field : schema.getFields()) {
+      builder.set(field.getName(), value1.get(field.getName()));
+    }
+    long sum = value1.<Long>get(config.sumField) + value2.<Long>get(config.sumField);
+    return builder.set(config.sumField, sum).build();
+  }
+
+  @Override
+  public void aggregate(String groupKey, Iterator<StructuredRecord> groupValues,
+                        Emitter<StructuredRecord> emitter) throws Exception {
+    long sum = 0;
+    while (groupValues.hasNext()) {
+      sum += groupValues.next().<Long>get(config.sumField);
+    }
+    emitter.emit(StructuredRecord.builder(config.getSchema())
+                   .set(config.groupField, groupKey)
+                   .set(config.sumField, sum)
+                   .build());
+  }
+
+  /**
+   * Conf for the aggregator.
+   */
+  public static class Config extends PluginConfig {
+    private final String groupField;
+
+    private final String sumField;
+
+    public Config() {
+      this.groupField = "group";
+      this.sumField = "value";
+    }
+
+    private Schema getSchema() {
+      return Schema.recordOf(
+        groupField + "." + sumField + ".sum",
+        Schema.Field.of(groupField, Schema.of(Schema.Type.STRING)),
+        Schema.Field.of(sumField, Schema.of(Schema.Type.LONG)));
+    }
+  }
+
+  public static ETLPlugin getPlugin(String groupField, String sumField) {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("groupField", groupField);
+    properties.put("sumField", sumField);
+    return new ETLPlugin("FieldSum", BatchAggregator.PLUGIN_TYPE, properties, null);
+  }
+
+  private static PluginClass getPluginClass() {
+    Map<String, PluginPropertyField> properties = new HashMap<>();
+    properties.put("groupField", new PluginPropertyField("groupField", "", "string", true, false));
+    properties.put("sumField", new PluginPropertyField("sumField", "", "string", true, false));
+    return new PluginClass(BatchAggregator.PLUGIN_TYPE, "FieldSum", "", FieldSumAggregator.class.getName(),
+                           "config", properties);
+  }
+}
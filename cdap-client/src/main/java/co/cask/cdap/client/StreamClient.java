@@ -19,11 +19,16 @@ package co.cask.cdap.client;
 import co.cask.cdap.api.annotation.Beta;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.api.stream.StreamEventData;
 import co.cask.cdap.client.config.ClientConfig;
 import co.cask.cdap.client.util.RESTClient;
 import co.cask.cdap.common.BadRequestException;
 import co.cask.cdap.common.StreamNotFoundException;
 import co.cask.cdap.common.UnauthenticatedException;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.stream.StreamEventDataCodec;
 import co.cask.cdap.common.stream.StreamEventTypeAdapter;
 import co.cask.cdap.common.utils.TimeMathParser;
 import co.cask.cdap.internal.io.SchemaTypeAdapter;
@@ -50,6 +55,7 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -64,6 +70,7 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.net.ssl.HttpsURLConnection;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 
 /**
  * Provides ways to interact with CDAP Streams.
@@ -697,6 +704,9 @@ public class StreamClient {
     if (accessToken != null) {
       urlConn.setRequestProperty(HttpHeaders.AUTHORIZATION, accessToken.getTokenType() + " " + accessToken.getValue());
     }
+    // Prefer the binary encoding of events. Servers not supporting it respond with JSON.
+    urlConn.setRequestProperty(HttpHeaders.ACCEPT,
+                               Constants.Stream.BINARY_EVENTS_CONTENT_TYPE + ", " + MediaType.APPLICATION_JSON);
 
     if (urlConn instanceof HttpsURLConnection && !config.isVerifySSLCert()) {
       try {
@@ -717,14 +727,19 @@ public class StreamClient {
         return;
       }
 
-      // The response is an array of stream event object
       InputStream inputStream = urlConn.getInputStream();
-      JsonReader jsonReader = new JsonReader(new InputStreamReader(inputStream, Charsets.UTF_8));
-      jsonReader.beginArray();
-      while (jsonReader.peek() != JsonToken.END_ARRAY) {
-        Boolean result = callback.apply(GSON.<StreamEvent>fromJson(jsonReader, StreamEvent.class));
-        if (result == null || !result) {
-          break;
+      String contentType = urlConn.getContentType();
+      if (contentType != null && contentType.startsWith(Constants.Stream.BINARY_EVENTS_CONTENT_TYPE)) {
+        readBinaryEvents(inputStream, callback);
+      } else {
+        // The response is an array of stream event object
+        JsonReader jsonReader = new JsonReader(new InputStreamReader(inputStream, Charsets.UTF_8));
+        jsonReader.beginArray();
+        while (jsonReader.peek() != JsonToken.END_ARRAY) {
+          Boolean result = callback.apply(GSON.<StreamEvent>fromJson(jsonReader, StreamEvent.class));
+          if (result == null || !result) {
+            break;
+          }
         }
       }
       drain(inputStream);
@@ -734,6 +749,31 @@ public class StreamClient {
     }
   }
 
+  /**
+   * Reads stream events in the binary encoding from the given input stream until the end of the stream.
+   *
+   * @see Constants.Stream#BINARY_EVENTS_CONTENT_TYPE
+   */
+  private void readBinaryEvents(InputStream inputStream,
+                                Function<? super StreamEvent, Boolean> callback) throws IOException {
+    BufferedInputStream input = new BufferedInputStream(inputStream, 64 * 1024);
+    Decoder decoder = new BinaryDecoder(input);
+    while (true) {
+      // Peek for the end of the stream, since it is only allowed in between events
+      input.mark(1);
+      if (input.read() < 0) {
+        return;
+      }
+      input.reset();
+
+      StreamEventData data = StreamEventDataCodec.decode(decoder);
+      Boolean result = callback.apply(new StreamEvent(data, decoder.readLong()));
+      if (result == null || !result) {
+        return;
+      }
+    }
+  }
+
   /**
    * Writes stream event using the given URL. The write maybe sync or async, depending on the URL.
    */
@@ -372,6 +372,18 @@ public final class Constants {
     }
   }
 
+  /**
+   * Flow configurations.
+   */
+  public static final class Flow {
+    /** Whether to adapt the batch size of process methods with {@code @Batch} at runtime */
+    public static final String ADAPTIVE_BATCH_ENABLED = "flow.adaptive.batch.enabled";
+    /** Maximum batch size for the adaptive batch size */
+    public static final String ADAPTIVE_BATCH_MAX_SIZE = "flow.adaptive.batch.max.size";
+    /** Target time in milliseconds for dequeuing and processing a batch in one transaction */
+    public static final String ADAPTIVE_BATCH_TARGET_LATENCY_MS = "flow.adaptive.batch.target.latency.ms";
+  }
+
   /**
    * Stream configurations and constants.
    */
@@ -387,6 +399,7 @@ public final class Constants {
     public static final String FILE_CLEANUP_PERIOD = "stream.file.cleanup.period";
     public static final String BATCH_BUFFER_THRESHOLD = "stream.batch.buffer.threshold";
     public static final String NOTIFICATION_THRESHOLD = "stream.notification.threshold";
+    public static final String COMPRESSION = "stream.compression";
 
     // Stream http service configurations.
     public static final String STREAM_HANDLER = "stream.handler";
@@ -415,6 +428,12 @@ public final class Constants {
     public static final String DESCRIPTION = "stream.description";
     public static final String FORMAT_SPECIFICATION = "stream.format.specification";
 
+    /**
+     * Content type of the binary response for fetching stream events. Each event is encoded as
+     * the {@code StreamEventData} encoding of {@code StreamEventDataCodec} followed by the timestamp as a long.
+     */
+    public static final String BINARY_EVENTS_CONTENT_TYPE = "application/x-cdap-stream-events";
+
     /**
      * Contains HTTP headers used by Stream handler.
      */
@@ -513,6 +532,12 @@ public final class Constants {
     // Key prefix for retention seconds. The actual key is suffixed by the table resolution.
     public static final String RETENTION_SECONDS = "metrics.data.table.retention.resolution";
 
+    // Whether counters of the minute and hour resolutions are rolled up from the second resolution in the background
+    public static final String ROLLUP_ENABLED = "metrics.rollup.enabled";
+    public static final String ROLLUP_INTERVAL_SECONDS = "metrics.rollup.interval.seconds";
+    // Maximum time in seconds between the end of a time bucket and the publishing of metrics for it
+    public static final String ROLLUP_LATENESS_SECONDS = "metrics.rollup.lateness.seconds";
+
     public static final String SERVER_ADDRESS = "metrics.query.bind.address";
     public static final String SERVER_PORT = "metrics.query.bind.port";
 
@@ -642,6 +667,14 @@ public final class Constants {
       public static final long MAX_MINUTE_RESOLUTION_QUERY_INTERVAL = 600;
       // Number of seconds to subtract from current timestamp when query without "end" time.
       public static final long QUERY_SECOND_DELAY = 2;
+
+      // Maximum number of data points in the query result cache. Zero to disable the cache.
+      public static final String CACHE_MAX_DATA_POINTS = "metrics.query.cache.max.datapoints";
+      // Time in seconds after which cached query results expire
+      public static final String CACHE_EXPIRE_SECONDS = "metrics.query.cache.expire.seconds";
+      // Maximum time in seconds between the processed time passing the end of a time bucket and the publishing of
+      // metrics for it
+      public static final String CACHE_LATENESS_SECONDS = "metrics.query.cache.lateness.seconds";
     }
   }
 
@@ -1100,6 +1133,15 @@ public final class Constants {
     public static final String HTTP_SERVER_EXECUTOR_THREADS = "messaging.http.server.executor.threads";
     public static final String HTTP_SERVER_MAX_REQUEST_SIZE_MB = "messaging.http.server.max.request.size.mb";
     public static final String HTTP_SERVER_CONSUME_CHUNK_SIZE = "messaging.http.server.consume.chunk.size";
+    public static final String HTTP_SERVER_FETCH_WAIT_THREADS = "messaging.http.server.fetch.wait.threads";
+
+    public static final String GROUP_COMMIT_ENABLED = "messaging.group.commit.enabled";
+    public static final String GROUP_COMMIT_LINGER_MS = "messaging.group.commit.linger.ms";
+    public static final String GROUP_COMMIT_MAX_MESSAGES = "messaging.group.commit.max.messages";
+    public static final String GROUP_COMMIT_MAX_BYTES = "messaging.group.commit.max.bytes";
+
+    public static final String FETCH_MAX_WAIT_MILLIS = "messaging.fetch.max.wait.ms";
+    public static final String FETCH_RESCAN_INTERVAL_MILLIS = "messaging.fetch.rescan.interval.ms";
 
 
     public static final String CONTAINER_VIRTUAL_CORES = "messaging.container.num.cores";
@@ -41,6 +41,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.common.io.Closeables;
 import com.google.common.io.Flushables;
+import com.google.common.io.InputSupplier;
 import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.hadoop.hbase.util.Strings;
 import org.apache.twill.filesystem.Location;
@@ -53,8 +54,10 @@ import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.List;
@@ -423,6 +426,96 @@ public abstract class StreamDataFileTestBase {
     }
   }
 
+  @Test
+  public void testCompression() throws Exception {
+    for (String codec : ImmutableList.of(StreamDataBlockCodecs.SNAPPY, StreamDataBlockCodecs.DEFLATE)) {
+      Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+      Location eventFile = dir.getTempFile(".dat");
+      Location indexFile = dir.getTempFile(".idx");
+      Location plainEventFile = dir.getTempFile(".dat");
+      Location plainIndexFile = dir.getTempFile(".idx");
+
+      StreamDataFileWriter writer = new StreamDataFileWriter(
+        Locations.newOutputSupplier(eventFile), Locations.newOutputSupplier(indexFile), 10L,
+        ImmutableMap.of(StreamDataFileConstants.Property.Key.COMPRESSION, codec));
+      StreamDataFileWriter plainWriter = new StreamDataFileWriter(
+        Locations.newOutputSupplier(plainEventFile), Locations.newOutputSupplier(plainIndexFile), 10L);
+
+      // Each timestamp has a block of 100 similar events, and a block of 1000 identical tiny events,
+      // which compresses to fewer bytes than the number of events.
+      List<String> bodies = Lists.newArrayList();
+      for (int i = 0; i < 20; i++) {
+        List<StreamEvent> block = Lists.newArrayList();
+        for (int j = 0; j < 100; j++) {
+          String body = "{\"event\": \"click\", \"id\": " + j + "}";
+          block.add(StreamFileTestUtils.createEvent(i * 2, body));
+          bodies.add(body);
+        }
+        writer.appendAll(block.iterator());
+        plainWriter.appendAll(block.iterator());
+
+        block.clear();
+        for (int j = 0; j < 1000; j++) {
+          block.add(StreamFileTestUtils.createEvent(i * 2 + 1, "a"));
+          bodies.add("a");
+        }
+        writer.appendAll(block.iterator());
+        plainWriter.appendAll(block.iterator());
+      }
+      writer.close();
+      plainWriter.close();
+
+      Assert.assertTrue(eventFile.length() < plainEventFile.length() / 2);
+
+      // Read all events back and verify that positions are unique
+      StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+      List<PositionStreamEvent> events = Lists.newArrayList();
+      Assert.assertEquals(bodies.size(), reader.read(events, Integer.MAX_VALUE, 0, TimeUnit.SECONDS));
+      reader.close();
+
+      long lastPosition = -1L;
+      for (int i = 0; i < bodies.size(); i++) {
+        Assert.assertEquals(bodies.get(i), Charsets.UTF_8.decode(events.get(i).getBody()).toString());
+        Assert.assertTrue(events.get(i).getStart() > lastPosition);
+        lastPosition = events.get(i).getStart();
+      }
+      Assert.assertTrue(lastPosition < eventFile.length());
+
+      // Reading from the position of an event should start with that event
+      for (int i = 0; i < events.size(); i += 97) {
+        PositionStreamEvent event = events.get(i);
+        reader = StreamDataFileReader.createWithOffset(Locations.newInputSupplier(eventFile),
+                                                       Locations.newInputSupplier(indexFile), event.getStart());
+        List<PositionStreamEvent> readEvents = Lists.newArrayList();
+        Assert.assertEquals(1, reader.read(readEvents, 1, 0, TimeUnit.SECONDS));
+        reader.close();
+        Assert.assertEquals(event.getStart(), readEvents.get(0).getStart());
+        Assert.assertEquals(bodies.get(i), Charsets.UTF_8.decode(readEvents.get(0).getBody()).toString());
+      }
+
+      // Reading by time uses the index
+      reader = StreamDataFileReader.createByStartTime(Locations.newInputSupplier(eventFile),
+                                                      Locations.newInputSupplier(indexFile), 21L);
+      events.clear();
+      Assert.assertEquals(1, reader.read(events, 1, 0, TimeUnit.SECONDS));
+      reader.close();
+      Assert.assertEquals(21L, events.get(0).getTimestamp());
+    }
+  }
+
+  @Test
+  public void testInvalidCompressionCodec() {
+    // Classes that are not codecs are rejected, without being instantiated
+    for (String codec : ImmutableList.of(String.class.getName(), "co.cask.cdap.NoSuchCodec")) {
+      try {
+        StreamDataBlockCodecs.create(codec);
+        Assert.fail("Expected IllegalArgumentException for codec " + codec);
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+    }
+  }
+
   @Test
   public void testEndOfFile() throws Exception {
     // This test is for opening a reader with start time beyond the last event in the file.
@@ -488,6 +581,54 @@ public abstract class StreamDataFileTestBase {
     Assert.assertEquals(2000, ts);
   }
 
+  @Test
+  public void testIndexLookup() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    Location eventFile = dir.getTempFile(".dat");
+    final Location indexFile = dir.getTempFile(".idx");
+
+    // Write 1000 events with different timestamps, and create index for every 10 timestamps.
+    StreamDataFileWriter writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
+                                                           Locations.newOutputSupplier(indexFile),
+                                                           10L);
+    for (int i = 0; i < 1000; i++) {
+      writer.append(StreamFileTestUtils.createEvent(1000 + i * 2, "Testing " + i));
+    }
+    writer.close();
+
+    // Lookup on the seekable index file should give the same result as lookup on the index loaded into memory
+    StreamDataFileIndex seekableIndex = new StreamDataFileIndex(Locations.newInputSupplier(indexFile));
+    StreamDataFileIndex memoryIndex = new StreamDataFileIndex(new InputSupplier<InputStream>() {
+      @Override
+      public InputStream getInput() throws IOException {
+        return new BufferedInputStream(indexFile.getInputStream());
+      }
+    });
+
+    Assert.assertEquals(-1L, seekableIndex.floorPositionByTime(999));
+    for (long ts = 999; ts < 3100; ts++) {
+      Assert.assertEquals(memoryIndex.floorPositionByTime(ts), seekableIndex.floorPositionByTime(ts));
+    }
+    long eventFileSize = eventFile.length();
+    for (long offset = 0; offset < eventFileSize + 10; offset += 7) {
+      Assert.assertEquals(memoryIndex.floorPosition(offset), seekableIndex.floorPosition(offset));
+    }
+
+    // Reader created by start time should start at the first event at or after the start time
+    for (long ts = 1000; ts < 3000; ts += 99) {
+      StreamDataFileReader reader = StreamDataFileReader.createByStartTime(Locations.newInputSupplier(eventFile),
+                                                                           Locations.newInputSupplier(indexFile),
+                                                                           ts);
+      try {
+        List<StreamEvent> events = Lists.newArrayList();
+        Assert.assertEquals(1, reader.read(events, 1, 0, TimeUnit.SECONDS));
+        Assert.assertEquals(ts + (ts % 2), events.get(0).getTimestamp());
+      } finally {
+        reader.close();
+      }
+    }
+  }
+
   @Test
   public void testMaxEvents() throws Exception {
     Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
@@ -17,6 +17,7 @@ package co.cask.cdap.data.stream;
 
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.format.FormatSpecification;
+import co.cask.cdap.api.data.format.Formats;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
@@ -400,6 +401,61 @@ public class StreamInputFormatTest {
     Assert.assertEquals("hello world", eventData.getBody().get("body"));
   }
 
+  @Test
+  public void testFormatProjectionAndFilter() throws IOException, InterruptedException {
+    File inputDir = tmpFolder.newFolder();
+    generateEvents(inputDir, 100, 1000, 1, new GenerateEvent() {
+      @Override
+      public String generate(int index, long timestamp) {
+        return "user" + index + "," + (index % 10) + ",item" + index;
+      }
+    });
+
+    Schema schema = Schema.recordOf("event",
+                                    Schema.Field.of("user", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("action", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("item", Schema.of(Schema.Type.STRING)));
+    Configuration conf = new Configuration();
+    AbstractStreamInputFormat.setStreamId(conf, DUMMY_ID);
+    AbstractStreamInputFormat.setBodyFormatSpecification(conf, new FormatSpecification(Formats.CSV, schema));
+    AbstractStreamInputFormat.setBodyProjection(conf, Collections.singletonList("item"));
+    AbstractStreamInputFormat.setBodyFilter(conf, ImmutableMap.of("action", "3"));
+    AbstractStreamInputFormat.setStreamPath(conf, inputDir.toURI());
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+
+    AbstractStreamInputFormat<LongWritable, GenericStreamEventData<StructuredRecord>> format =
+      new AbstractStreamInputFormat<LongWritable, GenericStreamEventData<StructuredRecord>>() {
+
+      @Override
+      public AuthorizationEnforcer getAuthorizationEnforcer(TaskAttemptContext context) {
+        return new NoOpAuthorizer();
+      }
+
+      @Override
+      public AuthenticationContext getAuthenticationContext(TaskAttemptContext context) {
+        return new AuthenticationTestContext();
+      }
+    };
+
+    List<String> items = Lists.newArrayList();
+    for (InputSplit split : format.getSplits(context)) {
+      RecordReader<LongWritable, GenericStreamEventData<StructuredRecord>> recordReader =
+        format.createRecordReader(split, context);
+      recordReader.initialize(split, context);
+      while (recordReader.nextKeyValue()) {
+        StructuredRecord record = recordReader.getCurrentValue().getBody();
+        Assert.assertEquals(1, record.getSchema().getFields().size());
+        items.add((String) record.get("item"));
+      }
+    }
+
+    List<String> expected = Lists.newArrayList();
+    for (int i = 3; i < 100; i += 10) {
+      expected.add("item" + i);
+    }
+    Assert.assertEquals(expected, items);
+  }
+
   private void generateEvents(File inputDir, int numEvents, long startTime, long timeIncrement,
                               GenerateEvent generator) throws IOException {
     File partition = new File(inputDir, Long.toString(startTime / 1000) + ".1000");
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream.service;
+
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.api.stream.StreamEventData;
+import co.cask.cdap.data.file.FileWriter;
+import com.google.common.base.Throwables;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The single stream write path of {@link ConcurrentStreamWriter} before it used a ring buffer. Each request is
+ * added to a queue as a new request object, and request threads compete to become the writer, which writes and
+ * flushes everything queued. Threads that lose yield until their request is completed.
+ * It is only used to compare the write throughput with {@link ConcurrentStreamWriter}.
+ */
+final class BaselineStreamWriter implements Closeable {
+
+  private final FileWriter<StreamEvent> fileWriter;
+  private final Queue<WriteRequest> queue;
+  private final AtomicBoolean writerFlag;
+  private final MutableStreamEvent streamEvent;
+
+  BaselineStreamWriter(FileWriter<StreamEvent> fileWriter) {
+    this.fileWriter = fileWriter;
+    this.queue = new ConcurrentLinkedQueue<>();
+    this.writerFlag = new AtomicBoolean(false);
+    this.streamEvent = new MutableStreamEvent();
+  }
+
+  /**
+   * Writes an event and returns when it is persisted.
+   */
+  void enqueue(Map<String, String> headers, ByteBuffer body) throws IOException {
+    WriteRequest request = new WriteRequest(new StreamEventData(headers, body));
+    queue.add(request);
+    while (!request.completed) {
+      if (!tryWrite()) {
+        Thread.yield();
+      }
+    }
+    if (request.failure != null) {
+      Throwables.propagateIfInstanceOf(request.failure, IOException.class);
+      throw new IOException("Unable to write stream event", request.failure);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    fileWriter.close();
+  }
+
+  private boolean tryWrite() {
+    if (!writerFlag.compareAndSet(false, true)) {
+      return false;
+    }
+    try {
+      List<WriteRequest> processQueue = new ArrayList<>();
+      Throwable failure = null;
+      try {
+        streamEvent.setTimestamp(System.currentTimeMillis());
+        WriteRequest request = queue.poll();
+        while (request != null) {
+          processQueue.add(request);
+          fileWriter.append(streamEvent.setData(request.eventData));
+          request = queue.poll();
+        }
+        fileWriter.flush();
+      } catch (Throwable t) {
+        failure = t;
+      }
+      for (WriteRequest processed : processQueue) {
+        processed.failure = failure;
+        processed.completed = true;
+      }
+    } finally {
+      writerFlag.set(false);
+    }
+    return true;
+  }
+
+  private static final class WriteRequest {
+    private final StreamEventData eventData;
+    private Throwable failure;
+    private volatile boolean completed;
+
+    WriteRequest(StreamEventData eventData) {
+      this.eventData = eventData;
+    }
+  }
+}
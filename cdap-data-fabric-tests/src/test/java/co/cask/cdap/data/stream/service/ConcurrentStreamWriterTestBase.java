@@ -41,6 +41,7 @@ import co.cask.cdap.security.impersonation.DefaultImpersonator;
 import co.cask.cdap.security.impersonation.Impersonator;
 import co.cask.cdap.security.impersonation.UnsupportedUGIProvider;
 import com.google.common.base.Charsets;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
@@ -50,6 +51,7 @@ import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
@@ -61,10 +63,12 @@ import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
 
 /**
  * Unit tests for the {@link ConcurrentStreamWriter}.
@@ -138,6 +142,106 @@ public abstract class ConcurrentStreamWriterTestBase {
     streamWriter.close();
   }
 
+  @Test
+  public void testMultiStreamsWrite() throws Exception {
+    // Writes to multiple streams concurrently, with half of the events written asynchronously. The writer tasks of
+    // all streams share a single writer thread.
+    NamespaceId namespace = new NamespaceId("namespace");
+    List<StreamId> streamIds = Lists.newArrayList();
+    for (int i = 0; i < 4; i++) {
+      streamIds.add(namespace.stream("testMultiStreamsWrite" + i));
+    }
+    StreamAdmin streamAdmin = new TestStreamAdmin(getNamespacedLocationFactory(), Long.MAX_VALUE, 1000);
+    for (StreamId streamId : streamIds) {
+      streamAdmin.getConfig(streamId).getLocation().mkdirs();
+    }
+
+    StreamFileWriterFactory fileWriterFactory = createStreamFileWriterFactory();
+    ConcurrentStreamWriter streamWriter = createStreamWriter(streamIds.get(0), streamAdmin, 1, fileWriterFactory);
+
+    // Each stream is written by 4 threads, each writing 100 events
+    int threadsPerStream = 4;
+    int msgPerThread = 100;
+    CountDownLatch startLatch = new CountDownLatch(1);
+    CountDownLatch completion = new CountDownLatch(streamIds.size() * threadsPerStream);
+    ExecutorService executor = Executors.newFixedThreadPool(streamIds.size() * threadsPerStream);
+    ExecutorService asyncExecutor = Executors.newFixedThreadPool(threadsPerStream);
+    for (StreamId streamId : streamIds) {
+      for (int i = 0; i < threadsPerStream; i++) {
+        Executor writeExecutor = i % 2 == 0 ? null : asyncExecutor;
+        executor.execute(createSmallEventsWriterTask(streamId, streamWriter, i, msgPerThread, writeExecutor,
+                                                     startLatch, completion));
+      }
+    }
+
+    startLatch.countDown();
+    Assert.assertTrue(completion.await(120, TimeUnit.SECONDS));
+    // Async writes return before they are persisted. The async executor completes once all of them are persisted.
+    asyncExecutor.shutdown();
+    Assert.assertTrue(asyncExecutor.awaitTermination(120, TimeUnit.SECONDS));
+    executor.shutdown();
+
+    // Verify all events are written to each stream
+    for (StreamId streamId : streamIds) {
+      Location partitionLocation = streamAdmin.getConfig(streamId).getLocation().list().get(0);
+      Location streamLocation = StreamUtils.createStreamLocation(partitionLocation,
+                                                                 fileWriterFactory.getFileNamePrefix(),
+                                                                 0, StreamFileType.EVENT);
+      try (StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(streamLocation))) {
+        List<StreamEvent> events = Lists.newArrayListWithCapacity(threadsPerStream * msgPerThread);
+        Assert.assertEquals(threadsPerStream * msgPerThread,
+                            reader.read(events, Integer.MAX_VALUE, 0, TimeUnit.SECONDS));
+        Assert.assertTrue(verifyEvents(threadsPerStream, msgPerThread, events));
+      }
+    }
+    streamWriter.close();
+  }
+
+  @Ignore
+  @Test
+  public void testWriteThroughput() throws Exception {
+    // A load generator for small events written from many threads. It reports the write throughput of the previous
+    // stream writer and of the ring buffer based writer. It is not run as part of the build.
+    NamespaceId namespace = new NamespaceId("namespace");
+    StreamAdmin streamAdmin = new TestStreamAdmin(getNamespacedLocationFactory(), Long.MAX_VALUE, 1000);
+    StreamFileWriterFactory fileWriterFactory = createStreamFileWriterFactory();
+    int threads = Runtime.getRuntime().availableProcessors() * 8;
+    int msgPerThread = 20000;
+
+    StreamConfig baselineConfig = streamAdmin.getConfig(namespace.stream("testBaselineThroughput"));
+    baselineConfig.getLocation().mkdirs();
+    final BaselineStreamWriter baselineWriter = new BaselineStreamWriter(
+      fileWriterFactory.create(baselineConfig, StreamUtils.getGeneration(baselineConfig)));
+    long baselineRate;
+    try {
+      baselineRate = measureThroughput(threads, msgPerThread, new SmallEventWriter() {
+        @Override
+        public void write(ByteBuffer body) throws Exception {
+          baselineWriter.enqueue(ImmutableMap.<String, String>of(), body);
+        }
+      });
+    } finally {
+      baselineWriter.close();
+    }
+
+    final StreamId streamId = namespace.stream("testWriteThroughput");
+    final ConcurrentStreamWriter streamWriter = createStreamWriter(streamId, streamAdmin, threads, fileWriterFactory);
+    long rate;
+    try {
+      rate = measureThroughput(threads, msgPerThread, new SmallEventWriter() {
+        @Override
+        public void write(ByteBuffer body) throws Exception {
+          streamWriter.enqueue(streamId, ImmutableMap.<String, String>of(), body);
+        }
+      });
+    } finally {
+      streamWriter.close();
+    }
+
+    LOG.info("Small events from {} threads: baseline writer {} events/sec, ring buffer writer {} events/sec ({}x)",
+             threads, baselineRate, rate, String.format("%.2f", (double) rate / Math.max(1L, baselineRate)));
+  }
+
   @Test
   public void testConcurrentAppendFile() throws Exception {
     final String streamName = "testConcurrentFile";
@@ -264,6 +368,72 @@ public abstract class ConcurrentStreamWriterTestBase {
     };
   }
 
+  private Runnable createSmallEventsWriterTask(final StreamId streamId, final ConcurrentStreamWriter streamWriter,
+                                               final int threadId, final int msgCount,
+                                               @Nullable final Executor asyncExecutor,
+                                               final CountDownLatch startLatch, final CountDownLatch completion) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        try {
+          startLatch.await();
+          for (int j = 0; j < msgCount; j++) {
+            ByteBuffer body = Charsets.UTF_8.encode("Message " + j + " from " + threadId);
+            if (asyncExecutor == null) {
+              streamWriter.enqueue(streamId, ImmutableMap.<String, String>of(), body);
+            } else {
+              streamWriter.asyncEnqueue(streamId, ImmutableMap.<String, String>of(), body, asyncExecutor);
+            }
+          }
+        } catch (Exception e) {
+          LOG.error("Failed to write", e);
+        } finally {
+          completion.countDown();
+        }
+      }
+    };
+  }
+
+  /**
+   * Writes small events with the given writer from the given number of threads and returns the events per second.
+   */
+  private long measureThroughput(int threads, final int msgPerThread, final SmallEventWriter writer) throws Exception {
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    final CountDownLatch completion = new CountDownLatch(threads);
+    final AtomicInteger failures = new AtomicInteger(0);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (int i = 0; i < threads; i++) {
+        final int threadId = i;
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              startLatch.await();
+              for (int j = 0; j < msgPerThread; j++) {
+                writer.write(Charsets.UTF_8.encode("Message " + j + " from " + threadId));
+              }
+            } catch (Exception e) {
+              LOG.error("Failed to write", e);
+              failures.incrementAndGet();
+            } finally {
+              completion.countDown();
+            }
+          }
+        });
+      }
+
+      Stopwatch stopwatch = new Stopwatch().start();
+      startLatch.countDown();
+      Assert.assertTrue(completion.await(10, TimeUnit.MINUTES));
+      stopwatch.stop();
+      Assert.assertEquals(0, failures.get());
+      return (long) threads * msgPerThread * 1000 / Math.max(1L, stopwatch.elapsedMillis());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   private Runnable createAppendFileTask(final StreamId streamId,
                                         final ConcurrentStreamWriter streamWriter, final FileInfo fileInfo,
                                         final CountDownLatch startLatch, final CountDownLatch completion) {
@@ -306,6 +476,10 @@ public abstract class ConcurrentStreamWriterTestBase {
     return new FileInfo(eventLocation, indexLocation, writer, events);
   }
 
+  private interface SmallEventWriter {
+    void write(ByteBuffer body) throws Exception;
+  }
+
   private static final class FileInfo {
     private final Location eventLocation;
     private final Location indexLocation;
@@ -26,16 +26,19 @@ import co.cask.cdap.data.stream.decoder.FormatStreamEventDecoder;
 import co.cask.cdap.data.stream.decoder.IdentityStreamEventDecoder;
 import co.cask.cdap.data.stream.decoder.StringStreamEventDecoder;
 import co.cask.cdap.data.stream.decoder.TextStreamEventDecoder;
+import co.cask.cdap.format.DelimitedStringsRecordFormat;
 import co.cask.cdap.format.RecordFormats;
 import co.cask.cdap.internal.io.SchemaTypeAdapter;
 import co.cask.cdap.proto.id.StreamId;
 import co.cask.cdap.proto.security.Principal;
 import co.cask.cdap.security.spi.authentication.AuthenticationContext;
 import co.cask.cdap.security.spi.authorization.AuthorizationEnforcer;
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.BytesWritable;
@@ -49,7 +52,13 @@ import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nullable;
 
 /**
@@ -108,6 +117,10 @@ public abstract class AbstractStreamInputFormat<K, V> extends InputFormat<K, V>
   private static final String DECODER_TYPE = "input.streaminputformat.decoder.type";
   private static final String BODY_FORMAT = "input.streaminputformat.stream.body.format";
   private static final String STREAM_ID = "input.streaminputformat.stream.id";
+  private static final String BODY_PROJECTION = "input.streaminputformat.stream.body.projection";
+  private static final String BODY_FILTER = "input.streaminputformat.stream.body.filter";
+  private static final Type STRING_LIST_TYPE = new TypeToken<List<String>>() { }.getType();
+  private static final Type STRING_MAP_TYPE = new TypeToken<Map<String, String>>() { }.getType();
 
   /**
    * Sets the TTL for the stream events.
@@ -207,6 +220,32 @@ public abstract class AbstractStreamInputFormat<K, V> extends InputFormat<K, V>
     setDecoderClassName(conf, FormatStreamEventDecoder.class.getName());
   }
 
+  /**
+   * Sets the fields of the body record to read, when the body is read with a format set by
+   * {@link #setBodyFormatSpecification(Configuration, FormatSpecification)}. The body records will only contain
+   * the given fields. Formats that support projection, such as CSV and TSV, will only parse those fields.
+   *
+   * @param conf The job configuration.
+   * @param fields Names of the fields to read.
+   */
+  public static void setBodyProjection(Configuration conf, Collection<String> fields) {
+    Preconditions.checkArgument(!fields.isEmpty(), "Projection must contain at least one field");
+    conf.set(BODY_PROJECTION, GSON.toJson(fields, STRING_LIST_TYPE));
+  }
+
+  /**
+   * Sets a filter on the body record, when the body is read with a format set by
+   * {@link #setBodyFormatSpecification(Configuration, FormatSpecification)}. Only events with body records that have
+   * the string representation of each given field equal to the given value are read. The filter fields don't need
+   * to be part of the projection set by {@link #setBodyProjection(Configuration, Collection)}.
+   *
+   * @param conf The job configuration.
+   * @param fieldValues Map from field name to the required field value.
+   */
+  public static void setBodyFilter(Configuration conf, Map<String, String> fieldValues) {
+    conf.set(BODY_FILTER, GSON.toJson(fieldValues, STRING_MAP_TYPE));
+  }
+
   /**
    * Tries to set the {@link AbstractStreamInputFormat#DECODER_TYPE} depending upon the supplied value class
    *
@@ -267,6 +306,7 @@ public abstract class AbstractStreamInputFormat<K, V> extends InputFormat<K, V>
   public RecordReader<K, V> createRecordReader(InputSplit split,
                                                TaskAttemptContext context) throws IOException, InterruptedException {
     return new StreamRecordReader<>(createStreamEventDecoder(context.getConfiguration()),
+                                    createBodyFilter(context.getConfiguration()),
                                     getAuthorizationEnforcer(context),
                                     getAuthenticationContext(context),
                                     GSON.fromJson(context.getConfiguration().get(STREAM_ID), StreamId.class));
@@ -285,7 +325,8 @@ public abstract class AbstractStreamInputFormat<K, V> extends InputFormat<K, V>
       // to format the stream body.
       if (decoderClass.isAssignableFrom(FormatStreamEventDecoder.class)) {
         try {
-          RecordFormat<StreamEvent, V> bodyFormat = getInitializedFormat(conf);
+          RecordFormat<StreamEvent, V> bodyFormat = getInitializedFormat(conf, getBodyProjection(conf),
+                                                                         getBodyFilter(conf).keySet());
           return (StreamEventDecoder<K, V>) new FormatStreamEventDecoder(bodyFormat);
         } catch (Exception e) {
           throw new IllegalArgumentException("Unable to get the stream body format.");
@@ -298,7 +339,33 @@ public abstract class AbstractStreamInputFormat<K, V> extends InputFormat<K, V>
     }
   }
 
-  private RecordFormat<StreamEvent, V> getInitializedFormat(Configuration conf)
+  /**
+   * Creates the filter for the events decoded with a body format, or returns {@code null} if there is no projection
+   * and no filter set for the body.
+   */
+  @Nullable
+  private StreamBodyFilter createBodyFilter(Configuration conf) {
+    List<String> projection = getBodyProjection(conf);
+    Map<String, String> filter = getBodyFilter(conf);
+    if (!FormatStreamEventDecoder.class.getName().equals(conf.get(DECODER_TYPE))
+      || (projection == null && filter.isEmpty())) {
+      return null;
+    }
+    return new StreamBodyFilter(projection, filter);
+  }
+
+  @Nullable
+  private static List<String> getBodyProjection(Configuration conf) {
+    return GSON.fromJson(conf.get(BODY_PROJECTION), STRING_LIST_TYPE);
+  }
+
+  private static Map<String, String> getBodyFilter(Configuration conf) {
+    Map<String, String> filter = GSON.fromJson(conf.get(BODY_FILTER), STRING_MAP_TYPE);
+    return filter == null ? Collections.<String, String>emptyMap() : filter;
+  }
+
+  private RecordFormat<StreamEvent, V> getInitializedFormat(Configuration conf, @Nullable List<String> projection,
+                                                            Set<String> filterFields)
     throws UnsupportedTypeException, IllegalAccessException, ClassNotFoundException, InstantiationException {
     String formatSpecStr = conf.get(BODY_FORMAT);
     if (formatSpecStr == null || formatSpecStr.isEmpty()) {
@@ -306,6 +373,18 @@ public abstract class AbstractStreamInputFormat<K, V> extends InputFormat<K, V>
         BODY_FORMAT + " must be set in the configuration in order to use a format for the stream body.");
     }
     FormatSpecification formatSpec = GSON.fromJson(formatSpecStr, FormatSpecification.class);
+    if (projection != null) {
+      // Let the format parse only the projected fields and the fields needed by the filter.
+      // Formats that don't support projection ignore the setting, and the decoder does the projection instead.
+      Set<String> readFields = new LinkedHashSet<>(projection);
+      readFields.addAll(filterFields);
+      Map<String, String> settings = new HashMap<>();
+      if (formatSpec.getSettings() != null) {
+        settings.putAll(formatSpec.getSettings());
+      }
+      settings.put(DelimitedStringsRecordFormat.PROJECTION, Joiner.on(',').join(readFields));
+      formatSpec = new FormatSpecification(formatSpec.getName(), formatSpec.getSchema(), settings);
+    }
     return RecordFormats.createInitializedFormat(formatSpec);
   }
 }
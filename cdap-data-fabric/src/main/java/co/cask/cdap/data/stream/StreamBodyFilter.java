@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data.stream;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.stream.GenericStreamEventData;
+import co.cask.cdap.api.stream.StreamEventDecoder;
+import co.cask.cdap.data.stream.decoder.FormatStreamEventDecoder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Filters and projects the body records of the stream events decoded by a {@link FormatStreamEventDecoder}.
+ * This is applied by the {@link StreamRecordReader}, which skips the events rejected by the filter, since the
+ * filter can depend on fields that are not part of the projection.
+ */
+final class StreamBodyFilter {
+
+  private final Set<String> projection;
+  private final Map<String, String> fieldValues;
+
+  // schema of the last body record, and the schema of its projection
+  private Schema recordSchema;
+  private Schema projectedSchema;
+
+  /**
+   * Creates a filter.
+   *
+   * @param projection Names of the body record fields to keep, or {@code null} to keep all fields.
+   * @param fieldValues Map from body record field name to the string representation that the field value must have.
+   */
+  StreamBodyFilter(@Nullable Collection<String> projection, Map<String, String> fieldValues) {
+    this.projection = projection == null ? null : ImmutableSet.copyOf(projection);
+    this.fieldValues = ImmutableMap.copyOf(fieldValues);
+  }
+
+  /**
+   * Applies the filter to a decoded stream event, and replaces the body of an accepted event with its projection.
+   * Bodies that are not {@link StructuredRecord} are always accepted as they are.
+   *
+   * @return {@code true} if the event is accepted, {@code false} if it should be skipped.
+   */
+  @SuppressWarnings("unchecked")
+  <K, V> boolean apply(StreamEventDecoder.DecodeResult<K, V> result) {
+    if (!(result.getValue() instanceof GenericStreamEventData)) {
+      return true;
+    }
+    GenericStreamEventData<?> data = (GenericStreamEventData<?>) result.getValue();
+    if (!(data.getBody() instanceof StructuredRecord)) {
+      return true;
+    }
+    StructuredRecord record = (StructuredRecord) data.getBody();
+    if (!accept(record)) {
+      return false;
+    }
+    if (projection != null) {
+      result.setValue((V) new GenericStreamEventData<>(data.getHeaders(), project(record)));
+    }
+    return true;
+  }
+
+  private boolean accept(StructuredRecord record) {
+    for (Map.Entry<String, String> entry : fieldValues.entrySet()) {
+      Object value = record.get(entry.getKey());
+      if (value == null || !entry.getValue().equals(value.toString())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private StructuredRecord project(StructuredRecord record) {
+    // Formats return records of the same schema instance, hence the projected schema is only computed once
+    if (record.getSchema() != recordSchema) {
+      recordSchema = record.getSchema();
+      projectedSchema = getProjectedSchema(recordSchema);
+    }
+    // The format might already have done the projection
+    if (projectedSchema.getFields().size() == recordSchema.getFields().size()) {
+      return record;
+    }
+    StructuredRecord.Builder builder = StructuredRecord.builder(projectedSchema);
+    for (Schema.Field field : projectedSchema.getFields()) {
+      builder.set(field.getName(), record.get(field.getName()));
+    }
+    return builder.build();
+  }
+
+  private Schema getProjectedSchema(Schema schema) {
+    List<Schema.Field> fields = new ArrayList<>();
+    for (Schema.Field field : schema.getFields()) {
+      if (projection.contains(field.getName())) {
+        fields.add(field);
+      }
+    }
+    return Schema.recordOf(schema.getRecordName(), fields);
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import java.io.IOException;
+
+/**
+ * A codec for compressing data blocks in stream event files. Implementations must have a public default constructor,
+ * as they are instantiated by {@link StreamDataBlockCodecs} when reading and writing stream files.
+ *
+ * @see StreamDataFileWriter
+ */
+public interface StreamDataBlockCodec {
+
+  /**
+   * Returns the maximum number of bytes that compressing the given number of bytes can produce.
+   */
+  int maxCompressedLength(int length);
+
+  /**
+   * Compresses the given data.
+   *
+   * @param input the array containing the data to compress
+   * @param inputOffset offset of the data in the input array
+   * @param inputLength number of bytes to compress
+   * @param output the array to write the compressed data to, with at least {@link #maxCompressedLength(int)} bytes
+   *               available after the output offset
+   * @param outputOffset offset in the output array to write to
+   * @return number of bytes written to the output array
+   * @throws IOException if failed to compress
+   */
+  int compress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset) throws IOException;
+
+  /**
+   * Decompresses the given data.
+   *
+   * @param input the array containing the compressed data
+   * @param inputOffset offset of the compressed data in the input array
+   * @param inputLength number of bytes of the compressed data
+   * @param output the array to write the decompressed data to
+   * @param outputOffset offset in the output array to write to
+   * @param outputLength number of bytes of the decompressed data
+   * @throws IOException if failed to decompress or if the decompressed data is not of the given length
+   */
+  void decompress(byte[] input, int inputOffset, int inputLength,
+                  byte[] output, int outputOffset, int outputLength) throws IOException;
+}
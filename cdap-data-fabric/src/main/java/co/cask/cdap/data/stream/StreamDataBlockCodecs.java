@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import com.google.common.base.Strings;
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+
+/**
+ * Factory for {@link StreamDataBlockCodec}. Codecs are referred to by name, which is either one of the built-in codec
+ * names or the fully qualified class name of a {@link StreamDataBlockCodec} implementation.
+ */
+public final class StreamDataBlockCodecs {
+
+  public static final String NONE = "none";
+  public static final String SNAPPY = "snappy";
+  public static final String DEFLATE = "deflate";
+
+  /**
+   * Creates a {@link StreamDataBlockCodec} of the given name.
+   *
+   * @param name name of the codec
+   * @return a new {@link StreamDataBlockCodec} or {@code null} if the name is empty or {@link #NONE}
+   * @throws IllegalArgumentException if there is no codec of the given name
+   */
+  @Nullable
+  public static StreamDataBlockCodec create(@Nullable String name) {
+    if (Strings.isNullOrEmpty(name) || NONE.equals(name)) {
+      return null;
+    }
+    if (SNAPPY.equals(name)) {
+      return new SnappyCodec();
+    }
+    if (DEFLATE.equals(name)) {
+      return new DeflateCodec();
+    }
+
+    try {
+      // Load without initialization so that the static initializer of an arbitrary class doesn't run
+      // before it is verified to be a codec
+      Class<?> codecClass = Class.forName(name, false, StreamDataBlockCodecs.class.getClassLoader());
+      if (!StreamDataBlockCodec.class.isAssignableFrom(codecClass)) {
+        throw new IllegalArgumentException("Class " + name + " is not a " + StreamDataBlockCodec.class.getName());
+      }
+      return codecClass.asSubclass(StreamDataBlockCodec.class).newInstance();
+    } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+      throw new IllegalArgumentException("Unknown stream compression codec " + name, e);
+    }
+  }
+
+  /**
+   * A {@link StreamDataBlockCodec} using Snappy.
+   */
+  private static final class SnappyCodec implements StreamDataBlockCodec {
+
+    @Override
+    public int maxCompressedLength(int length) {
+      return Snappy.maxCompressedLength(length);
+    }
+
+    @Override
+    public int compress(byte[] input, int inputOffset, int inputLength,
+                        byte[] output, int outputOffset) throws IOException {
+      return Snappy.compress(input, inputOffset, inputLength, output, outputOffset);
+    }
+
+    @Override
+    public void decompress(byte[] input, int inputOffset, int inputLength,
+                           byte[] output, int outputOffset, int outputLength) throws IOException {
+      int length = Snappy.uncompress(input, inputOffset, inputLength, output, outputOffset);
+      if (length != outputLength) {
+        throw new IOException("Expected to decompress " + outputLength + " bytes, but got " + length + " bytes");
+      }
+    }
+  }
+
+  /**
+   * A {@link StreamDataBlockCodec} using raw deflate from the JDK.
+   */
+  private static final class DeflateCodec implements StreamDataBlockCodec {
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final Inflater inflater = new Inflater(true);
+
+    @Override
+    public int maxCompressedLength(int length) {
+      // Same bound as zlib's compressBound(), which also covers the block overhead of raw deflate
+      return length + (length >>> 12) + (length >>> 14) + (length >>> 25) + 13;
+    }
+
+    @Override
+    public int compress(byte[] input, int inputOffset, int inputLength,
+                        byte[] output, int outputOffset) throws IOException {
+      deflater.reset();
+      deflater.setInput(input, inputOffset, inputLength);
+      deflater.finish();
+      int length = 0;
+      while (!deflater.finished()) {
+        int len = deflater.deflate(output, outputOffset + length, output.length - outputOffset - length);
+        if (len == 0 && !deflater.finished()) {
+          throw new IOException("Insufficient output buffer for compressing " + inputLength + " bytes");
+        }
+        length += len;
+      }
+      return length;
+    }
+
+    @Override
+    public void decompress(byte[] input, int inputOffset, int inputLength,
+                           byte[] output, int outputOffset, int outputLength) throws IOException {
+      inflater.reset();
+      inflater.setInput(input, inputOffset, inputLength);
+      int length = 0;
+      try {
+        while (length < outputLength && !inflater.finished()) {
+          int len = inflater.inflate(output, outputOffset + length, outputLength - length);
+          if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          length += len;
+        }
+      } catch (DataFormatException e) {
+        throw new IOException("Failed to decompress deflate data", e);
+      }
+      if (length != outputLength) {
+        throw new IOException("Expected to decompress " + outputLength + " bytes, but got " + length + " bytes");
+      }
+    }
+  }
+
+  private StreamDataBlockCodecs() {
+  }
+}
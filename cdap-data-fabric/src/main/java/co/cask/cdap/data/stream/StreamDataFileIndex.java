@@ -17,8 +17,9 @@ package co.cask.cdap.data.stream;
 
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.common.io.BinaryDecoder;
-import com.google.common.collect.Maps;
+import co.cask.cdap.common.io.SeekableInputStream;
 import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
 import com.google.common.io.InputSupplier;
 import com.google.common.primitives.Longs;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
@@ -28,24 +29,31 @@ import it.unimi.dsi.fastutil.longs.LongLists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Map;
 
 /**
- * This class is for loading stream index file and lookup of the index.
+ * This class is for lookup of the stream index file.
+ *
+ * The index file contains fixed size (timestamp, position) entries, sorted by both timestamp and position, after
+ * a header. If the index input is seekable, lookups are done by binary search directly on the index file, which
+ * only reads O(log n) entries instead of loading the whole index. Otherwise the whole index is loaded into memory
+ * on first lookup.
  */
 final class StreamDataFileIndex {
 
   private static final Logger LOG = LoggerFactory.getLogger(StreamDataFileIndex.class);
 
   private static final byte[] INDEX_MAGIC_HEADER = {'I', '1'};
+  private static final int ENTRY_SIZE = Longs.BYTES * 2;
+
+  private final InputSupplier<? extends InputStream> indexInputSupplier;
 
-  // Parallel array list for holding timestamps and corresponding positions in the index.
-  private final LongList timestamps;
-  private final LongList positions;
+  // Index entries loaded into memory, only used if the index input is not seekable.
+  private MemoryIndexEntries memoryEntries;
 
   /**
    * Constructs with the given input.
@@ -53,24 +61,7 @@ final class StreamDataFileIndex {
    * @param indexInputSupplier Provides {@link InputStream} for reading the index.
    */
   StreamDataFileIndex(InputSupplier<? extends InputStream> indexInputSupplier) {
-    LongList timestamps;
-    LongList positions;
-
-    // Load the whole index into memory.
-    try {
-      Map.Entry<LongList, LongList> index;
-      try (InputStream indexInput = indexInputSupplier.getInput()) {
-        index = loadIndex(indexInput);
-      }
-      timestamps = LongLists.unmodifiable(index.getKey());
-      positions = LongLists.unmodifiable(index.getValue());
-    } catch (IOException e) {
-      LOG.error("Failed to load stream index. Default to empty index.", e);
-      timestamps = LongLists.EMPTY_LIST;
-      positions = LongLists.EMPTY_LIST;
-    }
-    this.timestamps = timestamps;
-    this.positions = positions;
+    this.indexInputSupplier = indexInputSupplier;
   }
 
   /**
@@ -81,19 +72,24 @@ final class StreamDataFileIndex {
    * @return The file position or {@code -1} if no record satisfied the requirement can be found.
    */
   long floorPositionByTime(long timestamp) {
-    if (timestamps.isEmpty()) {
-      return -1;
-    }
+    try (IndexEntries entries = openEntries()) {
+      if (entries.size() == 0) {
+        return -1;
+      }
 
-    // Binary search for a timestamp that is larger than or equals to the given timestamp.
-    int idx = binarySearch(timestamps, timestamp);
-    if (idx >= 0) {
-      return positions.getLong(idx);
-    }
+      // Binary search for a timestamp that is larger than or equals to the given timestamp.
+      long idx = binarySearch(entries, timestamp, true);
+      if (idx >= 0) {
+        return entries.getPosition(idx);
+      }
 
-    // Return the position that has smaller timestamp than the one to search for.
-    // If every timestamp in the index is larger than the given one, return -1.
-    return idx == -1 ? -1 : positions.getLong(-idx - 2);
+      // Return the position that has smaller timestamp than the one to search for.
+      // If every timestamp in the index is larger than the given one, return -1.
+      return idx == -1 ? -1 : entries.getPosition(-idx - 2);
+    } catch (IOException e) {
+      LOG.error("Failed to lookup stream index. Default to empty index.", e);
+      return -1;
+    }
   }
 
   /**
@@ -104,24 +100,37 @@ final class StreamDataFileIndex {
    *
    */
   long floorPosition(long offset) {
-    if (positions.isEmpty()) {
-      return 0L;
-    }
+    try (IndexEntries entries = openEntries()) {
+      if (entries.size() == 0) {
+        return 0L;
+      }
 
-    int idx = binarySearch(positions, offset);
-    if (idx >= 0) {
-      return offset;
-    }
+      long idx = binarySearch(entries, offset, false);
+      if (idx >= 0) {
+        return offset;
+      }
 
-    return idx == -1 ? 0 : positions.getLong(-idx - 2);
+      return idx == -1 ? 0 : entries.getPosition(-idx - 2);
+    } catch (IOException e) {
+      LOG.error("Failed to lookup stream index. Default to empty index.", e);
+      return 0L;
+    }
   }
 
   /**
    * Returns a {@link StreamDataFileIndexIterator} for iterating over all (timestamp, position) pairs.
+   * The whole index is loaded into memory.
    */
   StreamDataFileIndexIterator indexIterator() {
-    final LongListIterator timestampIter = timestamps.iterator();
-    final LongListIterator positionIter = positions.iterator();
+    MemoryIndexEntries entries;
+    try {
+      entries = loadEntries();
+    } catch (IOException e) {
+      LOG.error("Failed to load stream index. Default to empty index.", e);
+      entries = new MemoryIndexEntries(LongLists.EMPTY_LIST, LongLists.EMPTY_LIST);
+    }
+    final LongListIterator timestampIter = entries.timestamps.iterator();
+    final LongListIterator positionIter = entries.positions.iterator();
 
     return new StreamDataFileIndexIterator() {
 
@@ -151,16 +160,17 @@ final class StreamDataFileIndex {
   }
 
   /**
-   * Same contract as {@link Collections#binarySearch(java.util.List, Object)}, except that it works on LongList.
+   * Same contract as {@link Collections#binarySearch(java.util.List, Object)}, except that it works on
+   * either the timestamps or the positions of the index entries.
    */
-  private int binarySearch(LongList list, long target) {
+  private long binarySearch(IndexEntries entries, long target, boolean byTimestamp) throws IOException {
     // Binary search for a value that is larger than or equals to the given target
-    int low = 0;
-    int high = list.size() - 1;
+    long low = 0;
+    long high = entries.size() - 1;
 
     while (low <= high) {
-      int mid = ((high - low) >> 1) + low;
-      long value = list.getLong(mid);
+      long mid = ((high - low) >> 1) + low;
+      long value = byTimestamp ? entries.getTimestamp(mid) : entries.getPosition(mid);
 
       if (value < target) {
         low = mid + 1;
@@ -175,7 +185,41 @@ final class StreamDataFileIndex {
     return -(low + 1);
   }
 
-  private Map.Entry<LongList, LongList> loadIndex(InputStream input) throws IOException {
+  /**
+   * Opens the index entries for lookup. The returned {@link IndexEntries} must be closed after the lookup.
+   */
+  private IndexEntries openEntries() throws IOException {
+    if (memoryEntries != null) {
+      return memoryEntries;
+    }
+
+    InputStream input = indexInputSupplier.getInput();
+    try {
+      readHeader(input);
+      if (input instanceof SeekableInputStream) {
+        SeekableInputStream seekableInput = (SeekableInputStream) input;
+        long size = seekableInput.size();
+        if (size >= 0) {
+          return new SeekableIndexEntries(seekableInput, seekableInput.getPos(), size);
+        }
+      }
+      memoryEntries = readEntries(input);
+      input.close();
+      return memoryEntries;
+    } catch (IOException e) {
+      Closeables.closeQuietly(input);
+      throw e;
+    }
+  }
+
+  private MemoryIndexEntries loadEntries() throws IOException {
+    try (InputStream input = indexInputSupplier.getInput()) {
+      readHeader(input);
+      return readEntries(input);
+    }
+  }
+
+  private void readHeader(InputStream input) throws IOException {
     byte[] magic = new byte[INDEX_MAGIC_HEADER.length];
     ByteStreams.readFully(input, magic);
 
@@ -185,17 +229,121 @@ final class StreamDataFileIndex {
 
     // Decode the properties map. In current version, it is not used.
     StreamUtils.decodeMap(new BinaryDecoder(input));
+  }
 
+  private MemoryIndexEntries readEntries(InputStream input) throws IOException {
     // Read in all index (timestamp, position pairs).
     LongList timestamps = new LongArrayList(1000);
     LongList positions = new LongArrayList(1000);
-    byte[] buf = new byte[Longs.BYTES * 2];
+    byte[] buf = new byte[ENTRY_SIZE];
 
     while (ByteStreams.read(input, buf, 0, buf.length) == buf.length) {
       timestamps.add(Bytes.toLong(buf, 0));
       positions.add(Bytes.toLong(buf, Longs.BYTES));
     }
 
-    return Maps.immutableEntry(timestamps, positions);
+    return new MemoryIndexEntries(LongLists.unmodifiable(timestamps), LongLists.unmodifiable(positions));
+  }
+
+  /**
+   * Provides random access to the index entries.
+   */
+  private interface IndexEntries extends Closeable {
+
+    /**
+     * Returns the number of entries.
+     */
+    long size();
+
+    long getTimestamp(long idx) throws IOException;
+
+    long getPosition(long idx) throws IOException;
+  }
+
+  /**
+   * {@link IndexEntries} loaded into memory.
+   */
+  private static final class MemoryIndexEntries implements IndexEntries {
+
+    // Parallel array list for holding timestamps and corresponding positions in the index.
+    private final LongList timestamps;
+    private final LongList positions;
+
+    private MemoryIndexEntries(LongList timestamps, LongList positions) {
+      this.timestamps = timestamps;
+      this.positions = positions;
+    }
+
+    @Override
+    public long size() {
+      return timestamps.size();
+    }
+
+    @Override
+    public long getTimestamp(long idx) {
+      return timestamps.getLong((int) idx);
+    }
+
+    @Override
+    public long getPosition(long idx) {
+      return positions.getLong((int) idx);
+    }
+
+    @Override
+    public void close() {
+      // no-op
+    }
+  }
+
+  /**
+   * {@link IndexEntries} that reads entries from the index file on demand.
+   */
+  private static final class SeekableIndexEntries implements IndexEntries {
+
+    private final SeekableInputStream input;
+    private final long entriesStart;
+    private final long size;
+    private final byte[] buf;
+    private long bufIdx;
+
+    private SeekableIndexEntries(SeekableInputStream input, long entriesStart, long fileSize) {
+      this.input = input;
+      this.entriesStart = entriesStart;
+      // The index file can be partially written at the end while it is being appended to
+      this.size = Math.max(0L, (fileSize - entriesStart) / ENTRY_SIZE);
+      this.buf = new byte[ENTRY_SIZE];
+      this.bufIdx = -1L;
+    }
+
+    @Override
+    public long size() {
+      return size;
+    }
+
+    @Override
+    public long getTimestamp(long idx) throws IOException {
+      readEntry(idx);
+      return Bytes.toLong(buf, 0);
+    }
+
+    @Override
+    public long getPosition(long idx) throws IOException {
+      readEntry(idx);
+      return Bytes.toLong(buf, Longs.BYTES);
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+
+    private void readEntry(long idx) throws IOException {
+      if (idx == bufIdx) {
+        return;
+      }
+      input.seek(entriesStart + idx * ENTRY_SIZE);
+      ByteStreams.readFully(input, buf);
+      bufIdx = idx;
+    }
   }
 }
@@ -300,6 +300,14 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
 
     verifySchema(properties);
 
+    // Data blocks are compressed if the file has the compression property
+    try {
+      streamEventBuffer.setCodec(
+        StreamDataBlockCodecs.create(properties.get(StreamDataFileConstants.Property.Key.COMPRESSION)));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Unsupported stream file compression", e);
+    }
+
     // Create event template
     if (fileVersion >= 2) {
       eventTemplate = createEventTemplate(properties);
@@ -23,6 +23,7 @@ import co.cask.cdap.common.io.BufferedEncoder;
 import co.cask.cdap.common.io.Encoder;
 import co.cask.cdap.common.stream.StreamEventDataCodec;
 import co.cask.cdap.data.file.FileWriter;
+import co.cask.cdap.data.stream.StreamDataFileConstants.Property;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
@@ -32,11 +33,13 @@ import com.google.common.io.OutputSupplier;
 import com.google.common.primitives.Longs;
 import org.apache.hadoop.fs.Syncable;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Iterator;
 import java.util.Map;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
@@ -59,6 +62,26 @@ import javax.annotation.concurrent.NotThreadSafe;
  * }
  * </pre>
  *
+ * If the {@link StreamDataFileConstants.Property.Key#COMPRESSION} property is set, the events in each data block
+ * are compressed with the {@link StreamDataBlockCodec} of that name:
+ *
+ * <pre>
+ * {@code
+ *
+ * data = <timestamp> <length> <compressed_block>
+ * length = Avro encoded int32 for size in bytes of the <compressed_block>
+ * compressed_block = <uncompressed_length> <compressed_length> <compressed_data> <padding>
+ * uncompressed_length = Avro encoded int32 for size in bytes for all <stream_event>s
+ * compressed_length = Avro encoded int32 for size in bytes of the <compressed_data>
+ * compressed_data = <stream_event>+ compressed by the codec
+ * padding = zero bytes, such that <compressed_block> is at least as long as the number of <stream_event>s
+ *
+ * }
+ * </pre>
+ *
+ * The position of the n-th event in a compressed block is the position of the {@code <compressed_block>} plus n.
+ * The padding guarantees that event positions are unique and smaller than the position of the next data block.
+ *
  * Stream index file:
  *
  * <pre>
@@ -84,9 +107,15 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   private final long indexInterval;
   private final BufferedEncoder encoder;
   private final BufferedEncoder lengthEncoder;
+  @Nullable
+  private final StreamDataBlockCodec codec;
+  private final BlockBuffer blockBuffer;
+  private byte[] compressedBuffer;
 
   // Timestamp for the current block
   private long currentTimestamp;
+  // Number of events in the current block
+  private int blockEvents;
   private long position;
   private long nextIndexTime;
   private boolean synced;
@@ -110,12 +139,17 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
    * @param eventOutputSupplier the provider of the {@link OutputStream} for writing events
    * @param indexOutputSupplier the provider of the {@link OutputStream} for writing the index
    * @param indexInterval the time interval in milliseconds for emitting a new index entry
-   * @param properties the property set that will be stored as file properties
+   * @param properties the property set that will be stored as file properties. The data blocks are compressed
+   *                   if it contains the {@link Property.Key#COMPRESSION} property
    * @throws IOException if there is an error in preparing the output streams
+   * @throws IllegalArgumentException if the compression codec is unknown
    */
   public StreamDataFileWriter(OutputSupplier<? extends OutputStream> eventOutputSupplier,
                               OutputSupplier<? extends OutputStream> indexOutputSupplier,
                               long indexInterval, Map<String, String> properties) throws IOException {
+    this.codec = StreamDataBlockCodecs.create(properties.get(Property.Key.COMPRESSION));
+    this.blockBuffer = new BlockBuffer();
+    this.compressedBuffer = Bytes.EMPTY_BYTE_ARRAY;
     this.eventOutput = eventOutputSupplier.getOutput();
     try {
       this.indexOutput = indexOutputSupplier.getOutput();
@@ -222,6 +256,7 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
       // Encodes the event data into buffer.
       StreamEventDataCodec.encode(event, encoder);
+      blockEvents++;
 
       // Optionally flush if already filled up the buffer.
       if (encoder.size() >= flushLimit) {
@@ -278,16 +313,21 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       indexOffset = position - Bytes.SIZEOF_LONG;
     }
 
-    // Writes the size of the encoded event
-    lengthEncoder.writeInt(encoder.size());
-    int size = lengthEncoder.size();
-    lengthEncoder.writeTo(eventOutput);
-    position += size;
-
-    // Writes all encoded data from the buffer to the output.
-    size = encoder.size();
-    encoder.writeTo(eventOutput);
-    position += size;
+    if (codec == null) {
+      // Writes the size of the encoded event
+      lengthEncoder.writeInt(encoder.size());
+      int size = lengthEncoder.size();
+      lengthEncoder.writeTo(eventOutput);
+      position += size;
+
+      // Writes all encoded data from the buffer to the output.
+      size = encoder.size();
+      encoder.writeTo(eventOutput);
+      position += size;
+    } else {
+      writeCompressedBlock();
+    }
+    blockEvents = 0;
     if (sync) {
       sync(eventOutput);
     }
@@ -310,6 +350,37 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     synced = sync;
   }
 
+  /**
+   * Compresses the buffered data and writes it to the underlying output stream as a compressed block.
+   */
+  private void writeCompressedBlock() throws IOException {
+    int uncompressedLength = encoder.size();
+    blockBuffer.reset();
+    encoder.writeTo(blockBuffer);
+
+    int maxLength = codec.maxCompressedLength(uncompressedLength);
+    if (compressedBuffer.length < maxLength) {
+      compressedBuffer = new byte[maxLength];
+    }
+    int compressedLength = codec.compress(blockBuffer.getBuffer(), 0, uncompressedLength, compressedBuffer, 0);
+
+    // The block header is encoded in the data buffer, which is empty after the writeTo call above
+    encoder.writeInt(uncompressedLength);
+    encoder.writeInt(compressedLength);
+    int padding = Math.max(0, blockEvents - encoder.size() - compressedLength);
+    int blockLength = encoder.size() + compressedLength + padding;
+
+    lengthEncoder.writeInt(blockLength);
+    int size = lengthEncoder.size();
+    lengthEncoder.writeTo(eventOutput);
+    encoder.writeTo(eventOutput);
+    eventOutput.write(compressedBuffer, 0, compressedLength);
+    if (padding > 0) {
+      eventOutput.write(new byte[padding]);
+    }
+    position += size + blockLength;
+  }
+
   private void sync(OutputStream output) throws IOException {
     if (output instanceof Syncable) {
       ((Syncable) output).hsync();
@@ -329,6 +400,20 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     throw ex;
   }
 
+  /**
+   * A {@link ByteArrayOutputStream} that exposes its buffer.
+   */
+  private static final class BlockBuffer extends ByteArrayOutputStream {
+
+    BlockBuffer() {
+      super(BUFFER_SIZE);
+    }
+
+    byte[] getBuffer() {
+      return buf;
+    }
+  }
+
   private static Function<OutputStream, Encoder> createEncoderFactory() {
     return new Function<OutputStream, Encoder>() {
       @Override
@@ -28,11 +28,12 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Map;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
  * A buffer for holding encoded stream events. It is used by {@link StreamDataFileReader} for holding
- * encoded stream events in each data block.
+ * encoded stream events in each data block. Compressed data blocks are decompressed when filling the buffer.
  */
 @NotThreadSafe
 final class StreamEventBuffer {
@@ -42,14 +43,27 @@ final class StreamEventBuffer {
 
   private ByteBuffer buffer;
   private long basePosition;
+  private StreamDataBlockCodec codec;
+  private ByteBuffer compressedBuffer;
+  // Size of the data block in the stream and index of the next event in it, only used for compressed blocks
+  private int blockSize;
+  private int eventIndex;
 
   StreamEventBuffer() {
     this.buffer = ByteBuffers.EMPTY_BUFFER;
+    this.compressedBuffer = ByteBuffers.EMPTY_BUFFER;
     this.bufferInput = new ByteBufferInputStream(buffer);
     this.decoder = new BinaryDecoder(bufferInput);
     this.basePosition = -1L;
   }
 
+  /**
+   * Sets the codec for decompressing data blocks, or {@code null} if data blocks are not compressed.
+   */
+  void setCodec(@Nullable StreamDataBlockCodec codec) {
+    this.codec = codec;
+  }
+
   /**
    * Fills the internal buffer by reading from the given input stream.
    *
@@ -60,19 +74,16 @@ final class StreamEventBuffer {
    */
   void fillBuffer(SeekableInputStream input, int size) throws IOException {
     buffer.clear();
-    buffer = ensureCapacity(buffer, size);
 
     try {
       basePosition = input.getPos();
-      int bytesRead = 0;
-      while (bytesRead != size) {
-        int len = input.read(buffer.array(), bytesRead, size - bytesRead);
-        if (len < 0) {
-          throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
-        }
-        bytesRead += len;
+      if (codec == null) {
+        buffer = ensureCapacity(buffer, size);
+        readFully(input, buffer.array(), size);
+        buffer.limit(size);
+      } else {
+        fillDecompressed(input, size);
       }
-      buffer.limit(size);
       bufferInput.reset(buffer);
     } catch (IOException e) {
       // Make the buffer has nothing to read
@@ -94,7 +105,14 @@ final class StreamEventBuffer {
    * read from the stream.
    */
   long getPosition() {
-    return basePosition >= 0 ? basePosition + buffer.position() : -1L;
+    if (basePosition < 0) {
+      return -1L;
+    }
+    if (codec == null) {
+      return basePosition + buffer.position();
+    }
+    // Events in a compressed block are positioned by their index in the block
+    return hasEvent() ? basePosition + eventIndex : basePosition + blockSize;
   }
 
   /**
@@ -102,7 +120,10 @@ final class StreamEventBuffer {
    * been read from the stream.
    */
   long getEndPosition() {
-    return basePosition >= 0 ? basePosition + buffer.limit() : -1L;
+    if (basePosition < 0) {
+      return -1L;
+    }
+    return codec == null ? basePosition + buffer.limit() : basePosition + blockSize;
   }
 
   /**
@@ -120,7 +141,8 @@ final class StreamEventBuffer {
       throw new IOException("No more event in the buffer");
     }
 
-    long eventPos = basePosition + buffer.position();
+    long eventPos = getPosition();
+    eventIndex++;
     if (filter.acceptOffset(eventPos)) {
       return new PositionStreamEvent(StreamEventDataCodec.decode(decoder, defaultHeaders), timestamp, eventPos);
     }
@@ -128,6 +150,43 @@ final class StreamEventBuffer {
     return null;
   }
 
+  /**
+   * Reads a compressed data block of the given size from the given input and decompresses it into the buffer.
+   */
+  private void fillDecompressed(SeekableInputStream input, int size) throws IOException {
+    compressedBuffer.clear();
+    compressedBuffer = ensureCapacity(compressedBuffer, size);
+    readFully(input, compressedBuffer.array(), size);
+    compressedBuffer.limit(size);
+
+    // Decode the uncompressed and compressed lengths from the block header
+    bufferInput.reset(compressedBuffer);
+    int uncompressedLength = decoder.readInt();
+    int compressedLength = decoder.readInt();
+    int offset = compressedBuffer.position();
+    if (uncompressedLength < 0 || compressedLength < 0 || offset + compressedLength > size) {
+      throw new IOException("Invalid compressed block with uncompressed length " + uncompressedLength
+                              + " and compressed length " + compressedLength + " in block of size " + size);
+    }
+
+    buffer = ensureCapacity(buffer, uncompressedLength);
+    codec.decompress(compressedBuffer.array(), offset, compressedLength, buffer.array(), 0, uncompressedLength);
+    buffer.limit(uncompressedLength);
+    blockSize = size;
+    eventIndex = 0;
+  }
+
+  private void readFully(SeekableInputStream input, byte[] bytes, int size) throws IOException {
+    int bytesRead = 0;
+    while (bytesRead != size) {
+      int len = input.read(bytes, bytesRead, size - bytesRead);
+      if (len < 0) {
+        throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
+      }
+      bytesRead += len;
+    }
+  }
+
   /**
    * Ensures that the given {@link ByteBuffer} is of sufficient size.
    *
@@ -33,6 +33,7 @@ import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * A {@link RecordReader} for reading stream events.
@@ -43,6 +44,7 @@ import java.util.concurrent.TimeUnit;
 final class StreamRecordReader<K, V> extends RecordReader<K, V> {
 
   private final StreamEventDecoder<K, V> decoder;
+  private final StreamBodyFilter bodyFilter;
   private final List<PositionStreamEvent> events;
   private final Principal principal;
   private final StreamId streamId;
@@ -60,7 +62,21 @@ final class StreamRecordReader<K, V> extends RecordReader<K, V> {
    */
   StreamRecordReader(StreamEventDecoder<K, V> decoder, AuthorizationEnforcer authorizationEnforcer,
                      AuthenticationContext authenticationContext, StreamId streamId) {
+    this(decoder, null, authorizationEnforcer, authenticationContext, streamId);
+  }
+
+  /**
+   * Construct a {@link StreamRecordReader} with a given {@link StreamEventDecoder}, that skips the events rejected by
+   * the given {@link StreamBodyFilter}.
+   *
+   * @param decoder The decoder to use for decoding stream events.
+   * @param bodyFilter The filter to apply on the decoded events, or {@code null} to read all events.
+   */
+  StreamRecordReader(StreamEventDecoder<K, V> decoder, @Nullable StreamBodyFilter bodyFilter,
+                     AuthorizationEnforcer authorizationEnforcer, AuthenticationContext authenticationContext,
+                     StreamId streamId) {
     this.decoder = decoder;
+    this.bodyFilter = bodyFilter;
     this.events = Lists.newArrayListWithCapacity(1);
     this.currentEntry = new StreamEventDecoder.DecodeResult<>();
     this.authorizationEnforcer = authorizationEnforcer;
@@ -88,15 +104,17 @@ final class StreamRecordReader<K, V> extends RecordReader<K, V> {
       throw new IOException(e);
     }
 
-    events.clear();
-    if (reader.read(events, 1, 0, TimeUnit.SECONDS, readFilter) <= 0) {
-      return false;
-    }
-    PositionStreamEvent streamEvent = events.get(0);
-    if (streamEvent.getStart() - inputSplit.getStart() >= inputSplit.getLength()) {
-      return false;
-    }
-    currentEntry = decoder.decode(streamEvent, currentEntry);
+    do {
+      events.clear();
+      if (reader.read(events, 1, 0, TimeUnit.SECONDS, readFilter) <= 0) {
+        return false;
+      }
+      PositionStreamEvent streamEvent = events.get(0);
+      if (streamEvent.getStart() - inputSplit.getStart() >= inputSplit.getLength()) {
+        return false;
+      }
+      currentEntry = decoder.decode(streamEvent, currentEntry);
+    } while (bodyFilter != null && !bodyFilter.apply(currentEntry));
     return true;
   }
 
@@ -18,6 +18,7 @@ package co.cask.cdap.data.stream.service;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.api.stream.StreamEventData;
 import co.cask.cdap.common.NotFoundException;
+import co.cask.cdap.common.io.ByteBuffers;
 import co.cask.cdap.data.file.FileWriter;
 import co.cask.cdap.data.stream.Refreshable;
 import co.cask.cdap.data.stream.StreamCoordinatorClient;
@@ -33,6 +34,7 @@ import co.cask.cdap.proto.id.StreamId;
 import co.cask.cdap.security.impersonation.Impersonator;
 import com.google.common.base.Function;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
@@ -41,6 +43,7 @@ import com.google.common.io.Closeables;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import com.google.common.util.concurrent.Service;
 import org.apache.twill.common.Cancellable;
+import org.apache.twill.common.Threads;
 import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,14 +54,18 @@ import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.concurrent.ThreadSafe;
@@ -67,25 +74,33 @@ import javax.annotation.concurrent.ThreadSafe;
  * Class to support writing to stream with high concurrency. This class supports writing individual stream events
  * as well as appending a new stream file to a stream.
  *
- * For writing individual events to stream, it uses a non-blocking algorithm to batch writes from concurrent threads.
+ * For writing individual events to stream, each stream has a pre-allocated ring buffer and a writer task to batch
+ * writes from concurrent threads. Writer tasks of all streams run on one executor with a bounded number of threads.
  * The algorithm is like this:
  *
  * When a thread that received a request, for each stream, performs the following:
  *
  * <pre>
- * 1. Constructs a StreamEventData locally and enqueue it to a ConcurrentLinkedQueue.
- * 2. Use CAS to set an AtomicBoolean flag to true.
- * 3. If successfully set the flag to true, this thread becomes the writer and proceed to run step 4-7.
- * 4. Keep polling StreamEventData from the concurrent queue and write to FileWriter with the current timestamp until
- *    the queue is empty.
- * 5. Perform a writer flush to make sure all data written are persisted.
- * 6. Set the state of each StreamEventData that are written to COMPLETED (succeed/failure).
- * 7. Set the AtomicBoolean flag back to false.
- * 8. If the StreamEventData enqueued by this thread is NOT COMPLETED, go back to step 2.
+ * 1. Claims the next sequence of the ring buffer with an atomic increment. If the slot of the sequence is still
+ *    holding an event that is not persisted yet, wait until it is persisted.
+ * 2. Sets the event to the reusable slot and publishes the slot by setting its sequence.
+ * 3. Schedules the writer task of the stream, unless it is already scheduled.
+ * 4. Waits until the persisted sequence of the stream is larger than or equal to the claimed sequence.
  * </pre>
  *
- * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
- * get written and flushed.
+ * The writer task of the stream performs the following:
+ *
+ * <pre>
+ * 1. Writes events from consecutive published slots to FileWriter with the current timestamp.
+ * 2. Performs a writer flush to make sure all data written are persisted.
+ * 3. Sets the persisted sequence to the last sequence written and wakes up the threads waiting for it. This
+ *    completes the requests and frees the slots.
+ * 4. Schedules itself again if more slots were published, otherwise returns the thread to the executor.
+ * </pre>
+ *
+ * Writes and flushes of a stream happen in one task at a time, hence there is no contention among request threads
+ * on the FileWriter, and the number of events written per flush grows with the number of concurrent requests.
+ * Streams without events don't hold any thread.
  *
  */
 @ThreadSafe
@@ -93,9 +108,14 @@ public final class ConcurrentStreamWriter implements Closeable {
 
   private static final Logger LOG = LoggerFactory.getLogger(ConcurrentStreamWriter.class);
 
+  // Size of the ring buffer for each stream, which is also the maximum number of events written per flush.
+  // It must be a power of two.
+  private static final int RING_BUFFER_SIZE = 1024;
+  // Number of seconds an idle writer thread is kept before it terminates
+  private static final long WRITER_THREAD_KEEP_ALIVE_SECONDS = 60L;
+
   private final StreamCoordinatorClient streamCoordinatorClient;
   private final StreamAdmin streamAdmin;
-  private final int workerThreads;
   private final StreamMetricsCollectorFactory metricsCollectorFactory;
   private final ConcurrentMap<StreamId, EventQueue> eventQueues;
   private final StreamFileFactory streamFileFactory;
@@ -103,13 +123,13 @@ public final class ConcurrentStreamWriter implements Closeable {
   private final List<Cancellable> cancellables;
   private final Lock createLock;
   private final Service eventQueueRefreshService;
+  private final ExecutorService writerExecutor;
 
   ConcurrentStreamWriter(StreamCoordinatorClient streamCoordinatorClient, StreamAdmin streamAdmin,
                          StreamFileWriterFactory writerFactory, int workerThreads,
                          StreamMetricsCollectorFactory metricsCollectorFactory, Impersonator impersonator) {
     this.streamCoordinatorClient = streamCoordinatorClient;
     this.streamAdmin = streamAdmin;
-    this.workerThreads = workerThreads;
     this.metricsCollectorFactory = metricsCollectorFactory;
     this.eventQueues = new MapMaker().concurrencyLevel(workerThreads).makeMap();
     this.streamFileFactory = new StreamFileFactory(writerFactory, impersonator);
@@ -117,6 +137,20 @@ public final class ConcurrentStreamWriter implements Closeable {
     this.cancellables = Lists.newArrayList();
     this.createLock = new ReentrantLock();
     this.eventQueueRefreshService = scheduleWriterRefresh();
+    this.writerExecutor = createWriterExecutor(workerThreads);
+  }
+
+  /**
+   * Creates the executor for running the writer tasks of all streams. Each stream has at most one writer task
+   * scheduled at a time, and threads are terminated when there is nothing to write.
+   */
+  private ExecutorService createWriterExecutor(int threads) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                                                         WRITER_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<Runnable>(),
+                                                         Threads.createDaemonThreadFactory("stream-writer-%d"));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
   }
 
   private Service scheduleWriterRefresh() {
@@ -163,8 +197,7 @@ public final class ConcurrentStreamWriter implements Closeable {
   public void enqueue(StreamId streamId,
                       Map<String, String> headers, ByteBuffer body) throws IOException, NotFoundException {
     EventQueue eventQueue = getEventQueue(streamId);
-    WriteRequest writeRequest = eventQueue.append(headers, body);
-    persistUntilCompleted(streamId, eventQueue, writeRequest);
+    eventQueue.awaitPersisted(eventQueue.append(headers, body));
   }
 
   /**
@@ -178,8 +211,7 @@ public final class ConcurrentStreamWriter implements Closeable {
   public void enqueue(StreamId streamId,
                       Iterator<? extends StreamEventData> events) throws IOException, NotFoundException {
     EventQueue eventQueue = getEventQueue(streamId);
-    WriteRequest writeRequest = eventQueue.append(events);
-    persistUntilCompleted(streamId, eventQueue, writeRequest);
+    eventQueue.awaitPersisted(eventQueue.append(events));
   }
 
   /**
@@ -189,7 +221,7 @@ public final class ConcurrentStreamWriter implements Closeable {
    * @param streamId identifier of the stream
    * @param headers header of the event
    * @param body content of the event
-   * @param executor The executor for performing the async write flush operation
+   * @param executor The executor for waiting for the async write to be persisted
    * @throws IOException if fails to get stream information
    * @throws NotFoundException If the stream doesn't exists
    */
@@ -198,12 +230,12 @@ public final class ConcurrentStreamWriter implements Closeable {
                            Executor executor) throws IOException, NotFoundException {
     // Put the event to the queue first and then execute the write asynchronously
     final EventQueue eventQueue = getEventQueue(streamId);
-    final WriteRequest writeRequest = eventQueue.append(headers, body);
+    final long sequence = eventQueue.append(headers, body);
     executor.execute(new Runnable() {
       @Override
       public void run() {
         try {
-          persistUntilCompleted(streamId, eventQueue, writeRequest);
+          eventQueue.awaitPersisted(sequence);
         } catch (IOException e) {
           // Since it's done in the async executor, simply log the exception
           LOG.error("Async write failed", e);
@@ -227,9 +259,7 @@ public final class ConcurrentStreamWriter implements Closeable {
                          TimestampCloseable timestampCloseable) throws IOException, NotFoundException {
     EventQueue eventQueue = getEventQueue(streamId);
     StreamConfig config = streamAdmin.getConfig(streamId);
-    while (!eventQueue.tryAppendFile(config, eventFile, indexFile, eventCount, timestampCloseable)) {
-      Thread.yield();
-    }
+    eventQueue.appendFile(config, eventFile, indexFile, eventCount, timestampCloseable);
   }
 
   @Override
@@ -247,6 +277,7 @@ public final class ConcurrentStreamWriter implements Closeable {
     }
 
     eventQueueRefreshService.stopAndWait();
+    writerExecutor.shutdown();
   }
 
   private EventQueue getEventQueue(StreamId streamId) throws IOException, NotFoundException {
@@ -286,26 +317,6 @@ public final class ConcurrentStreamWriter implements Closeable {
     }
   }
 
-  /**
-   * Persists events in the given eventQueue until the given request is completed.
-   *
-   * @param eventQueue the queue containing events that needs to be persisted
-   * @param request a request for persisting data to stream
-   * @throws IOException if failed to write to stream
-   */
-  private void persistUntilCompleted(StreamId streamId, EventQueue eventQueue, WriteRequest request)
-    throws IOException {
-    while (!request.isCompleted()) {
-      if (!eventQueue.tryWrite()) {
-        Thread.yield();
-      }
-    }
-    if (!request.isSuccess()) {
-      Throwables.propagateIfInstanceOf(request.getFailure(), IOException.class);
-      throw new IOException("Unable to write stream event to " + streamId, request.getFailure());
-    }
-  }
-
   private void closeEventQueue(StreamId streamId) {
     EventQueue eventQueue = eventQueues.remove(streamId);
     if (eventQueue != null) {
@@ -427,26 +438,46 @@ public final class ConcurrentStreamWriter implements Closeable {
   }
 
   /**
-   * For buffering StreamEvents and doing batch write to stream file.
+   * For buffering StreamEvents in a ring buffer and doing batch write to stream file from a writer task.
    */
-  private final class EventQueue implements Closeable {
+  private final class EventQueue implements Closeable, Runnable {
 
     private final StreamId streamId;
     private final StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector;
-    private final Queue<WriteRequest> queue;
-    private final AtomicBoolean writerFlag;
-    private final WriteRequest.Metrics metrics;
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimedSequence;
+    // Guards the file writer. It is shared by the writer task with file append, refresh and close.
+    private final Lock writerLock;
+    private final AtomicBoolean writerScheduled;
+    private final Lock persistedLock;
+    private final Condition persistedCondition;
+    private final Metrics metrics;
     private final MutableStreamEvent streamEvent;
     private final Function<StreamEventData, StreamEvent> eventTransformer;
     private FileWriter<StreamEventData> fileWriter;
-    private boolean closed;
+    // Sequence of the next event to write. It is only accessed while holding the writer lock.
+    private long nextSequence;
+    // Sequence of the last event persisted to the stream file. Slots up to this sequence can be reused.
+    private volatile long persistedSequence;
+    private volatile Throwable failure;
+    private volatile boolean closed;
 
     EventQueue(StreamId streamId, StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector) {
       this.streamId = streamId;
       this.streamEvent = new MutableStreamEvent();
-      this.queue = new ConcurrentLinkedQueue<>();
-      this.writerFlag = new AtomicBoolean(false);
-      this.metrics = new WriteRequest.Metrics();
+      this.slots = new Slot[RING_BUFFER_SIZE];
+      for (int i = 0; i < slots.length; i++) {
+        slots[i] = new Slot();
+      }
+      this.mask = RING_BUFFER_SIZE - 1;
+      this.claimedSequence = new AtomicLong(-1L);
+      this.persistedSequence = -1L;
+      this.writerLock = new ReentrantLock();
+      this.writerScheduled = new AtomicBoolean(false);
+      this.persistedLock = new ReentrantLock();
+      this.persistedCondition = persistedLock.newCondition();
+      this.metrics = new Metrics();
       this.metricsCollector = metricsCollector;
       this.eventTransformer = new Function<StreamEventData, StreamEvent>() {
         @Override
@@ -461,12 +492,15 @@ public final class ConcurrentStreamWriter implements Closeable {
      *
      * @param headers headers of the event
      * @param body body of the event
-     * @return A {@link WriteRequest} that contains the status of the request
+     * @return the sequence of the event in the queue
+     * @throws IOException if the queue is already closed
      */
-    WriteRequest append(Map<String, String> headers, ByteBuffer body) {
-      WriteRequest request = new SingleWriteRequest(headers, body);
-      queue.add(request);
-      return request;
+    long append(Map<String, String> headers, ByteBuffer body) throws IOException {
+      long sequence = claim();
+      Slot slot = slots[(int) (sequence & mask)];
+      slot.eventData.setHeaders(headers).setBody(body);
+      publish(slot, sequence);
+      return sequence;
     }
 
     /**
@@ -474,16 +508,45 @@ public final class ConcurrentStreamWriter implements Closeable {
      * same event timestamp and are guaranteed to be written in the same data block inside a stream file.
      *
      * @param events an {@link Iterator} of {@link StreamEventData} containing the list of events to be written
-     * @return A {@link WriteRequest} that contains the status of the request
+     * @return the sequence of the events in the queue
+     * @throws IOException if the queue is already closed
      */
-    WriteRequest append(Iterator<? extends StreamEventData> events) {
-      WriteRequest request = new BatchWriteRequest(events);
-      queue.add(request);
-      return request;
+    long append(Iterator<? extends StreamEventData> events) throws IOException {
+      long sequence = claim();
+      Slot slot = slots[(int) (sequence & mask)];
+      slot.events = events;
+      publish(slot, sequence);
+      return sequence;
     }
 
     /**
-     * Attempts to append a file to the stream.
+     * Blocks until the event of the given sequence is persisted.
+     *
+     * @param sequence the sequence returned by one of the {@code append} methods
+     * @throws IOException if the queue is closed before the event is persisted
+     */
+    void awaitPersisted(long sequence) throws IOException {
+      if (persistedSequence >= sequence) {
+        return;
+      }
+      persistedLock.lock();
+      try {
+        while (persistedSequence < sequence) {
+          // The persisted sequence is always updated before the closed flag, hence need to check it again
+          if (closed && persistedSequence < sequence) {
+            Throwable cause = failure;
+            Throwables.propagateIfInstanceOf(cause, IOException.class);
+            throw new IOException("Unable to write stream event to " + streamId, cause);
+          }
+          persistedCondition.awaitUninterruptibly();
+        }
+      } finally {
+        persistedLock.unlock();
+      }
+    }
+
+    /**
+     * Appends a file to the stream. It blocks until no events are being written to the stream.
      *
      * @param streamConfig current configuration for the stream
      * @param eventFile location to the new stream data file
@@ -491,16 +554,12 @@ public final class ConcurrentStreamWriter implements Closeable {
      * @param eventCount number of events recorded in the new stream file
      * @param timestampCloseable A {@link TimestampCloseable} to close
      *                           and acquire the close timestamp for the new stream file
-     * @return true if able to be the leader and append the file, false otherwise
-     * @throws IOException if became leader but failed to perform the append operation
+     * @throws IOException if failed to perform the append operation
      */
-    boolean tryAppendFile(StreamConfig streamConfig, Location eventFile, Location indexFile, long eventCount,
-                          TimestampCloseable timestampCloseable) throws IOException {
-      if (!writerFlag.compareAndSet(false, true)) {
-        return false;
-      }
-
+    void appendFile(StreamConfig streamConfig, Location eventFile, Location indexFile, long eventCount,
+                    TimestampCloseable timestampCloseable) throws IOException {
       long fileSize;
+      writerLock.lock();
       try {
         if (closed) {
           throw new IOException("Stream writer already closed");
@@ -513,69 +572,51 @@ public final class ConcurrentStreamWriter implements Closeable {
         fileSize = eventFile.length();
         streamFileFactory.appendFile(streamConfig, eventFile, indexFile, timestampCloseable.getCloseTimestamp());
       } finally {
-        writerFlag.set(false);
+        writerLock.unlock();
       }
 
       metricsCollector.emitMetrics(fileSize, eventCount);
-      return true;
     }
 
     /**
-     * Attempts to write the queued events into the underlying stream.
-     *
-     * @return true if become the writer leader and performed the write, false otherwise.
+     * Runs the writer task. It writes the events published to the ring buffer in one batch, with one flush, and
+     * schedules itself again if more events were published in the meantime.
      */
-    boolean tryWrite() {
-      int bytesWritten = 0;
-      int eventsWritten = 0;
-
-      if (!writerFlag.compareAndSet(false, true)) {
-        return false;
-      }
-
-      // The visibility of states mutation done while getting hold of the writerFlag,
-      // is piggy back on the writerFlag atomic variable update in the finally block,
-      // hence all states mutated will be visible to all threads after that.
+    @Override
+    public void run() {
+      boolean written = false;
+      long next;
+      writerLock.lock();
       try {
-        metrics.reset();
-        List<WriteRequest> processQueue = Lists.newArrayListWithExpectedSize(workerThreads);
-        try {
-          FileWriter<StreamEventData> writer = getFileWriter();
-          WriteRequest request = queue.poll();
-          streamEvent.setTimestamp(System.currentTimeMillis());
-          while (request != null) {
-            processQueue.add(request);
-            request.write(writer, metrics);
-            request = queue.poll();
-          }
-          writer.flush();
-          for (WriteRequest processed : processQueue) {
-            processed.completed(null);
-          }
-          bytesWritten = metrics.bytesWritten;
-          eventsWritten = metrics.eventsWritten;
-        } catch (Throwable t) {
-          // On exception, remove this EventQueue from the map and close this event queue
-          eventQueues.remove(streamId, this);
-          doClose();
-
-          for (WriteRequest processed : processQueue) {
-            processed.completed(t);
-          }
+        if (!closed && slots[(int) (nextSequence & mask)].sequence == nextSequence) {
+          nextSequence = write(nextSequence);
+          written = true;
         }
+        next = nextSequence;
       } finally {
-        writerFlag.set(false);
+        writerLock.unlock();
+      }
+      if (written) {
+        metricsCollector.emitMetrics(metrics.bytesWritten, metrics.eventsWritten);
       }
 
-      metricsCollector.emitMetrics(bytesWritten, eventsWritten);
-      return true;
+      // Publishers only schedule the writer task if it is not scheduled, hence need to check for events
+      // published before the flag is cleared
+      writerScheduled.set(false);
+      if (!closed && slots[(int) (next & mask)].sequence == next) {
+        try {
+          scheduleWriter();
+        } catch (RejectedExecutionException e) {
+          LOG.debug("Writer executor is shut down, not writing further events to stream {}", streamId);
+        }
+      }
     }
 
     /**
      * Attempts to refresh the underlying FileWriter, if it is {@link Refreshable}.
      */
     boolean refresh() throws Exception {
-      if (!writerFlag.compareAndSet(false, true)) {
+      if (!writerLock.tryLock()) {
         return false;
       }
 
@@ -585,14 +626,107 @@ public final class ConcurrentStreamWriter implements Closeable {
           ((Refreshable) fileWriter).refresh();
         }
       } finally {
-        writerFlag.set(false);
+        writerLock.unlock();
       }
       return true;
     }
 
+    /**
+     * Claims the next sequence of the ring buffer. It blocks until the slot of the sequence is free.
+     */
+    private long claim() throws IOException {
+      long sequence = claimedSequence.incrementAndGet();
+      if (sequence - slots.length <= persistedSequence) {
+        return sequence;
+      }
+      persistedLock.lock();
+      try {
+        while (sequence - slots.length > persistedSequence) {
+          if (closed) {
+            throw new IOException("Stream writer closed");
+          }
+          persistedCondition.awaitUninterruptibly();
+        }
+      } finally {
+        persistedLock.unlock();
+      }
+      return sequence;
+    }
+
+    /**
+     * Makes the slot of the given sequence visible to the writer task and schedules the writer task.
+     */
+    private void publish(Slot slot, long sequence) throws IOException {
+      slot.sequence = sequence;
+      try {
+        scheduleWriter();
+      } catch (RejectedExecutionException e) {
+        throw new IOException("Stream writer closed", e);
+      }
+    }
+
+    /**
+     * Submits the writer task to the writer executor, unless it is already scheduled.
+     */
+    private void scheduleWriter() {
+      if (writerScheduled.compareAndSet(false, true)) {
+        try {
+          writerExecutor.execute(this);
+        } catch (RejectedExecutionException e) {
+          writerScheduled.set(false);
+          throw e;
+        }
+      }
+    }
+
+    /**
+     * Wakes up all threads waiting for the persisted sequence to advance or for this queue to be closed.
+     */
+    private void signalPersisted() {
+      persistedLock.lock();
+      try {
+        persistedCondition.signalAll();
+      } finally {
+        persistedLock.unlock();
+      }
+    }
+
+    /**
+     * Writes all published events starting from the given sequence and flushes them.
+     * This method should only be called from the writer task while holding the writer lock.
+     *
+     * @return the sequence of the next event to write
+     */
+    private long write(long startSequence) {
+      metrics.reset();
+      long sequence = startSequence;
+      try {
+        FileWriter<StreamEventData> writer = getFileWriter();
+        streamEvent.setTimestamp(System.currentTimeMillis());
+
+        // A batch has at most the size of the ring buffer, since slots are only reused after the flush
+        Slot slot = slots[(int) (sequence & mask)];
+        while (slot.sequence == sequence) {
+          slot.write(writer, metrics);
+          slot.reset();
+          slot = slots[(int) (++sequence & mask)];
+        }
+        writer.flush();
+        persistedSequence = sequence - 1;
+        signalPersisted();
+      } catch (Throwable t) {
+        // On exception, remove this EventQueue from the map and close this event queue
+        LOG.error("Failed to write to stream {}", streamId, t);
+        failure = t;
+        eventQueues.remove(streamId, this);
+        doClose();
+      }
+      return sequence;
+    }
+
     /**
      * Returns the current {@link FileWriter}. A new {@link FileWriter} will be created
-     * if none existed yet. This method should only be called from the writer leader thread.
+     * if none existed yet. This method should only be called while holding the writer lock.
      */
     private FileWriter<StreamEventData> getFileWriter() throws IOException {
       if (closed) {
@@ -609,18 +743,11 @@ public final class ConcurrentStreamWriter implements Closeable {
       if (closed) {
         return;
       }
-      boolean done = false;
-      while (!done) {
-        if (!writerFlag.compareAndSet(false, true)) {
-          Thread.yield();
-          continue;
-        }
-        try {
-          doClose();
-        } finally {
-          done = true;
-          writerFlag.set(false);
-        }
+      writerLock.lock();
+      try {
+        doClose();
+      } finally {
+        writerLock.unlock();
       }
     }
 
@@ -629,16 +756,14 @@ public final class ConcurrentStreamWriter implements Closeable {
         Closeables.closeQuietly(fileWriter);
       }
 
-      // Drain the queue with failure. This could happen when
+      // Events that are not yet persisted are failed. This could happen when
       // 1. Shutting down of http service, which is fine to set to failure as all connections are closed already.
       // 2. When stream generation change. In this case, the client would received failure.
-      WriteRequest data = queue.poll();
-      Throwable writerClosedException = new IOException("Stream writer closed").fillInStackTrace();
-      while (data != null) {
-        data.completed(writerClosedException);
-        data = queue.poll();
+      if (failure == null) {
+        failure = new IOException("Stream writer closed").fillInStackTrace();
       }
       closed = true;
+      signalPersisted();
     }
 
 
@@ -696,95 +821,58 @@ public final class ConcurrentStreamWriter implements Closeable {
   }
 
   /**
-   * Represents an active write request.
+   * A simple POJO for carrying metrics information.
    */
-  private abstract static class WriteRequest {
-    enum State {
-      PENDING,
-      COMPLETED
-    }
-
-    /**
-     * A simple POJO for carrying metrics information.
-     */
-    static final class Metrics {
-      int bytesWritten;
-      int eventsWritten;
-
-      void reset() {
-        bytesWritten = eventsWritten = 0;
-      }
-
-      void increment(int bytesWritten) {
-        this.bytesWritten += bytesWritten;
-        eventsWritten++;
-      }
-    }
-
-    private State state = State.PENDING;
-    private Throwable failure;
+  private static final class Metrics {
+    int bytesWritten;
+    int eventsWritten;
 
-    boolean isCompleted() {
-      return state != State.PENDING;
+    void reset() {
+      bytesWritten = eventsWritten = 0;
     }
 
-    boolean isSuccess() {
-      return isCompleted() && (failure == null);
+    void increment(int bytesWritten) {
+      this.bytesWritten += bytesWritten;
+      eventsWritten++;
     }
+  }
 
-    void completed(Throwable failure) {
-      this.state = State.COMPLETED;
-      this.failure = failure;
-    }
+  /**
+   * A pre-allocated slot of the ring buffer of {@link EventQueue}. It contains either one stream event or
+   * an {@link Iterator} of stream events. The slot is reused once its content is persisted.
+   */
+  private static final class Slot implements Iterator<StreamEventData> {
 
-    Throwable getFailure() {
-      return failure;
-    }
+    private final MutableStreamEventData eventData = new MutableStreamEventData();
+    private Iterator<? extends StreamEventData> events;
+    private Metrics metrics;
+    // The sequence of the event that the slot currently contains
+    private volatile long sequence = -1L;
 
     /**
-     * Writes the data contained in this request to the given file writer.
+     * Writes the data contained in this slot to the given file writer.
      *
      * @param writer the {@link FileWriter} for writing {@link StreamEventData}
      * @param metrics for updating metrics about the event written
      * @throws IOException if failed to write to file
      */
-    abstract void write(FileWriter<StreamEventData> writer, Metrics metrics) throws IOException;
-  }
-
-  /**
-   * A {@link WriteRequest} that contains one stream event.
-   */
-  private static final class SingleWriteRequest extends WriteRequest {
-
-    private final StreamEventData eventData;
-
-    SingleWriteRequest(Map<String, String> headers, ByteBuffer body) {
-      this.eventData = new StreamEventData(headers, body);
-    }
-
-    @Override
     void write(FileWriter<StreamEventData> writer, Metrics metrics) throws IOException {
-      metrics.increment(eventData.getBody().remaining());
-      writer.append(eventData);
-    }
-  }
-
-  /**
-   * A {@link WriteRequest} that contains a list of stream events.
-   */
-  private static final class BatchWriteRequest extends WriteRequest implements Iterator<StreamEventData> {
-
-    private final Iterator<? extends StreamEventData> events;
-    private Metrics metrics;
-
-    private BatchWriteRequest(Iterator<? extends StreamEventData> events) {
-      this.events = events;
+      if (events == null) {
+        metrics.increment(eventData.getBody().remaining());
+        writer.append(eventData);
+      } else {
+        this.metrics = metrics;
+        writer.appendAll(this);
+      }
     }
 
-    @Override
-    void write(FileWriter<StreamEventData> writer, Metrics metrics) throws IOException {
-      this.metrics = metrics;
-      writer.appendAll(this);
+    /**
+     * Releases the references to the event data, so that they can be garbage collected.
+     */
+    void reset() {
+      eventData.setHeaders(ImmutableMap.<String, String>of()).setBody(ByteBuffers.EMPTY_BUFFER);
+      events = null;
+      metrics = null;
     }
 
     @Override
@@ -62,6 +62,10 @@ final class FileContentWriter implements ContentWriter {
     Map<String, String> properties = createStreamFileProperties(headers);
     properties.put(StreamDataFileConstants.Property.Key.UNI_TIMESTAMP,
                    StreamDataFileConstants.Property.Value.CLOSE_TIMESTAMP);
+    // The uploaded file is moved into the stream as is, hence it is compressed the same way as other stream files
+    if (streamConfig.getCompression() != null) {
+      properties.put(StreamDataFileConstants.Property.Key.COMPRESSION, streamConfig.getCompression());
+    }
     this.writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
                                            Locations.newOutputSupplier(indexFile),
                                            streamConfig.getIndexInterval(),
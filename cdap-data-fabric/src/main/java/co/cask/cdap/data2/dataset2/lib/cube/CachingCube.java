@@ -0,0 +1,347 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.Cube;
+import co.cask.cdap.api.dataset.lib.cube.CubeDeleteQuery;
+import co.cask.cdap.api.dataset.lib.cube.CubeExploreQuery;
+import co.cask.cdap.api.dataset.lib.cube.CubeFact;
+import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
+import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.common.utils.ImmutablePair;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Cube} that caches the query results of another {@link Cube}.
+ *
+ * The data points of a time bucket don't change anymore once the bucket is closed, which is when the end of the
+ * bucket is older than the processed time minus the allowed lateness of writes. The processed time is provided by
+ * the writers of the underlying {@link Cube}, e.g. as the time up to which they have consumed all facts published
+ * to them. For a query, the cached data points of closed buckets are reused, and only the time range after them is
+ * queried from the underlying {@link Cube}.
+ * Queries are cached by all their parameters except for the time range, limit and interpolator, so that
+ * dashboards polling a sliding time range can reuse the results of earlier queries.
+ *
+ * Writes through this {@link Cube} that arrive later than the allowed lateness invalidate the cached results
+ * containing the written time buckets. Late writes through other {@link Cube} instances, e.g. from other processes,
+ * are not reflected in the cached results until they expire. Deletes through this {@link Cube} invalidate the whole
+ * cache.
+ */
+public class CachingCube implements Cube {
+
+  private final Cube cube;
+  private final long latenessSeconds;
+  private final Supplier<Long> processedTimeSeconds;
+  private final Cache<CacheKey, CachedResult> cache;
+
+  /**
+   * Constructor.
+   *
+   * @param cube the {@link Cube} to cache query results for
+   * @param maxDataPoints maximum number of data points to cache
+   * @param expireSeconds time in seconds after which cached query results expire
+   * @param latenessSeconds the maximum time in seconds that writes to a time bucket can arrive after the processed
+   *                        time passed its end
+   * @param processedTimeSeconds provides the time in seconds before which all facts have been written to the
+   *                             underlying {@link Cube}, or {@code -1} if it is not known
+   */
+  public CachingCube(Cube cube, long maxDataPoints, long expireSeconds, long latenessSeconds,
+                     Supplier<Long> processedTimeSeconds) {
+    Preconditions.checkArgument(maxDataPoints > 0, "Maximum number of data points to cache must be > 0");
+    Preconditions.checkArgument(expireSeconds > 0, "Expiry must be > 0");
+    Preconditions.checkArgument(latenessSeconds >= 0, "Lateness must be >= 0");
+    this.cube = cube;
+    this.latenessSeconds = latenessSeconds;
+    this.processedTimeSeconds = processedTimeSeconds;
+    this.cache = CacheBuilder.newBuilder()
+      .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+      .maximumWeight(maxDataPoints)
+      .weigher(new Weigher<CacheKey, CachedResult>() {
+        @Override
+        public int weigh(CacheKey key, CachedResult value) {
+          return value.getDataPoints();
+        }
+      })
+      .build();
+  }
+
+  @Override
+  public void add(CubeFact fact) {
+    cube.add(fact);
+    invalidate(fact.getTimestamp());
+  }
+
+  @Override
+  public void add(Collection<? extends CubeFact> facts) {
+    cube.add(facts);
+    long minTs = Long.MAX_VALUE;
+    for (CubeFact fact : facts) {
+      minTs = Math.min(minTs, fact.getTimestamp());
+    }
+    invalidate(minTs);
+  }
+
+  @Override
+  public Collection<TimeSeries> query(CubeQuery query) {
+    int resolution = query.getResolution();
+    long processedTs = processedTimeSeconds.get();
+    // Buckets with timestamp smaller than this are closed
+    long closedEndTs = Math.max(0L, (processedTs - latenessSeconds) / resolution * resolution);
+    if (processedTs < 0 || closedEndTs <= query.getStartTs()) {
+      // Nothing can be cached for the query
+      return cube.query(query);
+    }
+
+    CacheKey cacheKey = new CacheKey(query);
+    CachedResult cached = cache.getIfPresent(cacheKey);
+
+    Map<ImmutablePair<String, Map<String, String>>, List<TimeValue>> result = new LinkedHashMap<>();
+    long scanStartTs = query.getStartTs();
+    if (cached != null && cached.getStartTs() <= query.getStartTs() && cached.getEndTs() > query.getStartTs()) {
+      cached.copyTo(result, query.getStartTs(), query.getEndTs());
+      scanStartTs = cached.getEndTs();
+    }
+
+    // Query the time range that is not cached. The end time is inclusive.
+    if (scanStartTs <= query.getEndTs()) {
+      CubeQuery scanQuery = new CubeQuery(query.getAggregation(), scanStartTs, query.getEndTs(), resolution,
+                                          Integer.MAX_VALUE, query.getMeasurements(), query.getDimensionValues(),
+                                          query.getGroupByDimensions(), null);
+      for (TimeSeries timeSeries : cube.query(scanQuery)) {
+        ImmutablePair<String, Map<String, String>> seriesKey = getSeriesKey(timeSeries);
+        List<TimeValue> timeValues = result.get(seriesKey);
+        if (timeValues == null) {
+          timeValues = new ArrayList<>();
+          result.put(seriesKey, timeValues);
+        }
+        timeValues.addAll(timeSeries.getTimeValues());
+      }
+    }
+
+    // Cache the closed time buckets of the result
+    long cacheEndTs = Math.min(closedEndTs, query.getEndTs() + 1);
+    if (cached == null || cached.getStartTs() != query.getStartTs() || cached.getEndTs() != cacheEndTs) {
+      cache.put(cacheKey, new CachedResult(result, query.getStartTs(), cacheEndTs));
+    }
+
+    return toTimeSeries(query, result);
+  }
+
+  @Override
+  public void delete(CubeDeleteQuery query) {
+    cube.delete(query);
+    cache.invalidateAll();
+  }
+
+  @Override
+  public Collection<DimensionValue> findDimensionValues(CubeExploreQuery query) {
+    return cube.findDimensionValues(query);
+  }
+
+  @Override
+  public Collection<String> findMeasureNames(CubeExploreQuery query) {
+    return cube.findMeasureNames(query);
+  }
+
+  @Override
+  public void write(Object key, CubeFact fact) {
+    cube.write(key, fact);
+    invalidate(fact.getTimestamp());
+  }
+
+  @Override
+  public void close() throws IOException {
+    cache.invalidateAll();
+    cube.close();
+  }
+
+  /**
+   * Invalidates the cached results that contain the time buckets of the given timestamp or later.
+   */
+  private void invalidate(long timestamp) {
+    if (cache.size() == 0) {
+      return;
+    }
+    // Only late writes can go to closed time buckets. Without processed time, any write could be late.
+    long processedTs = processedTimeSeconds.get();
+    if (processedTs >= 0 && timestamp >= processedTs - latenessSeconds) {
+      return;
+    }
+    Iterator<Map.Entry<CacheKey, CachedResult>> iterator = cache.asMap().entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<CacheKey, CachedResult> entry = iterator.next();
+      int resolution = entry.getKey().resolution;
+      if (entry.getValue().getEndTs() > timestamp / resolution * resolution) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Applies the limit and interpolator of the query to the given result.
+   */
+  private Collection<TimeSeries> toTimeSeries(CubeQuery query,
+                                              Map<ImmutablePair<String, Map<String, String>>, List<TimeValue>> result) {
+    List<TimeSeries> timeSeries = new ArrayList<>(result.size());
+    for (Map.Entry<ImmutablePair<String, Map<String, String>>, List<TimeValue>> entry : result.entrySet()) {
+      if (entry.getValue().isEmpty()) {
+        continue;
+      }
+      Iterator<TimeValue> iterator = entry.getValue().iterator();
+      if (query.getInterpolator() != null) {
+        iterator = new TimeSeriesInterpolator(entry.getValue(), query.getInterpolator(),
+                                              query.getResolution()).iterator();
+      }
+      List<TimeValue> timeValues = new ArrayList<>();
+      while (iterator.hasNext() && timeValues.size() < query.getLimit()) {
+        timeValues.add(iterator.next());
+      }
+      timeSeries.add(new TimeSeries(entry.getKey().getFirst(), entry.getKey().getSecond(), timeValues));
+    }
+    return timeSeries;
+  }
+
+  private static ImmutablePair<String, Map<String, String>> getSeriesKey(TimeSeries timeSeries) {
+    return ImmutablePair.of(timeSeries.getMeasureName(), timeSeries.getDimensionValues());
+  }
+
+  /**
+   * Key for cached query results. It contains all parameters of a {@link CubeQuery} that affect the data points
+   * of the result, except for the time range.
+   */
+  private static final class CacheKey {
+    @Nullable
+    private final String aggregation;
+    private final int resolution;
+    private final Map<String, AggregationFunction> measurements;
+    private final Map<String, String> dimensionValues;
+    private final List<String> groupByDimensions;
+    private final int hashCode;
+
+    CacheKey(CubeQuery query) {
+      this.aggregation = query.getAggregation();
+      this.resolution = query.getResolution();
+      this.measurements = query.getMeasurements();
+      this.dimensionValues = query.getDimensionValues();
+      this.groupByDimensions = query.getGroupByDimensions();
+      this.hashCode = Objects.hash(aggregation, resolution, measurements, dimensionValues, groupByDimensions);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheKey other = (CacheKey) o;
+      return resolution == other.resolution
+        && Objects.equals(aggregation, other.aggregation)
+        && Objects.equals(measurements, other.measurements)
+        && Objects.equals(dimensionValues, other.dimensionValues)
+        && Objects.equals(groupByDimensions, other.groupByDimensions);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * Cached data points of closed time buckets in the time range of [startTs, endTs).
+   */
+  private static final class CachedResult {
+    private final Map<ImmutablePair<String, Map<String, String>>, List<TimeValue>> timeSeries;
+    private final long startTs;
+    private final long endTs;
+    private final int dataPoints;
+
+    CachedResult(Map<ImmutablePair<String, Map<String, String>>, List<TimeValue>> result, long startTs, long endTs) {
+      Map<ImmutablePair<String, Map<String, String>>, List<TimeValue>> timeSeries = new LinkedHashMap<>();
+      int dataPoints = 0;
+      for (Map.Entry<ImmutablePair<String, Map<String, String>>, List<TimeValue>> entry : result.entrySet()) {
+        List<TimeValue> timeValues = new ArrayList<>();
+        for (TimeValue timeValue : entry.getValue()) {
+          if (timeValue.getTimestamp() >= endTs) {
+            break;
+          }
+          if (timeValue.getTimestamp() >= startTs) {
+            timeValues.add(timeValue);
+          }
+        }
+        timeSeries.put(entry.getKey(), Collections.unmodifiableList(timeValues));
+        dataPoints += timeValues.size();
+      }
+      this.timeSeries = timeSeries;
+      this.startTs = startTs;
+      this.endTs = endTs;
+      // Count each series as one data point, so that results with only empty series are still accounted for
+      this.dataPoints = dataPoints + timeSeries.size();
+    }
+
+    long getStartTs() {
+      return startTs;
+    }
+
+    long getEndTs() {
+      return endTs;
+    }
+
+    int getDataPoints() {
+      return dataPoints;
+    }
+
+    /**
+     * Copies the cached data points with timestamp in the range of [startTs, endTs] to the given result map.
+     */
+    void copyTo(Map<ImmutablePair<String, Map<String, String>>, List<TimeValue>> result, long startTs, long endTs) {
+      for (Map.Entry<ImmutablePair<String, Map<String, String>>, List<TimeValue>> entry : timeSeries.entrySet()) {
+        List<TimeValue> timeValues = new ArrayList<>();
+        for (TimeValue timeValue : entry.getValue()) {
+          if (timeValue.getTimestamp() > endTs) {
+            break;
+          }
+          if (timeValue.getTimestamp() >= startTs) {
+            timeValues.add(timeValue);
+          }
+        }
+        result.put(entry.getKey(), timeValues);
+      }
+    }
+  }
+}
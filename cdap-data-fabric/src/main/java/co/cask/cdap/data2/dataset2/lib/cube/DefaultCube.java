@@ -16,13 +16,14 @@
 
 package co.cask.cdap.data2.dataset2.lib.cube;
 
-import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
 import co.cask.cdap.api.dataset.lib.cube.Cube;
 import co.cask.cdap.api.dataset.lib.cube.CubeDeleteQuery;
 import co.cask.cdap.api.dataset.lib.cube.CubeExploreQuery;
 import co.cask.cdap.api.dataset.lib.cube.CubeFact;
 import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.Measurement;
 import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
 import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 import co.cask.cdap.api.dataset.metrics.MeteredDataset;
@@ -33,25 +34,25 @@ import co.cask.cdap.data2.dataset2.lib.timeseries.FactScan;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanResult;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanner;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Sets;
-import com.google.common.collect.Table;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.annotation.Nullable;
 
 /**
@@ -67,6 +68,10 @@ public class DefaultCube implements Cube, MeteredDataset {
   private final Map<Integer, FactTable> resolutionToFactTable;
   private final Map<String, ? extends Aggregation> aggregations;
   private final Map<String, AggregationAlias> aggregationAliasMap;
+  // rollup resolution -> resolution to roll up from
+  private final Map<Integer, Integer> rollupSources;
+  // rollup resolution -> time in seconds from which counters are rolled up rather than written
+  private final ConcurrentMap<Integer, Long> rollupStartTimes;
 
   @Nullable
   private MetricsCollector metrics;
@@ -74,12 +79,33 @@ public class DefaultCube implements Cube, MeteredDataset {
   public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
                      Map<String, ? extends Aggregation> aggregations,
                      Map<String, AggregationAlias> aggregationAliasMap) {
+    this(resolutions, factTableSupplier, aggregations, aggregationAliasMap, Collections.<Integer, Long>emptyMap());
+  }
+
+  /**
+   * Creates a {@link DefaultCube} that doesn't write counters to the given rollup resolutions when adding facts
+   * with timestamps at or after the rollup start time of the resolution. Counters of those time buckets are
+   * computed from a finer resolution with {@link #rollup(int, long, long)} instead. Gauges are still written to
+   * every resolution.
+   *
+   * @param rollupStartTimes map from rollup resolution to the rollup start time in seconds, which must be a multiple
+   *                         of the resolution
+   */
+  public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
+                     Map<String, ? extends Aggregation> aggregations,
+                     Map<String, AggregationAlias> aggregationAliasMap,
+                     Map<Integer, Long> rollupStartTimes) {
     this.aggregations = aggregations;
     this.resolutionToFactTable = Maps.newHashMap();
     for (int resolution : resolutions) {
       resolutionToFactTable.put(resolution, factTableSupplier.get(resolution, 3600));
     }
     this.aggregationAliasMap = aggregationAliasMap;
+    this.rollupSources = Maps.newHashMap();
+    for (int resolution : rollupStartTimes.keySet()) {
+      rollupSources.put(resolution, getRollupSource(resolutions, resolution));
+    }
+    this.rollupStartTimes = new ConcurrentHashMap<>(rollupStartTimes);
   }
 
   @Override
@@ -113,8 +139,14 @@ public class DefaultCube implements Cube, MeteredDataset {
       }
     }
 
-    for (FactTable table : resolutionToFactTable.values()) {
-      table.add(toWrite);
+    for (Map.Entry<Integer, FactTable> entry : resolutionToFactTable.entrySet()) {
+      Long rollupStartTime = rollupStartTimes.get(entry.getKey());
+      if (rollupStartTime == null) {
+        entry.getValue().add(toWrite);
+      } else {
+        // counters of rollup resolutions are computed by rollup from the rollup start time
+        entry.getValue().add(getFactsToWrite(toWrite, rollupStartTime));
+      }
     }
 
     incrementMetric("cube.cubeFact.add.request.count", 1);
@@ -210,10 +242,14 @@ public class DefaultCube implements Cube, MeteredDataset {
     // 3) execute scan query
     FactTable table = resolutionToFactTable.get(query.getResolution());
     FactScanner scanner = table.scan(scan);
-    Table<Map<String, String>, String, Map<Long, Long>> resultMap = getTimeSeries(query, scanner);
+    Map<List<String>, Map<String, TimeSeriesAggregator>> resultMap = getTimeSeries(query, scanner);
 
     incrementMetric("cube.query.request.success.count", 1);
-    incrementMetric("cube.query.result.size", resultMap.size());
+    int resultSize = 0;
+    for (Map<String, TimeSeriesAggregator> measures : resultMap.values()) {
+      resultSize += measures.size();
+    }
+    incrementMetric("cube.query.result.size", resultSize);
 
     Collection<TimeSeries> timeSeries = convertToQueryResult(query, resultMap);
     incrementMetric("cube.query.result.timeseries.count", timeSeries.size());
@@ -240,6 +276,61 @@ public class DefaultCube implements Cube, MeteredDataset {
     }
   }
 
+  /**
+   * Rolls up the counters in the given time range into a rollup resolution from the next finer resolution.
+   * The next finer resolution must be complete for the time range, hence time ranges of a resolution that is
+   * rolled up from another rollup resolution can only be rolled up after the time range was rolled up in that other
+   * resolution. Rolling up a time range again is harmless, but doesn't pick up counters that were added in the
+   * meantime. Those are written directly after the rollup start time is moved past the time range with
+   * {@link #advanceRollupStartTime(int, long)}.
+   *
+   * @param resolution the rollup resolution
+   * @param startTs start of the time range, in seconds, inclusive. Must be a multiple of the resolution.
+   * @param endTs end of the time range, in seconds, exclusive. Must be a multiple of the resolution.
+   */
+  public void rollup(int resolution, long startTs, long endTs) {
+    FactTable table = resolutionToFactTable.get(resolution);
+    FactTable sourceTable = resolutionToFactTable.get(getRollupSource(resolution));
+    for (Aggregation agg : aggregations.values()) {
+      List<DimensionValue> dimensionValues = Lists.newArrayList();
+      for (String dimensionName : agg.getDimensionNames()) {
+        // null means "any"
+        dimensionValues.add(new DimensionValue(dimensionName, null));
+      }
+      table.rollup(sourceTable, dimensionValues, startTs, endTs);
+    }
+    incrementMetric("cube.rollup.res." + resolution + ".count", 1);
+  }
+
+  /**
+   * Moves the rollup start time of a rollup resolution forward, after the time buckets before the given time were
+   * rolled up. Counters that are added to those time buckets afterwards are written to the resolution directly, hence
+   * they are added to the rolled up values. A time before the current rollup start time is ignored.
+   *
+   * @param resolution the rollup resolution
+   * @param startTs the new rollup start time in seconds, which must be a multiple of the resolution
+   */
+  public void advanceRollupStartTime(int resolution, long startTs) {
+    Long currentTs = rollupStartTimes.get(resolution);
+    if (currentTs == null) {
+      throw new IllegalArgumentException("Resolution " + resolution + " is not a rollup resolution");
+    }
+    while (currentTs < startTs && !rollupStartTimes.replace(resolution, currentTs, startTs)) {
+      currentTs = rollupStartTimes.get(resolution);
+    }
+  }
+
+  /**
+   * Returns the resolution that the given rollup resolution is rolled up from.
+   */
+  public int getRollupSource(int resolution) {
+    Integer sourceResolution = rollupSources.get(resolution);
+    if (sourceResolution == null) {
+      throw new IllegalArgumentException("Resolution " + resolution + " is not a rollup resolution");
+    }
+    return sourceResolution;
+  }
+
   @Override
   public Collection<DimensionValue> findDimensionValues(CubeExploreQuery query) {
     LOG.trace("Searching for next-level context, query: {}", query);
@@ -303,6 +394,46 @@ public class DefaultCube implements Cube, MeteredDataset {
     }
   }
 
+  /**
+   * Returns the largest resolution that is smaller than and divides the given resolution.
+   */
+  private static int getRollupSource(int[] resolutions, int resolution) {
+    int source = -1;
+    for (int candidate : resolutions) {
+      if (candidate < resolution && resolution % candidate == 0 && candidate > source) {
+        source = candidate;
+      }
+    }
+    if (source < 0) {
+      throw new IllegalArgumentException("There's no resolution to roll up resolution " + resolution + " from");
+    }
+    return source;
+  }
+
+  /**
+   * Returns the given facts with all measurements for facts before the rollup start time, and with gauge
+   * measurements only for other facts.
+   */
+  private static List<Fact> getFactsToWrite(List<Fact> facts, long rollupStartTime) {
+    List<Fact> result = Lists.newArrayList();
+    for (Fact fact : facts) {
+      if (fact.getTimestamp() < rollupStartTime) {
+        result.add(fact);
+        continue;
+      }
+      List<Measurement> measurements = Lists.newArrayList();
+      for (Measurement measurement : fact.getMeasurements()) {
+        if (MeasureType.GAUGE == measurement.getType()) {
+          measurements.add(measurement);
+        }
+      }
+      if (!measurements.isEmpty()) {
+        result.add(new Fact(fact.getTimestamp(), fact.getDimensionValues(), measurements));
+      }
+    }
+    return result;
+  }
+
   private void incrementMetric(String metricName, long value) {
     if (metrics != null) {
       metrics.increment(metricName, value);
@@ -329,9 +460,17 @@ public class DefaultCube implements Cube, MeteredDataset {
     return currentBest;
   }
 
-  private Table<Map<String, String>, String, Map<Long, Long>> getTimeSeries(CubeQuery query, FactScanner scanner) {
-    // {dimension values, measure} -> {time -> value}s
-    Table<Map<String, String>, String, Map<Long, Long>> result = HashBasedTable.create();
+  /**
+   * Aggregates the scan results into time series, grouped by the values of the group by dimensions of the query
+   * and by measure name.
+   *
+   * @return a map from the group by dimension values, in the order of {@link CubeQuery#getGroupByDimensions()},
+   *         to a map from measure name to the aggregated time series
+   */
+  private Map<List<String>, Map<String, TimeSeriesAggregator>> getTimeSeries(CubeQuery query, FactScanner scanner) {
+    // {dimension values} -> {measure -> time series}
+    Map<List<String>, Map<String, TimeSeriesAggregator>> result = new LinkedHashMap<>();
+    List<String> groupByDimensions = query.getGroupByDimensions();
 
     int count = 0;
     while (scanner.hasNext()) {
@@ -339,9 +478,10 @@ public class DefaultCube implements Cube, MeteredDataset {
       incrementMetric("cube.query.scan.records.count", 1);
 
       boolean skip = false;
-      // using tree map, as we are using it as a key for a map
-      Map<String, String> seriesDimensions = Maps.newTreeMap();
-      for (String dimensionName : query.getGroupByDimensions()) {
+      // values of the group by dimensions; null if the dimension is not present in the record
+      List<String> seriesDimensionValues = new ArrayList<>(groupByDimensions.size());
+      for (String dimensionName : groupByDimensions) {
+        String seriesDimensionValue = null;
         // todo: use Map<String, String> instead of List<DimensionValue> into a String, String, everywhere
         for (DimensionValue dimensionValue : next.getDimensionValues()) {
           if (dimensionName.equals(dimensionValue.getName())) {
@@ -355,10 +495,11 @@ public class DefaultCube implements Cube, MeteredDataset {
               skip = true;
               continue;
             }
-            seriesDimensions.put(dimensionName, dimensionValue.getValue());
+            seriesDimensionValue = dimensionValue.getValue();
             break;
           }
         }
+        seriesDimensionValues.add(seriesDimensionValue);
       }
 
       if (skip) {
@@ -366,32 +507,18 @@ public class DefaultCube implements Cube, MeteredDataset {
         continue;
       }
 
+      Map<String, TimeSeriesAggregator> measures = result.get(seriesDimensionValues);
+      if (measures == null) {
+        measures = new LinkedHashMap<>();
+        result.put(seriesDimensionValues, measures);
+      }
+      TimeSeriesAggregator timeSeries = measures.get(next.getMeasureName());
+      if (timeSeries == null) {
+        timeSeries = new TimeSeriesAggregator(query.getMeasurements().get(next.getMeasureName()));
+        measures.put(next.getMeasureName(), timeSeries);
+      }
       for (TimeValue timeValue : next) {
-        Map<Long, Long> timeValues = result.get(seriesDimensions, next.getMeasureName());
-        if (timeValues == null) {
-          result.put(seriesDimensions, next.getMeasureName(), Maps.<Long, Long>newHashMap());
-        }
-
-        AggregationFunction function = query.getMeasurements().get(next.getMeasureName());
-        if (AggregationFunction.SUM == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value == null ? 0 : value;
-          value += timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MAX == function) {
-          Long value = result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value > timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MIN == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value < timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.LATEST == function) {
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), timeValue.getValue());
-        } else {
-          // should never happen: developer error
-          throw new RuntimeException("Unknown MeasureType: " + function);
-        }
+        timeSeries.add(timeValue.getTimestamp(), timeValue.getValue());
       }
       if (++count >= MAX_RECORDS_TO_SCAN) {
         break;
@@ -401,35 +528,40 @@ public class DefaultCube implements Cube, MeteredDataset {
   }
 
   private Collection<TimeSeries> convertToQueryResult(CubeQuery query,
-                                                      Table<Map<String, String>, String,
-                                                        Map<Long, Long>> resultTable) {
-
-    List<TimeSeries> result = Lists.newArrayList();
+                                                      Map<List<String>, Map<String, TimeSeriesAggregator>> result) {
+    List<TimeSeries> timeSeries = Lists.newArrayList();
+    List<String> groupByDimensions = query.getGroupByDimensions();
     // iterating each groupValue dimensions
-    for (Map.Entry<Map<String, String>, Map<String, Map<Long, Long>>> row : resultTable.rowMap().entrySet()) {
+    for (Map.Entry<List<String>, Map<String, TimeSeriesAggregator>> group : result.entrySet()) {
+      // using tree map for consistent ordering of the dimensions in the result
+      Map<String, String> seriesDimensions = Maps.newTreeMap();
+      for (int i = 0; i < groupByDimensions.size(); i++) {
+        String value = group.getKey().get(i);
+        if (value != null) {
+          seriesDimensions.put(groupByDimensions.get(i), value);
+        }
+      }
       // iterating each measure
-      for (Map.Entry<String, Map<Long, Long>> measureEntry : row.getValue().entrySet()) {
+      for (Map.Entry<String, TimeSeriesAggregator> measureEntry : group.getValue().entrySet()) {
         // generating time series for a grouping and a measure
         int count = 0;
-        List<TimeValue> timeValues = Lists.newArrayList();
-        for (Map.Entry<Long, Long> timeValue : measureEntry.getValue().entrySet()) {
-          timeValues.add(new TimeValue(timeValue.getKey(), timeValue.getValue()));
+        List<TimeValue> timeValues = measureEntry.getValue().getTimeValues();
+        Iterator<TimeValue> timeValueItor = timeValues.iterator();
+        if (query.getInterpolator() != null) {
+          timeValueItor = new TimeSeriesInterpolator(timeValues, query.getInterpolator(),
+                                                     query.getResolution()).iterator();
         }
-        Collections.sort(timeValues);
-        PeekingIterator<TimeValue> timeValueItor = Iterators.peekingIterator(
-          new TimeSeriesInterpolator(timeValues, query.getInterpolator(), query.getResolution()).iterator());
         List<TimeValue> resultTimeValues = Lists.newArrayList();
         while (timeValueItor.hasNext()) {
-          TimeValue timeValue = timeValueItor.next();
-          resultTimeValues.add(new TimeValue(timeValue.getTimestamp(), timeValue.getValue()));
+          resultTimeValues.add(timeValueItor.next());
           if (++count >= query.getLimit()) {
             break;
           }
         }
-        result.add(new TimeSeries(measureEntry.getKey(), row.getKey(), resultTimeValues));
+        timeSeries.add(new TimeSeries(measureEntry.getKey(), seriesDimensions, resultTimeValues));
       }
     }
-    return result;
+    return timeSeries;
   }
 
   @Override
@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aggregates the values of one time series by timestamp with the given {@link AggregationFunction}.
+ *
+ * Timestamps and values are kept in primitive arrays of an open addressing hash table, so that no objects are
+ * created per data point while aggregating the scan results of a cube query.
+ */
+final class TimeSeriesAggregator {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final AggregationFunction function;
+  private long[] timestamps;
+  private long[] values;
+  private boolean[] used;
+  private int size;
+
+  TimeSeriesAggregator(AggregationFunction function) {
+    if (function == null) {
+      // should never happen: developer error
+      throw new RuntimeException("Unknown MeasureType: " + function);
+    }
+    this.function = function;
+    this.timestamps = new long[INITIAL_CAPACITY];
+    this.values = new long[INITIAL_CAPACITY];
+    this.used = new boolean[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Aggregates the given value into the value at the given timestamp.
+   */
+  void add(long timestamp, long value) {
+    int mask = timestamps.length - 1;
+    int idx = hash(timestamp) & mask;
+    while (used[idx]) {
+      if (timestamps[idx] == timestamp) {
+        values[idx] = aggregate(values[idx], value);
+        return;
+      }
+      idx = (idx + 1) & mask;
+    }
+    used[idx] = true;
+    timestamps[idx] = timestamp;
+    values[idx] = value;
+    // Keep the load factor below 0.75
+    if (++size * 4 >= timestamps.length * 3) {
+      resize();
+    }
+  }
+
+  /**
+   * Returns the number of distinct timestamps in this time series.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the aggregated time values, sorted by timestamp.
+   */
+  List<TimeValue> getTimeValues() {
+    long[] sortedTimestamps = new long[size];
+    int count = 0;
+    for (int i = 0; i < timestamps.length; i++) {
+      if (used[i]) {
+        sortedTimestamps[count++] = timestamps[i];
+      }
+    }
+    Arrays.sort(sortedTimestamps);
+
+    List<TimeValue> result = new ArrayList<>(size);
+    for (long timestamp : sortedTimestamps) {
+      result.add(new TimeValue(timestamp, values[indexOf(timestamp)]));
+    }
+    return result;
+  }
+
+  private long aggregate(long current, long value) {
+    switch (function) {
+      case SUM:
+        return current + value;
+      case MAX:
+        return Math.max(current, value);
+      case MIN:
+        return Math.min(current, value);
+      default:
+        // LATEST
+        return value;
+    }
+  }
+
+  private int indexOf(long timestamp) {
+    int mask = timestamps.length - 1;
+    int idx = hash(timestamp) & mask;
+    while (timestamps[idx] != timestamp || !used[idx]) {
+      idx = (idx + 1) & mask;
+    }
+    return idx;
+  }
+
+  private void resize() {
+    long[] oldTimestamps = timestamps;
+    long[] oldValues = values;
+    boolean[] oldUsed = used;
+
+    timestamps = new long[oldTimestamps.length * 2];
+    values = new long[oldValues.length * 2];
+    used = new boolean[oldUsed.length * 2];
+
+    int mask = timestamps.length - 1;
+    for (int i = 0; i < oldTimestamps.length; i++) {
+      if (!oldUsed[i]) {
+        continue;
+      }
+      int idx = hash(oldTimestamps[i]) & mask;
+      while (used[idx]) {
+        idx = (idx + 1) & mask;
+      }
+      used[idx] = true;
+      timestamps[idx] = oldTimestamps[i];
+      values[idx] = oldValues[i];
+    }
+  }
+
+  private static int hash(long timestamp) {
+    int h = (int) (timestamp ^ (timestamp >>> 32)) * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
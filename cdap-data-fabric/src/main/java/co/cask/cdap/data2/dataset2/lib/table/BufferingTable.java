@@ -36,7 +36,9 @@ import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.common.conf.Constants;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.tephra.Transaction;
@@ -53,7 +55,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.TreeSet;
 import javax.annotation.Nullable;
 
 /**
@@ -73,8 +75,12 @@ import javax.annotation.Nullable;
  *       not in in-memory buffer twice, two times it will try to fetch it from persistent store.
  *       Given the snapshot isolation tx model, this can be improved in future implementations.
  * <p>
- * NOTE: current implementation persists changes only at the end of transaction. Beware of OOME. There should be better
- *       implementation for MapReduce case (YMMV though, for counters/aggregations this implementation looks sweet)
+ * NOTE: changes are buffered in a {@link PackedWriteBuffer}, which packs the buffered cells into byte arrays.
+ *       By default, changes are persisted only at the end of transaction. Beware of OOME. For large transactions,
+ *       e.g. in MapReduce, a limit on the buffer size can be set with {@link #PROPERTY_BUFFER_MAX_BYTES}. When the
+ *       buffer grows beyond the limit, buffered changes are persisted with the transaction write pointer before the
+ *       transaction commits. They stay invisible to other transactions until commit, and are undone on rollback.
+ *       Only their keys are kept, in a local temporary file, until the transaction completes.
  * <p>
  * NOTE: Using {@link #get(byte[], byte[], byte[], int)} is generally always not efficient since it always hits the
  *       persisted store even if all needed data is in-memory buffer. See more info at method javadoc
@@ -86,6 +92,17 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   protected static final byte[] DELETE_MARKER = new byte[0];
 
+  /**
+   * Property for the maximum estimated size in bytes of the in-memory buffer of a transaction. Beyond it, buffered
+   * changes are persisted before the transaction commits. A value of zero or less means no limit, which is the default.
+   */
+  public static final String PROPERTY_BUFFER_MAX_BYTES = "dataset.table.buffer.max.bytes";
+
+  // Number of rows of the in-memory buffer to persist or undo at a time
+  private static final int PERSIST_BATCH_ROWS = 1000;
+  // Number of rows of the changes persisted early to read back at a time
+  private static final int SPILLED_CHANGES_BATCH_ROWS = 1000;
+
   // name of the table
   private final String name;
   // conflict detection level
@@ -95,12 +112,18 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   // Whether read-less increments should be used when increment() is called
   private final boolean enableReadlessIncrements;
 
-  // In-memory buffer that keeps not yet persisted data. It is row->(column->value) map. Value can be null which means
-  // that the corresponded column was removed.
-  private NavigableMap<byte[], NavigableMap<byte[], Update>> buff;
+  // In-memory buffer that keeps not yet persisted data, sorted by row and column
+  private PackedWriteBuffer buff;
 
   // Keeps track of what was persisted so far
-  private NavigableMap<byte[], NavigableMap<byte[], Update>> toUndo;
+  private PackedWriteBuffer toUndo;
+
+  // Maximum estimated size of the in-memory buffer before changes are persisted early. Zero or less means no limit.
+  private final long bufferMaxBytes;
+  // Size of the read-less increments kept in the in-memory buffer when changes were last persisted early
+  private long retainedBufferSize;
+  // Keys of the changes that were persisted early in the current transaction
+  private final SpilledChanges spilledChanges = new SpilledChanges();
 
   // Report data ops metrics to
   private MetricsCollector metricsCollector;
@@ -145,12 +168,14 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     this.name = name;
     this.conflictLevel = TableProperties.getConflictDetection(properties, ConflictDetection.ROW);
     this.enableReadlessIncrements = enableReadlessIncrements;
+    String bufferMaxBytes = properties.get(PROPERTY_BUFFER_MAX_BYTES);
+    this.bufferMaxBytes = bufferMaxBytes == null ? 0L : Long.parseLong(bufferMaxBytes);
     // TODO: having central dataset management service will allow us to use table ids instead of names, which will
     //       reduce changeset size transferred to/from server
     // we want it to be of format length+value to avoid conflicts like table="ab", row="cd" vs table="abc", row="d"
     // Default uses the above scheme. Subclasses can change it by overriding the #getNameAsTxChangePrefix method
     this.nameAsTxChangePrefix = Bytes.add(new byte[]{(byte) name.length()}, Bytes.toBytes(name));
-    this.buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+    this.buff = new PackedWriteBuffer();
   }
 
   /**
@@ -262,6 +287,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // releasing resources
     buff = null;
     toUndo = null;
+    spilledChanges.clear();
   }
 
   @Override
@@ -272,8 +298,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       throw new IllegalStateException(msg);
     }
     // starting with fresh buffer when tx starts
-    buff.clear();
+    clearBuffer();
     toUndo = null;
+    spilledChanges.clear();
     this.tx = tx;
   }
 
@@ -298,27 +325,64 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       case NONE:
         return Collections.emptyList();
       case ROW:
-        return getRowChanges();
       case COLUMN:
-        return getColumnChanges();
+        return getChanges();
       default:
         throw new RuntimeException("Unknown conflict detection level: " + conflictLevel);
     }
   }
 
-  private Collection<byte[]> getRowChanges() {
-    // we resolve conflicts on row level of individual table
-    List<byte[]> changes = new ArrayList<>(buff.size());
-    for (byte[] changedRow : buff.keySet()) {
-      changes.add(Bytes.add(getNameAsTxChangePrefix(), changedRow));
+  private Collection<byte[]> getChanges() {
+    if (spilledChanges.isEmpty()) {
+      List<byte[]> changes = new ArrayList<>();
+      addChanges(buff, changes);
+      return changes;
+    }
+
+    // Rows persisted early may have been persisted multiple times and changed again afterwards, hence deduplicate
+    Collection<byte[]> changes = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    try (SpilledChanges.Reader reader = spilledChanges.read()) {
+      NavigableMap<byte[], NavigableMap<byte[], Update>> spilled = reader.next(SPILLED_CHANGES_BATCH_ROWS);
+      while (!spilled.isEmpty()) {
+        addChanges(spilled, changes);
+        spilled = reader.next(SPILLED_CHANGES_BATCH_ROWS);
+      }
+    } catch (IOException e) {
+      LOG.debug("Failed to read persisted changes for table: " + getTransactionAwareName(), e);
+      throw new DataSetException("Failed to read persisted changes", e);
     }
+    addChanges(buff, changes);
     return changes;
   }
 
-  private Collection<byte[]> getColumnChanges() {
+  private void addChanges(PackedWriteBuffer buffer, Collection<byte[]> changes) {
+    if (conflictLevel == ConflictDetection.ROW) {
+      addRowChanges(buffer.rowKeys(null, null), changes);
+    } else {
+      addColumnChanges(buffer.rows(null, null), changes);
+    }
+  }
+
+  private void addChanges(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer, Collection<byte[]> changes) {
+    if (conflictLevel == ConflictDetection.ROW) {
+      addRowChanges(buffer.keySet().iterator(), changes);
+    } else {
+      addColumnChanges(buffer.entrySet().iterator(), changes);
+    }
+  }
+
+  private void addRowChanges(Iterator<byte[]> changedRows, Collection<byte[]> changes) {
     // we resolve conflicts on row level of individual table
-    List<byte[]> changes = new ArrayList<>(buff.size());
-    for (Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange : buff.entrySet()) {
+    while (changedRows.hasNext()) {
+      changes.add(Bytes.add(getNameAsTxChangePrefix(), changedRows.next()));
+    }
+  }
+
+  private void addColumnChanges(Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> changedRows,
+                                Collection<byte[]> changes) {
+    // we resolve conflicts on row level of individual table
+    while (changedRows.hasNext()) {
+      Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange = changedRows.next();
       if (rowChange.getValue() == null) {
         // NOTE: as of now we cannot detect conflict between delete whole row and row's column value change.
         //       this is not a big problem as of now, as row deletion is now act as deletion of every column, but this
@@ -333,22 +397,22 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
         changes.add(Bytes.add(getNameAsTxChangePrefix(), rowTxChange, column));
       }
     }
-    return changes;
   }
 
   @Override
   public boolean commitTx() throws Exception {
     if (!buff.isEmpty()) {
+      PackedWriteBuffer toPersist = buff;
       // We first assume that all data will be persisted. So that if exception happen during persist we try to
       // rollback everything we had in in-memory buffer.
-      toUndo = buff;
-      // clearing up in-memory buffer by initializing new map.
-      // NOTE: we want to init map here so that if no changes are made we re-use same instance of the map in next tx
-      // NOTE: we could cache two maps and swap them to avoid creation of map instances, but code would be ugly
-      buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+      toUndo = toPersist;
+      // clearing up in-memory buffer by initializing new buffer.
+      // NOTE: we want to init buffer here so that if no changes are made we re-use same instance in next tx
+      buff = new PackedWriteBuffer();
+      retainedBufferSize = 0L;
       // TODO: tracking of persisted items can be optimized by returning a pair {succeededOrNot, persisted} which
       //       tells if persisting succeeded and what was persisted (i.e. what we will have to undo in case of rollback)
-      persist(toUndo);
+      persistBuffer(toPersist);
     }
     return true;
   }
@@ -356,22 +420,127 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   @Override
   public void postTxCommit() {
     // don't need buffer anymore: tx has been committed
-    buff.clear();
+    clearBuffer();
     toUndo = null;
+    spilledChanges.clear();
     tx = null;
   }
 
   @Override
   public boolean rollbackTx() throws Exception {
-    buff.clear();
+    clearBuffer();
     if (toUndo != null) {
-      undo(toUndo);
+      undoBuffer(toUndo);
       toUndo = null;
     }
+    if (!spilledChanges.isEmpty()) {
+      try (SpilledChanges.Reader reader = spilledChanges.read()) {
+        NavigableMap<byte[], NavigableMap<byte[], Update>> spilled = reader.next(SPILLED_CHANGES_BATCH_ROWS);
+        while (!spilled.isEmpty()) {
+          undo(spilled);
+          spilled = reader.next(SPILLED_CHANGES_BATCH_ROWS);
+        }
+      }
+      spilledChanges.clear();
+    }
     tx = null;
     return true;
   }
 
+  private void clearBuffer() {
+    buff.clear();
+    retainedBufferSize = 0L;
+  }
+
+  /**
+   * Persists the changes of a buffer a batch of rows at a time, so that only one batch at a time is held in
+   * {@link Update} instances.
+   */
+  private void persistBuffer(PackedWriteBuffer buffer) throws Exception {
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> rows = buffer.rows(null, null);
+    while (rows.hasNext()) {
+      persist(nextBatch(rows));
+    }
+  }
+
+  /**
+   * Undoes the persisted changes of a buffer a batch of rows at a time.
+   */
+  private void undoBuffer(PackedWriteBuffer buffer) throws Exception {
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> rows = buffer.rows(null, null);
+    while (rows.hasNext()) {
+      undo(nextBatch(rows));
+    }
+  }
+
+  private static NavigableMap<byte[], NavigableMap<byte[], Update>> nextBatch(
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> rows) {
+    NavigableMap<byte[], NavigableMap<byte[], Update>> batch = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    while (batch.size() < PERSIST_BATCH_ROWS && rows.hasNext()) {
+      Map.Entry<byte[], NavigableMap<byte[], Update>> row = rows.next();
+      batch.put(row.getKey(), row.getValue());
+    }
+    return batch;
+  }
+
+  /**
+   * Persists the buffered changes if the buffer grew beyond the configured limit. The read-less increments that were
+   * kept in the buffer when it was last persisted are not counted, so that it isn't persisted again on every write.
+   */
+  private void checkBufferSize() {
+    if (bufferMaxBytes <= 0 || buff.getSizeInBytes() - retainedBufferSize < bufferMaxBytes) {
+      return;
+    }
+    try {
+      spillBuffer();
+    } catch (Exception e) {
+      LOG.debug("Failed to persist buffered changes for table: " + getTransactionAwareName(), e);
+      throw new DataSetException("Failed to persist buffered changes", e);
+    }
+  }
+
+  /**
+   * Persists the buffered changes before the transaction commits. Changes are written with the transaction write
+   * pointer, so they are visible to this transaction only, and are undone if the transaction is rolled back.
+   * Read-less increments are kept in memory, because persisting the same column multiple times with
+   * the same write pointer would overwrite the earlier increments.
+   */
+  private void spillBuffer() throws Exception {
+    PackedWriteBuffer toSpill = buff;
+    PackedWriteBuffer retained = new PackedWriteBuffer();
+    // Use a new buffer instead of clearing, so that open scanners keep a consistent view of the buffer
+    buff = retained;
+    int spilledRows = 0;
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> rows = toSpill.rows(null, null);
+    while (rows.hasNext()) {
+      NavigableMap<byte[], NavigableMap<byte[], Update>> spillBatch = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (Map.Entry<byte[], NavigableMap<byte[], Update>> row : nextBatch(rows).entrySet()) {
+        NavigableMap<byte[], Update> spillColumns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        for (Map.Entry<byte[], Update> column : row.getValue().entrySet()) {
+          if (column.getValue() instanceof IncrementValue) {
+            retained.increment(row.getKey(), column.getKey(), ((IncrementValue) column.getValue()).getLongValue());
+          } else {
+            spillColumns.put(column.getKey(), column.getValue());
+          }
+        }
+        if (!spillColumns.isEmpty()) {
+          spillBatch.put(row.getKey(), spillColumns);
+        }
+      }
+      if (spillBatch.isEmpty()) {
+        continue;
+      }
+      // The keys are needed for conflict detection and rollback, hence are recorded before the data is dropped.
+      // They are kept in a local file, so that memory use stays bounded by the buffer limit.
+      spilledChanges.add(spillBatch);
+      persist(spillBatch);
+      spilledRows += spillBatch.size();
+    }
+    retainedBufferSize = retained.getSizeInBytes();
+    LOG.debug("Persisted {} buffered rows of table {} before commit of transaction {}",
+              spilledRows, name, tx == null ? null : tx.getWritePointer());
+  }
+
   protected void ensureTransactionIsStarted() {
     if (tx == null) {
       throw new DataSetException("Attempt to perform a data operation without a transaction");
@@ -414,8 +583,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public Row get(byte[] row, byte[] startColumn, byte[] stopColumn, int limit) {
     ensureTransactionIsStarted();
     reportRead(1);
-    // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
+    NavigableMap<byte[], Update> buffCols = buff.getColumns(row, startColumn, stopColumn, limit);
 
     // NOTE: since we cannot tell the exact column set, we always have to go to persisted store.
     //       potential improvement: do not fetch columns available in in-mem buffer (we know them at this point)
@@ -429,7 +597,6 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       }
 
       if (buffCols != null) {
-        buffCols = getRange(buffCols, startColumn, stopColumn, limit);
         // null valued columns in in-memory buffer are deletes, so we need to delete them from the result list
         mergeToPersisted(result, buffCols, null);
       }
@@ -467,12 +634,12 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
         rowColumns.putAll(persistedRow);
 
         byte[] row = get.getRow();
-        NavigableMap<byte[], Update> buffCols = buff.get(row);
+        List<byte[]> getColumns = get.getColumns();
+        byte[][] columns = getColumns == null ? null : getColumns.toArray(new byte[getColumns.size()][]);
+        NavigableMap<byte[], Update> buffCols = buff.getColumns(row, columns);
 
         // merge what was in the buffer and what was persisted
         if (buffCols != null) {
-          List<byte[]> getColumns = get.getColumns();
-          byte[][] columns = getColumns == null ? null : getColumns.toArray(new byte[getColumns.size()][]);
           mergeToPersisted(rowColumns, buffCols, columns);
         }
 
@@ -500,24 +667,15 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   }
 
   private void putInternal(byte[] row, byte[][] columns, byte[][] values) {
-    NavigableMap<byte[], Update> colVals = buff.get(row);
-    boolean newRow = false;
-    if (colVals == null) {
-      colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      newRow = true;
-    }
     for (int i = 0; i < columns.length; i++) {
-      // NOTE: we copy passed column's and value's byte arrays to protect buffer against possible changes of these
-      // arrays on client
       if (values[i] != null && values[i].length == 0) {
         warnAboutEmptyValue(columns[i]);
       }
-      colVals.put(copy(columns[i]), new PutValue(copy(values[i])));
-    }
-    if (newRow) {
-      // NOTE: we copy passed row's byte arrays to protect buffer against possible changes of this array on client
-      buff.put(copy(row), colVals);
+      // NOTE: the buffer copies the passed row, column and value, which protects it against possible changes of
+      // these arrays on client
+      buff.put(row, columns[i], values[i]);
     }
+    checkBufferSize();
   }
 
   /**
@@ -619,16 +777,14 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   @Override
   public void increment(byte[] row, byte[][] columns, long[] amounts) {
     ensureTransactionIsStarted();
-    if (enableReadlessIncrements) {
-      NavigableMap<byte[], Update> colVals = buff.get(row);
-      if (colVals == null) {
-        colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-        buff.put(row, colVals);
-      }
+    // Once buffered changes are persisted early, read-less increments cannot be used anymore in the transaction,
+    // since they would write to the same cell as the persisted puts. See #spillBuffer.
+    if (enableReadlessIncrements && spilledChanges.isEmpty()) {
       for (int i = 0; i < columns.length; i++) {
-        colVals.put(columns[i], Updates.mergeUpdates(colVals.get(columns[i]), new IncrementValue(amounts[i])));
+        buff.increment(row, columns[i], amounts[i]);
       }
       reportWrite(1, getSize(row) + getSize(columns) + getSize(amounts));
+      checkBufferSize();
     } else {
       internalIncrementAndGet(row, columns, amounts);
     }
@@ -695,9 +851,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   @Override
   public Scanner scan(Scan scan) {
     ensureTransactionIsStarted();
-    NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap = scanBuffer(scan);
+    Iterator<byte[]> bufferRows = scanBuffer(scan);
     try {
-      return new BufferingScanner(bufferMap, scanPersisted(scan));
+      return new BufferingScanner(buff, bufferRows, scanPersisted(scan));
     } catch (Exception e) {
       LOG.debug("scan failed for table: " + getTransactionAwareName() +
           ", scan: " + scan.toString(), e);
@@ -705,39 +861,24 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
   }
 
-  private NavigableMap<byte[], NavigableMap<byte[], Update>> scanBuffer(Scan scan) {
-    NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap;
-    byte[] startRow = scan.getStartRow();
-    byte[] stopRow = scan.getStopRow();
-    if (startRow == null && stopRow == null) {
-      bufferMap = buff;
-    } else if (startRow == null) {
-      bufferMap = buff.headMap(stopRow, false);
-    } else if (stopRow == null) {
-      bufferMap = buff.tailMap(startRow, true);
-    } else {
-      bufferMap = buff.subMap(startRow, true, stopRow, false);
-    }
-    bufferMap = applyFilter(bufferMap, scan.getFilter());
-    return bufferMap;
+  private Iterator<byte[]> scanBuffer(Scan scan) {
+    return applyFilter(buff.rowKeys(scan.getStartRow(), scan.getStopRow()), scan.getFilter());
   }
 
-  private NavigableMap<byte[], NavigableMap<byte[], Update>> applyFilter(
-                                                        NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap,
-                                                        @Nullable Filter filter) {
+  private Iterator<byte[]> applyFilter(Iterator<byte[]> bufferRows, @Nullable Filter filter) {
     if (filter == null) {
-      return bufferMap;
+      return bufferRows;
     }
 
     // todo: currently we support only FuzzyRowFilter as an experimental feature
     if (filter instanceof FuzzyRowFilter) {
-      NavigableMap<byte[], NavigableMap<byte[], Update>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      for (Map.Entry<byte[], NavigableMap<byte[], Update>> entry : bufferMap.entrySet()) {
-        if (FuzzyRowFilter.ReturnCode.INCLUDE == ((FuzzyRowFilter) filter).filterRow(entry.getKey())) {
-          result.put(entry.getKey(), entry.getValue());
+      final FuzzyRowFilter rowFilter = (FuzzyRowFilter) filter;
+      return Iterators.filter(bufferRows, new Predicate<byte[]>() {
+        @Override
+        public boolean apply(byte[] row) {
+          return FuzzyRowFilter.ReturnCode.INCLUDE == rowFilter.filterRow(row);
         }
-      }
-      return result;
+      });
     } else {
       throw new DataSetException("Unknown filter type: " + filter);
     }
@@ -745,12 +886,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   private Map<byte[], byte[]> getRowMap(byte[] row) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
-    boolean rowDeleted = buffCols == null && buff.containsKey(row);
-    if (rowDeleted) {
-      return Collections.emptyMap();
-    }
+    NavigableMap<byte[], Update> buffCols = buff.getColumns(row, null);
 
     Map<byte[], byte[]> persisted = getPersisted(row, null);
 
@@ -766,8 +902,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   private Map<byte[], byte[]> getRowMap(byte[] row, byte[][] columns) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
+    NavigableMap<byte[], Update> buffCols = buff.getColumns(row, columns);
 
     // if nothing locally, return all from server
     if (buffCols == null) {
@@ -836,7 +971,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
         if (persistedBytes != null) {
           persistedValue = Bytes.toLong(persistedBytes);
         }
-        long newValue = persistedValue + ((IncrementValue) val).getValue();
+        long newValue = persistedValue + ((IncrementValue) val).getLongValue();
         persisted.put(key, Bytes.toBytes(newValue));
       } else if (val instanceof PutValue) {
         // overwrite the current
@@ -962,8 +1097,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   // they get annotated
 
   @ReadOnly
-  private Iterator<byte[]> getBufferKeyIterator(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer) {
-    final Iterator<byte[]> iterator = buffer.keySet().iterator();
+  private Iterator<byte[]> getBufferKeyIterator(final Iterator<byte[]> iterator) {
     return new AbstractIterator<byte[]>() {
       @Override
       protected byte[] computeNext() {
@@ -983,24 +1117,25 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   }
 
   @ReadOnly
-  private NavigableMap<byte[], Update> getFromBuffer(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer,
-                                                     byte[] key) {
-    return buffer.get(key);
+  private Map<byte[], Update> getFromBuffer(PackedWriteBuffer buffer, byte[] key) {
+    Map<byte[], Update> columns = buffer.getColumns(key, null);
+    // the row is gone if the buffer was cleared since the scan started
+    return columns == null ? Collections.<byte[], Update>emptyMap() : columns;
   }
 
   /**
    * Scanner implementation that overlays buffered data on top of already persisted data.
    */
   private class BufferingScanner implements Scanner {
-    private final NavigableMap<byte[], NavigableMap<byte[], Update>> buffer;
+    private final PackedWriteBuffer buffer;
     private final Scanner persistedScanner;
     private final Iterator<byte[]> keyIter;
     private byte[] currentKey;
     private Row currentRow;
 
-    private BufferingScanner(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer, Scanner persistedScanner) {
+    private BufferingScanner(PackedWriteBuffer buffer, Iterator<byte[]> bufferKeys, Scanner persistedScanner) {
       this.buffer = buffer;
-      this.keyIter = getBufferKeyIterator(buffer);
+      this.keyIter = getBufferKeyIterator(bufferKeys);
       if (this.keyIter.hasNext()) {
         currentKey = keyIter.next();
       }
@@ -1036,7 +1171,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
         // buffer row comes first or persisted scanner is empty
         Map<byte[], byte[]> persistedRow = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
         mergeToPersisted(persistedRow, getFromBuffer(buffer, currentKey), null);
-        result = new Result(copy(currentKey), persistedRow);
+        result = new Result(currentKey, persistedRow);
 
         currentKey = keyIter.hasNext() ? keyIter.next() : null;
       } else {
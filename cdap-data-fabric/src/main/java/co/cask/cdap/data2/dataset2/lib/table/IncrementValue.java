@@ -23,9 +23,10 @@ import co.cask.cdap.api.common.Bytes;
  * incremental writes for a field must be summed, along with the most recent {@link PutValue}, if any.
  */
 public class IncrementValue implements Update<Long> {
-  private final Long value;
+  // Kept as a primitive to avoid an extra Long object for every buffered increment
+  private final long value;
 
-  public IncrementValue(Long value) {
+  public IncrementValue(long value) {
     this.value = value;
   }
 
@@ -34,6 +35,13 @@ public class IncrementValue implements Update<Long> {
     return value;
   }
 
+  /**
+   * Returns the increment amount without boxing.
+   */
+  public long getLongValue() {
+    return value;
+  }
+
   @Override
   public byte[] getBytes() {
     return Bytes.toBytes(value);
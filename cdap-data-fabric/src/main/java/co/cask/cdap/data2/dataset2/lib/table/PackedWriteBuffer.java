@@ -0,0 +1,470 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import javax.annotation.Nullable;
+
+/**
+ * Sorted in-memory buffer of the changes that a {@link BufferingTable} makes in a transaction.
+ *
+ * The buffered cells are kept in a skip list sorted by row and column. The nodes of the skip list are stored in
+ * primitive arrays, and the keys and put values of the cells are packed into a few large byte arrays, so that a
+ * buffered cell costs a few dozen bytes on top of its data instead of several objects. A buffered increment is kept
+ * as a primitive long in its node. {@link Update} instances and maps are only created when the buffer is read.
+ *
+ * This class is not thread safe. The iterators are weakly consistent: they may reflect changes made to the buffer
+ * after they were created, and they end when the buffer is cleared.
+ */
+final class PackedWriteBuffer {
+
+  private static final byte NONE = 0;
+  private static final byte PUT = 1;
+  private static final byte DELETE = 2;
+  private static final byte INCREMENT = 3;
+
+  // Maximum height of the skip list. Every level links about a quarter of the nodes of the level below.
+  private static final int MAX_LEVEL = 16;
+  // The head node holds no cell. Its index is 0, so that a 0 link also marks the end of a level.
+  private static final int HEAD = 0;
+  private static final int INITIAL_NODES = 16;
+  private static final int MIN_CHUNK_SIZE = 1024;
+  private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+  // A key record is [row length][column length][row][column]
+  private static final int KEY_HEADER_SIZE = 2 * Bytes.SIZEOF_INT;
+  // A value record is [capacity][value length][value], so that it can be overwritten by a value of the same size
+  private static final int VALUE_HEADER_SIZE = 2 * Bytes.SIZEOF_INT;
+  // Size of a node in the node arrays, not counting its links
+  private static final int NODE_SIZE = 2 * Bytes.SIZEOF_LONG + Bytes.SIZEOF_INT + 1;
+
+  // Byte arrays that hold the key and value records. The address of a record is the index of its chunk in the high
+  // 32 bits and its offset in the chunk in the low 32 bits.
+  private byte[][] chunks;
+  private int chunkCount;
+  private int chunkPosition;
+
+  // Address of the key record of each node
+  private long[] keys;
+  // Amount of an increment, or address of the value record of a put. A delete keeps the record of the put it
+  // replaced, if any, so that a later put can reuse it. -1 means no record.
+  private long[] values;
+  private byte[] types;
+  // Index of the first link of each node in the links array. The link of a node at level i is at start + i.
+  private int[] linkStarts;
+  private int[] links;
+  private int nodeCount;
+  private int linkCount;
+  // Current height of the skip list
+  private int level;
+  private long sizeInBytes;
+  // Incremented when the buffer is cleared, so that iterators can end
+  private int generation;
+  private long random = 0x9E3779B97F4A7C15L;
+  // The last node before a new node at each level, reused for every insert
+  private final int[] predecessors = new int[MAX_LEVEL];
+
+  PackedWriteBuffer() {
+    init();
+  }
+
+  /**
+   * Returns {@code true} if no cells are buffered.
+   */
+  boolean isEmpty() {
+    return nodeCount == 1;
+  }
+
+  /**
+   * Returns the number of bytes used by the buffered cells.
+   */
+  long getSizeInBytes() {
+    return sizeInBytes;
+  }
+
+  /**
+   * Removes all buffered cells and releases the memory used for them.
+   */
+  void clear() {
+    if (isEmpty()) {
+      return;
+    }
+    generation++;
+    init();
+  }
+
+  /**
+   * Buffers a put of the given value, or a delete if the value is {@code null}. This replaces any update of the
+   * cell that was buffered before. The row, column and value are copied.
+   */
+  void put(byte[] row, byte[] column, @Nullable byte[] value) {
+    int node = findOrInsert(row, column);
+    if (value != null) {
+      writeValue(node, value);
+      return;
+    }
+    if (types[node] != PUT && types[node] != DELETE) {
+      values[node] = -1L;
+    }
+    types[node] = DELETE;
+  }
+
+  /**
+   * Buffers an increment of the given amount. It is added to the put or increment of the cell that was buffered
+   * before, if any. A deleted cell is incremented from zero.
+   *
+   * @throws NumberFormatException if the buffered value of the cell is not a long
+   */
+  void increment(byte[] row, byte[] column, long amount) {
+    int node = findOrInsert(row, column);
+    switch (types[node]) {
+      case PUT:
+        byte[] chunk = chunk(values[node]);
+        int offset = offset(values[node]) + Bytes.SIZEOF_INT;
+        if (Bytes.toInt(chunk, offset) != Bytes.SIZEOF_LONG) {
+          throw new NumberFormatException("Attempted to increment a value that is not convertible to long");
+        }
+        offset += Bytes.SIZEOF_INT;
+        Bytes.putLong(chunk, offset, Bytes.toLong(chunk, offset) + amount);
+        break;
+      case DELETE:
+        writeValue(node, Bytes.toBytes(amount));
+        break;
+      case INCREMENT:
+        values[node] += amount;
+        break;
+      default:
+        types[node] = INCREMENT;
+        values[node] = amount;
+    }
+  }
+
+  /**
+   * Returns the buffered updates of the given columns of a row, or {@code null} if none of them is buffered.
+   *
+   * @param columns the columns to return, or {@code null} for all columns of the row
+   */
+  @Nullable
+  NavigableMap<byte[], Update> getColumns(byte[] row, @Nullable byte[][] columns) {
+    if (columns == null) {
+      return getColumns(row, null, null, 0);
+    }
+    NavigableMap<byte[], Update> result = null;
+    for (byte[] column : columns) {
+      int node = nextNode(findPredecessor(row, column, null));
+      if (node != HEAD && compare(node, row, column) == 0) {
+        if (result == null) {
+          result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        }
+        result.put(column, getUpdate(node));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the buffered updates of a range of columns of a row, or {@code null} if none is buffered.
+   *
+   * @param startColumn first column of the range, inclusive, or {@code null} to start at the first column
+   * @param stopColumn last column of the range, exclusive, or {@code null} to end at the last column
+   * @param limit maximum number of columns to return, or zero or less for no limit
+   */
+  @Nullable
+  NavigableMap<byte[], Update> getColumns(byte[] row, @Nullable byte[] startColumn, @Nullable byte[] stopColumn,
+                                          int limit) {
+    NavigableMap<byte[], Update> result = null;
+    int node = nextNode(findPredecessor(row, startColumn, null));
+    while (node != HEAD && compareRow(node, row) == 0
+      && (stopColumn == null || compareColumn(node, stopColumn) < 0)
+      && (limit <= 0 || result == null || result.size() < limit)) {
+      if (result == null) {
+        result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      }
+      result.put(getColumn(node), getUpdate(node));
+      node = nextNode(node);
+    }
+    return result;
+  }
+
+  /**
+   * Returns an iterator over the keys of the buffered rows in a range, in order.
+   *
+   * @param startRow first row of the range, inclusive, or {@code null} to start at the first row
+   * @param stopRow last row of the range, exclusive, or {@code null} to end at the last row
+   */
+  Iterator<byte[]> rowKeys(@Nullable byte[] startRow, @Nullable final byte[] stopRow) {
+    final int expectedGeneration = generation;
+    final int first = startRow == null ? nextNode(HEAD) : nextNode(findPredecessor(startRow, null, null));
+    return new AbstractIterator<byte[]>() {
+      private int node = first;
+
+      @Override
+      protected byte[] computeNext() {
+        if (generation != expectedGeneration || node == HEAD
+          || (stopRow != null && compareRow(node, stopRow) >= 0)) {
+          return endOfData();
+        }
+        byte[] row = getRow(node);
+        do {
+          node = nextNode(node);
+        } while (node != HEAD && compareRow(node, row) == 0);
+        return row;
+      }
+    };
+  }
+
+  /**
+   * Returns an iterator over the buffered rows in a range, in order. Each row is returned with the updates of all its
+   * buffered columns, which are read when the iterator gets to the row.
+   *
+   * @param startRow first row of the range, inclusive, or {@code null} to start at the first row
+   * @param stopRow last row of the range, exclusive, or {@code null} to end at the last row
+   */
+  Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> rows(@Nullable byte[] startRow,
+                                                                 @Nullable final byte[] stopRow) {
+    final int expectedGeneration = generation;
+    final int first = startRow == null ? nextNode(HEAD) : nextNode(findPredecessor(startRow, null, null));
+    return new AbstractIterator<Map.Entry<byte[], NavigableMap<byte[], Update>>>() {
+      private int node = first;
+
+      @Override
+      protected Map.Entry<byte[], NavigableMap<byte[], Update>> computeNext() {
+        if (generation != expectedGeneration || node == HEAD
+          || (stopRow != null && compareRow(node, stopRow) >= 0)) {
+          return endOfData();
+        }
+        byte[] row = getRow(node);
+        NavigableMap<byte[], Update> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        do {
+          columns.put(getColumn(node), getUpdate(node));
+          node = nextNode(node);
+        } while (node != HEAD && compareRow(node, row) == 0);
+        return Maps.immutableEntry(row, columns);
+      }
+    };
+  }
+
+  private void init() {
+    chunks = new byte[4][];
+    chunkCount = 0;
+    chunkPosition = 0;
+    keys = new long[INITIAL_NODES];
+    values = new long[INITIAL_NODES];
+    types = new byte[INITIAL_NODES];
+    linkStarts = new int[INITIAL_NODES];
+    links = new int[MAX_LEVEL + 2 * INITIAL_NODES];
+    // The head node is linked at all levels
+    nodeCount = 1;
+    linkCount = MAX_LEVEL;
+    level = 1;
+    sizeInBytes = 0L;
+  }
+
+  private Update getUpdate(int node) {
+    switch (types[node]) {
+      case PUT:
+        return new PutValue(readValue(values[node]));
+      case INCREMENT:
+        return new IncrementValue(values[node]);
+      default:
+        return PutValue.DELETE;
+    }
+  }
+
+  private int nextNode(int node) {
+    return links[linkStarts[node]];
+  }
+
+  /**
+   * Returns the last node with a key less than the given one, or the head node if there is none.
+   *
+   * @param column the column of the key, or {@code null} for a key before all columns of the row
+   * @param preds if not {@code null}, the array to fill with the last node before the key at each level
+   */
+  private int findPredecessor(byte[] row, @Nullable byte[] column, @Nullable int[] preds) {
+    int node = HEAD;
+    for (int i = level - 1; i >= 0; i--) {
+      int next = links[linkStarts[node] + i];
+      while (next != HEAD && compare(next, row, column) < 0) {
+        node = next;
+        next = links[linkStarts[node] + i];
+      }
+      if (preds != null) {
+        preds[i] = node;
+      }
+    }
+    return node;
+  }
+
+  /**
+   * Returns the node of a cell, after inserting it if it is not buffered yet.
+   */
+  private int findOrInsert(byte[] row, byte[] column) {
+    int node = nextNode(findPredecessor(row, column, predecessors));
+    if (node != HEAD && compare(node, row, column) == 0) {
+      return node;
+    }
+
+    int height = randomHeight();
+    for (; level < height; level++) {
+      predecessors[level] = HEAD;
+    }
+    ensureCapacity(height);
+    node = nodeCount++;
+    keys[node] = writeKey(row, column);
+    values[node] = -1L;
+    types[node] = NONE;
+    linkStarts[node] = linkCount;
+    linkCount += height;
+    for (int i = 0; i < height; i++) {
+      int predecessorLink = linkStarts[predecessors[i]] + i;
+      links[linkStarts[node] + i] = links[predecessorLink];
+      links[predecessorLink] = node;
+    }
+    sizeInBytes += NODE_SIZE + height * Bytes.SIZEOF_INT;
+    return node;
+  }
+
+  private int randomHeight() {
+    // xorshift, which is good enough for picking the height of nodes
+    random ^= random << 13;
+    random ^= random >>> 7;
+    random ^= random << 17;
+    long bits = random;
+    int height = 1;
+    while (height < MAX_LEVEL && (bits & 3) == 0) {
+      height++;
+      bits >>>= 2;
+    }
+    return height;
+  }
+
+  private void ensureCapacity(int height) {
+    if (nodeCount == keys.length) {
+      int capacity = keys.length * 2;
+      keys = Arrays.copyOf(keys, capacity);
+      values = Arrays.copyOf(values, capacity);
+      types = Arrays.copyOf(types, capacity);
+      linkStarts = Arrays.copyOf(linkStarts, capacity);
+    }
+    if (linkCount + height > links.length) {
+      links = Arrays.copyOf(links, Math.max(links.length * 2, linkCount + height));
+    }
+  }
+
+  private int compare(int node, byte[] row, @Nullable byte[] column) {
+    int cmp = compareRow(node, row);
+    if (cmp != 0) {
+      return cmp;
+    }
+    return column == null ? 1 : compareColumn(node, column);
+  }
+
+  private int compareRow(int node, byte[] row) {
+    byte[] chunk = chunk(keys[node]);
+    int offset = offset(keys[node]);
+    return Bytes.compareTo(chunk, offset + KEY_HEADER_SIZE, Bytes.toInt(chunk, offset), row, 0, row.length);
+  }
+
+  private int compareColumn(int node, byte[] column) {
+    byte[] chunk = chunk(keys[node]);
+    int offset = offset(keys[node]);
+    int rowLength = Bytes.toInt(chunk, offset);
+    int columnLength = Bytes.toInt(chunk, offset + Bytes.SIZEOF_INT);
+    return Bytes.compareTo(chunk, offset + KEY_HEADER_SIZE + rowLength, columnLength, column, 0, column.length);
+  }
+
+  private byte[] getRow(int node) {
+    byte[] chunk = chunk(keys[node]);
+    int offset = offset(keys[node]);
+    int rowStart = offset + KEY_HEADER_SIZE;
+    return Arrays.copyOfRange(chunk, rowStart, rowStart + Bytes.toInt(chunk, offset));
+  }
+
+  private byte[] getColumn(int node) {
+    byte[] chunk = chunk(keys[node]);
+    int offset = offset(keys[node]);
+    int columnStart = offset + KEY_HEADER_SIZE + Bytes.toInt(chunk, offset);
+    return Arrays.copyOfRange(chunk, columnStart, columnStart + Bytes.toInt(chunk, offset + Bytes.SIZEOF_INT));
+  }
+
+  private long writeKey(byte[] row, byte[] column) {
+    long address = allocate(KEY_HEADER_SIZE + row.length + column.length);
+    byte[] chunk = chunk(address);
+    int offset = Bytes.putInt(chunk, offset(address), row.length);
+    offset = Bytes.putInt(chunk, offset, column.length);
+    System.arraycopy(row, 0, chunk, offset, row.length);
+    System.arraycopy(column, 0, chunk, offset + row.length, column.length);
+    return address;
+  }
+
+  private void writeValue(int node, byte[] value) {
+    long address = types[node] == PUT || types[node] == DELETE ? values[node] : -1L;
+    if (address < 0 || Bytes.toInt(chunk(address), offset(address)) < value.length) {
+      address = allocate(VALUE_HEADER_SIZE + value.length);
+      Bytes.putInt(chunk(address), offset(address), value.length);
+    }
+    byte[] chunk = chunk(address);
+    int offset = Bytes.putInt(chunk, offset(address) + Bytes.SIZEOF_INT, value.length);
+    System.arraycopy(value, 0, chunk, offset, value.length);
+    values[node] = address;
+    types[node] = PUT;
+  }
+
+  private byte[] readValue(long address) {
+    byte[] chunk = chunk(address);
+    int offset = offset(address) + Bytes.SIZEOF_INT;
+    int valueStart = offset + Bytes.SIZEOF_INT;
+    return Arrays.copyOfRange(chunk, valueStart, valueStart + Bytes.toInt(chunk, offset));
+  }
+
+  /**
+   * Allocates space for a record of the given size, and returns its address.
+   */
+  private long allocate(int size) {
+    byte[] chunk = chunkCount == 0 ? null : chunks[chunkCount - 1];
+    if (chunk == null || chunk.length - chunkPosition < size) {
+      // Chunks grow with the buffer, so that small buffers stay small
+      int chunkSize = chunk == null ? MIN_CHUNK_SIZE : (int) Math.min(MAX_CHUNK_SIZE, 2L * chunk.length);
+      chunk = new byte[Math.max(chunkSize, size)];
+      if (chunkCount == chunks.length) {
+        chunks = Arrays.copyOf(chunks, chunkCount * 2);
+      }
+      chunks[chunkCount++] = chunk;
+      chunkPosition = 0;
+    }
+    long address = ((long) (chunkCount - 1) << 32) | chunkPosition;
+    chunkPosition += size;
+    sizeInBytes += size;
+    return address;
+  }
+
+  private byte[] chunk(long address) {
+    return chunks[(int) (address >>> 32)];
+  }
+
+  private static int offset(long address) {
+    return (int) address;
+  }
+}
@@ -21,6 +21,13 @@ package co.cask.cdap.data2.dataset2.lib.table;
  * Represents a normal (full) write to a datastore for in-memory buffering, overwriting the previously stored value.
  */
 public class PutValue implements Update<byte[]> {
+
+  /**
+   * A shared instance representing a deleted value. Since {@link PutValue} is immutable, it is safe to share it
+   * instead of creating a new instance for every buffered delete.
+   */
+  public static final PutValue DELETE = new PutValue(null);
+
   private final byte[] bytes;
 
   public PutValue(byte[] bytes) {
@@ -39,6 +46,6 @@ public class PutValue implements Update<byte[]> {
 
   @Override
   public Update<byte[]> deepCopy() {
-    return new PutValue(bytes == null ? null : bytes.clone());
+    return bytes == null ? DELETE : new PutValue(bytes.clone());
   }
 }
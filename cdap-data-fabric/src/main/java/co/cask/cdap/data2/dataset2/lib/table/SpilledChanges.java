@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Records the rows and columns of the changes that a {@link BufferingTable} persisted before the commit of a
+ * transaction in a local file, so that they don't have to be held in memory for the rest of the transaction.
+ * They are read back in batches to compute the changes for conflict detection, and to undo the persisted changes
+ * on rollback. Only the keys are recorded, since that is all that is needed to undo.
+ */
+final class SpilledChanges {
+
+  private File file;
+  private DataOutputStream output;
+  private long rows;
+
+  /**
+   * Returns {@code true} if no changes were recorded since the last {@link #clear()}.
+   */
+  boolean isEmpty() {
+    return rows == 0;
+  }
+
+  /**
+   * Records the rows and columns of the given changes.
+   */
+  void add(NavigableMap<byte[], NavigableMap<byte[], Update>> changes) throws IOException {
+    if (output == null) {
+      File tempFile = File.createTempFile("table-changes", ".bin");
+      try {
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      } catch (IOException e) {
+        tempFile.delete();
+        throw e;
+      }
+      file = tempFile;
+    }
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> row : changes.entrySet()) {
+      writeBytes(row.getKey());
+      output.writeInt(row.getValue().size());
+      for (byte[] column : row.getValue().keySet()) {
+        writeBytes(column);
+      }
+      rows++;
+    }
+  }
+
+  /**
+   * Returns a reader of the changes recorded so far. All changes are read as deletes, since values are not recorded.
+   */
+  Reader read() throws IOException {
+    if (output == null) {
+      return new Reader(null, 0);
+    }
+    output.flush();
+    return new Reader(new DataInputStream(new BufferedInputStream(new FileInputStream(file))), rows);
+  }
+
+  /**
+   * Discards all recorded changes.
+   */
+  void clear() {
+    if (output != null) {
+      Closeables.closeQuietly(output);
+      output = null;
+    }
+    if (file != null) {
+      file.delete();
+      file = null;
+    }
+    rows = 0;
+  }
+
+  private void writeBytes(byte[] bytes) throws IOException {
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  /**
+   * Reads the recorded changes in batches.
+   */
+  static final class Reader implements Closeable {
+
+    private final DataInputStream input;
+    private long remaining;
+
+    private Reader(DataInputStream input, long rows) {
+      this.input = input;
+      this.remaining = rows;
+    }
+
+    /**
+     * Returns the changes of the next rows, up to the given number of rows. A row recorded multiple times may be
+     * returned in multiple batches. Returns an empty map once all changes have been read.
+     */
+    NavigableMap<byte[], NavigableMap<byte[], Update>> next(int maxRows) throws IOException {
+      NavigableMap<byte[], NavigableMap<byte[], Update>> changes = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      while (remaining > 0 && changes.size() < maxRows) {
+        byte[] row = readBytes();
+        NavigableMap<byte[], Update> columns = changes.get(row);
+        if (columns == null) {
+          columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+          changes.put(row, columns);
+        }
+        int columnCount = input.readInt();
+        for (int i = 0; i < columnCount; i++) {
+          columns.put(readBytes(), PutValue.DELETE);
+        }
+        remaining--;
+      }
+      return changes;
+    }
+
+    private byte[] readBytes() throws IOException {
+      byte[] bytes = new byte[input.readInt()];
+      input.readFully(bytes);
+      return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (input != null) {
+        input.close();
+      }
+    }
+  }
+}
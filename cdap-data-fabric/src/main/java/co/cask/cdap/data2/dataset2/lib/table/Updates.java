@@ -99,11 +99,11 @@ public final class Updates {
           throw new NumberFormatException("Attempted to increment a value that is not convertible to long");
         }
 
-        long newValue = (putBytes == null ? 0L : Bytes.toLong(putBytes)) + increment.getValue();
+        long newValue = (putBytes == null ? 0L : Bytes.toLong(putBytes)) + increment.getLongValue();
         return new PutValue(Bytes.toBytes(newValue));
       } else if (base instanceof IncrementValue) {
         IncrementValue baseIncrement = (IncrementValue) base;
-        return new IncrementValue(baseIncrement.getValue() + increment.getValue());
+        return new IncrementValue(baseIncrement.getLongValue() + increment.getLongValue());
       }
     }
     // should not happen: modifier is neither Put nor Increment!
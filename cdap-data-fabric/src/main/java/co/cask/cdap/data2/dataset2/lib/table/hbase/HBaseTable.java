@@ -197,7 +197,7 @@ public class HBaseTable extends BufferingTable {
     if (updates.isEmpty()) {
       return;
     }
-    List<Mutation> mutations = new ArrayList<>();
+    List<Mutation> mutations = new ArrayList<>(updates.size());
     for (Map.Entry<byte[], NavigableMap<byte[], Update>> row : updates.entrySet()) {
       // create these only when they are needed
       PutBuilder put = null;
@@ -213,11 +213,11 @@ public class HBaseTable extends BufferingTable {
             if (safeReadlessIncrements) {
               increment = getIncrement(increment, row.getKey(), true);
               increment.add(columnFamily, column.getKey(), tx.getWritePointer(),
-                            ((IncrementValue) val).getValue());
+                            ((IncrementValue) val).getLongValue());
             } else {
               incrementPut = getPutForIncrement(incrementPut, row.getKey());
               incrementPut.add(columnFamily, column.getKey(), tx.getWritePointer(),
-                               Bytes.toBytes(((IncrementValue) val).getValue()));
+                               Bytes.toBytes(((IncrementValue) val).getLongValue()));
             }
           } else if (val instanceof PutValue) {
             put = getPut(put, row.getKey());
@@ -229,7 +229,7 @@ public class HBaseTable extends BufferingTable {
           if (val instanceof IncrementValue) {
             incrementPut = getPutForIncrement(incrementPut, row.getKey());
             incrementPut.add(columnFamily, column.getKey(),
-                             Bytes.toBytes(((IncrementValue) val).getValue()));
+                             Bytes.toBytes(((IncrementValue) val).getLongValue()));
           } else if (val instanceof PutValue) {
             put = getPut(put, row.getKey());
             put.add(columnFamily, column.getKey(), ((PutValue) val).getValue());
@@ -77,7 +77,7 @@ public class LevelDBTable extends BufferingTable {
             incrCols = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
             increments.put(rowEntry.getKey(), incrCols);
           }
-          incrCols.put(colEntry.getKey(), ((IncrementValue) val).getValue());
+          incrCols.put(colEntry.getKey(), ((IncrementValue) val).getLongValue());
         } else if (val instanceof PutValue) {
           NavigableMap<byte[], byte[]> putCols = puts.get(rowEntry.getKey());
           if (putCols == null) {
@@ -96,10 +96,13 @@ public class LevelDBTable extends BufferingTable {
   @WriteOnly
   private void persist(NavigableMap<byte[], NavigableMap<byte[], Long>> increments,
                        NavigableMap<byte[], NavigableMap<byte[], byte[]>> puts) throws IOException {
-    for (Map.Entry<byte[], NavigableMap<byte[], Long>> incEntry : increments.entrySet()) {
-      core.increment(incEntry.getKey(), incEntry.getValue());
+    // Increments of all rows are applied in one write batch
+    if (!increments.isEmpty()) {
+      core.increment(increments);
+    }
+    if (!puts.isEmpty()) {
+      core.persist(puts, persistedVersion);
     }
-    core.persist(puts, persistedVersion);
   }
 
   @Override
@@ -19,6 +19,7 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
 import co.cask.cdap.api.dataset.lib.cube.MeasureType;
 import co.cask.cdap.api.dataset.lib.cube.Measurement;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.metrics.MetricsCollector;
@@ -249,6 +250,72 @@ public final class FactTable implements Closeable {
     }
   }
 
+  /**
+   * Rolls up the facts in the given time range from a fact table of a finer resolution into this table.
+   * Values of the finer time buckets are summed into the time buckets of this table. Cells that already exist in
+   * this table are left untouched: those are either gauges, which are written to every resolution on ingestion,
+   * or values that were rolled up before. Hence the rollup of a time range can be safely repeated. Counters that are
+   * added to a time range after it was rolled up are not picked up by repeating the rollup. They have to be added
+   * to this table directly.
+   *
+   * @param source fact table to roll up from, its resolution must divide the resolution of this table
+   * @param dimensionValues dimension values to roll up, {@code null} value matches any value
+   * @param startTs start of the time range, in seconds, inclusive. Must be a multiple of the resolution.
+   * @param endTs end of the time range, in seconds, exclusive. Must be a multiple of the resolution.
+   */
+  public void rollup(FactTable source, List<DimensionValue> dimensionValues, long startTs, long endTs) {
+    Preconditions.checkArgument(source.resolution < resolution && resolution % source.resolution == 0,
+                                "Cannot rollup resolution %s into resolution %s", source.resolution, resolution);
+    Preconditions.checkArgument(startTs % resolution == 0 && endTs % resolution == 0,
+                                "Time range [%s, %s) is not aligned to resolution %s", startTs, endTs, resolution);
+    if (startTs >= endTs) {
+      return;
+    }
+
+    // end time of the scan is inclusive
+    FactScan scan = new FactScan(startTs, endTs - 1, ImmutableList.<String>of(), dimensionValues);
+    NavigableMap<byte[], NavigableMap<byte[], byte[]>> rollupTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    FactScanner scanner = source.scan(scan);
+    try {
+      while (scanner.hasNext()) {
+        FactScanResult result = scanner.next();
+        for (TimeValue timeValue : result) {
+          byte[] rowKey = codec.createRowKey(result.getDimensionValues(), result.getMeasureName(),
+                                             timeValue.getTimestamp());
+          inc(rollupTable, rowKey, codec.createColumn(timeValue.getTimestamp()), timeValue.getValue());
+        }
+      }
+    } finally {
+      scanner.close();
+    }
+    if (rollupTable.isEmpty()) {
+      return;
+    }
+
+    // skip the cells that already exist
+    try (Scanner existing = getScanner(scan)) {
+      Row row;
+      while ((row = existing.next()) != null) {
+        NavigableMap<byte[], byte[]> columns = rollupTable.get(row.getRow());
+        if (columns != null) {
+          for (byte[] column : row.getColumns().keySet()) {
+            columns.remove(column);
+          }
+          if (columns.isEmpty()) {
+            rollupTable.remove(row.getRow());
+          }
+        }
+      }
+    }
+
+    NavigableMap<byte[], NavigableMap<byte[], Long>> convertedRollupTable =
+      Maps.transformValues(rollupTable, TRANSFORM_MAP_BYTE_ARRAY_TO_LONG);
+    timeSeriesTable.put(convertedRollupTable);
+    if (metrics != null) {
+      metrics.increment(putCountMetric, convertedRollupTable.size());
+    }
+  }
+
   /**
    * Searches for first non-null valued dimensions in records that contain given list of dimensions and match given
    * dimension values in given time range. Returned dimension values are those that are not defined in given
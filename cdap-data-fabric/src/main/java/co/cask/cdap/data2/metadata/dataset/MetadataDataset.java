@@ -20,6 +20,7 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.AbstractDataset;
 import co.cask.cdap.api.dataset.lib.IndexedTable;
 import co.cask.cdap.api.dataset.table.Delete;
+import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Put;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scan;
@@ -68,6 +69,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -88,6 +90,8 @@ public class MetadataDataset extends AbstractDataset {
   private static final String HISTORY_COLUMN = "h"; // column for metadata history
   private static final String VALUE_COLUMN = "v";  // column for metadata value
   private static final String TAGS_SEPARATOR = ",";
+  // maximum number of metadata values to read with one batch get when resolving search results
+  private static final int SEARCH_FETCH_BATCH_SIZE = 1000;
 
   // Fuzzy key is of form <row key, key mask>. We want to compare row keys.
   private static final Comparator<ImmutablePair<byte[], byte[]>> FUZZY_KEY_COMPARATOR =
@@ -571,7 +575,8 @@ public class MetadataDataset extends AbstractDataset {
 
   private SearchResults searchByDefaultIndex(String namespaceId, String searchQuery,
                                              Set<EntityTypeSimpleName> types, boolean showHidden) {
-    List<MetadataEntry> results = new ArrayList<>();
+    // Collect the matches of all terms first, so that the metadata values can be fetched in batches
+    List<ImmutablePair<NamespacedEntityId, String>> matches = new ArrayList<>();
     for (String searchTerm : getSearchTerms(namespaceId, searchQuery)) {
       Scanner scanner;
       if (searchTerm.endsWith("*")) {
@@ -586,9 +591,10 @@ public class MetadataDataset extends AbstractDataset {
       try {
         Row next;
         while ((next = scanner.next()) != null) {
-          Optional<MetadataEntry> metadataEntry = parseRow(next, DEFAULT_INDEX_COLUMN, types, showHidden);
-          if (metadataEntry.isPresent()) {
-            results.add(metadataEntry.get());
+          Optional<ImmutablePair<NamespacedEntityId, String>> match =
+            parseIndexRow(next, DEFAULT_INDEX_COLUMN, types, showHidden);
+          if (match.isPresent()) {
+            matches.add(match.get());
           }
         }
       } finally {
@@ -596,7 +602,41 @@ public class MetadataDataset extends AbstractDataset {
       }
     }
     // cursors are currently not supported for default indexes
-    return new SearchResults(results, Collections.<String>emptyList());
+    return new SearchResults(getMetadataEntries(matches), Collections.<String>emptyList());
+  }
+
+  /**
+   * Returns the {@link MetadataEntry} for each of the given entity and metadata key pairs, in the same order.
+   * Pairs that are matched multiple times are only read once, and values are read with batch gets rather
+   * than one get per pair. Pairs without a value are skipped.
+   */
+  private List<MetadataEntry> getMetadataEntries(List<ImmutablePair<NamespacedEntityId, String>> matches) {
+    Map<ImmutablePair<NamespacedEntityId, String>, MetadataEntry> entries = new HashMap<>();
+    byte[] valueColumn = Bytes.toBytes(VALUE_COLUMN);
+    for (List<ImmutablePair<NamespacedEntityId, String>> batch
+      : Iterables.partition(new LinkedHashSet<>(matches), SEARCH_FETCH_BATCH_SIZE)) {
+      List<Get> gets = new ArrayList<>(batch.size());
+      for (ImmutablePair<NamespacedEntityId, String> match : batch) {
+        gets.add(new Get(MdsKey.getMDSValueKey(match.getFirst(), match.getSecond()).getKey(), valueColumn));
+      }
+      List<Row> rows = indexedTable.get(gets);
+      for (int i = 0; i < batch.size(); i++) {
+        byte[] value = rows.get(i).get(valueColumn);
+        if (value != null) {
+          ImmutablePair<NamespacedEntityId, String> match = batch.get(i);
+          entries.put(match, new MetadataEntry(match.getFirst(), match.getSecond(), Bytes.toString(value)));
+        }
+      }
+    }
+
+    List<MetadataEntry> results = new ArrayList<>(matches.size());
+    for (ImmutablePair<NamespacedEntityId, String> match : matches) {
+      MetadataEntry entry = entries.get(match);
+      if (entry != null) {
+        results.add(entry);
+      }
+    }
+    return results;
   }
 
   private SearchResults searchByCustomIndex(String namespaceId, Set<EntityTypeSimpleName> types,
@@ -610,6 +650,10 @@ public class MetadataDataset extends AbstractDataset {
     List<String> cursors = new ArrayList<>(numCursors);
     int count = 0;
     for (String searchTerm : getSearchTerms(namespaceId, "*")) {
+      // no need to scan the remaining namespaces once enough results were fetched
+      if (count >= fetchSize) {
+        break;
+      }
       byte[] startKey = Bytes.toBytes(searchTerm.substring(0, searchTerm.lastIndexOf("*")));
       byte[] stopKey = Bytes.stopKeyForPrefix(startKey);
       // if a cursor is provided, then start at the cursor
@@ -624,7 +668,7 @@ public class MetadataDataset extends AbstractDataset {
       int mod = limit == 1 ? 0 : 1;
       try (Scanner scanner = indexedTable.scanByIndex(Bytes.toBytes(indexColumn), startKey, stopKey)) {
         Row next;
-        while ((next = scanner.next()) != null && count < fetchSize) {
+        while (count < fetchSize && (next = scanner.next()) != null) {
           // skip until we reach offset
           if (count < offset) {
             if (parseRow(next, indexColumn, types, showHidden).isPresent()) {
@@ -653,6 +697,18 @@ public class MetadataDataset extends AbstractDataset {
   // so return an Optional
   private Optional<MetadataEntry> parseRow(Row rowToProcess, String indexColumn,
                                            Set<EntityTypeSimpleName> entityFilter, boolean showHidden) {
+    Optional<ImmutablePair<NamespacedEntityId, String>> match =
+      parseIndexRow(rowToProcess, indexColumn, entityFilter, showHidden);
+    if (!match.isPresent()) {
+      return Optional.absent();
+    }
+    return Optional.fromNullable(getMetadata(match.get().getFirst(), match.get().getSecond()));
+  }
+
+  // returns the entity and metadata key of an index row, if the row matches the entityFilter and showHidden
+  private Optional<ImmutablePair<NamespacedEntityId, String>> parseIndexRow(Row rowToProcess, String indexColumn,
+                                                                           Set<EntityTypeSimpleName> entityFilter,
+                                                                           boolean showHidden) {
     String rowValue = rowToProcess.getString(indexColumn);
     if (rowValue == null) {
       return Optional.absent();
@@ -674,8 +730,7 @@ public class MetadataDataset extends AbstractDataset {
       return Optional.absent();
     }
     String key = MdsKey.getMetadataKey(targetType, rowKey);
-    MetadataEntry entry = getMetadata(targetId, key);
-    return Optional.fromNullable(entry);
+    return Optional.of(ImmutablePair.of(targetId, key));
   }
 
   /**
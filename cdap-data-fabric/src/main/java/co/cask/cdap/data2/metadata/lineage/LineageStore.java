@@ -36,6 +36,7 @@ import org.apache.tephra.TransactionExecutor;
 import org.apache.tephra.TransactionExecutorFactory;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import javax.annotation.Nullable;
@@ -205,6 +206,38 @@ public class LineageStore implements LineageStoreReader, LineageStoreWriter {
     });
   }
 
+  /**
+   * Fetch access information for a set of datasets, streams and programs for a given period.
+   *
+   * @param entities datasets, streams and programs for which to fetch access information
+   * @param start start time period
+   * @param end end time period
+   * @param filter filter to be applied on result set
+   * @return access information of all the given entities
+   */
+  @Override
+  public Set<Relation> getRelations(final Set<? extends NamespacedEntityId> entities, final long start,
+                                    final long end, final Predicate<Relation> filter) {
+    return execute(new TransactionExecutor.Function<LineageDataset, Set<Relation>>() {
+      @Override
+      public Set<Relation> apply(LineageDataset input) throws Exception {
+        Set<Relation> relations = new HashSet<>();
+        for (NamespacedEntityId entity : entities) {
+          if (entity instanceof DatasetId) {
+            relations.addAll(input.getRelations((DatasetId) entity, start, end, filter));
+          } else if (entity instanceof StreamId) {
+            relations.addAll(input.getRelations((StreamId) entity, start, end, filter));
+          } else if (entity instanceof ProgramId) {
+            relations.addAll(input.getRelations((ProgramId) entity, start, end, filter));
+          } else {
+            throw new IllegalArgumentException("Unknown entity type " + entity);
+          }
+        }
+        return relations;
+      }
+    });
+  }
+
   /**
    * @return a set of access times (for program and data it accesses) associated with a program run.
    */
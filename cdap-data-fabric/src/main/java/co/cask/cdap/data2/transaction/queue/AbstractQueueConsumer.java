@@ -32,6 +32,7 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionAware;
 import org.apache.tephra.TxConstants;
@@ -47,6 +48,11 @@ import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -85,6 +91,11 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
 
   private byte[] scanStartRow;
   private boolean committed;
+  // Batch size of the last dequeue, used as the batch size for prefetching
+  private int lastBatchSize;
+  // Background population of the entry cache, started on commit. It must be completed before the entry cache,
+  // the consuming entries or the scan start row is accessed.
+  private Future<?> prefetchFuture;
   protected Transaction transaction;
   protected int commitCount;
 
@@ -136,6 +147,8 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
 
   @Override
   public DequeueResult<byte[]> dequeue(int maxBatchSize) throws IOException {
+    awaitPrefetch();
+    lastBatchSize = maxBatchSize;
     DequeueResult<byte[]> result = performDequeue(maxBatchSize);
     // Start row can be updated to the largest rowKey in the consumingEntries
     // that is smaller than or equal to scanStartRow. If no such key exists, update start row to scanStartRow
@@ -147,6 +160,7 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
 
   @Override
   public void startTx(Transaction tx) {
+    awaitPrefetch();
     consumingEntries.clear();
     this.transaction = tx;
     this.committed = false;
@@ -154,6 +168,7 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
 
   @Override
   public void updateTx(Transaction transaction) {
+    awaitPrefetch();
     this.transaction = transaction;
   }
 
@@ -169,6 +184,9 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
       return true;
     }
 
+    // Scan for the next batch while the state of the consumed entries is being persisted
+    startPrefetch();
+
     byte[] stateContent = encodeStateColumn(ConsumerEntryState.PROCESSED);
     updateState(consumingEntries.keySet(), stateColumnName, stateContent);
     commitCount += consumingEntries.size();
@@ -178,6 +196,7 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
 
   @Override
   public boolean rollbackTx() throws Exception {
+    awaitPrefetch();
     if (consumingEntries.isEmpty()) {
       return true;
     }
@@ -209,6 +228,69 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     // No-op by default.
   }
 
+  /**
+   * Returns the executor for scanning queue entries in the background on commit, so that the entries for the next
+   * dequeue are fetched while the state of the consumed entries is being persisted. The scan calls
+   * {@link #getPrefetchScanner(byte[], byte[], int)} from the executor thread, concurrently to {@link #updateState}.
+   *
+   * @return the executor or {@code null} to disable prefetching, which is the default
+   */
+  @Nullable
+  protected ExecutorService getPrefetchExecutor() {
+    return null;
+  }
+
+  /**
+   * Returns the scanner used for prefetching. It is called from the prefetch executor thread, hence it must not use
+   * any resource that is used by {@link #updateState} or {@link #undoState}.
+   * By default it is the same as {@link #getScanner(byte[], byte[], int)}.
+   */
+  protected QueueScanner getPrefetchScanner(byte[] startRow, byte[] stopRow, int numRows) throws IOException {
+    return getScanner(startRow, stopRow, numRows);
+  }
+
+  /**
+   * Returns whether a prefetch can be started. It is only called if {@link #getPrefetchExecutor()} is not null.
+   */
+  protected boolean canPrefetch() {
+    return true;
+  }
+
+  /**
+   * Blocks until the prefetch that is in progress, if any, is completed.
+   */
+  protected final void awaitPrefetch() {
+    if (prefetchFuture == null) {
+      return;
+    }
+    try {
+      Uninterruptibles.getUninterruptibly(prefetchFuture);
+    } catch (ExecutionException e) {
+      // Entries that are not prefetched will be scanned on dequeue
+      LOG.debug("Failed to prefetch entries for queue {}", queueName, e.getCause());
+    } finally {
+      prefetchFuture = null;
+    }
+  }
+
+  private void startPrefetch() {
+    ExecutorService executor = getPrefetchExecutor();
+    if (executor == null || entryCache.size() >= lastBatchSize || !canPrefetch()) {
+      return;
+    }
+
+    final Set<byte[]> excludeRows = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    excludeRows.addAll(consumingEntries.keySet());
+    final int batchSize = lastBatchSize;
+    prefetchFuture = executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        populateRowCache(excludeRows, batchSize, new Stopwatch().start(), true);
+        return null;
+      }
+    });
+  }
+
   private DequeueResult<byte[]> performDequeue(int maxBatchSize) throws IOException {
     Preconditions.checkArgument(maxBatchSize > 0, "Batch size must be > 0.");
 
@@ -290,7 +372,7 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
 
     // If not enough entries from the cache, try to get more.
     if (entries.size() < maxBatchSize) {
-      populateRowCache(entries.keySet(), maxBatchSize, stopwatch);
+      populateRowCache(entries.keySet(), maxBatchSize, stopwatch, false);
       hasEntry = fetchFromCache(entries, maxBatchSize) || hasEntry;
     }
 
@@ -311,15 +393,16 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     return true;
   }
 
-  private void populateRowCache(Set<byte[]> excludeRows, int maxBatchSize, Stopwatch stopwatch) throws IOException {
+  private void populateRowCache(Set<byte[]> excludeRows, int maxBatchSize,
+                                Stopwatch stopwatch, boolean prefetch) throws IOException {
 
     long readPointer = transaction.getReadPointer();
 
     // Scan the table for queue entries.
     int numRows = Math.max(MIN_FETCH_ROWS, maxBatchSize * PREFETCH_BATCHES);
-    QueueScanner scanner = getScanner(scanStartRow,
-                                      QueueEntryRow.getStopRowForTransaction(queueRowPrefix, transaction),
-                                      numRows);
+    byte[] stopRow = QueueEntryRow.getStopRowForTransaction(queueRowPrefix, transaction);
+    QueueScanner scanner = prefetch ? getPrefetchScanner(scanStartRow, stopRow, numRows)
+                                    : getScanner(scanStartRow, stopRow, numRows);
     try {
       // Try fill up the cache
       boolean firstScannedRow = true;
@@ -21,6 +21,7 @@ import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.queue.DequeueResult;
 import co.cask.cdap.data2.transaction.queue.AbstractQueueConsumer;
+import co.cask.cdap.data2.transaction.queue.QueueConstants;
 import co.cask.cdap.data2.transaction.queue.QueueEntryRow;
 import co.cask.cdap.data2.transaction.queue.QueueScanner;
 import com.google.common.collect.Lists;
@@ -30,6 +31,7 @@ import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Row;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Threads;
 import org.apache.tephra.Transaction;
 
 import java.io.IOException;
@@ -37,16 +39,25 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Queue consumer for HBase.
  */
 abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
 
+  // Shared by all consumers for prefetching. Threads are only created on demand and time out when idle.
+  private static final ExecutorService PREFETCH_EXECUTOR =
+    Executors.newCachedThreadPool(Threads.newDaemonThreadFactory("queue-consumer-prefetch"));
+
   private final HTable hTable;
   private final HBaseConsumerState state;
   private final HBaseConsumerStateStore stateStore;
   private final HBaseQueueStrategy queueStrategy;
+  private final boolean prefetch;
+  // HTable used only by prefetch scans, as HTable is not thread safe. Created on the first prefetch.
+  private HTable prefetchHTable;
   private boolean closed;
   private boolean canConsume;
   private boolean completed;
@@ -68,6 +79,7 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
     this.state = consumerState;
     this.stateStore = stateStore;
     this.queueStrategy = queueStrategy;
+    this.prefetch = cConf.getBoolean(QueueConstants.ConfigKeys.DEQUEUE_PREFETCH, false);
     this.canConsume = false;
   }
 
@@ -125,6 +137,18 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
 
   @Override
   protected QueueScanner getScanner(byte[] startRow, byte[] stopRow, int numRows) throws IOException {
+    return getScanner(hTable, startRow, stopRow, numRows);
+  }
+
+  @Override
+  protected QueueScanner getPrefetchScanner(byte[] startRow, byte[] stopRow, int numRows) throws IOException {
+    if (prefetchHTable == null) {
+      prefetchHTable = new HTable(hTable.getConfiguration(), hTable.getTableName());
+    }
+    return getScanner(prefetchHTable, startRow, stopRow, numRows);
+  }
+
+  private QueueScanner getScanner(HTable table, byte[] startRow, byte[] stopRow, int numRows) throws IOException {
     if (!canConsume) {
       // Need to wait if nothing every consumers reached the last barrier
       byte[] barrierStartRow = state.getPreviousBarrier();
@@ -138,7 +162,18 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
                                      DequeueScanAttributes.addAttribute(getConfig(), new HashMap<String, byte[]>()));
     Scan scan = createScan(startRow, getScanStopRow(stopRow), numRows, attributes);
 
-    return queueStrategy.createScanner(getConfig(), hTable, scan, numRows);
+    return queueStrategy.createScanner(getConfig(), table, scan, numRows);
+  }
+
+  @Override
+  protected ExecutorService getPrefetchExecutor() {
+    return prefetch ? PREFETCH_EXECUTOR : null;
+  }
+
+  @Override
+  protected boolean canPrefetch() {
+    // Only prefetch when no barrier check is needed in getScanner, since the state store is not thread safe.
+    return canConsume && !completed && !closed;
   }
 
   @Override
@@ -146,10 +181,14 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
     if (closed) {
       return;
     }
+    awaitPrefetch();
     closed = true;
     Closeables.closeQuietly(queueStrategy);
     Closeables.closeQuietly(stateStore);
     Closeables.closeQuietly(hTable);
+    if (prefetchHTable != null) {
+      Closeables.closeQuietly(prefetchHTable);
+    }
   }
 
   @Override
@@ -34,6 +34,7 @@ import org.apache.tephra.Transaction;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -90,12 +91,18 @@ public class HBaseQueueProducer extends AbstractQueueProducer implements Closeab
 
     List<byte[]> rowKeys = Lists.newArrayList();
     long writePointer = transaction.getWritePointer();
+    Map<String, Integer> lastHashKeys = null;
+    byte[] metaData = null;
     for (QueueEntry entry : entries) {
       rowKeys.clear();
       queueStrategy.getRowKeys(consumerGroupConfigs, entry, queueRowPrefix, writePointer, count, rowKeys);
       rollbackKeys.addAll(rowKeys);
 
-      byte[] metaData = QueueEntry.serializeHashKeys(entry.getHashKeys());
+      // Entries emitted with the same partitions share the serialized meta data
+      if (metaData == null || !entry.getHashKeys().equals(lastHashKeys)) {
+        lastHashKeys = entry.getHashKeys();
+        metaData = QueueEntry.serializeHashKeys(lastHashKeys);
+      }
       for (byte[] rowKey : rowKeys) {
         // No need to write ts=writePointer, as the row key already contains the writePointer
         Put put = new Put(rowKey);
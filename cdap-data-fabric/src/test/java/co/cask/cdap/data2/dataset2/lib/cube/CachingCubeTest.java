@@ -0,0 +1,239 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.Cube;
+import co.cask.cdap.api.dataset.lib.cube.CubeDeleteQuery;
+import co.cask.cdap.api.dataset.lib.cube.CubeExploreQuery;
+import co.cask.cdap.api.dataset.lib.cube.CubeFact;
+import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
+import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import co.cask.cdap.data2.dataset2.lib.timeseries.EntityTable;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link CachingCube}.
+ */
+public class CachingCubeTest {
+
+  @Test
+  public void testQueryCache() throws Exception {
+    RecordingCube recordingCube = new RecordingCube(createCube("testQueryCache"));
+    ProcessedTime processedTime = new ProcessedTime();
+    CachingCube cube = new CachingCube(recordingCube, 1000, 3600, 0, processedTime);
+
+    for (int ts = 0; ts < 10; ts++) {
+      write(cube, ts, 1);
+    }
+
+    // Nothing is cached before the processed time is known
+    assertValues(query(cube, 0, 9), 0, 1, 1, 1, 2, 1, 3, 1, 4, 1, 5, 1, 6, 1, 7, 1, 8, 1, 9, 1);
+    assertValues(query(cube, 0, 9), 0, 1, 1, 1, 2, 1, 3, 1, 4, 1, 5, 1, 6, 1, 7, 1, 8, 1, 9, 1);
+    Assert.assertEquals(ImmutableList.of(0L, 0L), recordingCube.queryStartTs);
+    recordingCube.queryStartTs.clear();
+
+    // Buckets before ts 5 are closed
+    processedTime.time = 5;
+    assertValues(query(cube, 0, 9), 0, 1, 1, 1, 2, 1, 3, 1, 4, 1, 5, 1, 6, 1, 7, 1, 8, 1, 9, 1);
+    Assert.assertEquals(ImmutableList.of(0L), recordingCube.queryStartTs);
+
+    // Late write from elsewhere to a closed bucket is not seen, while write to an open bucket is
+    write(recordingCube, 2, 10);
+    write(recordingCube, 7, 10);
+    assertValues(query(cube, 0, 9), 0, 1, 1, 1, 2, 1, 3, 1, 4, 1, 5, 1, 6, 1, 7, 11, 8, 1, 9, 1);
+    // Only the open buckets are queried from the underlying cube
+    Assert.assertEquals(ImmutableList.of(0L, 5L), recordingCube.queryStartTs);
+
+    // Sliding the time range forward reuses the cached buckets
+    processedTime.time = 8;
+    assertValues(query(cube, 3, 9), 3, 1, 4, 1, 5, 1, 6, 1, 7, 11, 8, 1, 9, 1);
+    Assert.assertEquals(ImmutableList.of(0L, 5L, 5L), recordingCube.queryStartTs);
+    assertValues(query(cube, 4, 9), 4, 1, 5, 1, 6, 1, 7, 11, 8, 1, 9, 1);
+    Assert.assertEquals(ImmutableList.of(0L, 5L, 5L, 8L), recordingCube.queryStartTs);
+
+    // Late write through the caching cube invalidates the cached buckets
+    write(cube, 6, 10);
+    assertValues(query(cube, 4, 9), 4, 1, 5, 1, 6, 11, 7, 11, 8, 1, 9, 1);
+    Assert.assertEquals(ImmutableList.of(0L, 5L, 5L, 8L, 4L), recordingCube.queryStartTs);
+
+    // Query with a time range before the cached one goes to the underlying cube
+    assertValues(query(cube, 0, 3), 0, 1, 1, 1, 2, 11, 3, 1);
+    Assert.assertEquals(ImmutableList.of(0L, 5L, 5L, 8L, 4L, 0L), recordingCube.queryStartTs);
+
+    // Delete invalidates the cache
+    cube.delete(new CubeDeleteQuery(0, 9, 1, ImmutableMap.<String, String>of(), ImmutableList.of("metric")));
+    Assert.assertTrue(query(cube, 0, 9).isEmpty());
+  }
+
+  @Test
+  public void testLimitAndTotals() throws Exception {
+    RecordingCube recordingCube = new RecordingCube(createCube("testLimitAndTotals"));
+    ProcessedTime processedTime = new ProcessedTime();
+    CachingCube cube = new CachingCube(recordingCube, 1000, 3600, 0, processedTime);
+    for (int ts = 0; ts < 10; ts++) {
+      write(cube, ts, 1);
+    }
+    processedTime.time = 100;
+
+    // Limit applies to the whole result, also when it is served from the cache
+    CubeQuery query = CubeQuery.builder()
+      .select().measurement("metric", AggregationFunction.SUM)
+      .from("agg").resolution(1, TimeUnit.SECONDS)
+      .where().dimensions(ImmutableMap.<String, String>of()).timeRange(0, 9)
+      .limit(3)
+      .build();
+    assertValues(cube.query(query), 0, 1, 1, 1, 2, 1);
+    assertValues(cube.query(query), 0, 1, 1, 1, 2, 1);
+    Assert.assertEquals(ImmutableList.of(0L), recordingCube.queryStartTs);
+
+    // The totals bucket is never closed, hence always queried
+    CubeQuery totalsQuery = CubeQuery.builder()
+      .select().measurement("metric", AggregationFunction.SUM)
+      .from("agg").resolution(Integer.MAX_VALUE, TimeUnit.SECONDS)
+      .where().dimensions(ImmutableMap.<String, String>of()).timeRange(0, 100)
+      .limit(10)
+      .build();
+    assertValues(cube.query(totalsQuery), 0, 10);
+    assertValues(cube.query(totalsQuery), 0, 10);
+    Assert.assertEquals(ImmutableList.of(0L, 0L, 0L), recordingCube.queryStartTs);
+  }
+
+  private Cube createCube(final String name) {
+    FactTableSupplier supplier = new FactTableSupplier() {
+      @Override
+      public FactTable get(int resolution, int rollTime) {
+        String entityTableName = "EntityTable-" + name;
+        InMemoryTableService.create(entityTableName);
+        String dataTableName = "DataTable-" + name + "-" + resolution;
+        InMemoryTableService.create(dataTableName);
+        return new FactTable(new InMemoryMetricsTable(dataTableName),
+                             new EntityTable(new InMemoryMetricsTable(entityTableName)),
+                             resolution, rollTime);
+      }
+    };
+    return new DefaultCube(new int[] {1, Integer.MAX_VALUE}, supplier,
+                           ImmutableMap.of("agg", new DefaultAggregation(ImmutableList.of("dim"))),
+                           ImmutableMap.<String, AggregationAlias>of());
+  }
+
+  private void write(Cube cube, long ts, long value) {
+    cube.add(new CubeFact(ts).addDimensionValue("dim", "d1").addMeasurement("metric", MeasureType.COUNTER, value));
+  }
+
+  private Collection<TimeSeries> query(Cube cube, long startTs, long endTs) {
+    return cube.query(CubeQuery.builder()
+                        .select().measurement("metric", AggregationFunction.SUM)
+                        .from("agg").resolution(1, TimeUnit.SECONDS)
+                        .where().dimensions(ImmutableMap.<String, String>of()).timeRange(startTs, endTs)
+                        .limit(Integer.MAX_VALUE)
+                        .build());
+  }
+
+  private void assertValues(Collection<TimeSeries> result, long... expected) {
+    List<TimeValue> expectedValues = new ArrayList<>();
+    for (int i = 0; i < expected.length; i += 2) {
+      expectedValues.add(new TimeValue(expected[i], expected[i + 1]));
+    }
+    Assert.assertEquals(1, result.size());
+    Assert.assertEquals(expectedValues, Iterables.getOnlyElement(result).getTimeValues());
+  }
+
+  /**
+   * Provides a controllable processed time to the {@link CachingCube}.
+   */
+  private static final class ProcessedTime implements Supplier<Long> {
+
+    private long time = -1L;
+
+    @Override
+    public Long get() {
+      return time;
+    }
+  }
+
+  /**
+   * A {@link Cube} that records the start time of the queries.
+   */
+  private static final class RecordingCube implements Cube {
+
+    private final Cube cube;
+    private final List<Long> queryStartTs = new ArrayList<>();
+
+    RecordingCube(Cube cube) {
+      this.cube = cube;
+    }
+
+    @Override
+    public void add(CubeFact fact) {
+      cube.add(fact);
+    }
+
+    @Override
+    public void add(Collection<? extends CubeFact> facts) {
+      cube.add(facts);
+    }
+
+    @Override
+    public Collection<TimeSeries> query(CubeQuery query) {
+      queryStartTs.add(query.getStartTs());
+      return cube.query(query);
+    }
+
+    @Override
+    public void delete(CubeDeleteQuery query) {
+      cube.delete(query);
+    }
+
+    @Override
+    public Collection<DimensionValue> findDimensionValues(CubeExploreQuery query) {
+      return cube.findDimensionValues(query);
+    }
+
+    @Override
+    public Collection<String> findMeasureNames(CubeExploreQuery query) {
+      return cube.findMeasureNames(query);
+    }
+
+    @Override
+    public void write(Object key, CubeFact fact) {
+      cube.write(key, fact);
+    }
+
+    @Override
+    public void close() throws IOException {
+      cube.close();
+    }
+  }
+}
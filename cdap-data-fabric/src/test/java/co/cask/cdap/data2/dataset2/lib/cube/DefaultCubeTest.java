@@ -16,22 +16,50 @@
 
 package co.cask.cdap.data2.dataset2.lib.cube;
 
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
 import co.cask.cdap.api.dataset.lib.cube.Cube;
+import co.cask.cdap.api.dataset.lib.cube.CubeFact;
+import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
 import co.cask.cdap.data2.dataset2.lib.timeseries.EntityTable;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
  */
 public class DefaultCubeTest extends AbstractCubeTest {
 
+  private static final Logger LOG = LoggerFactory.getLogger(DefaultCubeTest.class);
+  private static final List<List<String>> METRICS_GROUP_BYS = ImmutableList.<List<String>>of(
+    ImmutableList.<String>of(), ImmutableList.of("app"), ImmutableList.of("app", "program"));
+
   @Override
   protected Cube getCube(final String name, int[] resolutions, Map<String, ? extends Aggregation> aggregations) {
+    return getCube(name, resolutions, aggregations, ImmutableMap.<Integer, Long>of());
+  }
+
+  private DefaultCube getCube(final String name, int[] resolutions, Map<String, ? extends Aggregation> aggregations,
+                              Map<Integer, Long> rollupStartTimes) {
     FactTableSupplier supplier = new FactTableSupplier() {
       @Override
       public FactTable get(int resolution, int rollTime) {
@@ -46,6 +74,187 @@ public class DefaultCubeTest extends AbstractCubeTest {
       }
     };
 
-    return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.<String, AggregationAlias>of());
+    return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.<String, AggregationAlias>of(),
+                           rollupStartTimes);
+  }
+
+  @Test
+  public void testRollup() throws Exception {
+    Aggregation agg = new DefaultAggregation(ImmutableList.of("app", "program"));
+    DefaultCube cube = getCube("rollupCube", new int[] {1, 60, 3600}, ImmutableMap.of("agg", agg),
+                               ImmutableMap.of(60, 0L, 3600, 0L));
+
+    // "program" dimension is not set, to verify rollup of null dimension values
+    for (int ts = 0; ts < 180; ts++) {
+      cube.add(new CubeFact(ts)
+                 .addDimensionValue("app", "app1")
+                 .addMeasurement("counter", MeasureType.COUNTER, 1L)
+                 .addMeasurement("gauge", MeasureType.GAUGE, ts));
+    }
+
+    // Counters are only written to the finest resolution, gauges to every resolution
+    assertRollupValues(cube, "counter", 1, ImmutableMap.of(0L, 1L, 179L, 1L), 180);
+    assertRollupValues(cube, "counter", 60, ImmutableMap.<Long, Long>of(), 0);
+    assertRollupValues(cube, "gauge", 60, ImmutableMap.of(0L, 59L, 60L, 119L, 120L, 179L), 3);
+    assertRollupValues(cube, "gauge", 3600, ImmutableMap.of(0L, 179L), 1);
+
+    try {
+      cube.rollup(3600, 0, 60);
+      Assert.fail("Expected time range not aligned to the resolution to fail");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    cube.rollup(60, 0, 120);
+    assertRollupValues(cube, "counter", 60, ImmutableMap.of(0L, 60L, 60L, 60L), 2);
+    // Rolling up again doesn't change counters that were rolled up already, nor gauges
+    cube.rollup(60, 0, 180);
+    cube.rollup(60, 0, 180);
+    assertRollupValues(cube, "counter", 60, ImmutableMap.of(0L, 60L, 60L, 60L, 120L, 60L), 3);
+    assertRollupValues(cube, "gauge", 60, ImmutableMap.of(0L, 59L, 60L, 119L, 120L, 179L), 3);
+
+    cube.rollup(3600, 0, 3600);
+    assertRollupValues(cube, "counter", 3600, ImmutableMap.of(0L, 180L), 1);
+    assertRollupValues(cube, "gauge", 3600, ImmutableMap.of(0L, 179L), 1);
+  }
+
+  @Test
+  public void testRollupStartTime() throws Exception {
+    Aggregation agg = new DefaultAggregation(ImmutableList.of("app"));
+    // Rollup of the minute resolution starts in the middle of the hour
+    DefaultCube cube = getCube("rollupStartCube", new int[] {1, 60, 3600}, ImmutableMap.of("agg", agg),
+                               ImmutableMap.of(60, 120L, 3600, 3600L));
+
+    for (int ts = 0; ts < 180; ts++) {
+      cube.add(new CubeFact(ts)
+                 .addDimensionValue("app", "app1")
+                 .addMeasurement("counter", MeasureType.COUNTER, 1L));
+    }
+
+    // Counters before the rollup start time are written directly
+    assertRollupValues(cube, "counter", 60, ImmutableMap.of(0L, 60L, 60L, 60L), 2);
+    assertRollupValues(cube, "counter", 3600, ImmutableMap.of(0L, 180L), 1);
+
+    // Only time buckets from the rollup start time need to be rolled up
+    cube.rollup(60, 120, 180);
+    assertRollupValues(cube, "counter", 60, ImmutableMap.of(0L, 60L, 60L, 60L, 120L, 60L), 3);
+    assertRollupValues(cube, "counter", 3600, ImmutableMap.of(0L, 180L), 1);
+  }
+
+  private void assertRollupValues(Cube cube, String measureName, int resolution,
+                                  Map<Long, Long> expected, int expectedCount) {
+    CubeQuery query = CubeQuery.builder()
+      .select()
+        .measurement(measureName, AggregationFunction.SUM)
+      .from("agg").resolution(resolution, TimeUnit.SECONDS)
+      .where()
+        .timeRange(0, 3599)
+      .limit(Integer.MAX_VALUE)
+      .build();
+    Map<Long, Long> values = new HashMap<>();
+    for (TimeSeries timeSeries : cube.query(query)) {
+      for (TimeValue timeValue : timeSeries.getTimeValues()) {
+        values.put(timeValue.getTimestamp(), timeValue.getValue());
+      }
+    }
+    Assert.assertEquals(expectedCount, values.size());
+    for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+      Assert.assertEquals(entry.getValue(), values.get(entry.getKey()));
+    }
+  }
+
+  /**
+   * Tests queries that aggregate many data points with a metrics like cardinality: 10 apps with 10 programs each,
+   * and ten minutes of per-second data points, queried with different group by dimensions.
+   */
+  @Test
+  public void testLargeQuery() throws Exception {
+    int apps = 10;
+    int programs = 10;
+    int seconds = 600;
+    Cube cube = createMetricsCube("largeQueryCube", apps, programs, seconds);
+
+    for (List<String> groupBy : METRICS_GROUP_BYS) {
+      Collection<TimeSeries> result = cube.query(createMetricsQuery(groupBy, seconds));
+      int expectedSeries = groupBy.isEmpty() ? 1 : groupBy.size() == 1 ? apps : apps * programs;
+      long expectedValue = apps * programs / expectedSeries;
+      Assert.assertEquals(expectedSeries, result.size());
+      for (TimeSeries timeSeries : result) {
+        Assert.assertEquals(ImmutableSet.copyOf(groupBy), timeSeries.getDimensionValues().keySet());
+        List<TimeValue> timeValues = timeSeries.getTimeValues();
+        Assert.assertEquals(seconds, timeValues.size());
+        for (int i = 0; i < seconds; i++) {
+          Assert.assertEquals(new TimeValue(i, expectedValue), timeValues.get(i));
+        }
+      }
+    }
+  }
+
+  /**
+   * A benchmark of cube queries with a realistic metrics cardinality: 20 apps with 10 programs each, and an hour of
+   * per-second data points. It logs the average query time for each group by. It only uses the public cube API, so
+   * that the same benchmark can be run against earlier versions of the cube for comparison.
+   * It is not run as part of the build.
+   */
+  @Ignore
+  @Test
+  public void testQueryPerformance() throws Exception {
+    int seconds = 3600;
+    Cube cube = createMetricsCube("queryPerfCube", 20, 10, seconds);
+
+    int warmUpRuns = 3;
+    int runs = 10;
+    for (List<String> groupBy : METRICS_GROUP_BYS) {
+      CubeQuery query = createMetricsQuery(groupBy, seconds);
+      for (int i = 0; i < warmUpRuns; i++) {
+        cube.query(query);
+      }
+      Stopwatch stopwatch = new Stopwatch().start();
+      for (int i = 0; i < runs; i++) {
+        cube.query(query);
+      }
+      LOG.info("Average query time with group by {}: {} ms",
+               groupBy, stopwatch.elapsedTime(TimeUnit.MILLISECONDS) / runs);
+    }
+  }
+
+  /**
+   * Creates a cube with one aggregation of the app and program dimensions, and a per-second counter for each
+   * program of each app.
+   */
+  private Cube createMetricsCube(String name, int apps, int programs, int seconds) throws Exception {
+    Aggregation agg = new DefaultAggregation(ImmutableList.of("app", "program"));
+    Cube cube = getCube(name, new int[] {1}, ImmutableMap.of("agg", agg));
+
+    List<CubeFact> facts = new ArrayList<>();
+    for (int ts = 0; ts < seconds; ts++) {
+      for (int app = 0; app < apps; app++) {
+        for (int program = 0; program < programs; program++) {
+          facts.add(new CubeFact(ts)
+                      .addDimensionValue("app", "app" + app)
+                      .addDimensionValue("program", "program" + program)
+                      .addMeasurement("events", MeasureType.COUNTER, 1L));
+        }
+      }
+      if (facts.size() >= 10000) {
+        cube.add(facts);
+        facts.clear();
+      }
+    }
+    cube.add(facts);
+    return cube;
+  }
+
+  private CubeQuery createMetricsQuery(List<String> groupBy, int seconds) {
+    return CubeQuery.builder()
+      .select()
+        .measurement("events", AggregationFunction.SUM)
+      .from("agg").resolution(1, TimeUnit.SECONDS)
+      .where()
+        .timeRange(0, seconds)
+      .groupBy()
+        .dimensions(groupBy)
+      .limit(Integer.MAX_VALUE)
+      .build();
   }
 }
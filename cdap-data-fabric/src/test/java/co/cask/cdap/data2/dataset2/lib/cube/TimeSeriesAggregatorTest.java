@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests for {@link TimeSeriesAggregator}.
+ */
+public class TimeSeriesAggregatorTest {
+
+  @Test
+  public void testAggregationFunctions() {
+    Assert.assertEquals(ImmutableList.of(new TimeValue(1, 5), new TimeValue(2, 7), new TimeValue(3, 1)),
+                        aggregate(AggregationFunction.SUM));
+    Assert.assertEquals(ImmutableList.of(new TimeValue(1, 3), new TimeValue(2, 7), new TimeValue(3, 1)),
+                        aggregate(AggregationFunction.MAX));
+    Assert.assertEquals(ImmutableList.of(new TimeValue(1, 2), new TimeValue(2, 7), new TimeValue(3, 1)),
+                        aggregate(AggregationFunction.MIN));
+    Assert.assertEquals(ImmutableList.of(new TimeValue(1, 2), new TimeValue(2, 7), new TimeValue(3, 1)),
+                        aggregate(AggregationFunction.LATEST));
+  }
+
+  @Test
+  public void testManyTimestamps() {
+    TimeSeriesAggregator aggregator = new TimeSeriesAggregator(AggregationFunction.SUM);
+    // Add in descending order and twice, to verify resizing and sorting
+    for (int round = 0; round < 2; round++) {
+      for (long ts = 10000; ts > 0; ts--) {
+        aggregator.add(ts * 60, ts);
+      }
+    }
+    Assert.assertEquals(10000, aggregator.size());
+
+    List<TimeValue> timeValues = aggregator.getTimeValues();
+    Assert.assertEquals(10000, timeValues.size());
+    for (int i = 0; i < timeValues.size(); i++) {
+      Assert.assertEquals(new TimeValue((i + 1) * 60L, (i + 1) * 2L), timeValues.get(i));
+    }
+  }
+
+  private List<TimeValue> aggregate(AggregationFunction function) {
+    TimeSeriesAggregator aggregator = new TimeSeriesAggregator(function);
+    aggregator.add(3, 1);
+    aggregator.add(1, 3);
+    aggregator.add(2, 7);
+    aggregator.add(1, 2);
+    return aggregator.getTimeValues();
+  }
+}
@@ -432,6 +432,114 @@ public abstract class BufferingTableTest<T extends BufferingTable> extends Table
     }
   }
 
+  @Test
+  public void testSpillBuffer() throws Exception {
+    String tableName = "testSpillBuffer";
+    // A tiny buffer limit, so that every write is persisted before commit
+    DatasetProperties props = DatasetProperties.builder().add(BufferingTable.PROPERTY_BUFFER_MAX_BYTES, 1L).build();
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, tableName, props);
+    admin.create();
+    try {
+      BufferingTable table1 = getTable(CONTEXT1, tableName, props);
+      BufferingTable table2 = getTable(CONTEXT1, tableName);
+
+      Transaction tx1 = txClient.startShort();
+      table1.startTx(tx1);
+      table1.put(R1, a(C1), a(V1));
+      table1.put(R2, a(C2), a(V2));
+      table1.put(R2, a(C3), a(V3));
+      table1.delete(R2, a(C2));
+
+      // Changes are visible within the transaction, both through get and scan
+      TableAssert.assertRow(a(C1, V1), table1.get(R1, a(C1)));
+      TableAssert.assertRow(a(C3, V3), table1.get(R2));
+      try (Scanner scanner = table1.scan(R1, null)) {
+        TableAssert.assertRow(scanner.next(), R1, a(C1), a(V1));
+        TableAssert.assertRow(scanner.next(), R2, a(C3), a(V3));
+        Assert.assertNull(scanner.next());
+      }
+
+      // Changes are not visible to other transactions
+      Transaction tx2 = txClient.startShort();
+      table2.startTx(tx2);
+      TableAssert.assertRow(a(), table2.get(R1, a(C1)));
+      Assert.assertTrue(table2.commitTx());
+      Assert.assertTrue(txClient.commit(tx2));
+      table2.postTxCommit();
+
+      // Changes persisted before commit are still included for conflict detection
+      Collection<byte[]> txChanges = table1.getTxChanges();
+      Assert.assertEquals(2, txChanges.size());
+
+      // Rolling back undoes the persisted changes
+      Assert.assertTrue(table1.rollbackTx());
+      txClient.abort(tx1);
+
+      Transaction tx3 = txClient.startShort();
+      table2.startTx(tx3);
+      TableAssert.assertRow(a(), table2.get(R1, a(C1)));
+      TableAssert.assertRow(a(), table2.get(R2));
+      Assert.assertTrue(table2.commitTx());
+      Assert.assertTrue(txClient.commit(tx3));
+      table2.postTxCommit();
+
+      // Commit a transaction with changes persisted before commit
+      Transaction tx4 = txClient.startShort();
+      table1.startTx(tx4);
+      table1.put(R1, a(C1), a(V1));
+      table1.put(R2, a(C2), a(V2));
+      Assert.assertTrue(txClient.canCommit(tx4, table1.getTxChanges()));
+      Assert.assertTrue(table1.commitTx());
+      Assert.assertTrue(txClient.commit(tx4));
+      table1.postTxCommit();
+
+      Transaction tx5 = txClient.startShort();
+      table2.startTx(tx5);
+      TableAssert.assertRow(a(C1, V1), table2.get(R1, a(C1)));
+      TableAssert.assertRow(a(C2, V2), table2.get(R2, a(C2)));
+      Assert.assertTrue(table2.commitTx());
+      Assert.assertTrue(txClient.commit(tx5));
+      table2.postTxCommit();
+    } finally {
+      admin.drop();
+    }
+  }
+
+  @Test
+  public void testSpillBufferRollback() throws Exception {
+    String tableName = "testSpillBufferRollback";
+    DatasetProperties props = DatasetProperties.builder().add(BufferingTable.PROPERTY_BUFFER_MAX_BYTES, 1L).build();
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, tableName, props);
+    admin.create();
+    try {
+      BufferingTable table1 = getTable(CONTEXT1, tableName, props);
+      BufferingTable table2 = getTable(CONTEXT1, tableName);
+
+      // Persist more rows than are read back at a time, and each of them twice
+      Transaction tx1 = txClient.startShort();
+      table1.startTx(tx1);
+      for (int i = 0; i < 2500; i++) {
+        table1.put(Bytes.toBytes(i), C1, V1);
+        table1.put(Bytes.toBytes(i), C2, V2);
+      }
+      Assert.assertEquals(2500, table1.getTxChanges().size());
+
+      Assert.assertTrue(table1.rollbackTx());
+      txClient.abort(tx1);
+
+      Transaction tx2 = txClient.startShort();
+      table2.startTx(tx2);
+      try (Scanner scanner = table2.scan(null, null)) {
+        Assert.assertNull(scanner.next());
+      }
+      Assert.assertTrue(table2.commitTx());
+      Assert.assertTrue(txClient.commit(tx2));
+      table2.postTxCommit();
+    } finally {
+      admin.drop();
+    }
+  }
+
   @Test
   public void testMultiGetIncludesBuffer() throws Exception {
     DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
@@ -0,0 +1,219 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+
+/**
+ * Tests for {@link PackedWriteBuffer}.
+ */
+public class PackedWriteBufferTest {
+
+  @Test
+  public void testAgainstMap() {
+    // Apply the same random changes to the buffer and to a map of updates, and compare them
+    Random random = new Random(0);
+    PackedWriteBuffer buffer = new PackedWriteBuffer();
+    NavigableMap<byte[], NavigableMap<byte[], Update>> expected = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < 20000; i++) {
+      byte[] row = randomKey(random, 1);
+      byte[] column = randomKey(random, 0);
+      NavigableMap<byte[], Update> columns = expected.get(row);
+      if (columns == null) {
+        columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        expected.put(row, columns);
+      }
+      Update current = columns.get(column);
+      int op = random.nextInt(4);
+      if (op == 0) {
+        buffer.put(row, column, null);
+        columns.put(column, PutValue.DELETE);
+      } else if (op == 1 && (current == null || current.getBytes() == null
+        || current.getBytes().length == Bytes.SIZEOF_LONG)) {
+        long amount = random.nextInt(100) - 50;
+        buffer.increment(row, column, amount);
+        columns.put(column, Updates.mergeUpdates(current, new IncrementValue(amount)));
+      } else {
+        // Values of different sizes, so that values are both overwritten in place and moved
+        byte[] value = random.nextBoolean() ? Bytes.toBytes(random.nextLong()) : randomKey(random, 0);
+        buffer.put(row, column, value);
+        columns.put(column, new PutValue(value));
+      }
+    }
+
+    assertRows(expected, buffer.rows(null, null));
+    assertKeys(expected.keySet(), buffer.rowKeys(null, null));
+
+    byte[] startRow = Bytes.toBytes("b");
+    byte[] stopRow = Bytes.toBytes("cb");
+    assertRows(expected.subMap(startRow, true, stopRow, false), buffer.rows(startRow, stopRow));
+    assertRows(expected.headMap(stopRow, false), buffer.rows(null, stopRow));
+    assertRows(expected.tailMap(startRow, true), buffer.rows(startRow, null));
+    assertKeys(expected.subMap(startRow, true, stopRow, false).keySet(), buffer.rowKeys(startRow, stopRow));
+
+    byte[] startColumn = Bytes.toBytes("a");
+    byte[] stopColumn = Bytes.toBytes("c");
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> row : expected.entrySet()) {
+      assertColumns(row.getValue(), buffer.getColumns(row.getKey(), null));
+      assertColumns(BufferingTable.getRange(row.getValue(), startColumn, stopColumn, 2),
+                    buffer.getColumns(row.getKey(), startColumn, stopColumn, 2));
+      byte[][] columns = new byte[][] { Bytes.toBytes("b"), Bytes.toBytes("ca"), Bytes.toBytes("zz") };
+      NavigableMap<byte[], Update> expectedColumns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (byte[] column : columns) {
+        if (row.getValue().containsKey(column)) {
+          expectedColumns.put(column, row.getValue().get(column));
+        }
+      }
+      assertColumns(expectedColumns, buffer.getColumns(row.getKey(), columns));
+    }
+    Assert.assertNull(buffer.getColumns(Bytes.toBytes("zz"), null));
+  }
+
+  @Test
+  public void testIncrement() {
+    PackedWriteBuffer buffer = new PackedWriteBuffer();
+    byte[] row = Bytes.toBytes("r");
+    byte[] c1 = Bytes.toBytes("c1");
+    byte[] c2 = Bytes.toBytes("c2");
+    byte[] c3 = Bytes.toBytes("c3");
+
+    // Increments of a cell without a put stay increments
+    buffer.increment(row, c1, 3L);
+    buffer.increment(row, c1, 4L);
+    // An increment of a put or a delete is a put
+    buffer.put(row, c2, Bytes.toBytes(10L));
+    buffer.increment(row, c2, 5L);
+    buffer.put(row, c3, null);
+    buffer.increment(row, c3, 2L);
+
+    NavigableMap<byte[], Update> columns = buffer.getColumns(row, null);
+    Assert.assertNotNull(columns);
+    Assert.assertEquals(7L, ((IncrementValue) columns.get(c1)).getLongValue());
+    Assert.assertEquals(15L, Bytes.toLong(((PutValue) columns.get(c2)).getValue()));
+    Assert.assertEquals(2L, Bytes.toLong(((PutValue) columns.get(c3)).getValue()));
+
+    // A put replaces an increment
+    buffer.put(row, c1, Bytes.toBytes("v"));
+    Assert.assertEquals("v", Bytes.toString(((PutValue) buffer.getColumns(row, null).get(c1)).getValue()));
+    try {
+      buffer.increment(row, c1, 1L);
+      Assert.fail("Expected NumberFormatException");
+    } catch (NumberFormatException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testClear() {
+    PackedWriteBuffer buffer = new PackedWriteBuffer();
+    Assert.assertTrue(buffer.isEmpty());
+    for (int i = 0; i < 100; i++) {
+      buffer.put(Bytes.toBytes(i), Bytes.toBytes("c"), Bytes.toBytes(i));
+    }
+    Assert.assertFalse(buffer.isEmpty());
+
+    Iterator<byte[]> rowKeys = buffer.rowKeys(null, null);
+    Assert.assertArrayEquals(Bytes.toBytes(0), rowKeys.next());
+    buffer.clear();
+    Assert.assertTrue(buffer.isEmpty());
+    Assert.assertEquals(0L, buffer.getSizeInBytes());
+    // Iterators end when the buffer is cleared
+    Assert.assertFalse(rowKeys.hasNext());
+
+    buffer.put(Bytes.toBytes(1), Bytes.toBytes("c"), Bytes.toBytes(1));
+    Assert.assertEquals(1, Iterators.size(buffer.rowKeys(null, null)));
+  }
+
+  @Test
+  public void testSize() {
+    PackedWriteBuffer buffer = new PackedWriteBuffer();
+    int cells = 100000;
+    long dataSize = 0L;
+    for (int i = 0; i < cells; i++) {
+      byte[] row = Bytes.toBytes("row" + (i / 10));
+      byte[] column = Bytes.toBytes(i % 10);
+      byte[] value = Bytes.toBytes((long) i);
+      buffer.put(row, column, value);
+      dataSize += row.length + column.length + value.length;
+    }
+    // Overwriting a value of the same size reuses its space
+    long size = buffer.getSizeInBytes();
+    buffer.put(Bytes.toBytes("row0"), Bytes.toBytes(0), Bytes.toBytes(1L));
+    Assert.assertEquals(size, buffer.getSizeInBytes());
+
+    // A map of updates uses well over a hundred bytes per cell on top of the data: a TreeMap entry and the objects
+    // and headers of the column array, the update and the value array. The packed buffer uses a fraction of that.
+    long overheadPerCell = (size - dataSize) / cells;
+    Assert.assertTrue("Overhead per cell is " + overheadPerCell, overheadPerCell < 48);
+  }
+
+  private byte[] randomKey(Random random, int minLength) {
+    byte[] key = new byte[minLength + random.nextInt(3)];
+    for (int i = 0; i < key.length; i++) {
+      key[i] = (byte) ('a' + random.nextInt(3));
+    }
+    return key;
+  }
+
+  private void assertRows(NavigableMap<byte[], NavigableMap<byte[], Update>> expected,
+                          Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> actual) {
+    List<Map.Entry<byte[], NavigableMap<byte[], Update>>> actualRows = ImmutableList.copyOf(actual);
+    Assert.assertEquals(expected.size(), actualRows.size());
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> expectedRows = expected.entrySet().iterator();
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> actualRow : actualRows) {
+      Map.Entry<byte[], NavigableMap<byte[], Update>> expectedRow = expectedRows.next();
+      Assert.assertArrayEquals(expectedRow.getKey(), actualRow.getKey());
+      assertColumns(expectedRow.getValue(), actualRow.getValue());
+    }
+  }
+
+  private void assertKeys(Iterable<byte[]> expected, Iterator<byte[]> actual) {
+    List<byte[]> actualKeys = ImmutableList.copyOf(actual);
+    Assert.assertEquals(Iterables.size(expected), actualKeys.size());
+    Iterator<byte[]> actualIterator = actualKeys.iterator();
+    for (byte[] key : expected) {
+      Assert.assertArrayEquals(key, actualIterator.next());
+    }
+  }
+
+  private void assertColumns(NavigableMap<byte[], Update> expected, NavigableMap<byte[], Update> actual) {
+    if (expected.isEmpty()) {
+      Assert.assertNull(actual);
+      return;
+    }
+    Assert.assertNotNull(actual);
+    assertKeys(expected.keySet(), actual.keySet().iterator());
+    for (Map.Entry<byte[], Update> column : expected.entrySet()) {
+      Update actualUpdate = actual.get(column.getKey());
+      Assert.assertEquals(column.getValue().getClass(), actualUpdate.getClass());
+      Assert.assertArrayEquals(column.getValue().getBytes(), actualUpdate.getBytes());
+    }
+  }
+}
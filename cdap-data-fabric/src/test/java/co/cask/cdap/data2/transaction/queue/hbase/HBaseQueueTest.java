@@ -103,21 +103,26 @@ import org.apache.twill.filesystem.LocationFactory;
 import org.apache.twill.zookeeper.ZKClientService;
 import org.junit.AfterClass;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
- * HBase queue tests.
+ * HBase queue tests. Every test runs both with and without prefetching queue entries on commit.
  */
+@RunWith(Parameterized.class)
 public abstract class HBaseQueueTest extends QueueTest {
   private static final Logger LOG = LoggerFactory.getLogger(QueueTest.class);
   private static final String TABLE_PREFIX = "test";
@@ -137,6 +142,20 @@ public abstract class HBaseQueueTest extends QueueTest {
   private static ZKClientService zkClientService;
   private static HBaseDDLExecutor ddlExecutor;
 
+  @Parameterized.Parameters(name = "prefetch={0}")
+  public static Collection<Object[]> parameters() {
+    return ImmutableList.of(new Object[] { false }, new Object[] { true });
+  }
+
+  @Parameterized.Parameter
+  public boolean prefetch;
+
+  @Before
+  public void setPrefetch() {
+    // Consumers read the setting when they are created, so this applies to all consumers created by the test
+    cConf.setBoolean(QueueConstants.ConfigKeys.DEQUEUE_PREFETCH, prefetch);
+  }
+
   @BeforeClass
   public static void init() throws Exception {
     hConf = TEST_HBASE.getConfiguration();
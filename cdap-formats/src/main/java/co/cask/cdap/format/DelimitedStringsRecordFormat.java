@@ -29,12 +29,14 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Stream record format that interprets the body as string of delimited fields.
@@ -53,11 +55,18 @@ import java.util.Map;
  * For example, if "mapping" is "1:name,2:age", then a stream event like "sdf,bob,32,sdf,lkj" would be transformed into
  * a record {@code {"name":"bob", "age":32}}.
  * </p>
+ *
+ * <p>
+ * If the "projection" setting is provided, only the given comma separated fields of the schema are parsed, and the
+ * schema of the format is reduced to those fields. Values of the other fields are not converted, and the body
+ * is only split up to the last projected field.
+ * </p>
  */
 public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordFormat<StructuredRecord> {
   public static final String CHARSET = "charset";
   public static final String DELIMITER = "delimiter";
   public static final String MAPPING = "mapping";
+  public static final String PROJECTION = "projection";
   private Charset charset = Charsets.UTF_8;
   private String delimiter = ",";
   private RecordMaker recordMaker = new DefaultRecordMaker();
@@ -110,15 +119,24 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
 
     if (!getDefaultSchema().equals(schema)) {
       String mapping = settings.get(MAPPING);
+      String projection = settings.get(PROJECTION);
       if (mapping != null) {
-        this.recordMaker = new MappedSchemaRecordMaker(parseMapping(mapping, schema));
-        for (Schema.Field field : schema.getFields()) {
-          if (!field.getSchema().isSimpleOrNullableSimple()) {
-            throw new IllegalArgumentException(
-              String.format("only simple types allowed (field '%s') when the '%s' setting is present",
-                            field.getName(), MAPPING));
-          }
+        checkSimpleFields(schema, MAPPING);
+        Map<String, Integer> fieldIndexes = parseMapping(mapping, schema);
+        if (projection != null) {
+          this.schema = projectSchema(schema, projection, fieldIndexes);
+        }
+        this.recordMaker = new MappedSchemaRecordMaker(fieldIndexes);
+      } else if (projection != null) {
+        // without a mapping, the i'th field of the schema is the i'th value in the body
+        Map<String, Integer> fieldIndexes = Maps.newHashMap();
+        List<Schema.Field> fields = schema.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+          fieldIndexes.put(fields.get(i).getName(), i);
         }
+        this.schema = projectSchema(schema, projection, fieldIndexes);
+        checkSimpleFields(schema, PROJECTION);
+        this.recordMaker = new MappedSchemaRecordMaker(fieldIndexes);
       } else {
         this.recordMaker = new SchemaRecordMaker();
       }
@@ -127,6 +145,38 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
     }
   }
 
+  private static void checkSimpleFields(Schema schema, String setting) {
+    for (Schema.Field field : schema.getFields()) {
+      if (!field.getSchema().isSimpleOrNullableSimple()) {
+        throw new IllegalArgumentException(
+          String.format("only simple types allowed (field '%s') when the '%s' setting is present",
+                        field.getName(), setting));
+      }
+    }
+  }
+
+  /**
+   * Returns the schema with only the fields in the given comma separated projection, and removes the fields that
+   * are not projected from the given field indexes.
+   */
+  private static Schema projectSchema(Schema schema, String projection, Map<String, Integer> fieldIndexes) {
+    Set<String> projectedNames = Sets.newHashSet(Splitter.on(",").trimResults().omitEmptyStrings().split(projection));
+    Preconditions.checkArgument(!projectedNames.isEmpty(), "projection cannot be empty");
+    for (String name : projectedNames) {
+      Preconditions.checkArgument(schema.getField(name) != null, "schema is missing the projected field " + name);
+      Preconditions.checkArgument(fieldIndexes.containsKey(name), "projected field %s is not mapped", name);
+    }
+
+    List<Schema.Field> projectedFields = Lists.newArrayList();
+    for (Schema.Field field : schema.getFields()) {
+      if (projectedNames.contains(field.getName())) {
+        projectedFields.add(field);
+      }
+    }
+    fieldIndexes.keySet().retainAll(projectedNames);
+    return Schema.recordOf(schema.getRecordName(), projectedFields);
+  }
+
   // check that it's an array of strings or array of nullable strings. the array itself can also be nullable.
   private static boolean isStringArray(Schema schema) {
     Schema arrSchema = schema.isNullable() ? schema.getNonNullable() : schema;
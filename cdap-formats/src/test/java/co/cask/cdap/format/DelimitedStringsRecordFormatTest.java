@@ -292,6 +292,50 @@ public class DelimitedStringsRecordFormatTest {
     Assert.assertNull(output.get("f7"));
   }
 
+  @Test
+  public void testFormatRecordWithProjection() throws UnsupportedTypeException, UnexpectedFormatException {
+    Schema schema = Schema.recordOf(
+      "event",
+      Schema.Field.of("f1", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("f2", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("f3", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("f4", Schema.arrayOf(Schema.of(Schema.Type.STRING))));
+
+    DelimitedStringsRecordFormat format = new DelimitedStringsRecordFormat();
+    format.initialize(new FormatSpecification(DelimitedStringsRecordFormat.class.getCanonicalName(), schema,
+                                              ImmutableMap.of(DelimitedStringsRecordFormat.PROJECTION, "f3,f1")));
+    Assert.assertEquals(Schema.recordOf("event",
+                                        Schema.Field.of("f1", Schema.of(Schema.Type.STRING)),
+                                        Schema.Field.of("f3", Schema.of(Schema.Type.STRING))),
+                        format.getSchema());
+
+    // The int field is not projected, hence not parsed
+    StructuredRecord output = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes("a,notint,c,d,e"))));
+    Assert.assertEquals("a", output.get("f1"));
+    Assert.assertEquals("c", output.get("f3"));
+    Assert.assertNull(output.get("f2"));
+
+    // Projection on top of a mapping
+    schema = Schema.recordOf("event",
+                             Schema.Field.of("f1", Schema.of(Schema.Type.STRING)),
+                             Schema.Field.of("f2", Schema.of(Schema.Type.INT)));
+    format = new DelimitedStringsRecordFormat();
+    format.initialize(new FormatSpecification(DelimitedStringsRecordFormat.class.getCanonicalName(), schema,
+                                              ImmutableMap.of(DelimitedStringsRecordFormat.MAPPING, "3:f1,1:f2",
+                                                              DelimitedStringsRecordFormat.PROJECTION, "f1")));
+    output = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes("a,notint,c,d,e"))));
+    Assert.assertEquals(1, output.getSchema().getFields().size());
+    Assert.assertEquals("d", output.get("f1"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testProjectionOfMissingField() throws UnsupportedTypeException {
+    Schema schema = Schema.recordOf("event", Schema.Field.of("f1", Schema.of(Schema.Type.STRING)));
+    DelimitedStringsRecordFormat format = new DelimitedStringsRecordFormat();
+    format.initialize(new FormatSpecification(DelimitedStringsRecordFormat.class.getCanonicalName(), schema,
+                                              ImmutableMap.of(DelimitedStringsRecordFormat.PROJECTION, "f2")));
+  }
+
   @Test
   public void testFormatRecordWithSchema() throws UnsupportedTypeException, UnexpectedFormatException {
     Schema schema = Schema.recordOf(
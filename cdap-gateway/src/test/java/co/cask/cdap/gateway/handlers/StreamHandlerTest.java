@@ -20,8 +20,12 @@ import co.cask.cdap.api.data.format.FormatSpecification;
 import co.cask.cdap.api.data.format.Formats;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.api.stream.StreamEventData;
 import co.cask.cdap.common.NamespaceNotFoundException;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.stream.StreamEventDataCodec;
 import co.cask.cdap.common.stream.StreamEventTypeAdapter;
 import co.cask.cdap.common.utils.Tasks;
 import co.cask.cdap.data2.transaction.stream.StreamConfig;
@@ -49,12 +53,14 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
 import org.apache.commons.lang3.ArrayUtils;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpMethod;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
@@ -242,6 +248,19 @@ public class StreamHandlerTest extends GatewayTestBase {
       Assert.assertEquals(Integer.toString(i), event.getHeaders().get("header1"));
     }
     urlConn.disconnect();
+
+    // Fetch the same entries in the binary encoding
+    urlConn = openURL(createURL("streams/test_stream_enqueue/events?limit=10"), HttpMethod.GET);
+    urlConn.setRequestProperty(HttpHeaders.ACCEPT, Constants.Stream.BINARY_EVENTS_CONTENT_TYPE);
+    Assert.assertEquals(Constants.Stream.BINARY_EVENTS_CONTENT_TYPE, urlConn.getContentType());
+    Decoder decoder = new BinaryDecoder(new ByteArrayInputStream(ByteStreams.toByteArray(urlConn.getInputStream())));
+    for (StreamEvent expected : events) {
+      StreamEventData data = StreamEventDataCodec.decode(decoder);
+      Assert.assertEquals(expected.getTimestamp(), decoder.readLong());
+      Assert.assertEquals(expected.getHeaders(), data.getHeaders());
+      Assert.assertEquals(expected.getBody().rewind(), data.getBody());
+    }
+    urlConn.disconnect();
   }
 
   @Test
@@ -60,6 +60,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class MessagingNotificationService extends AbstractNotificationService {
   private static final Logger LOG = LoggerFactory.getLogger(MessagingNotificationService.class);
+  // Maximum time to wait in each fetch for new notifications
+  private static final long FETCH_WAIT_SECONDS = 5L;
 
   private final MessagingService messagingService;
   private final TopicId notificationTopic;
@@ -131,22 +133,22 @@ public class MessagingNotificationService extends AbstractNotificationService {
       private final long startTime = System.currentTimeMillis();
       private final RetryStrategy scheduleStrategy = RetryStrategies.exponentialDelay(100, 3000, TimeUnit.MILLISECONDS);
       private byte[] messageId;
-      private int emptyFetchCount;
+      private int failureCount;
 
       @Override
       public void run() {
         try {
-          MessageFetcher fetcher = messagingService.prepareFetch(notificationTopic);
+          // Wait for new notifications in the messaging system instead of polling repeatedly
+          MessageFetcher fetcher = messagingService.prepareFetch(notificationTopic)
+            .setWaitTimeout(FETCH_WAIT_SECONDS, TimeUnit.SECONDS);
           if (messageId == null) {
             fetcher.setStartTime(startTime);
           } else {
             fetcher.setStartMessage(messageId, false);
           }
 
-          emptyFetchCount++;
           try (CloseableIterator<RawMessage> iterator = fetcher.fetch()) {
             while (iterator.hasNext()) {
-              emptyFetchCount = 0;
               RawMessage rawMessage = iterator.next();
               NotificationMessage message = GSON.fromJson(new String(rawMessage.getPayload(), StandardCharsets.UTF_8),
                                                           NotificationMessage.class);
@@ -159,16 +161,18 @@ public class MessagingNotificationService extends AbstractNotificationService {
               messageId = rawMessage.getId();
             }
           }
+          failureCount = 0;
         } catch (Exception e) {
           LOG.error("Failed to get notification", e);
+          failureCount++;
         }
 
-        // Back-off if it was empty fetch.
-        if (emptyFetchCount > 0) {
+        // Back-off if the fetch failed.
+        if (failureCount > 0) {
           // Schedule the next fetch. Exponential strategy doesn't use the time component,
           // so doesn't matter what we passed in
           subscribeExecutor.schedule(this,
-                                     scheduleStrategy.nextRetry(emptyFetchCount, startTime), TimeUnit.MILLISECONDS);
+                                     scheduleStrategy.nextRetry(failureCount, startTime), TimeUnit.MILLISECONDS);
         } else {
           subscribeExecutor.execute(this);
         }
@@ -183,6 +183,28 @@ class DefaultJavaSparkExecutionContext(sec: SparkExecutionContext) extends JavaS
     JavaPairRDD.fromRDD(stream.map(t => (t._1: java.lang.Long, t._2)))
   }
 
+  override def fromStream[T](streamName: String, formatSpec: FormatSpecification,
+                             startTime: Long, endTime: Long,
+                             bodyProjection: util.List[String], bodyFilter: util.Map[String, String],
+                             dataType: Class[T]): JavaPairRDD[java.lang.Long, GenericStreamEventData[T]] = {
+    implicit val dTag: ClassTag[T] = ClassTag(dataType)
+    val stream: RDD[(Long, GenericStreamEventData[T])] =
+      sec.fromStream(SparkRuntimeEnv.getContext, streamName, formatSpec, startTime, endTime,
+                     Option(bodyProjection).map(_.toSeq), bodyFilter.toMap)
+    JavaPairRDD.fromRDD(stream.map(t => (t._1: java.lang.Long, t._2)))
+  }
+
+  override def fromStream[T](namespace: String, streamName: String, formatSpec: FormatSpecification,
+                             startTime: Long, endTime: Long,
+                             bodyProjection: util.List[String], bodyFilter: util.Map[String, String],
+                             dataType: Class[T]): JavaPairRDD[java.lang.Long, GenericStreamEventData[T]] = {
+    implicit val dTag: ClassTag[T] = ClassTag(dataType)
+    val stream: RDD[(Long, GenericStreamEventData[T])] =
+      sec.fromStream(SparkRuntimeEnv.getContext, namespace, streamName, formatSpec, startTime, endTime,
+                     Option(bodyProjection).map(_.toSeq), bodyFilter.toMap)
+    JavaPairRDD.fromRDD(stream.map(t => (t._1: java.lang.Long, t._2)))
+  }
+
   override def saveAsDataset[K, V](rdd: JavaPairRDD[K, V], datasetName: String,
                                    arguments: util.Map[String, String]): Unit = {
     saveAsDataset(rdd, getNamespace, datasetName, arguments)
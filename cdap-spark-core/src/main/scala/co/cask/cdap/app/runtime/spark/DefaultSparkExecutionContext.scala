@@ -185,7 +185,8 @@ class DefaultSparkExecutionContext(runtimeContext: SparkRuntimeContext,
 
   override def fromStream[T: ClassTag](sc: SparkContext, streamName: String, startTime: Long, endTime: Long)
                                       (implicit decoder: StreamEvent => T): RDD[T] = {
-    val rdd: RDD[(Long, StreamEvent)] = fromStream(sc, getNamespace, streamName, startTime, endTime, None)
+    val rdd: RDD[(Long, StreamEvent)] = fromStream(sc, getNamespace, streamName, startTime, endTime,
+                                                   None, None, Map.empty)
 
     // Wrap the StreamEvent with a SerializableStreamEvent
     // Don't use rdd.values() as it brings in implicit object from SparkContext, which is not available in Spark 1.2
@@ -194,7 +195,8 @@ class DefaultSparkExecutionContext(runtimeContext: SparkRuntimeContext,
 
   override def fromStream[T: ClassTag](sc: SparkContext, namespace: String, streamName: String, startTime: Long,
                                        endTime: Long) (implicit decoder: StreamEvent => T): RDD[T] = {
-    val rdd: RDD[(Long, StreamEvent)] = fromStream(sc, namespace, streamName, startTime, endTime, None)
+    val rdd: RDD[(Long, StreamEvent)] = fromStream(sc, namespace, streamName, startTime, endTime,
+                                                   None, None, Map.empty)
 
     // Wrap the StreamEvent with a SerializableStreamEvent
     // Don't use rdd.values() as it brings in implicit object from SparkContext, which is not available in Spark 1.2
@@ -203,13 +205,26 @@ class DefaultSparkExecutionContext(runtimeContext: SparkRuntimeContext,
 
   override def fromStream[T: ClassTag](sc: SparkContext, streamName: String, formatSpec: FormatSpecification,
                                        startTime: Long, endTime: Long): RDD[(Long, GenericStreamEventData[T])] = {
-    fromStream(sc, getNamespace, streamName, startTime, endTime, Some(formatSpec))
+    fromStream(sc, getNamespace, streamName, startTime, endTime, Some(formatSpec), None, Map.empty)
   }
 
   override def fromStream[T: ClassTag](sc: SparkContext, namespace: String, streamName: String,
                                        formatSpec: FormatSpecification, startTime: Long, endTime: Long):
   RDD[(Long, GenericStreamEventData[T])] = {
-    fromStream(sc, namespace, streamName, startTime, endTime, Some(formatSpec))
+    fromStream(sc, namespace, streamName, startTime, endTime, Some(formatSpec), None, Map.empty)
+  }
+
+  override def fromStream[T: ClassTag](sc: SparkContext, streamName: String, formatSpec: FormatSpecification,
+                                       startTime: Long, endTime: Long, bodyProjection: Option[Seq[String]],
+                                       bodyFilter: Map[String, String]): RDD[(Long, GenericStreamEventData[T])] = {
+    fromStream(sc, getNamespace, streamName, startTime, endTime, Some(formatSpec), bodyProjection, bodyFilter)
+  }
+
+  override def fromStream[T: ClassTag](sc: SparkContext, namespace: String, streamName: String,
+                                       formatSpec: FormatSpecification, startTime: Long, endTime: Long,
+                                       bodyProjection: Option[Seq[String]], bodyFilter: Map[String, String]):
+  RDD[(Long, GenericStreamEventData[T])] = {
+    fromStream(sc, namespace, streamName, startTime, endTime, Some(formatSpec), bodyProjection, bodyFilter)
   }
 
   /**
@@ -224,16 +239,20 @@ class DefaultSparkExecutionContext(runtimeContext: SparkRuntimeContext,
     *                passing in `Long#MAX_VALUE` means read up to latest event available in the stream.
     * @param formatSpec if provided, it describes the format in the stream and will be used to decode stream events
     *                   to the given value type `T`
+    * @param bodyProjection if provided, the fields of the body records decoded with the format to read
+    * @param bodyFilter the values that the fields of the body records decoded with the format must have
     * @return a new [[org.apache.spark.rdd.RDD]] instance that reads from the given stream.
     */
   private def fromStream[T: ClassTag](sc: SparkContext, namespace: String, streamName: String,
                                       startTime: Long, endTime: Long,
-                                      formatSpec: Option[FormatSpecification]): RDD[(Long, T)] = {
+                                      formatSpec: Option[FormatSpecification],
+                                      bodyProjection: Option[Seq[String]],
+                                      bodyFilter: Map[String, String]): RDD[(Long, T)] = {
     val streamId = new StreamId(namespace, streamName)
 
     // Clone the configuration since it's dataset specification and shouldn't affect the global hConf
     val configuration = configureStreamInput(new Configuration(runtimeContext.getConfiguration),
-      streamId, startTime, endTime, formatSpec)
+      streamId, startTime, endTime, formatSpec, bodyProjection, bodyFilter)
 
     val valueClass = implicitly[ClassTag[T]].runtimeClass.asInstanceOf[Class[T]]
     val rdd = sc.newAPIHadoopRDD(configuration, classOf[SparkStreamInputFormat[LongWritable, T]],
@@ -307,7 +326,9 @@ class DefaultSparkExecutionContext(runtimeContext: SparkRuntimeContext,
   }
 
   private def configureStreamInput(configuration: Configuration, streamId: StreamId, startTime: Long,
-                                   endTime: Long, formatSpec: Option[FormatSpecification]): Configuration = {
+                                   endTime: Long, formatSpec: Option[FormatSpecification],
+                                   bodyProjection: Option[Seq[String]],
+                                   bodyFilter: Map[String, String]): Configuration = {
     val streamConfig = runtimeContext.getStreamAdmin.getConfig(streamId)
     val streamPath = StreamUtils.createGenerationLocation(streamConfig.getLocation,
                                                           StreamUtils.getGeneration(streamConfig))
@@ -319,7 +340,11 @@ class DefaultSparkExecutionContext(runtimeContext: SparkRuntimeContext,
     formatSpec.fold(
       AbstractStreamInputFormat.inferDecoderClass(configuration, classOf[StreamEvent])
     )(
-      spec => AbstractStreamInputFormat.setBodyFormatSpecification(configuration, spec)
+      spec => {
+        AbstractStreamInputFormat.setBodyFormatSpecification(configuration, spec)
+        bodyProjection.foreach(fields => AbstractStreamInputFormat.setBodyProjection(configuration, fields))
+        AbstractStreamInputFormat.setBodyFilter(configuration, bodyFilter)
+      }
     )
     configuration
   }
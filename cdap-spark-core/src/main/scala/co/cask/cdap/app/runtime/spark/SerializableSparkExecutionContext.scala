@@ -75,6 +75,16 @@ class SerializableSparkExecutionContext(val delegate: SparkExecutionContext) ext
                                        formatSpec: FormatSpecification, startTime: Long, endTime: Long) =
     delegate.fromStream[T](sc, streamName, formatSpec, startTime, endTime)
 
+  override def fromStream[T: ClassTag](sc: SparkContext, namespace: String, streamName: String,
+                                       formatSpec: FormatSpecification, startTime: Long, endTime: Long,
+                                       bodyProjection: Option[Seq[String]], bodyFilter: Map[String, String]) =
+    delegate.fromStream[T](sc, namespace, streamName, formatSpec, startTime, endTime, bodyProjection, bodyFilter)
+
+  override def fromStream[T: ClassTag](sc: SparkContext, streamName: String,
+                                       formatSpec: FormatSpecification, startTime: Long, endTime: Long,
+                                       bodyProjection: Option[Seq[String]], bodyFilter: Map[String, String]) =
+    delegate.fromStream[T](sc, streamName, formatSpec, startTime, endTime, bodyProjection, bodyFilter)
+
   override def fromStream[T: ClassTag](sc: SparkContext, namespace: String,
                                        streamName: String, startTime: Long, endTime: Long)
                                       (implicit decoder: (StreamEvent) => T) =
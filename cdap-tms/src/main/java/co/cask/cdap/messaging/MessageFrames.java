@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging;
+
+import co.cask.cdap.messaging.data.RawMessage;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * Defines the binary framing format for streaming {@link RawMessage} in fetch responses, as an alternative to
+ * the avro encoded response. Clients negotiate this format by sending {@link #CONTENT_TYPE} in the
+ * {@code Accept} header of the fetch request.
+ *
+ * Each message is encoded as
+ *
+ * <pre>
+ * [int id length][id bytes][int payload length][payload bytes]
+ * </pre>
+ *
+ * with all integers in big endian. The end of the response is marked by an id length of {@code -1}, so that
+ * clients can tell a complete response from a truncated one.
+ */
+public final class MessageFrames {
+
+  public static final String CONTENT_TYPE = "tms/binary-frames";
+
+  /**
+   * The id length written to signal the end of messages.
+   */
+  public static final int END_OF_MESSAGES = -1;
+
+  /**
+   * Reads one {@link RawMessage} from the given {@link DataInput}.
+   *
+   * @return the {@link RawMessage} or {@code null} if reached the end of messages marker
+   * @throws EOFException if the input ended before the end of messages marker
+   * @throws IOException if failed to read from the input
+   */
+  @Nullable
+  public static RawMessage read(DataInput input) throws IOException {
+    int idLength = input.readInt();
+    if (idLength == END_OF_MESSAGES) {
+      return null;
+    }
+    if (idLength < 0) {
+      throw new IOException("Invalid message id length " + idLength);
+    }
+    byte[] id = new byte[idLength];
+    input.readFully(id);
+
+    int payloadLength = input.readInt();
+    if (payloadLength < 0) {
+      throw new IOException("Invalid message payload length " + payloadLength);
+    }
+    byte[] payload = new byte[payloadLength];
+    input.readFully(payload);
+    return new RawMessage(id, payload);
+  }
+
+  private MessageFrames() {
+    // protect the constructor
+  }
+}
@@ -32,6 +32,12 @@ public final class Schemas {
 
   private static final Logger LOG = LoggerFactory.getLogger(Schemas.class);
 
+  /**
+   * Name of the request header that carries the version of the schema used to encode the request body.
+   * Requests without the header are encoded with the {@link V1} schema.
+   */
+  public static final String VERSION_HEADER = "X-Schema-Version";
+
   /**
    * Contains Schema for V1 protocol.
    */
@@ -66,6 +72,32 @@ public final class Schemas {
     }
   }
 
+  /**
+   * Contains Schema for V2 protocol. The V2 requests add fields with defaults to the V1 requests, hence a request
+   * encoded with the V1 schema is read by resolving it to the V2 schema. The responses are the same as in V1.
+   */
+  public static final class V2 {
+
+    /**
+     * Value of the {@link #VERSION_HEADER} for requests encoded with the V2 schema.
+     */
+    public static final String VERSION = "v2";
+
+    /**
+     * Contains schema for publish request. It adds the partition key.
+     */
+    public static final class PublishRequest {
+      public static final Schema SCHEMA = loadSchema(PublishRequest.class);
+    }
+
+    /**
+     * Contains schema for consume request. It adds the wait timeout and the partition.
+     */
+    public static final class ConsumeRequest {
+      public static final Schema SCHEMA = loadSchema(ConsumeRequest.class);
+    }
+  }
+
   private Schemas() {
     // protect the constructor
   }
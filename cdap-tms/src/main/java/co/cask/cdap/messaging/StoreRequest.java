@@ -31,12 +31,19 @@ public abstract class StoreRequest extends AbstractIterator<byte[]> {
   private final TopicId topicId;
   private final boolean transactional;
   private final long transactionWritePointer;
+  private final byte[] partitionKey;
   private boolean computedFirst;
 
   protected StoreRequest(TopicId topicId, boolean transactional, long transactionWritePointer) {
+    this(topicId, transactional, transactionWritePointer, null);
+  }
+
+  protected StoreRequest(TopicId topicId, boolean transactional, long transactionWritePointer,
+                         @Nullable byte[] partitionKey) {
     this.topicId = topicId;
     this.transactional = transactional;
     this.transactionWritePointer = transactionWritePointer;
+    this.partitionKey = partitionKey;
   }
 
   public TopicId getTopicId() {
@@ -58,6 +65,16 @@ public abstract class StoreRequest extends AbstractIterator<byte[]> {
     return transactionWritePointer;
   }
 
+  /**
+   * Returns the key for selecting the partition of the topic to publish to, or {@code null} if no key is provided.
+   * Messages published with the same key always go to the same partition. It is ignored for
+   * transactional publish, since all messages of the same transaction are published to the same partition.
+   */
+  @Nullable
+  public byte[] getPartitionKey() {
+    return partitionKey;
+  }
+
   @Override
   protected final byte[] computeNext() {
     byte[] next = doComputeNext();
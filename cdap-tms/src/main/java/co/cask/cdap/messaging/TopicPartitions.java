@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging;
+
+import co.cask.cdap.proto.id.TopicId;
+
+import java.util.Arrays;
+
+/**
+ * Helper class for topic partitions.
+ *
+ * Each partition of a topic is stored as an individual log in the message and payload tables. The first partition
+ * is stored under the topic itself, so that a topic with one partition has the same storage layout as
+ * a non-partitioned topic. Every other partition is stored under an internal topic id derived from the topic id and
+ * the partition number. Since those internal topics have their own entries in the metadata table, TTL and generation
+ * handling work the same way as for regular topics.
+ *
+ * The internal topic names all start with {@link #PARTITION_TOPIC_PREFIX}, which is reserved and cannot be used
+ * for creating topics.
+ */
+public final class TopicPartitions {
+
+  public static final String PARTITION_TOPIC_PREFIX = "__partition_";
+
+  /**
+   * Returns the {@link TopicId} used for storing messages of the given partition of a topic.
+   *
+   * @param topicId the topic id
+   * @param partition the partition number
+   * @return the {@link TopicId} for storage
+   */
+  public static TopicId getPartitionTopicId(TopicId topicId, int partition) {
+    if (partition < 0) {
+      throw new IllegalArgumentException("Partition must be >= 0");
+    }
+    if (partition == 0) {
+      return topicId;
+    }
+    return new TopicId(topicId.getNamespace(), PARTITION_TOPIC_PREFIX + partition + "_" + topicId.getTopic());
+  }
+
+  /**
+   * Returns {@code true} if the given {@link TopicId} has the reserved name of an internal topic for storing
+   * a topic partition.
+   */
+  public static boolean isPartitionTopic(TopicId topicId) {
+    return topicId.getTopic().startsWith(PARTITION_TOPIC_PREFIX);
+  }
+
+  /**
+   * Returns the partition for the given partition key.
+   */
+  public static int getPartition(byte[] partitionKey, int partitions) {
+    return (Arrays.hashCode(partitionKey) & Integer.MAX_VALUE) % partitions;
+  }
+
+  /**
+   * Returns the partition for messages published in the transaction with the given write pointer.
+   */
+  public static int getPartition(long transactionWritePointer, int partitions) {
+    return (int) ((transactionWritePointer & Long.MAX_VALUE) % partitions);
+  }
+
+  private TopicPartitions() {
+    // protect the constructor
+  }
+}
@@ -27,6 +27,7 @@ import co.cask.cdap.common.discovery.EndpointStrategy;
 import co.cask.cdap.common.discovery.RandomEndpointStrategy;
 import co.cask.cdap.common.http.DefaultHttpRequestConfig;
 import co.cask.cdap.messaging.MessageFetcher;
+import co.cask.cdap.messaging.MessageFrames;
 import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.Schemas;
@@ -45,6 +46,7 @@ import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
 import com.google.common.net.HttpHeaders;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
@@ -64,7 +66,9 @@ import org.apache.tephra.TransactionCodec;
 import org.apache.twill.discovery.Discoverable;
 import org.apache.twill.discovery.DiscoveryServiceClient;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
@@ -250,17 +254,20 @@ public final class ClientMessagingService implements MessagingService {
    */
   private HttpResponse performWriteRequest(StoreRequest request,
                                            boolean publish) throws IOException, TopicNotFoundException {
-    GenericRecord record = new GenericData.Record(Schemas.V1.PublishRequest.SCHEMA);
+    GenericRecord record = new GenericData.Record(Schemas.V2.PublishRequest.SCHEMA);
     if (request.isTransactional()) {
       record.put("transactionWritePointer", request.getTransactionWritePointer());
     }
     record.put("messages", convertPayloads(request));
+    if (request.getPartitionKey() != null) {
+      record.put("partitionKey", ByteBuffer.wrap(request.getPartitionKey()));
+    }
 
     // Encode the request as avro
     ExposedByteArrayOutputStream os = new ExposedByteArrayOutputStream();
     Encoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
 
-    DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(Schemas.V1.PublishRequest.SCHEMA);
+    DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(Schemas.V2.PublishRequest.SCHEMA);
     datumWriter.write(record, encoder);
 
     // Make the publish request
@@ -269,6 +276,7 @@ public final class ClientMessagingService implements MessagingService {
     HttpRequest httpRequest = HttpRequest
       .post(createURL(createTopicPath(topicId) + "/" + writeType))
       .addHeader(HttpHeaders.CONTENT_TYPE, "avro/binary")
+      .addHeader(Schemas.VERSION_HEADER, Schemas.V2.VERSION)
       .withBody(os.toByteBuffer())
       .build();
 
@@ -371,7 +379,7 @@ public final class ClientMessagingService implements MessagingService {
     ExposedByteArrayOutputStream os = new ExposedByteArrayOutputStream();
     Encoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
 
-    DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(Schemas.V1.PublishRequest.SCHEMA);
+    DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(schema);
     datumWriter.write(record, encoder);
 
     return os.toByteBuffer();
@@ -419,7 +427,7 @@ public final class ClientMessagingService implements MessagingService {
 
     @Override
     public CloseableIterator<RawMessage> fetch() throws IOException, TopicNotFoundException {
-      GenericRecord record = new GenericData.Record(Schemas.V1.ConsumeRequest.SCHEMA);
+      GenericRecord record = new GenericData.Record(Schemas.V2.ConsumeRequest.SCHEMA);
 
       if (getStartOffset() != null) {
         record.put("startFrom", ByteBuffer.wrap(getStartOffset()));
@@ -433,21 +441,35 @@ public final class ClientMessagingService implements MessagingService {
       if (getTransaction() != null) {
         record.put("transaction", ByteBuffer.wrap(TRANSACTION_CODEC.encode(getTransaction())));
       }
+      if (getWaitTimeoutMillis() > 0) {
+        record.put("waitTimeout", getWaitTimeoutMillis());
+      }
+      if (getPartition() > 0) {
+        record.put("partition", getPartition());
+      }
 
       // The cask common http library doesn't support read streaming, and we don't want to buffer all messages
       // in memory, hence we use the HttpURLConnection directly instead.
       URL url = createURL(createTopicPath(topicId) + "/poll");
       final HttpURLConnection urlConn = (HttpURLConnection)  url.openConnection();
       urlConn.setConnectTimeout(HTTP_REQUEST_CONFIG.getConnectTimeout());
-      urlConn.setReadTimeout(HTTP_REQUEST_CONFIG.getReadTimeout());
+      // The server may hold the request up to the wait timeout before responding. A zero read timeout means no timeout.
+      int readTimeout = HTTP_REQUEST_CONFIG.getReadTimeout();
+      if (readTimeout > 0) {
+        readTimeout = (int) Math.min(Integer.MAX_VALUE, readTimeout + getWaitTimeoutMillis());
+      }
+      urlConn.setReadTimeout(readTimeout);
       urlConn.setRequestMethod("POST");
       urlConn.setRequestProperty(HttpHeaders.CONTENT_TYPE, "avro/binary");
+      urlConn.setRequestProperty(Schemas.VERSION_HEADER, Schemas.V2.VERSION);
+      // Prefer the binary framing for the response. Older servers ignore it and respond with avro.
+      urlConn.setRequestProperty(HttpHeaders.ACCEPT, MessageFrames.CONTENT_TYPE + ", avro/binary");
       urlConn.setDoInput(true);
       urlConn.setDoOutput(true);
 
       // Send the request
       Encoder encoder = EncoderFactory.get().directBinaryEncoder(urlConn.getOutputStream(), null);
-      DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(Schemas.V1.ConsumeRequest.SCHEMA);
+      DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(Schemas.V2.ConsumeRequest.SCHEMA);
       datumWriter.write(record, encoder);
 
       int responseCode = urlConn.getResponseCode();
@@ -468,6 +490,10 @@ public final class ClientMessagingService implements MessagingService {
           }
         }
       }, "Failed to update topic " + topicId);
+
+      if (MessageFrames.CONTENT_TYPE.equals(urlConn.getContentType())) {
+        return createFramedMessagesIterator(urlConn);
+      }
       verifyContentType(urlConn.getHeaderFields(), "avro/binary");
 
       // Decode the avro array manually instead of using DatumReader in order to support streaming decode.
@@ -512,5 +538,31 @@ public final class ClientMessagingService implements MessagingService {
         }
       };
     }
+
+    /**
+     * Creates a {@link CloseableIterator} that decodes messages in the binary framing defined by
+     * {@link MessageFrames} from the response of the given connection.
+     */
+    private CloseableIterator<RawMessage> createFramedMessagesIterator(final HttpURLConnection urlConn)
+      throws IOException {
+      final DataInputStream input = new DataInputStream(new BufferedInputStream(urlConn.getInputStream()));
+      return new AbstractCloseableIterator<RawMessage>() {
+        @Override
+        protected RawMessage computeNext() {
+          try {
+            RawMessage message = MessageFrames.read(input);
+            return message == null ? endOfData() : message;
+          } catch (IOException e) {
+            throw Throwables.propagate(e);
+          }
+        }
+
+        @Override
+        public void close() {
+          Closeables.closeQuietly(input);
+          urlConn.disconnect();
+        }
+      };
+    }
   }
 }
@@ -40,6 +40,7 @@ public final class StoreRequestBuilder {
   private final TopicId topicId;
   private Iterator<byte[]> payloads;
   private Long txWritePointer;
+  private byte[] partitionKey;
 
   /**
    * Creates a new {@link StoreRequestBuilder} instance.
@@ -91,6 +92,28 @@ public final class StoreRequestBuilder {
     return this;
   }
 
+  /**
+   * Sets the key for selecting the topic partition to publish to. Requests with the same key are always published
+   * to the same partition, hence preserving the ordering among them. If no key is set, non-transactional requests
+   * are distributed among all partitions.
+   *
+   * @param partitionKey the partition key or {@code null} to clear it
+   */
+  public StoreRequestBuilder setPartitionKey(@Nullable byte[] partitionKey) {
+    this.partitionKey = partitionKey;
+    return this;
+  }
+
+  /**
+   * Sets the key for selecting the topic partition to publish to. The String will be converted to byte array
+   * using UTF-8 encoding.
+   *
+   * @see #setPartitionKey(byte[])
+   */
+  public StoreRequestBuilder setPartitionKey(@Nullable String partitionKey) {
+    return setPartitionKey(partitionKey == null ? null : STRING_TO_BYTES.apply(partitionKey));
+  }
+
   /**
    * Returns {@code true} if there is some payload in this builder.
    */
@@ -106,7 +129,7 @@ public final class StoreRequestBuilder {
       throw new IllegalArgumentException("Payload cannot be empty for non-transactional publish");
     }
     return new SimpleStoreRequest(topicId, txWritePointer != null, txWritePointer == null ? -1L : txWritePointer,
-                                  payloads);
+                                  partitionKey, payloads);
   }
 
   /**
@@ -116,9 +139,9 @@ public final class StoreRequestBuilder {
 
     private final Iterator<byte[]> payloads;
 
-    SimpleStoreRequest(TopicId topicId, boolean transactional,
-                       long transactionWritePointer, Iterator<byte[]> payloads) {
-      super(topicId, transactional, transactionWritePointer);
+    SimpleStoreRequest(TopicId topicId, boolean transactional, long transactionWritePointer,
+                       @Nullable byte[] partitionKey, Iterator<byte[]> payloads) {
+      super(topicId, transactional, transactionWritePointer, partitionKey);
       this.payloads = payloads;
     }
 
@@ -20,10 +20,12 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.api.messaging.TopicNotFoundException;
 import co.cask.cdap.common.BadRequestException;
+import co.cask.cdap.common.HttpExceptionHandler;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.ByteBuffers;
 import co.cask.cdap.messaging.MessageFetcher;
+import co.cask.cdap.messaging.MessageFrames;
 import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.messaging.Schemas;
 import co.cask.cdap.messaging.data.RawMessage;
@@ -31,9 +33,11 @@ import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
 import co.cask.http.AbstractHttpHandler;
 import co.cask.http.BodyProducer;
+import co.cask.http.HandlerContext;
 import co.cask.http.HttpResponder;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.inject.Inject;
+import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericDatumWriter;
@@ -45,6 +49,7 @@ import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
 import org.apache.tephra.TransactionCodec;
+import org.apache.twill.common.Threads;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBufferInputStream;
 import org.jboss.netty.buffer.ChannelBufferOutputStream;
@@ -60,6 +65,11 @@ import java.net.SocketException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -73,19 +83,41 @@ public final class FetchHandler extends AbstractHttpHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(FetchHandler.class);
   private static final TransactionCodec TRANSACTION_CODEC = new TransactionCodec();
+  private static final HttpExceptionHandler EXCEPTION_HANDLER = new HttpExceptionHandler();
 
   private final MessagingService messagingService;
+  private final int fetchWaitThreads;
   private int messageChunkSize;
+  private ExecutorService fetchWaitExecutor;
 
   @Inject
   FetchHandler(CConfiguration cConf, MessagingService messagingService) {
     this.messagingService = messagingService;
     this.messageChunkSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE);
+    this.fetchWaitThreads = Math.max(1, cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_FETCH_WAIT_THREADS));
+  }
+
+  @Override
+  public void init(HandlerContext context) {
+    super.init(context);
+    // Fetch requests that wait for new messages are served by this executor instead of the http server threads.
+    // There is no queue, such that requests are rejected immediately when all threads are busy.
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(fetchWaitThreads, fetchWaitThreads, 60, TimeUnit.SECONDS,
+                                                         new SynchronousQueue<Runnable>(),
+                                                         Threads.createDaemonThreadFactory("tms-fetch-wait-%d"));
+    executor.allowCoreThreadTimeOut(true);
+    fetchWaitExecutor = executor;
+  }
+
+  @Override
+  public void destroy(HandlerContext context) {
+    super.destroy(context);
+    fetchWaitExecutor.shutdownNow();
   }
 
   @POST
   @Path("poll")
-  public void poll(HttpRequest request, HttpResponder responder,
+  public void poll(final HttpRequest request, final HttpResponder responder,
                    @PathParam("namespace") String namespace,
                    @PathParam("topic") String topic) throws Exception {
 
@@ -99,13 +131,54 @@ public final class FetchHandler extends AbstractHttpHandler {
     // Decode the poll request
     Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ChannelBufferInputStream(request.getContent()),
                                                                null);
-    DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.ConsumeRequest.SCHEMA);
+    // Requests from older clients are encoded with the V1 schema, which resolves to the V2 schema with defaults
+    Schema writerSchema = Schemas.V2.VERSION.equals(request.getHeader(Schemas.VERSION_HEADER))
+      ? Schemas.V2.ConsumeRequest.SCHEMA : Schemas.V1.ConsumeRequest.SCHEMA;
+    DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(writerSchema, Schemas.V2.ConsumeRequest.SCHEMA);
+    GenericRecord fetchRequest = datumReader.read(null, decoder);
+    final MessageFetcher fetcher = createFetcher(fetchRequest, topicId);
+
+    // If there is no message available, wait for messages to be published up to the wait timeout.
+    // Waiting happens in the fetch wait executor so that the http server threads are never blocked.
+    Long waitTimeout = (Long) fetchRequest.get("waitTimeout");
+    if (waitTimeout != null && waitTimeout > 0) {
+      fetcher.setWaitTimeout(waitTimeout, TimeUnit.MILLISECONDS);
+      try {
+        fetchWaitExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              sendMessages(request, responder, fetcher.fetch());
+            } catch (Throwable t) {
+              EXCEPTION_HANDLER.handle(t, request, responder);
+            }
+          }
+        });
+        return;
+      } catch (RejectedExecutionException e) {
+        // All wait threads are busy. Fetch without waiting and let the client poll again.
+        LOG.trace("No thread available for waiting on topic {}, fetch without waiting.", topicId);
+        fetcher.setWaitTimeout(0, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    sendMessages(request, responder, fetcher.fetch());
+  }
 
-    // Fetch the messages
-    CloseableIterator<RawMessage> iterator = fetchMessages(datumReader.read(null, decoder), topicId);
+  /**
+   * Sends back messages from the given {@link CloseableIterator}.
+   */
+  private void sendMessages(HttpRequest request, HttpResponder responder, CloseableIterator<RawMessage> iterator) {
     try {
-      responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
-                            ImmutableMultimap.of(HttpHeaders.Names.CONTENT_TYPE, "avro/binary"));
+      // Use the binary framing if the client accepts it, otherwise fallback to avro
+      String accept = request.getHeader(HttpHeaders.Names.ACCEPT);
+      if (accept != null && accept.contains(MessageFrames.CONTENT_TYPE)) {
+        responder.sendContent(HttpResponseStatus.OK, new FramedMessagesBodyProducer(iterator, messageChunkSize),
+                              ImmutableMultimap.of(HttpHeaders.Names.CONTENT_TYPE, MessageFrames.CONTENT_TYPE));
+      } else {
+        responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
+                              ImmutableMultimap.of(HttpHeaders.Names.CONTENT_TYPE, "avro/binary"));
+      }
     } catch (Throwable t) {
       iterator.close();
       throw t;
@@ -113,10 +186,10 @@ public final class FetchHandler extends AbstractHttpHandler {
   }
 
   /**
-   * Creates a {@link CloseableIterator} of {@link RawMessage} based on the given fetch request.
+   * Creates a {@link MessageFetcher} based on the given fetch request. The wait timeout is not set on the fetcher.
    */
-  private CloseableIterator<RawMessage> fetchMessages(GenericRecord fetchRequest,
-                                                      TopicId topicId) throws IOException, TopicNotFoundException {
+  private MessageFetcher createFetcher(GenericRecord fetchRequest,
+                                       TopicId topicId) throws IOException, TopicNotFoundException {
     MessageFetcher fetcher = messagingService.prepareFetch(topicId);
 
     Object startFrom = fetchRequest.get("startFrom");
@@ -143,7 +216,110 @@ public final class FetchHandler extends AbstractHttpHandler {
       fetcher.setTransaction(TRANSACTION_CODEC.decode(ByteBuffers.getByteArray(encodedTx)));
     }
 
-    return fetcher.fetch();
+    Integer partition = (Integer) fetchRequest.get("partition");
+    if (partition != null) {
+      fetcher.setPartition(partition);
+    }
+
+    return fetcher;
+  }
+
+  /**
+   * Base class for {@link BodyProducer} that sends back messages from a {@link CloseableIterator}.
+   */
+  private abstract static class AbstractMessagesBodyProducer extends BodyProducer {
+
+    protected final CloseableIterator<RawMessage> iterator;
+
+    AbstractMessagesBodyProducer(CloseableIterator<RawMessage> iterator) {
+      this.iterator = iterator;
+    }
+
+    @Override
+    public void finished() throws Exception {
+      iterator.close();
+    }
+
+    @Override
+    public void handleError(@Nullable Throwable cause) {
+      iterator.close();
+      // Since response header is already sent, there is nothing we can send back to client. Simply log the failure
+      if (cause instanceof SocketException) {
+        // This can easily caused by client close connection prematurely. Don't want to flood the log.
+        LOG.debug("Socket exception raised when sending messages back to client", cause);
+      } else {
+        LOG.warn("Exception raised when sending messages back to client", cause);
+      }
+    }
+  }
+
+  /**
+   * A {@link BodyProducer} to send back messages with the binary framing defined in {@link MessageFrames}.
+   * Message ids and small payloads are copied into a reusable buffer, while large payloads are wrapped directly
+   * as part of a composite buffer, so that they are written to the network without copying.
+   */
+  private static final class FramedMessagesBodyProducer extends AbstractMessagesBodyProducer {
+
+    // Payloads smaller than this size are copied, since wrapping a small array costs more than copying it
+    private static final int COPY_THRESHOLD = 1024;
+
+    private final int messageChunkSize;
+    private final ChannelBuffer inlineBuffer;
+    private final List<ChannelBuffer> components;
+    private boolean ended;
+
+    FramedMessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
+      super(iterator);
+      this.messageChunkSize = messageChunkSize;
+      this.inlineBuffer = ChannelBuffers.dynamicBuffer(Math.min(messageChunkSize, COPY_THRESHOLD * 64));
+      this.components = new ArrayList<>();
+    }
+
+    @Override
+    public ChannelBuffer nextChunk() throws Exception {
+      // Already sent all messages, return empty to signal the end of response
+      if (ended) {
+        return ChannelBuffers.EMPTY_BUFFER;
+      }
+
+      // Both the inline buffer and the component list are reused for each chunk.
+      // The previous chunk is already written when this method is called.
+      inlineBuffer.clear();
+      components.clear();
+
+      int size = 0;
+      int sliceStart = 0;
+      while (iterator.hasNext() && size < messageChunkSize) {
+        RawMessage message = iterator.next();
+        byte[] id = message.getId();
+        byte[] payload = message.getPayload();
+
+        inlineBuffer.writeInt(id.length);
+        inlineBuffer.writeBytes(id);
+        inlineBuffer.writeInt(payload.length);
+        if (payload.length < COPY_THRESHOLD) {
+          inlineBuffer.writeBytes(payload);
+        } else {
+          components.add(inlineBuffer.slice(sliceStart, inlineBuffer.writerIndex() - sliceStart));
+          components.add(ChannelBuffers.wrappedBuffer(payload));
+          sliceStart = inlineBuffer.writerIndex();
+        }
+        size += id.length + payload.length + 8;
+      }
+
+      if (!iterator.hasNext()) {
+        ended = true;
+        inlineBuffer.writeInt(MessageFrames.END_OF_MESSAGES);
+      }
+
+      if (components.isEmpty()) {
+        return inlineBuffer;
+      }
+      if (inlineBuffer.writerIndex() > sliceStart) {
+        components.add(inlineBuffer.slice(sliceStart, inlineBuffer.writerIndex() - sliceStart));
+      }
+      return ChannelBuffers.wrappedBuffer(components.toArray(new ChannelBuffer[components.size()]));
+    }
   }
 
   /**
@@ -151,9 +327,8 @@ public final class FetchHandler extends AbstractHttpHandler {
    * Instead of using GenericDatumWriter, we perform the array encoding manually so that we don't have to buffer
    * all messages in memory before sending out.
    */
-  private static class MessagesBodyProducer extends BodyProducer {
+  private static class MessagesBodyProducer extends AbstractMessagesBodyProducer {
 
-    private final CloseableIterator<RawMessage> iterator;
     private final List<RawMessage> messages;
     private final int messageChunkSize;
     private final ChannelBuffer chunk;
@@ -164,7 +339,7 @@ public final class FetchHandler extends AbstractHttpHandler {
     private boolean arrayEnded;
 
     MessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
-      this.iterator = iterator;
+      super(iterator);
       this.messages = new ArrayList<>();
       this.messageChunkSize = messageChunkSize;
       this.chunk = ChannelBuffers.dynamicBuffer(messageChunkSize);
@@ -230,22 +405,5 @@ public final class FetchHandler extends AbstractHttpHandler {
 
       return chunk;
     }
-
-    @Override
-    public void finished() throws Exception {
-      iterator.close();
-    }
-
-    @Override
-    public void handleError(@Nullable Throwable cause) {
-      iterator.close();
-      // Since response header is already sent, there is nothing we can send back to client. Simply log the failure
-      if (cause instanceof SocketException) {
-        // This can easily caused by client close connection prematurely. Don't want to flood the log.
-        LOG.debug("Socket exception raised when sending messages back to client", cause);
-      } else {
-        LOG.warn("Exception raised when sending messages back to client", cause);
-      }
-    }
   }
 }
@@ -137,7 +137,10 @@ public final class StoreHandler extends AbstractHttpHandler {
 
     Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ChannelBufferInputStream(request.getContent()),
                                                                null);
-    DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.PublishRequest.SCHEMA);
+    // Requests from older clients are encoded with the V1 schema, which resolves to the V2 schema with defaults
+    Schema writerSchema = Schemas.V2.VERSION.equals(request.getHeader(Schemas.VERSION_HEADER))
+      ? Schemas.V2.PublishRequest.SCHEMA : Schemas.V1.PublishRequest.SCHEMA;
+    DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(writerSchema, Schemas.V2.PublishRequest.SCHEMA);
     return new GenericRecordStoreRequest(topicId, datumReader.read(null, decoder));
   }
 
@@ -181,7 +184,10 @@ public final class StoreHandler extends AbstractHttpHandler {
       super(topicId, genericRecord.get("transactionWritePointer") != null,
             genericRecord.get("transactionWritePointer") == null
               ? -1L
-              : Long.parseLong(genericRecord.get("transactionWritePointer").toString()));
+              : Long.parseLong(genericRecord.get("transactionWritePointer").toString()),
+            genericRecord.get("partitionKey") == null
+              ? null
+              : ByteBuffers.getByteArray((ByteBuffer) genericRecord.get("partitionKey")));
 
       this.payloadIterator = ((List<ByteBuffer>) genericRecord.get("messages")).iterator();
     }
@@ -21,8 +21,11 @@ import co.cask.cdap.api.metrics.NoopMetricsContext;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.StoreRequest;
 import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.proto.id.TopicId;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -30,7 +33,10 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
@@ -58,13 +64,24 @@ import javax.annotation.concurrent.ThreadSafe;
  *
  * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
  * get written and flushed.
+ *
+ * Alternatively, when constructed with a {@link GroupCommitConfig}, the writer operates in group commit mode.
+ * In this mode, a dedicated writer thread drains the pending requests and collects them into a batch until
+ * the batch reaches the configured maximum number of messages or bytes, or until the linger time has passed since
+ * the first request in the batch was dequeued. Caller threads block until their requests are written instead
+ * of competing for the writer flag. This trades a bounded amount of latency for larger writes to the underlying
+ * storage table.
  */
 @ThreadSafe
 final class ConcurrentMessageWriter implements Closeable {
 
+  private static final Logger LOG = LoggerFactory.getLogger(ConcurrentMessageWriter.class);
+
   private final StoreRequestWriter<?> messagesWriter;
   private final MetricsCollector metricsCollector;
   private final PendingStoreQueue pendingStoreQueue;
+  private final GroupCommitter groupCommitter;
+  private final TopicWriteNotifier writeNotifier;
   private final AtomicBoolean writerFlag;
   private final AtomicBoolean closed;
 
@@ -83,11 +100,34 @@ final class ConcurrentMessageWriter implements Closeable {
    * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
    */
   ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector) {
+    this(messagesWriter, metricsCollector, null, null, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
+   * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
+   * @param groupCommitConfig if not {@code null}, the writer operates in group commit mode with the given config
+   * @param writerName name of the writer, used for naming the group commit writer thread
+   * @param writeNotifier if not {@code null}, it will be notified after messages are written successfully
+   */
+  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector,
+                          @Nullable GroupCommitConfig groupCommitConfig, @Nullable String writerName,
+                          @Nullable TopicWriteNotifier writeNotifier) {
     this.messagesWriter = messagesWriter;
     this.metricsCollector = metricsCollector;
-    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector);
+    this.writeNotifier = writeNotifier;
+    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector, writeNotifier);
     this.writerFlag = new AtomicBoolean();
     this.closed = new AtomicBoolean();
+    if (groupCommitConfig == null) {
+      this.groupCommitter = null;
+    } else {
+      this.groupCommitter = new GroupCommitter(groupCommitConfig,
+                                               writerName == null ? "tms-group-commit" : writerName);
+      this.groupCommitter.start();
+    }
   }
 
   /**
@@ -107,13 +147,25 @@ final class ConcurrentMessageWriter implements Closeable {
     }
 
     PendingStoreRequest pendingStoreRequest = new PendingStoreRequest(storeRequest, metadata);
-    pendingStoreQueue.enqueue(pendingStoreRequest);
+    if (groupCommitter != null) {
+      try {
+        pendingStoreRequest.bufferPayloads();
+      } catch (RuntimeException e) {
+        metricsCollector.increment("persist.failure", 1L);
+        throw new IOException("Unable to write message to " + storeRequest.getTopicId(), e);
+      }
+      groupCommitter.enqueue(pendingStoreRequest);
+      metricsCollector.increment("persist.requested", 1L);
+      pendingStoreRequest.awaitCompleted();
+    } else {
+      pendingStoreQueue.enqueue(pendingStoreRequest);
 
-    metricsCollector.increment("persist.requested", 1L);
+      metricsCollector.increment("persist.requested", 1L);
 
-    while (!pendingStoreRequest.isCompleted()) {
-      if (!tryWrite()) {
-        Thread.yield();
+      while (!pendingStoreRequest.isCompleted()) {
+        if (!tryWrite()) {
+          Thread.yield();
+        }
       }
     }
 
@@ -156,6 +208,12 @@ final class ConcurrentMessageWriter implements Closeable {
     if (!closed.compareAndSet(false, true)) {
       return;
     }
+    if (groupCommitter != null) {
+      // The group committer drains all pending requests before the writer thread terminates
+      groupCommitter.stop();
+      messagesWriter.close();
+      return;
+    }
     // Flush everything in the queue.
     // When this thread can grab the writer flag, all pending write requests must be completed since the closed
     // flag was already set to false.
@@ -165,6 +223,25 @@ final class ConcurrentMessageWriter implements Closeable {
     messagesWriter.close();
   }
 
+  /**
+   * Notifies the {@link TopicWriteNotifier} about topics that have new messages written.
+   */
+  private static void notifyWritten(List<PendingStoreRequest> requests, @Nullable TopicWriteNotifier writeNotifier) {
+    if (writeNotifier == null) {
+      return;
+    }
+    TopicId lastTopicId = null;
+    for (PendingStoreRequest request : requests) {
+      // Use the topic id from the metadata, which identifies the topic partition that the messages were written to.
+      // All requests are usually for the same topic, hence only need to compare with the last one
+      TopicId topicId = request.getTopicMetadata().getTopicId();
+      if (!topicId.equals(lastTopicId)) {
+        lastTopicId = topicId;
+        writeNotifier.notifyWritten(lastTopicId);
+      }
+    }
+  }
+
   /**
    * A resettable {@link Iterator} to provide {@link StoreRequest} to {@link StoreRequestWriter}.
    * Except the {@link #enqueue(PendingStoreRequest)} method, all methods on this class can only be
@@ -173,11 +250,13 @@ final class ConcurrentMessageWriter implements Closeable {
   private static final class PendingStoreQueue {
 
     private final MetricsCollector metricsCollector;
+    private final TopicWriteNotifier writeNotifier;
     private final Queue<PendingStoreRequest> writeQueue;
     private final List<PendingStoreRequest> inflightRequests;
 
-    private PendingStoreQueue(MetricsCollector metricsCollector) {
+    private PendingStoreQueue(MetricsCollector metricsCollector, @Nullable TopicWriteNotifier writeNotifier) {
       this.metricsCollector = metricsCollector;
+      this.writeNotifier = writeNotifier;
       this.writeQueue = new ConcurrentLinkedQueue<>();
       this.inflightRequests = new ArrayList<>(100);
     }
@@ -210,6 +289,7 @@ final class ConcurrentMessageWriter implements Closeable {
 
       try {
         writer.write(inflightRequests.iterator());
+        notifyWritten(inflightRequests, writeNotifier);
         completeAll(null);
       } catch (Throwable t) {
         completeAll(t);
@@ -229,6 +309,128 @@ final class ConcurrentMessageWriter implements Closeable {
     }
   }
 
+  /**
+   * Writes {@link PendingStoreRequest} in batches from a dedicated writer thread. Only the writer thread
+   * interacts with the {@link StoreRequestWriter}.
+   */
+  private final class GroupCommitter implements Runnable {
+
+    private static final long STOP_CHECK_INTERVAL_MILLIS = 200L;
+
+    private final GroupCommitConfig config;
+    private final BlockingQueue<PendingStoreRequest> writeQueue;
+    private final List<PendingStoreRequest> batch;
+    private final Thread writerThread;
+    private volatile boolean running;
+
+    private GroupCommitter(GroupCommitConfig config, String threadName) {
+      this.config = config;
+      this.writeQueue = new LinkedBlockingQueue<>();
+      this.batch = new ArrayList<>(100);
+      this.writerThread = new Thread(this, threadName);
+      this.writerThread.setDaemon(true);
+    }
+
+    void start() {
+      running = true;
+      writerThread.start();
+    }
+
+    /**
+     * Stops the writer thread and blocks until all pending requests are written.
+     */
+    void stop() {
+      running = false;
+      try {
+        writerThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      // Fail anything that got enqueued after the writer thread terminated.
+      PendingStoreRequest request = writeQueue.poll();
+      while (request != null) {
+        request.completed(new IOException("Message writer is already closed"));
+        request = writeQueue.poll();
+      }
+    }
+
+    void enqueue(PendingStoreRequest request) {
+      writeQueue.add(request);
+      // If the writer thread already terminated, no one is going to complete the request
+      if (!writerThread.isAlive() && writeQueue.remove(request)) {
+        request.completed(new IOException("Message writer is already closed"));
+      }
+    }
+
+    @Override
+    public void run() {
+      while (running || !writeQueue.isEmpty()) {
+        try {
+          // Poll with timeout instead of blocking indefinitely so that the thread notices the stop signal
+          // without being interrupted, which could otherwise abort an in-progress write to the storage table.
+          PendingStoreRequest first = writeQueue.poll(STOP_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+          if (first != null) {
+            writeBatch(first);
+          }
+        } catch (InterruptedException e) {
+          // Drain the remaining requests before terminating.
+          running = false;
+        } catch (Throwable t) {
+          LOG.warn("Unexpected exception in message writer thread {}", writerThread.getName(), t);
+        }
+      }
+    }
+
+    /**
+     * Collects a batch starting from the given request and writes it through the {@link StoreRequestWriter}.
+     */
+    private void writeBatch(PendingStoreRequest first) {
+      batch.add(first);
+      int messages = first.getMessageCount();
+      long bytes = first.getPayloadSize();
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getLingerMillis());
+
+      while (messages < config.getMaxMessages() && bytes < config.getMaxBytes()) {
+        PendingStoreRequest request = writeQueue.poll();
+        if (request == null) {
+          long waitNanos = deadline - System.nanoTime();
+          if (!running || waitNanos <= 0) {
+            break;
+          }
+          try {
+            request = writeQueue.poll(waitNanos, TimeUnit.NANOSECONDS);
+          } catch (InterruptedException e) {
+            // Write out what we have so far and drain the remaining requests before terminating.
+            running = false;
+            break;
+          }
+          if (request == null) {
+            break;
+          }
+        }
+        batch.add(request);
+        messages += request.getMessageCount();
+        bytes += request.getPayloadSize();
+      }
+
+      metricsCollector.gauge("persist.queue.size", batch.size());
+      metricsCollector.gauge("persist.batch.messages", messages);
+      metricsCollector.gauge("persist.batch.bytes", bytes);
+
+      Throwable failure = null;
+      try {
+        messagesWriter.write(batch.iterator());
+        notifyWritten(batch, writeNotifier);
+      } catch (Throwable t) {
+        failure = t;
+      }
+      for (PendingStoreRequest request : batch) {
+        request.completed(failure);
+      }
+      batch.clear();
+    }
+  }
+
   /**
    * Straightforward implementation of {@link RollbackDetail}
    */
@@ -17,6 +17,7 @@
 package co.cask.cdap.messaging.service;
 
 import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.api.messaging.TopicNotFoundException;
 import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.TopicMetadata;
 import co.cask.cdap.messaging.data.MessageId;
@@ -41,23 +42,82 @@ final class CoreMessageFetcher extends MessageFetcher {
 
   private static final Logger LOG = LoggerFactory.getLogger(CoreMessageFetcher.class);
 
-  private final TopicMetadata topicMetadata;
+  private final PartitionMetadataProvider metadataProvider;
   private final TableProvider<MessageTable> messageTableProvider;
   private final TableProvider<PayloadTable> payloadTableProvider;
+  private final TopicWriteNotifier writeNotifier;
+  private final long maxWaitMillis;
+  private final long rescanMillis;
 
-  CoreMessageFetcher(TopicMetadata topicMetadata,
+  /**
+   * Constructor.
+   *
+   * @param metadataProvider provides the {@link TopicMetadata} of the topic partition to fetch from
+   * @param messageTableProvider provider for the {@link MessageTable}
+   * @param payloadTableProvider provider for the {@link PayloadTable}
+   * @param writeNotifier the {@link TopicWriteNotifier} for waiting for new messages
+   * @param maxWaitMillis the upper bound of the wait timeout that can be set through
+   *                      {@link #setWaitTimeout(long, TimeUnit)}
+   * @param rescanMillis the maximum time to wait for a write notification before scanning the message table again
+   */
+  CoreMessageFetcher(PartitionMetadataProvider metadataProvider,
                      TableProvider<MessageTable> messageTableProvider,
-                     TableProvider<PayloadTable> payloadTableProvider) {
-    this.topicMetadata = topicMetadata;
+                     TableProvider<PayloadTable> payloadTableProvider,
+                     TopicWriteNotifier writeNotifier, long maxWaitMillis, long rescanMillis) {
+    this.metadataProvider = metadataProvider;
     this.messageTableProvider = messageTableProvider;
     this.payloadTableProvider = payloadTableProvider;
+    this.writeNotifier = writeNotifier;
+    this.maxWaitMillis = maxWaitMillis;
+    this.rescanMillis = rescanMillis;
   }
 
   @Override
-  public CloseableIterator<RawMessage> fetch() throws IOException {
+  public CloseableIterator<RawMessage> fetch() throws TopicNotFoundException, IOException {
+    TopicMetadata topicMetadata = metadataProvider.get(getPartition());
+    // Visibility of transactional messages is decided by the transaction snapshot, which won't change
+    // while waiting. Hence waiting only applies to non-transactional fetches.
+    long waitMillis = getTransaction() == null ? Math.min(getWaitTimeoutMillis(), maxWaitMillis) : 0L;
+    if (waitMillis <= 0) {
+      return createIterator(topicMetadata);
+    }
+
+    long deadline = System.currentTimeMillis() + waitMillis;
+    try (TopicWriteNotifier.Waiter waiter = writeNotifier.register(topicMetadata.getTopicId())) {
+      while (true) {
+        // Capture the write version before scanning, so that writes happened during the scan won't be missed
+        long version = waiter.getVersion();
+        CloseableIterator<RawMessage> iterator = createIterator(topicMetadata);
+        long remaining = deadline - System.currentTimeMillis();
+        try {
+          if (remaining <= 0 || iterator.hasNext()) {
+            return iterator;
+          }
+        } catch (Throwable t) {
+          closeQuietly(iterator);
+          throw t;
+        }
+
+        // No message is available, wait for new writes before scanning again. The wait is bounded by the
+        // rescan interval so that messages written through other messaging service instances are picked up.
+        iterator.close();
+        try {
+          waiter.await(version, Math.min(remaining, rescanMillis), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return createIterator(topicMetadata);
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates a {@link CloseableIterator} that scans the message table based on the fetcher settings.
+   */
+  private CloseableIterator<RawMessage> createIterator(TopicMetadata topicMetadata) throws IOException {
     MessageTable messageTable = messageTableProvider.get();
     try {
-      return new MessageCloseableIterator(messageTable);
+      return new MessageCloseableIterator(topicMetadata, messageTable);
     } catch (Throwable t) {
       closeQuietly(messageTable);
       throw t;
@@ -107,6 +167,21 @@ final class CoreMessageFetcher extends MessageFetcher {
     }
   }
 
+  /**
+   * Provides {@link TopicMetadata} of a topic partition.
+   */
+  interface PartitionMetadataProvider {
+
+    /**
+     * Returns the {@link TopicMetadata} of the given partition.
+     *
+     * @throws TopicNotFoundException if the topic doesn't exist
+     * @throws IllegalArgumentException if the partition doesn't exist
+     * @throws IOException if failed to get the metadata
+     */
+    TopicMetadata get(int partition) throws TopicNotFoundException, IOException;
+  }
+
   /**
    * A {@link CloseableIterator} of {@link RawMessage} implementation that contains the core message fetching logic
    * by combine scanning on both {@link MessageTable} and {@link PayloadTable}.
@@ -114,6 +189,7 @@ final class CoreMessageFetcher extends MessageFetcher {
   private final class MessageCloseableIterator implements CloseableIterator<RawMessage> {
 
     private final CloseableIterator<MessageTable.Entry> messageIterator;
+    private final TopicMetadata topicMetadata;
     private final TopicId topicId;
     private final MessageTable messageTable;
     private RawMessage nextMessage;
@@ -123,7 +199,8 @@ final class CoreMessageFetcher extends MessageFetcher {
     private int messageLimit;
     private PayloadTable payloadTable;
 
-    MessageCloseableIterator(MessageTable messageTable) throws IOException {
+    MessageCloseableIterator(TopicMetadata topicMetadata, MessageTable messageTable) throws IOException {
+      this.topicMetadata = topicMetadata;
       this.topicId = topicMetadata.getTopicId();
       this.messageTable = messageTable;
       this.inclusive = isIncludeStart();
@@ -29,6 +29,7 @@ import co.cask.cdap.messaging.MessagingUtils;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.StoreRequest;
 import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.messaging.TopicPartitions;
 import co.cask.cdap.messaging.store.MessageTable;
 import co.cask.cdap.messaging.store.MetadataTable;
 import co.cask.cdap.messaging.store.PayloadTable;
@@ -51,6 +52,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -62,6 +64,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -81,6 +84,10 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   private final LoadingCache<TopicId, ConcurrentMessageWriter> payloadTableWriterCache;
   private final TimeProvider timeProvider;
   private final MetricsCollectionService metricsCollectionService;
+  private final TopicWriteNotifier writeNotifier;
+  private final long maxFetchWaitMillis;
+  private final long fetchRescanMillis;
+  private final AtomicInteger roundRobinCounter;
 
   @Inject
   CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
@@ -93,6 +100,10 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
                        MetricsCollectionService metricsCollectionService) {
     this.cConf = cConf;
     this.tableFactory = tableFactory;
+    this.writeNotifier = new TopicWriteNotifier();
+    this.roundRobinCounter = new AtomicInteger();
+    this.maxFetchWaitMillis = cConf.getLong(Constants.MessagingSystem.FETCH_MAX_WAIT_MILLIS);
+    this.fetchRescanMillis = cConf.getLong(Constants.MessagingSystem.FETCH_RESCAN_INTERVAL_MILLIS);
     this.topicCache = createTopicCache();
     this.messageTableWriterCache = createTableWriterCache(true, cConf);
     this.payloadTableWriterCache = createTableWriterCache(false, cConf);
@@ -112,35 +123,86 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
 
   @Override
   public void createTopic(TopicMetadata topicMetadata) throws TopicAlreadyExistsException, IOException {
+    TopicId topicId = topicMetadata.getTopicId();
+    if (TopicPartitions.isPartitionTopic(topicId)) {
+      throw new IllegalArgumentException("Invalid topic name " + topicId.getTopic() + ". Topic names starting with "
+                                           + TopicPartitions.PARTITION_TOPIC_PREFIX + " are reserved");
+    }
+
     try (MetadataTable metadataTable = createMetadataTable()) {
       Map<String, String> properties = createDefaultProperties();
       properties.putAll(topicMetadata.getProperties());
-      metadataTable.createTopic(new TopicMetadata(topicMetadata.getTopicId(), properties, true));
+      TopicMetadata metadata = new TopicMetadata(topicId, properties, true);
+      metadataTable.createTopic(metadata);
+
+      // Create the internal topics for storing partitions other than the first one
+      try {
+        for (int partition = 1; partition < metadata.getPartitions(); partition++) {
+          metadataTable.createTopic(createPartitionMetadata(metadata, partition));
+        }
+      } catch (Exception e) {
+        // Cleanup the topic so that the creation can be retried
+        try {
+          deleteTopic(metadataTable, topicId, metadata.getPartitions());
+        } catch (Exception cleanupException) {
+          e.addSuppressed(cleanupException);
+        }
+        Throwables.propagateIfPossible(e, TopicAlreadyExistsException.class, IOException.class);
+        throw Throwables.propagate(e);
+      }
     }
   }
 
   @Override
   public void updateTopic(TopicMetadata topicMetadata) throws TopicNotFoundException, IOException {
+    TopicId topicId = topicMetadata.getTopicId();
+    checkNotPartitionTopic(topicId);
     try (MetadataTable metadataTable = createMetadataTable()) {
+      TopicMetadata existing = metadataTable.getMetadata(topicId);
+      int partitions = existing.getPartitions();
+
       Map<String, String> properties = createDefaultProperties();
+      // Retain the number of partitions if it is not provided in the update
+      if (partitions > 1) {
+        properties.put(TopicMetadata.PARTITIONS_KEY, Integer.toString(partitions));
+      }
       properties.putAll(topicMetadata.getProperties());
-      metadataTable.updateTopic(new TopicMetadata(topicMetadata.getTopicId(), properties, true));
-      topicCache.invalidate(topicMetadata.getTopicId());
+      TopicMetadata metadata = new TopicMetadata(topicId, properties, true);
+
+      if (metadata.getPartitions() != partitions) {
+        throw new IllegalArgumentException("Changing the number of partitions of topic " + topicId
+                                             + " from " + partitions + " is not supported");
+      }
+
+      metadataTable.updateTopic(metadata);
+      topicCache.invalidate(topicId);
+      for (int partition = 1; partition < partitions; partition++) {
+        TopicMetadata partitionMetadata = createPartitionMetadata(metadata, partition);
+        metadataTable.updateTopic(partitionMetadata);
+        topicCache.invalidate(partitionMetadata.getTopicId());
+      }
     }
   }
 
   @Override
   public void deleteTopic(TopicId topicId) throws TopicNotFoundException, IOException {
+    checkNotPartitionTopic(topicId);
     try (MetadataTable metadataTable = createMetadataTable()) {
-      metadataTable.deleteTopic(topicId);
-      topicCache.invalidate(topicId);
-      messageTableWriterCache.invalidate(topicId);
-      payloadTableWriterCache.invalidate(topicId);
+      int partitions = metadataTable.getMetadata(topicId).getPartitions();
+      deleteTopic(metadataTable, topicId, partitions);
     }
   }
 
   @Override
   public TopicMetadata getTopic(TopicId topicId) throws TopicNotFoundException, IOException {
+    checkNotPartitionTopic(topicId);
+    return getTopicMetadata(topicId);
+  }
+
+  /**
+   * Returns the {@link TopicMetadata} of the given topic, which can also be an internal topic of a topic partition.
+   */
+  private TopicMetadata getTopicMetadata(TopicId topicId) throws TopicNotFoundException, IOException {
     try {
       return topicCache.get(topicId);
     } catch (ExecutionException e) {
@@ -153,14 +215,26 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   @Override
   public List<TopicId> listTopics(NamespaceId namespaceId) throws IOException {
     try (MetadataTable metadataTable = createMetadataTable()) {
-      return metadataTable.listTopics(namespaceId);
+      List<TopicId> topics = new ArrayList<>();
+      for (TopicId topicId : metadataTable.listTopics(namespaceId)) {
+        // Internal topics for partitions are not exposed
+        if (!TopicPartitions.isPartitionTopic(topicId)) {
+          topics.add(topicId);
+        }
+      }
+      return topics;
     }
   }
 
   @Override
   public MessageFetcher prepareFetch(final TopicId topicId) throws TopicNotFoundException, IOException {
     final TopicMetadata metadata = getTopic(topicId);
-    return new CoreMessageFetcher(metadata, new TableProvider<MessageTable>() {
+    return new CoreMessageFetcher(new CoreMessageFetcher.PartitionMetadataProvider() {
+      @Override
+      public TopicMetadata get(int partition) throws TopicNotFoundException, IOException {
+        return getPartitionMetadata(metadata, partition);
+      }
+    }, new TableProvider<MessageTable>() {
       @Override
       public MessageTable get() throws IOException {
         return createMessageTable(metadata);
@@ -170,15 +244,15 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       public PayloadTable get() throws IOException {
         return createPayloadTable(metadata);
       }
-    });
+    }, writeNotifier, maxFetchWaitMillis, fetchRescanMillis);
   }
 
   @Nullable
   @Override
   public RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException {
+    TopicMetadata metadata = getPartitionMetadata(request);
     try {
-      TopicMetadata metadata = topicCache.get(request.getTopicId());
-      return messageTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      return messageTableWriterCache.get(metadata.getTopicId()).persist(request, metadata);
     } catch (ExecutionException e) {
       Throwable cause = Objects.firstNonNull(e.getCause(), e);
       Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
@@ -188,9 +262,9 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
 
   @Override
   public void storePayload(StoreRequest request) throws TopicNotFoundException, IOException {
+    TopicMetadata metadata = getPartitionMetadata(request);
     try {
-      TopicMetadata metadata = topicCache.get(request.getTopicId());
-      payloadTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      payloadTableWriterCache.get(metadata.getTopicId()).persist(request, metadata);
     } catch (ExecutionException e) {
       Throwable cause = Objects.firstNonNull(e.getCause(), e);
       Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
@@ -200,7 +274,11 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
 
   @Override
   public void rollback(TopicId topicId, RollbackDetail rollbackDetail) throws TopicNotFoundException, IOException {
-    TopicMetadata metadata = getTopic(topicId);
+    TopicMetadata topicMetadata = getTopic(topicId);
+    // Transactional messages are always published to the partition determined by the transaction write pointer
+    TopicMetadata metadata = getPartitionMetadata(
+      topicMetadata, TopicPartitions.getPartition(rollbackDetail.getTransactionWritePointer(),
+                                                  topicMetadata.getPartitions()));
 
     Exception failure = null;
     try (MessageTable messageTable = createMessageTable(metadata)) {
@@ -361,6 +439,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   private LoadingCache<TopicId, ConcurrentMessageWriter> createTableWriterCache(final boolean messageTable,
                                                                                 final CConfiguration cConf) {
     long expireSecs = cConf.getLong(Constants.MessagingSystem.TABLE_CACHE_EXPIRATION_SECONDS);
+    final GroupCommitConfig groupCommitConfig = GroupCommitConfig.create(cConf);
 
     return CacheBuilder.newBuilder()
       .expireAfterAccess(expireSecs, TimeUnit.SECONDS)
@@ -380,23 +459,105 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       .build(new CacheLoader<TopicId, ConcurrentMessageWriter>() {
         @Override
         public ConcurrentMessageWriter load(TopicId topicId) throws Exception {
-          TopicMetadata metadata = getTopic(topicId);
+          TopicMetadata metadata = getTopicMetadata(topicId);
           StoreRequestWriter<?> messagesWriter = messageTable
             ? new MessageTableStoreRequestWriter(createMessageTable(metadata), timeProvider)
             : new PayloadTableStoreRequestWriter(createPayloadTable(metadata), timeProvider);
 
+          String tableType = messageTable ? "message" : "payload";
           MetricsContext metricsContext = metricsCollectionService.getContext(ImmutableMap.of(
             Constants.Metrics.Tag.COMPONENT, Constants.Service.MESSAGING_SERVICE,
             Constants.Metrics.Tag.INSTANCE_ID, cConf.get(Constants.MessagingSystem.CONTAINER_INSTANCE_ID, "0"),
             Constants.Metrics.Tag.NAMESPACE, topicId.getNamespace(),
-            Constants.Metrics.Tag.TABLE, messageTable ? "message" : "payload"
+            Constants.Metrics.Tag.TABLE, tableType
           ));
 
-          return new ConcurrentMessageWriter(messagesWriter, metricsContext);
+          // Only writes to the message table make new messages visible to fetchers
+          return new ConcurrentMessageWriter(messagesWriter, metricsContext, groupCommitConfig,
+                                             "tms-" + tableType + "-writer-" + topicId,
+                                             messageTable ? writeNotifier : null);
         }
       });
   }
 
+  /**
+   * Returns the {@link TopicMetadata} of the topic partition that the given {@link StoreRequest} should be written to.
+   * Transactional requests are routed by the transaction write pointer, such that the payload table entries,
+   * the message table entries and the rollback of the same transaction all go to the same partition.
+   * Non-transactional requests are routed by the partition key if present, otherwise in round robin fashion.
+   */
+  private TopicMetadata getPartitionMetadata(StoreRequest request) throws TopicNotFoundException, IOException {
+    TopicMetadata metadata = getTopic(request.getTopicId());
+    int partitions = metadata.getPartitions();
+    if (partitions == 1) {
+      return metadata;
+    }
+
+    int partition;
+    if (request.isTransactional()) {
+      partition = TopicPartitions.getPartition(request.getTransactionWritePointer(), partitions);
+    } else if (request.getPartitionKey() != null) {
+      partition = TopicPartitions.getPartition(request.getPartitionKey(), partitions);
+    } else {
+      partition = (roundRobinCounter.getAndIncrement() & Integer.MAX_VALUE) % partitions;
+    }
+    return getPartitionMetadata(metadata, partition);
+  }
+
+  /**
+   * Returns the {@link TopicMetadata} of the given partition of a topic.
+   */
+  private TopicMetadata getPartitionMetadata(TopicMetadata metadata,
+                                             int partition) throws TopicNotFoundException, IOException {
+    if (partition >= metadata.getPartitions()) {
+      throw new IllegalArgumentException("Partition " + partition + " does not exist in topic "
+                                           + metadata.getTopicId() + " with " + metadata.getPartitions()
+                                           + " partitions");
+    }
+    return getTopicMetadata(TopicPartitions.getPartitionTopicId(metadata.getTopicId(), partition));
+  }
+
+  /**
+   * Throws {@link TopicNotFoundException} for the internal topics that store topic partitions. They are not exposed,
+   * hence can only be accessed through the topic they belong to.
+   */
+  private void checkNotPartitionTopic(TopicId topicId) throws TopicNotFoundException {
+    if (TopicPartitions.isPartitionTopic(topicId)) {
+      throw new TopicNotFoundException(topicId.getNamespace(), topicId.getTopic());
+    }
+  }
+
+  /**
+   * Creates the {@link TopicMetadata} for the internal topic that stores the given partition of a topic.
+   */
+  private TopicMetadata createPartitionMetadata(TopicMetadata metadata, int partition) {
+    Map<String, String> properties = new HashMap<>(metadata.getProperties());
+    properties.remove(TopicMetadata.PARTITIONS_KEY);
+    return new TopicMetadata(TopicPartitions.getPartitionTopicId(metadata.getTopicId(), partition), properties, true);
+  }
+
+  /**
+   * Deletes the given topic together with the internal topics for its partitions.
+   */
+  private void deleteTopic(MetadataTable metadataTable, TopicId topicId,
+                           int partitions) throws TopicNotFoundException, IOException {
+    for (int partition = partitions - 1; partition >= 0; partition--) {
+      TopicId partitionTopicId = TopicPartitions.getPartitionTopicId(topicId, partition);
+      try {
+        metadataTable.deleteTopic(partitionTopicId);
+      } catch (TopicNotFoundException e) {
+        // Only the topic itself must exist. The internal partition topics could be missing due to partial failure.
+        if (partition == 0) {
+          throw e;
+        }
+      }
+      topicCache.invalidate(partitionTopicId);
+      messageTableWriterCache.invalidate(partitionTopicId);
+      payloadTableWriterCache.invalidate(partitionTopicId);
+      writeNotifier.remove(partitionTopicId);
+    }
+  }
+
   /**
    * Creates a new instance of {@link MetadataTable}.
    */
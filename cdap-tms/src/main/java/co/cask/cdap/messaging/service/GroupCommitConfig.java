@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+
+/**
+ * Configuration for the group commit mode of {@link ConcurrentMessageWriter}.
+ */
+final class GroupCommitConfig {
+
+  private final long lingerMillis;
+  private final int maxMessages;
+  private final long maxBytes;
+
+  /**
+   * Creates a {@link GroupCommitConfig} from the given {@link CConfiguration}.
+   *
+   * @return a {@link GroupCommitConfig} or {@code null} if group commit is not enabled
+   */
+  @Nullable
+  static GroupCommitConfig create(CConfiguration cConf) {
+    if (!cConf.getBoolean(Constants.MessagingSystem.GROUP_COMMIT_ENABLED, false)) {
+      return null;
+    }
+    return new GroupCommitConfig(cConf.getLong(Constants.MessagingSystem.GROUP_COMMIT_LINGER_MS),
+                                 cConf.getInt(Constants.MessagingSystem.GROUP_COMMIT_MAX_MESSAGES),
+                                 cConf.getLong(Constants.MessagingSystem.GROUP_COMMIT_MAX_BYTES));
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param lingerMillis maximum time in milliseconds to wait for more requests to join a batch
+   * @param maxMessages maximum number of messages to write in one batch
+   * @param maxBytes maximum total payload size in bytes to write in one batch
+   */
+  GroupCommitConfig(long lingerMillis, int maxMessages, long maxBytes) {
+    Preconditions.checkArgument(lingerMillis >= 0, "Linger time must be >= 0");
+    Preconditions.checkArgument(maxMessages > 0, "Maximum number of messages per batch must be > 0");
+    Preconditions.checkArgument(maxBytes > 0, "Maximum number of bytes per batch must be > 0");
+    this.lingerMillis = lingerMillis;
+    this.maxMessages = maxMessages;
+    this.maxBytes = maxBytes;
+  }
+
+  long getLingerMillis() {
+    return lingerMillis;
+  }
+
+  int getMaxMessages() {
+    return maxMessages;
+  }
+
+  long getMaxBytes() {
+    return maxBytes;
+  }
+
+  @Override
+  public String toString() {
+    return "GroupCommitConfig{" +
+      "lingerMillis=" + lingerMillis +
+      ", maxMessages=" + maxMessages +
+      ", maxBytes=" + maxBytes +
+      '}';
+  }
+}
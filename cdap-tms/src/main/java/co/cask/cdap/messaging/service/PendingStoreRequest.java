@@ -18,7 +18,12 @@ package co.cask.cdap.messaging.service;
 
 import co.cask.cdap.messaging.StoreRequest;
 import co.cask.cdap.messaging.TopicMetadata;
+import com.google.common.util.concurrent.Uninterruptibles;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import javax.annotation.Nullable;
 
 /**
@@ -28,8 +33,12 @@ final class PendingStoreRequest extends StoreRequest {
 
   private final StoreRequest originalRequest;
   private final TopicMetadata metadata;
+  private final CountDownLatch completion;
 
-  private boolean completed;
+  private volatile boolean completed;
+  private Iterator<byte[]> bufferedPayloads;
+  private int messageCount;
+  private long payloadSize;
   private long startTimestamp;
   private long endTimestamp;
   private int startSequenceId;
@@ -38,9 +47,42 @@ final class PendingStoreRequest extends StoreRequest {
 
   PendingStoreRequest(StoreRequest originalRequest, TopicMetadata topicMetadata) {
     super(originalRequest.getTopicId(), originalRequest.isTransactional(),
-          originalRequest.getTransactionWritePointer());
+          originalRequest.getTransactionWritePointer(), originalRequest.getPartitionKey());
     this.originalRequest = originalRequest;
     this.metadata = topicMetadata;
+    this.completion = new CountDownLatch(1);
+  }
+
+  /**
+   * Reads all payloads from the original {@link StoreRequest} into memory so that the number of messages and
+   * the total payload size are known before the request is handed to the writer. This method must be called
+   * before this request is being consumed as an {@link Iterator}.
+   */
+  void bufferPayloads() {
+    List<byte[]> payloads = new ArrayList<>();
+    while (originalRequest.hasNext()) {
+      byte[] payload = originalRequest.next();
+      payloads.add(payload);
+      payloadSize += payload.length;
+    }
+    // A transactional request without payload still generates one entry in the message table
+    messageCount = Math.max(1, payloads.size());
+    bufferedPayloads = payloads.iterator();
+  }
+
+  /**
+   * Returns the number of messages in this request. Only valid after {@link #bufferPayloads()} was called.
+   */
+  int getMessageCount() {
+    return messageCount;
+  }
+
+  /**
+   * Returns the total size in bytes of all payloads in this request.
+   * Only valid after {@link #bufferPayloads()} was called.
+   */
+  long getPayloadSize() {
+    return payloadSize;
   }
 
   TopicMetadata getTopicMetadata() {
@@ -64,8 +106,16 @@ final class PendingStoreRequest extends StoreRequest {
   }
 
   void completed(@Nullable Throwable failureCause) {
-    completed = true;
     this.failureCause = failureCause;
+    completed = true;
+    completion.countDown();
+  }
+
+  /**
+   * Blocks until this request is completed.
+   */
+  void awaitCompleted() {
+    Uninterruptibles.awaitUninterruptibly(completion);
   }
 
   void setStartTimestamp(long startTimestamp) {
@@ -103,6 +153,9 @@ final class PendingStoreRequest extends StoreRequest {
   @Nullable
   @Override
   protected byte[] doComputeNext() {
+    if (bufferedPayloads != null) {
+      return bufferedPayloads.hasNext() ? bufferedPayloads.next() : null;
+    }
     return originalRequest.hasNext() ? originalRequest.next() : null;
   }
 
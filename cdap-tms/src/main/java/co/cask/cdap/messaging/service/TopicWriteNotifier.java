@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.proto.id.TopicId;
+
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Keeps track of writes to topics so that fetchers can block until new messages are written to a topic.
+ *
+ * A fetcher that wants to wait first {@link #register(TopicId) registers} itself as a waiter of the topic
+ * and captures the current write version before scanning the message table. If the scan returns nothing,
+ * it waits until the version changes, which guarantees that a write completed after the capture won't be missed.
+ * The state of a topic is only kept while there are waiters on it.
+ *
+ * Notifications are local to the current process. Writes that go through other messaging service instances
+ * are only picked up when a waiter rescans the table after its wait slice expires.
+ */
+@ThreadSafe
+final class TopicWriteNotifier {
+
+  private final ConcurrentMap<TopicId, WriteVersion> versions = new ConcurrentHashMap<>();
+
+  /**
+   * Registers a waiter for writes to the given topic. The returned {@link Waiter} must be closed
+   * when the caller is no longer waiting for the topic.
+   */
+  Waiter register(TopicId topicId) {
+    while (true) {
+      WriteVersion version = versions.get(topicId);
+      if (version == null) {
+        version = new WriteVersion();
+        WriteVersion existing = versions.putIfAbsent(topicId, version);
+        version = existing == null ? version : existing;
+      }
+      // The version can be released concurrently by the last waiter, in which case retry with a new one
+      if (version.acquire()) {
+        return new Waiter(topicId, version);
+      }
+    }
+  }
+
+  /**
+   * Notifies that new messages were written to the given topic.
+   */
+  void notifyWritten(TopicId topicId) {
+    WriteVersion version = versions.get(topicId);
+    // If there is no one waiting for the topic, no need to notify.
+    if (version != null) {
+      version.increment();
+    }
+  }
+
+  /**
+   * Removes the state for the given topic. It is called when a topic is deleted.
+   */
+  void remove(TopicId topicId) {
+    WriteVersion version = versions.remove(topicId);
+    if (version != null) {
+      // Wake up all waiters
+      version.increment();
+    }
+  }
+
+  /**
+   * Returns the number of topics that currently have waiters.
+   */
+  int size() {
+    return versions.size();
+  }
+
+  /**
+   * A registration of interest in writes to a topic.
+   */
+  final class Waiter implements Closeable {
+
+    private final TopicId topicId;
+    private final WriteVersion version;
+    private boolean closed;
+
+    private Waiter(TopicId topicId, WriteVersion version) {
+      this.topicId = topicId;
+      this.version = version;
+    }
+
+    /**
+     * Returns the current write version of the topic.
+     */
+    long getVersion() {
+      return version.get();
+    }
+
+    /**
+     * Waits until the write version of the topic is different than the given version.
+     *
+     * @param lastVersion the write version previously acquired through {@link #getVersion()}
+     * @param timeout maximum time to wait
+     * @param unit unit for the timeout
+     * @return {@code true} if there were writes to the topic, {@code false} if timeout reached
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    boolean await(long lastVersion, long timeout, TimeUnit unit) throws InterruptedException {
+      return version.await(lastVersion, unit.toMillis(timeout));
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (version.release()) {
+        versions.remove(topicId, version);
+      }
+    }
+  }
+
+  /**
+   * A counter that supports waiting for changes and keeps track of the number of waiters.
+   */
+  private static final class WriteVersion {
+
+    private long version;
+    private int waiters;
+    private boolean released;
+
+    synchronized boolean acquire() {
+      if (released) {
+        return false;
+      }
+      waiters++;
+      return true;
+    }
+
+    /**
+     * Releases a waiter. Returns {@code true} if it was the last waiter.
+     */
+    synchronized boolean release() {
+      waiters--;
+      if (waiters == 0) {
+        released = true;
+      }
+      return released;
+    }
+
+    synchronized long get() {
+      return version;
+    }
+
+    synchronized void increment() {
+      version++;
+      notifyAll();
+    }
+
+    synchronized boolean await(long lastVersion, long timeoutMillis) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + timeoutMillis;
+      long waitMillis = timeoutMillis;
+      while (version == lastVersion && waitMillis > 0) {
+        wait(waitMillis);
+        waitMillis = deadline - System.currentTimeMillis();
+      }
+      return version != lastVersion;
+    }
+  }
+}
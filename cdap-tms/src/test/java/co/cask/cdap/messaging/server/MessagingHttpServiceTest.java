@@ -29,6 +29,7 @@ import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
 import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.messaging.TopicPartitions;
 import co.cask.cdap.messaging.client.ClientMessagingService;
 import co.cask.cdap.messaging.client.StoreRequestBuilder;
 import co.cask.cdap.messaging.data.MessageId;
@@ -36,6 +37,7 @@ import co.cask.cdap.messaging.data.RawMessage;
 import co.cask.cdap.messaging.guice.MessagingServerRuntimeModule;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterators;
 import com.google.inject.AbstractModule;
@@ -56,6 +58,11 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for {@link MessagingHttpService}.
@@ -403,6 +410,230 @@ public class MessagingHttpServiceTest {
     client.deleteTopic(topicId);
   }
 
+  @Test
+  public void testMixedPayloadSizeConsume() throws Exception {
+    // This test is to verify the binary framed body producer works correctly with both copied and wrapped payloads
+    TopicId topicId = new NamespaceId("ns1").topic("testMixedPayloadSizeConsume");
+
+    client.createTopic(new TopicMetadata(topicId));
+
+    // Publish messages with alternating small and large payloads
+    List<String> payloads = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      String payload = Strings.repeat(Integer.toString(i % 10), i % 2 == 0 ? 10 : 4096);
+      payloads.add(payload);
+      client.publish(StoreRequestBuilder.of(topicId).addPayloads(payload).build());
+    }
+
+    List<RawMessage> messages = new ArrayList<>();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId).fetch()) {
+      Iterators.addAll(messages, iterator);
+    }
+    Assert.assertEquals(payloads.size(), messages.size());
+    for (int i = 0; i < payloads.size(); i++) {
+      Assert.assertEquals(MessageId.RAW_ID_SIZE, messages.get(i).getId().length);
+      Assert.assertEquals(payloads.get(i), Bytes.toString(messages.get(i).getPayload()));
+    }
+
+    client.deleteTopic(topicId);
+  }
+
+  @Test
+  public void testLongPollFetch() throws Exception {
+    final TopicId topicId = new NamespaceId("ns1").topic("testLongPollFetch");
+    client.createTopic(new TopicMetadata(topicId));
+
+    // Fetch with wait timeout on an empty topic should return empty after the timeout
+    Stopwatch stopwatch = new Stopwatch().start();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+                                                        .setWaitTimeout(500, TimeUnit.MILLISECONDS)
+                                                        .fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+    Assert.assertTrue(stopwatch.elapsedMillis() >= 500);
+
+    // Publish a message from another thread while the fetch is waiting. The fetch should return with the message
+    // without waiting for the whole timeout
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          TimeUnit.MILLISECONDS.sleep(500);
+          client.publish(StoreRequestBuilder.of(topicId).addPayloads("m0").build());
+          return null;
+        }
+      });
+
+      stopwatch.reset().start();
+      List<RawMessage> messages = new ArrayList<>();
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+                                                          .setWaitTimeout(30, TimeUnit.SECONDS)
+                                                          .fetch()) {
+        Iterators.addAll(messages, iterator);
+      }
+      Assert.assertTrue(stopwatch.elapsedMillis() < TimeUnit.SECONDS.toMillis(30));
+      Assert.assertEquals(1, messages.size());
+      Assert.assertEquals("m0", Bytes.toString(messages.get(0).getPayload()));
+
+      // A waiting fetch shouldn't block other requests served by the http server
+      final byte[] lastId = messages.get(0).getId();
+      Future<List<RawMessage>> waitingFetch = executor.submit(new Callable<List<RawMessage>>() {
+        @Override
+        public List<RawMessage> call() throws Exception {
+          List<RawMessage> result = new ArrayList<>();
+          try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+                                                              .setStartMessage(lastId, false)
+                                                              .setWaitTimeout(30, TimeUnit.SECONDS)
+                                                              .fetch()) {
+            Iterators.addAll(result, iterator);
+          }
+          return result;
+        }
+      });
+      TimeUnit.MILLISECONDS.sleep(200);
+
+      stopwatch.reset().start();
+      Assert.assertEquals(1, client.getTopic(topicId).getPartitions());
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId).setStartMessage(lastId, false)
+                                                          .fetch()) {
+        Assert.assertFalse(iterator.hasNext());
+      }
+      Assert.assertTrue(stopwatch.elapsedMillis() < TimeUnit.SECONDS.toMillis(10));
+      Assert.assertFalse(waitingFetch.isDone());
+
+      // Publish to release the waiting fetch
+      client.publish(StoreRequestBuilder.of(topicId).addPayloads("m1").build());
+      messages = waitingFetch.get(10, TimeUnit.SECONDS);
+      Assert.assertEquals(1, messages.size());
+      Assert.assertEquals("m1", Bytes.toString(messages.get(0).getPayload()));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    client.deleteTopic(topicId);
+  }
+
+  @Test
+  public void testPartitionedTopic() throws Exception {
+    NamespaceId nsId = new NamespaceId("ns1");
+    TopicId topicId = nsId.topic("testPartitionedTopic");
+    client.createTopic(new TopicMetadata(topicId, TopicMetadata.PARTITIONS_KEY, 3));
+
+    // The internal partition topics shouldn't be visible
+    Assert.assertEquals(Arrays.asList(topicId), client.listTopics(nsId));
+    Assert.assertEquals(3, client.getTopic(topicId).getPartitions());
+
+    // Changing the number of partitions is not allowed
+    try {
+      client.updateTopic(new TopicMetadata(topicId, TopicMetadata.PARTITIONS_KEY, 4));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+
+    // Publish messages with different partition keys. Messages with the same key go to the same partition.
+    for (int i = 0; i < 10; i++) {
+      client.publish(StoreRequestBuilder.of(topicId).setPartitionKey("key" + (i % 5)).addPayloads("m" + i).build());
+    }
+
+    Set<String> payloads = new HashSet<>();
+    for (int partition = 0; partition < 3; partition++) {
+      Set<String> keys = new HashSet<>();
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId).setPartition(partition).fetch()) {
+        while (iterator.hasNext()) {
+          String payload = Bytes.toString(iterator.next().getPayload());
+          Assert.assertTrue(payloads.add(payload));
+          keys.add("key" + (Integer.parseInt(payload.substring(1)) % 5));
+        }
+      }
+      for (String key : keys) {
+        Assert.assertEquals(partition, TopicPartitions.getPartition(Bytes.toBytes(key), 3));
+      }
+    }
+    Assert.assertEquals(10, payloads.size());
+
+    // Fetching from an invalid partition should fail
+    try {
+      client.prepareFetch(topicId).setPartition(3).fetch();
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+
+    // The internal partition topics cannot be accessed through the topic API
+    TopicId partitionTopicId = TopicPartitions.getPartitionTopicId(topicId, 1);
+    try {
+      client.getTopic(partitionTopicId);
+      Assert.fail("Expected TopicNotFoundException");
+    } catch (TopicNotFoundException e) {
+      // Expected
+    }
+    try {
+      client.updateTopic(new TopicMetadata(partitionTopicId, "ttl", "5"));
+      Assert.fail("Expected TopicNotFoundException");
+    } catch (TopicNotFoundException e) {
+      // Expected
+    }
+    try {
+      client.deleteTopic(partitionTopicId);
+      Assert.fail("Expected TopicNotFoundException");
+    } catch (TopicNotFoundException e) {
+      // Expected
+    }
+    try {
+      client.publish(StoreRequestBuilder.of(partitionTopicId).addPayloads("m").build());
+      Assert.fail("Expected TopicNotFoundException");
+    } catch (TopicNotFoundException e) {
+      // Expected
+    }
+    Assert.assertEquals(3, client.getTopic(topicId).getPartitions());
+
+    client.deleteTopic(topicId);
+    Assert.assertTrue(client.listTopics(nsId).isEmpty());
+    try {
+      client.getTopic(TopicPartitions.getPartitionTopicId(topicId, 1));
+      Assert.fail("Expected TopicNotFoundException");
+    } catch (TopicNotFoundException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testPartitionTopicNameCollision() throws Exception {
+    NamespaceId nsId = new NamespaceId("ns1");
+    TopicId topicId = nsId.topic("testCollision");
+
+    // Topics cannot be created with the reserved name of a partition topic
+    try {
+      client.createTopic(new TopicMetadata(TopicPartitions.getPartitionTopicId(topicId, 1)));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+
+    // A regular topic with a partition-like suffix must be independent of the partitions of another topic
+    TopicId similarTopicId = nsId.topic("testCollision--p1");
+    client.createTopic(new TopicMetadata(similarTopicId));
+    client.publish(StoreRequestBuilder.of(similarTopicId).addPayloads("similar").build());
+
+    client.createTopic(new TopicMetadata(topicId, TopicMetadata.PARTITIONS_KEY, 2));
+    for (int i = 0; i < 10; i++) {
+      client.publish(StoreRequestBuilder.of(topicId).setPartitionKey("key" + i).addPayloads("m" + i).build());
+    }
+    Assert.assertEquals(new HashSet<>(Arrays.asList(topicId, similarTopicId)),
+                        new HashSet<>(client.listTopics(nsId)));
+
+    client.deleteTopic(topicId);
+    Assert.assertEquals(Arrays.asList(similarTopicId), client.listTopics(nsId));
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(similarTopicId).fetch()) {
+      Assert.assertTrue(iterator.hasNext());
+      Assert.assertEquals("similar", Bytes.toString(iterator.next().getPayload()));
+      Assert.assertFalse(iterator.hasNext());
+    }
+    client.deleteTopic(similarTopicId);
+  }
+
   @Test
   public void testPayloadTable() throws Exception {
     // This test is to verify storing transaction messages to the payload table
@@ -18,6 +18,7 @@ package co.cask.cdap.messaging.service;
 
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.metrics.MetricsCollector;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
 import co.cask.cdap.common.utils.TimeProvider;
 import co.cask.cdap.messaging.StoreRequest;
 import co.cask.cdap.messaging.TopicMetadata;
@@ -30,6 +31,7 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.util.concurrent.Uninterruptibles;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -268,6 +270,216 @@ public class ConcurrentMessageWriterTest {
     }
   }
 
+  @Test
+  public void testGroupCommit() throws IOException, InterruptedException {
+    final TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    final TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+
+    // Each request has 10 messages, and a batch can have at most 30 messages
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+    final ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new NoopMetricsContext(),
+                                                                       new GroupCommitConfig(50L, 30, 1024L * 1024L),
+                                                                       "test-group-commit", null);
+    try {
+      final List<String> payloads = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        payloads.add(Integer.toString(i));
+      }
+
+      int threadCount = 10;
+      ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+      final CountDownLatch latch = new CountDownLatch(threadCount);
+      for (int i = 0; i < threadCount; i++) {
+        executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              writer.persist(new TestStoreRequest(topicId, payloads), metadata);
+            } catch (IOException e) {
+              LOG.error("Failed to persist", e);
+            } finally {
+              latch.countDown();
+            }
+          }
+        });
+      }
+      executor.shutdown();
+      Assert.assertTrue(latch.await(1, TimeUnit.MINUTES));
+
+      List<RawMessage> messages = testWriter.getMessages().get(topicId);
+      Assert.assertEquals(threadCount * payloads.size(), messages.size());
+
+      // Requests can be batched, but each write is bounded by the max messages per batch
+      Assert.assertTrue(testWriter.getWriteCount() <= threadCount);
+      Assert.assertTrue(testWriter.getWriteCount() >= (threadCount * payloads.size() + 29) / 30);
+
+      // Payloads of each request must be written contiguously and the message ids must be sorted
+      RawMessage lastMessage = null;
+      for (int i = 0; i < messages.size(); i++) {
+        RawMessage message = messages.get(i);
+        Assert.assertEquals(i % payloads.size(), Integer.parseInt(Bytes.toString(message.getPayload())));
+        if (lastMessage != null) {
+          Assert.assertTrue(Bytes.compareTo(lastMessage.getId(), message.getId()) < 0);
+        }
+        lastMessage = message;
+      }
+    } finally {
+      writer.close();
+    }
+
+    // Write after close should fail
+    try {
+      writer.persist(new TestStoreRequest(topicId, Arrays.asList("1")), metadata);
+      Assert.fail("Expected IOException");
+    } catch (IOException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testGroupCommitFailure() throws IOException {
+    TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+
+    // An empty non-transactional request is invalid and should fail without affecting the writer
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+    try (ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new NoopMetricsContext(),
+                                                                      new GroupCommitConfig(0L, 100, 1024L),
+                                                                      "test-group-commit", null)) {
+      try {
+        writer.persist(new TestStoreRequest(topicId, new ArrayList<String>()), metadata);
+        Assert.fail("Expected IOException");
+      } catch (IOException e) {
+        // Expected
+      }
+
+      writer.persist(new TestStoreRequest(topicId, Arrays.asList("1", "2")), metadata);
+      Assert.assertEquals(2, testWriter.getMessages().get(topicId).size());
+    }
+  }
+
+  /**
+   * Verifies that the group commit writer collects concurrent requests into batches of the configured size,
+   * instead of writing whatever is pending when the writer flag is acquired.
+   */
+  @Test
+  public void testGroupCommitBatching() throws Exception {
+    int threadCount = 20;
+    int requestPerThread = 50;
+    int payloadsPerRequest = 5;
+
+    TestStoreRequestWriter defaultStoreWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+    try (ConcurrentMessageWriter writer = new ConcurrentMessageWriter(defaultStoreWriter)) {
+      runConcurrentWrites(writer, defaultStoreWriter, threadCount, requestPerThread, payloadsPerRequest);
+    }
+
+    // Use a linger time long enough such that a batch is only written when it is full. Since each thread blocks
+    // until its request is written, each batch must contain exactly one request from each thread.
+    TestStoreRequestWriter groupStoreWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+    try (ConcurrentMessageWriter writer = new ConcurrentMessageWriter(groupStoreWriter, new NoopMetricsContext(),
+                                                                      new GroupCommitConfig(
+                                                                        TimeUnit.MINUTES.toMillis(1),
+                                                                        threadCount * payloadsPerRequest,
+                                                                        1024L * 1024L),
+                                                                      "test-group-commit", null)) {
+      runConcurrentWrites(writer, groupStoreWriter, threadCount, requestPerThread, payloadsPerRequest);
+    }
+
+    Assert.assertEquals(requestPerThread, groupStoreWriter.getWriteCount());
+
+    // A write can contain at most one request from each thread, hence the default writer can't do fewer writes
+    Assert.assertTrue("Default writer used " + defaultStoreWriter.getWriteCount() + " writes",
+                      defaultStoreWriter.getWriteCount() >= groupStoreWriter.getWriteCount());
+  }
+
+  /**
+   * A throughput harness that reports the messages/sec of the default writer and of the group commit writer with
+   * the default group commit settings. Each storage write takes a fixed time, to simulate the latency of a
+   * persistent table. It is not run as part of the build.
+   */
+  @Ignore
+  @Test
+  public void testGroupCommitThroughput() throws Exception {
+    int requestPerThread = 200;
+    int payloadsPerRequest = 5;
+    long writeDelayMillis = 2L;
+
+    for (int threadCount : new int[] { 1, 4, 16, 64 }) {
+      TestStoreRequestWriter defaultStoreWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider(),
+                                                                             writeDelayMillis);
+      long defaultRate;
+      try (ConcurrentMessageWriter writer = new ConcurrentMessageWriter(defaultStoreWriter)) {
+        defaultRate = measureThroughput(writer, defaultStoreWriter, threadCount, requestPerThread, payloadsPerRequest);
+      }
+
+      TestStoreRequestWriter groupStoreWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider(),
+                                                                           writeDelayMillis);
+      long groupRate;
+      try (ConcurrentMessageWriter writer = new ConcurrentMessageWriter(groupStoreWriter, new NoopMetricsContext(),
+                                                                        new GroupCommitConfig(5L, 5000, 4194304L),
+                                                                        "test-group-commit", null)) {
+        groupRate = measureThroughput(writer, groupStoreWriter, threadCount, requestPerThread, payloadsPerRequest);
+      }
+
+      LOG.info("{} threads: default writer {} messages/sec in {} writes, group commit {} messages/sec in {} writes",
+               threadCount, defaultRate, defaultStoreWriter.getWriteCount(),
+               groupRate, groupStoreWriter.getWriteCount());
+    }
+  }
+
+  /**
+   * Runs {@link #runConcurrentWrites} and returns the number of messages written per second.
+   */
+  private long measureThroughput(ConcurrentMessageWriter writer, TestStoreRequestWriter testWriter,
+                                 int threadCount, int requestPerThread, int payloadsPerRequest) throws Exception {
+    Stopwatch stopwatch = new Stopwatch().start();
+    runConcurrentWrites(writer, testWriter, threadCount, requestPerThread, payloadsPerRequest);
+    stopwatch.stop();
+    long messages = (long) threadCount * requestPerThread * payloadsPerRequest;
+    return messages * 1000 / Math.max(1L, stopwatch.elapsedMillis());
+  }
+
+  /**
+   * Persists messages to the given {@link ConcurrentMessageWriter} from multiple threads concurrently
+   * and verifies all the messages are written.
+   */
+  private void runConcurrentWrites(final ConcurrentMessageWriter writer, TestStoreRequestWriter testWriter,
+                                   int threadCount, final int requestPerThread,
+                                   int payloadsPerRequest) throws Exception {
+    final TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    final TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+
+    final List<String> payload = new ArrayList<>(payloadsPerRequest);
+    for (int i = 0; i < payloadsPerRequest; i++) {
+      payload.add(Integer.toString(i));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    final CyclicBarrier barrier = new CyclicBarrier(threadCount + 1);
+    for (int i = 0; i < threadCount; i++) {
+      executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            barrier.await();
+            for (int i = 0; i < requestPerThread; i++) {
+              writer.persist(new TestStoreRequest(topicId, payload), metadata);
+            }
+          } catch (Exception e) {
+            LOG.error("Exception raised when persisting.", e);
+          }
+        }
+      });
+    }
+
+    barrier.await();
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+    List<RawMessage> messages = testWriter.getMessages().get(topicId);
+    Assert.assertEquals(payloadsPerRequest * threadCount * requestPerThread, messages.size());
+  }
+
   /**
    * A {@link StoreRequestWriter} that turns all payloads to {@link RawMessage} and stores it in a List.
    */
@@ -275,6 +487,7 @@ public class ConcurrentMessageWriterTest {
 
     private final ListMultimap<TopicId, RawMessage> messages = ArrayListMultimap.create();
     private long writeDelayMillis;
+    private int writeCount;
 
     TestStoreRequestWriter(TimeProvider timeProvider) {
       super(timeProvider, false);
@@ -297,6 +510,7 @@ public class ConcurrentMessageWriterTest {
 
     @Override
     protected void doWrite(Iterator<TestEntry> entries) throws IOException {
+      writeCount++;
       while (entries.hasNext()) {
         TestEntry entry = entries.next();
         byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
@@ -315,6 +529,10 @@ public class ConcurrentMessageWriterTest {
       return messages;
     }
 
+    int getWriteCount() {
+      return writeCount;
+    }
+
     @Override
     public void close() throws IOException {
       // No-op
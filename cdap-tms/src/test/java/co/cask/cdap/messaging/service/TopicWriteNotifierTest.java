@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.TopicId;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit test for {@link TopicWriteNotifier}.
+ */
+public class TopicWriteNotifierTest {
+
+  @Test
+  public void testNotify() throws InterruptedException {
+    TopicWriteNotifier notifier = new TopicWriteNotifier();
+    TopicId topicId = NamespaceId.DEFAULT.topic("topic");
+
+    // Notification without waiters shouldn't keep any state
+    notifier.notifyWritten(topicId);
+    Assert.assertEquals(0, notifier.size());
+
+    try (TopicWriteNotifier.Waiter waiter = notifier.register(topicId)) {
+      long version = waiter.getVersion();
+      Assert.assertFalse(waiter.await(version, 10, TimeUnit.MILLISECONDS));
+
+      notifier.notifyWritten(topicId);
+      Assert.assertTrue(waiter.await(version, 10, TimeUnit.MILLISECONDS));
+
+      // Writes to other topics shouldn't wake up the waiter
+      version = waiter.getVersion();
+      notifier.notifyWritten(NamespaceId.DEFAULT.topic("other"));
+      Assert.assertFalse(waiter.await(version, 10, TimeUnit.MILLISECONDS));
+    }
+  }
+
+  @Test
+  public void testPrune() {
+    TopicWriteNotifier notifier = new TopicWriteNotifier();
+    TopicId topicId = NamespaceId.DEFAULT.topic("topic");
+
+    TopicWriteNotifier.Waiter waiter1 = notifier.register(topicId);
+    TopicWriteNotifier.Waiter waiter2 = notifier.register(topicId);
+    Assert.assertEquals(1, notifier.size());
+
+    // The state is kept until the last waiter is closed
+    waiter1.close();
+    waiter1.close();
+    Assert.assertEquals(1, notifier.size());
+    waiter2.close();
+    Assert.assertEquals(0, notifier.size());
+
+    // Removal of the topic wakes up the waiters and the state is not restored when they are closed
+    TopicWriteNotifier.Waiter waiter = notifier.register(topicId);
+    notifier.remove(topicId);
+    Assert.assertEquals(0, notifier.size());
+    TopicWriteNotifier.Waiter newWaiter = notifier.register(topicId);
+    waiter.close();
+    Assert.assertEquals(1, notifier.size());
+    newWaiter.close();
+    Assert.assertEquals(0, notifier.size());
+  }
+}
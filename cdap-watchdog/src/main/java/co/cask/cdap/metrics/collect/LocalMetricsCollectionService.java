@@ -19,8 +19,10 @@ import co.cask.cdap.api.metrics.MetricStore;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.metrics.store.MetricsRollupService;
 import co.cask.cdap.proto.Id;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -33,7 +35,7 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * A {@link co.cask.cdap.api.metrics.MetricsCollectionService} that writes to MetricsTable directly.
- * It also has a scheduling job that clean up old metrics periodically.
+ * It also has a scheduling job that clean up old metrics periodically, and runs the {@link MetricsRollupService}.
  */
 @Singleton
 public final class LocalMetricsCollectionService extends AggregatedMetricsCollectionService {
@@ -44,21 +46,21 @@ public final class LocalMetricsCollectionService extends AggregatedMetricsCollec
 
   private final CConfiguration cConf;
   private final MetricStore metricStore;
+  private final MetricsRollupService metricsRollupService;
   private ScheduledExecutorService scheduler;
 
   @Inject
-  public LocalMetricsCollectionService(CConfiguration cConf, MetricStore metricStore) {
+  public LocalMetricsCollectionService(CConfiguration cConf, MetricStore metricStore,
+                                       MetricsRollupService metricsRollupService) {
     this.cConf = cConf;
     this.metricStore = metricStore;
+    this.metricsRollupService = metricsRollupService;
     metricStore.setMetricsContext(this.getContext(METRICS_PROCESSOR_CONTEXT));
   }
 
   @Override
   protected void publish(Iterator<MetricValues> metrics) throws Exception {
-    while (metrics.hasNext()) {
-      MetricValues metric = metrics.next();
-      metricStore.add(metric);
-    }
+    metricStore.add(ImmutableList.copyOf(metrics));
   }
 
   @Override
@@ -70,10 +72,12 @@ public final class LocalMetricsCollectionService extends AggregatedMetricsCollec
 
     // Try right away if there's anything to cleanup, then we'll schedule to do that periodically
     scheduler.schedule(createCleanupTask(retentionSecs), 1, TimeUnit.SECONDS);
+    metricsRollupService.startAndWait();
   }
 
   @Override
   protected void shutDown() throws Exception {
+    metricsRollupService.stopAndWait();
     if (scheduler != null) {
       scheduler.shutdownNow();
     }
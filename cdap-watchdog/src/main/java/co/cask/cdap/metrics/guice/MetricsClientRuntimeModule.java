@@ -21,10 +21,12 @@ import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.common.runtime.RuntimeModule;
 import co.cask.cdap.metrics.collect.AggregatedMetricsCollectionService;
 import co.cask.cdap.metrics.collect.LocalMetricsCollectionService;
+import co.cask.cdap.metrics.store.DefaultMetricStore;
 import com.google.inject.AbstractModule;
 import com.google.inject.Module;
 import com.google.inject.PrivateModule;
 import com.google.inject.Scopes;
+import com.google.inject.name.Names;
 
 import java.util.Iterator;
 
@@ -42,6 +44,8 @@ public final class MetricsClientRuntimeModule extends RuntimeModule {
         // Both LocalMetricsCollectionService and the AppFabricService needs it
         install(new MetricsStoreModule());
         expose(MetricStore.class);
+        // LocalMetricsCollectionService adds metrics to the MetricStore as they are emitted
+        bindConstant().annotatedWith(Names.named(DefaultMetricStore.DIRECT_WRITE)).to(true);
 
         bind(MetricsCollectionService.class).to(LocalMetricsCollectionService.class).in(Scopes.SINGLETON);
         expose(MetricsCollectionService.class);
@@ -59,6 +63,8 @@ public final class MetricsClientRuntimeModule extends RuntimeModule {
         // Both LocalMetricsCollectionService and the AppFabricService needs it
         install(new MetricsStoreModule());
         expose(MetricStore.class);
+        // LocalMetricsCollectionService adds metrics to the MetricStore as they are emitted
+        bindConstant().annotatedWith(Names.named(DefaultMetricStore.DIRECT_WRITE)).to(true);
 
         bind(MetricsCollectionService.class).to(LocalMetricsCollectionService.class).in(Scopes.SINGLETON);
         expose(MetricsCollectionService.class);
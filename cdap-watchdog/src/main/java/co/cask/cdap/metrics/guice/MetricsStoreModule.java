@@ -20,6 +20,7 @@ import co.cask.cdap.api.metrics.MetricStore;
 import co.cask.cdap.metrics.store.DefaultMetricDatasetFactory;
 import co.cask.cdap.metrics.store.DefaultMetricStore;
 import co.cask.cdap.metrics.store.MetricDatasetFactory;
+import co.cask.cdap.metrics.store.MetricsRollupService;
 import com.google.inject.PrivateModule;
 import com.google.inject.Scopes;
 
@@ -33,5 +34,7 @@ public final class MetricsStoreModule extends PrivateModule {
     bind(MetricDatasetFactory.class).to(DefaultMetricDatasetFactory.class).in(Scopes.SINGLETON);
     bind(MetricStore.class).to(DefaultMetricStore.class);
     expose(MetricStore.class);
+    bind(MetricsRollupService.class).in(Scopes.SINGLETON);
+    expose(MetricsRollupService.class);
   }
 }
@@ -32,7 +32,7 @@ import co.cask.cdap.internal.io.DatumReaderFactory;
 import co.cask.cdap.internal.io.SchemaGenerator;
 import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.MessagingService;
-import co.cask.cdap.messaging.MessagingUtils;
+import co.cask.cdap.messaging.data.MessageId;
 import co.cask.cdap.messaging.data.RawMessage;
 import co.cask.cdap.metrics.store.MetricDatasetFactory;
 import co.cask.cdap.proto.id.NamespaceId;
@@ -51,7 +51,6 @@ import org.slf4j.LoggerFactory;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
@@ -82,6 +81,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private final int fetcherLimit;
   private final ConcurrentLinkedDeque<MetricValues> records;
   private final ConcurrentMap<TopicIdMetaKey, byte[]> topicMessageIds;
+  private final ConcurrentMap<TopicIdMetaKey, Long> topicProcessedTimes;
   private final AtomicBoolean persistingFlag;
   private final int metricsProcessIntervalMillis;
   private final List<ProcessMetricsThread> processMetricsThreads;
@@ -136,6 +136,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     this.processMetricsThreads = new ArrayList<>();
     this.records = new ConcurrentLinkedDeque<>();
     this.topicMessageIds = new ConcurrentHashMap<>();
+    this.topicProcessedTimes = new ConcurrentHashMap<>();
     this.persistingFlag = new AtomicBoolean();
     this.metricsProcessIntervalMillis = metricsProcessIntervalMillis;
   }
@@ -204,7 +205,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       }
     }
     // Persist records and messageId's after all ProcessMetricsThread's complete.
-    persistRecordsMessageIds(records, topicMessageIds);
+    persistRecordsMessageIds(records, topicMessageIds, topicProcessedTimes);
   }
 
   @Override
@@ -217,13 +218,19 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     LOG.info("Metrics Processing Service stopped.");
   }
 
-  private void persistRecordsMessageIds(Deque<MetricValues> metricValues, Map<TopicIdMetaKey, byte[]> messageIds) {
+  private void persistRecordsMessageIds(Deque<MetricValues> metricValues, Map<TopicIdMetaKey, byte[]> messageIds,
+                                        Map<TopicIdMetaKey, Long> processedTimes) {
     try {
       if (!metricValues.isEmpty()) {
         persistRecords(metricValues);
       }
       try {
         metaTable.saveMessageIds(messageIds);
+        // The processed times are only saved after the metrics were persisted, since they tell the metrics rollup
+        // that all metrics published before those times are in the metrics tables.
+        if (!processedTimes.isEmpty()) {
+          metaTable.saveProcessedTimes(processedTimes);
+        }
       } catch (Exception e) {
         LOG.error("Failed to persist messageId's of consumed messages.", e);
       }
@@ -295,10 +302,16 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
           fetcher.setStartTime(0L);
         }
 
+        long fetchStartTime = System.currentTimeMillis();
         byte[] currentMessageId = null;
+        byte[] lastFetchedMessageId = null;
+        int fetchedCount = 0;
+        boolean fetchedAll;
         try (CloseableIterator<RawMessage> iterator = fetcher.fetch()) {
           while (iterator.hasNext() && isRunning()) {
             RawMessage input = iterator.next();
+            lastFetchedMessageId = input.getId();
+            fetchedCount++;
             try {
               payloadInput.reset(input.getPayload());
               MetricValues metricValues = recordReader.read(decoder, recordSchema);
@@ -311,14 +324,25 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
               LOG.warn("Failed to decode message to MetricValue. Skipped. {}", e.getMessage());
             }
           }
+          fetchedAll = fetchedCount < fetcherLimit && !iterator.hasNext();
         }
 
         if (currentMessageId != null) {
           topicMessageIds.put(topicIdMetaKey, currentMessageId);
         }
 
-        // Skip persisting if the records is empty
-        if (records.isEmpty()) {
+        // If all messages in the topic were fetched, everything published before the fetch started is processed.
+        // Otherwise only messages published before the last fetched one are known to be processed.
+        // This must be updated after the records are added, since it is persisted together with them.
+        if (fetchedAll) {
+          topicProcessedTimes.put(topicIdMetaKey, fetchStartTime);
+        } else if (lastFetchedMessageId != null) {
+          topicProcessedTimes.put(topicIdMetaKey, new MessageId(lastFetchedMessageId).getPublishTimestamp());
+        }
+
+        // Skip persisting if the records is empty and there is no progress to persist.
+        // Progress of topics without new messages is persisted, such that metrics rollup doesn't wait for them.
+        if (records.isEmpty() && !fetchedAll) {
           return;
         }
 
@@ -329,6 +353,9 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
           return;
         }
         try {
+          // Copy the processed times before the records. A processed time is updated after the records of the topic
+          // are added, hence the records copy contains all records that are covered by the processed times copy.
+          Map<TopicIdMetaKey, Long> topicProcessedTimesCopy = new HashMap<>(topicProcessedTimes);
           Deque<MetricValues> recordsCopy = new LinkedList<>();
           Map<TopicIdMetaKey, byte[]> topicMessageIdsCopy = new HashMap<>(topicMessageIds);
           // TODO: (CDAP-8327) there is a risk of running out-of-memory if other threads keep writing to records
@@ -337,7 +364,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
             recordsCopy.add(iterator.next());
             iterator.remove();
           }
-          persistRecordsMessageIds(recordsCopy, topicMessageIdsCopy);
+          persistRecordsMessageIds(recordsCopy, topicMessageIdsCopy, topicProcessedTimesCopy);
         } catch (Exception e) {
           LOG.error("Failed to persist consumed messages.", e);
         } finally {
@@ -350,44 +377,6 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     }
   }
 
-  private final class TopicIdMetaKey implements MetricsMetaKey {
-
-    private final TopicId topicId;
-    private final byte[] key;
-
-    TopicIdMetaKey(TopicId topicId) {
-      this.topicId = topicId;
-      this.key = MessagingUtils.toMetadataRowKey(topicId);
-    }
-
-    @Override
-    public byte[] getKey() {
-      return key;
-    }
-
-    TopicId getTopicId() {
-      return topicId;
-    }
-
-    @Override
-    public boolean equals(Object o) {
-      if (this == o) {
-        return true;
-      }
-      if (o == null || getClass() != o.getClass()) {
-        return false;
-      }
-      TopicIdMetaKey that = (TopicIdMetaKey) o;
-      // Comparing the key is enough because key and topicId have one-to-one relationship
-      return Arrays.equals(getKey(), that.getKey());
-    }
-
-    @Override
-    public int hashCode() {
-      return Arrays.hashCode(getKey());
-    }
-  }
-
   private class PayloadInputStream extends ByteArrayInputStream {
 
     PayloadInputStream() {
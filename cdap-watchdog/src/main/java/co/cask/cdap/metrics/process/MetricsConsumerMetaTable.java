@@ -29,6 +29,7 @@ import java.util.TreeMap;
 public class MetricsConsumerMetaTable {
   private static final byte[] OFFSET_COLUMN = Bytes.toBytes("o");
   private static final byte[] MESSAGE_ID_COLUMN = Bytes.toBytes("m");
+  private static final byte[] PROCESSED_TIME_COLUMN = Bytes.toBytes("t");
 
   private final MetricsTable metaTable;
 
@@ -46,6 +47,19 @@ public class MetricsConsumerMetaTable {
     metaTable.put(updates);
   }
 
+  /**
+   * Saves the value of the given key if there is no value for the key yet.
+   *
+   * @param metaKey Object form of the key to save the value with.
+   * @param value The value to save.
+   * @return The value of the key after the call.
+   * @throws Exception If there is an error when saving or fetching.
+   */
+  public synchronized <T extends MetricsMetaKey> long saveIfAbsent(T metaKey, long value) throws Exception {
+    metaTable.swap(metaKey.getKey(), OFFSET_COLUMN, null, Bytes.toBytes(value));
+    return get(metaKey);
+  }
+
   public <T extends MetricsMetaKey> void saveMessageIds(Map<T, byte[]> messageIds) throws Exception {
     SortedMap<byte[], SortedMap<byte[], byte[]>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
     for (Map.Entry<T, byte[]> entry : messageIds.entrySet()) {
@@ -56,6 +70,38 @@ public class MetricsConsumerMetaTable {
     metaTable.putBytes(updates);
   }
 
+  /**
+   * Saves the processed time of consumers. All metrics published to a consumer before its processed time
+   * have been processed and persisted.
+   *
+   * @param processedTimes map from the key of a consumer to its processed time in milliseconds
+   * @throws Exception If there is an error when saving.
+   */
+  public <T extends MetricsMetaKey> void saveProcessedTimes(Map<T, Long> processedTimes) throws Exception {
+    SortedMap<byte[], SortedMap<byte[], Long>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<T, Long> entry : processedTimes.entrySet()) {
+      SortedMap<byte[], Long> map = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      map.put(PROCESSED_TIME_COLUMN, entry.getValue());
+      updates.put(entry.getKey().getKey(), map);
+    }
+    metaTable.put(updates);
+  }
+
+  /**
+   * Gets the processed time of a consumer saved with {@link #saveProcessedTimes(Map)}.
+   *
+   * @param metaKey Object form of the key of the consumer.
+   * @return The processed time in milliseconds or {@code -1} if the value is not found.
+   * @throws Exception If there is an error when fetching.
+   */
+  public <T extends MetricsMetaKey> long getProcessedTime(T metaKey) throws Exception {
+    byte[] result = metaTable.get(metaKey.getKey(), PROCESSED_TIME_COLUMN);
+    if (result == null) {
+      return -1;
+    }
+    return Bytes.toLong(result);
+  }
+
   /**
    * Gets the value as a long in the {@link MetricsTable} of a given key.
    *
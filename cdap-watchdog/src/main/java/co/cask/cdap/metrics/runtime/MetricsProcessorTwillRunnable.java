@@ -48,6 +48,7 @@ import co.cask.cdap.metrics.process.MetricsMessageCallbackFactory;
 import co.cask.cdap.metrics.process.MetricsProcessorStatusService;
 import co.cask.cdap.metrics.store.DefaultMetricDatasetFactory;
 import co.cask.cdap.metrics.store.MetricDatasetFactory;
+import co.cask.cdap.metrics.store.MetricsRollupService;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
@@ -89,6 +90,7 @@ public final class MetricsProcessorTwillRunnable extends AbstractMasterTwillRunn
   private KafkaMetricsProcessorRuntimeService kafkaMetricsProcessorRuntimeService;
   private MessagingMetricsProcessorRuntimeService messagingMetricsProcessorRuntimeService;
   private MetricsCollectionService metricsCollectionService;
+  private MetricsRollupService metricsRollupService;
 
   public MetricsProcessorTwillRunnable(String name, String cConfName, String hConfName) {
     super(name, cConfName, hConfName);
@@ -116,6 +118,12 @@ public final class MetricsProcessorTwillRunnable extends AbstractMasterTwillRunn
       messagingMetricsProcessorRuntimeService = injector.getInstance(
         MessagingMetricsProcessorRuntimeService.class);
       messagingMetricsProcessorRuntimeService.setMetricsContext(metricsContext);
+      // rollup is idempotent, but only one instance needs to run it
+      if (context.getInstanceId() == 0) {
+        metricsRollupService = injector.getInstance(MetricsRollupService.class);
+        // time buckets are complete once all metrics topics are processed up to the end of the buckets
+        metricsRollupService.setConsumerKeys(MetricsRollupService.getConsumerKeys(getCConfiguration()));
+      }
     } catch (Throwable t) {
       LOG.error(t.getMessage(), t);
       throw Throwables.propagate(t);
@@ -131,6 +139,9 @@ public final class MetricsProcessorTwillRunnable extends AbstractMasterTwillRunn
     services.add(kafkaMetricsProcessorRuntimeService);
     services.add(messagingMetricsProcessorRuntimeService);
     services.add(injector.getInstance(MetricsProcessorStatusService.class));
+    if (metricsRollupService != null) {
+      services.add(metricsRollupService);
+    }
   }
 
   @VisibleForTesting
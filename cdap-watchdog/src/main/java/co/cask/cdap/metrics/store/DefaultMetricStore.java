@@ -35,28 +35,38 @@ import co.cask.cdap.api.metrics.MetricValue;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.api.metrics.TagValue;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data2.dataset2.lib.cube.Aggregation;
 import co.cask.cdap.data2.dataset2.lib.cube.AggregationAlias;
+import co.cask.cdap.data2.dataset2.lib.cube.CachingCube;
 import co.cask.cdap.data2.dataset2.lib.cube.DefaultAggregation;
 import co.cask.cdap.data2.dataset2.lib.cube.DefaultCube;
 import co.cask.cdap.data2.dataset2.lib.cube.FactTableSupplier;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import co.cask.cdap.metrics.process.MetricsConsumerMetaTable;
+import co.cask.cdap.metrics.process.MetricsMetaKey;
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -64,6 +74,14 @@ import javax.annotation.Nullable;
  */
 public class DefaultMetricStore implements MetricStore {
   public static final int TOTALS_RESOLUTION = Integer.MAX_VALUE;
+  // Name of the binding that tells that metrics are added to the metric store as they are emitted,
+  // rather than by the metrics processor
+  public static final String DIRECT_WRITE = "metrics.store.direct.write";
+  private static final Logger LOG = LoggerFactory.getLogger(DefaultMetricStore.class);
+  // The processed time of the metrics consumers is read at most once per this interval for the query result cache
+  private static final long PROCESSED_TIME_REFRESH_SECONDS = 1L;
+  // 1 sec, 1 min, 1 hour and "all time totals", from the finest to the coarsest
+  static final int[] RESOLUTIONS = {1, 60, 3600, TOTALS_RESOLUTION};
   static final Map<String, Aggregation> AGGREGATIONS;
 
   private static final String BY_NAMESPACE = "namespace";
@@ -84,7 +102,11 @@ public class DefaultMetricStore implements MetricStore {
                                                          Constants.Metrics.Tag.WORKFLOW_RUN_ID)));
 
   private final int resolutions[];
+  private final Set<Integer> rollupResolutions;
+  private final Supplier<MetricsConsumerMetaTable> metaTable;
+  private final Supplier<DefaultCube> defaultCube;
   private final Supplier<Cube> cube;
+  private volatile Set<MetricsMetaKey> consumerKeys;
   private MetricsContext metricsContext;
 
 
@@ -197,29 +219,132 @@ public class DefaultMetricStore implements MetricStore {
   }
 
   @Inject
-  public DefaultMetricStore(final MetricDatasetFactory dsFactory) {
-    // 1 sec, 1 min, 1 hour and "all time totals"
-    this(dsFactory, new int[] {1, 60, 3600, TOTALS_RESOLUTION});
+  public DefaultMetricStore(CConfiguration cConf, MetricDatasetFactory dsFactory) {
+    this(dsFactory, RESOLUTIONS, getRollupResolutions(cConf), MetricsRollupService.getConsumerKeys(cConf),
+         cConf.getLong(Constants.Metrics.Query.CACHE_MAX_DATA_POINTS, 0L),
+         cConf.getLong(Constants.Metrics.Query.CACHE_EXPIRE_SECONDS), getCacheLatenessSeconds(cConf));
   }
 
   // NOTE: should never be used apart from data migration during cdap upgrade
   public DefaultMetricStore(final MetricDatasetFactory dsFactory, final int resolutions[]) {
+    this(dsFactory, resolutions, Collections.<Integer>emptySet(), Collections.<MetricsMetaKey>emptySet(), 0L, 0L, 0L);
+  }
+
+  private DefaultMetricStore(final MetricDatasetFactory dsFactory, final int resolutions[],
+                             final Set<Integer> rollupResolutions, Set<MetricsMetaKey> consumerKeys,
+                             final long cacheMaxDataPoints, final long cacheExpireSeconds,
+                             final long cacheLatenessSeconds) {
     this.resolutions = resolutions;
-    final FactTableSupplier factTableSupplier = new FactTableSupplier() {
+    this.rollupResolutions = rollupResolutions;
+    this.consumerKeys = consumerKeys;
+    this.metaTable = Suppliers.memoize(new Supplier<MetricsConsumerMetaTable>() {
       @Override
-      public FactTable get(int resolution, int ignoredRollTime) {
-        // roll time will be taken from configuration todo: clean this up
-        return dsFactory.getOrCreateFactTable(resolution);
+      public MetricsConsumerMetaTable get() {
+        return dsFactory.createConsumerMeta();
       }
-    };
-    this.cube = Suppliers.memoize(new Supplier<Cube>() {
+    });
+    this.defaultCube = Suppliers.memoize(new Supplier<DefaultCube>() {
       @Override
-      public Cube get() {
-        DefaultCube cube = new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS);
+      public DefaultCube get() {
+        Map<Integer, Long> rollupStartTimes = Collections.emptyMap();
+        if (!rollupResolutions.isEmpty()) {
+          try {
+            rollupStartTimes = MetricsRollupService.getRollupStartTimes(
+              metaTable.get(), rollupResolutions, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+          } catch (Exception e) {
+            throw Throwables.propagate(e);
+          }
+        }
+        DefaultCube cube = createCube(dsFactory, resolutions, rollupStartTimes);
         cube.setMetricsCollector(metricsContext);
         return cube;
       }
     });
+    this.cube = Suppliers.memoize(new Supplier<Cube>() {
+      @Override
+      public Cube get() {
+        if (cacheMaxDataPoints <= 0) {
+          return defaultCube.get();
+        }
+        // Time buckets are closed by the same rule as the rollup, such that late metrics are not missed
+        // when the metrics processor falls behind
+        Supplier<Long> processedTime = Suppliers.memoizeWithExpiration(new Supplier<Long>() {
+          @Override
+          public Long get() {
+            Set<MetricsMetaKey> keys = consumerKeys;
+            try {
+              return MetricsRollupService.getProcessedTimeSeconds(keys.isEmpty() ? null : metaTable.get(), keys);
+            } catch (Exception e) {
+              LOG.warn("Failed to get the processed time of the metrics consumers, not using cached query results.",
+                       e);
+              return -1L;
+            }
+          }
+        }, PROCESSED_TIME_REFRESH_SECONDS, TimeUnit.SECONDS);
+        return new CachingCube(defaultCube.get(), cacheMaxDataPoints, cacheExpireSeconds, cacheLatenessSeconds,
+                               processedTime);
+      }
+    });
+  }
+
+  /**
+   * Sets whether metrics are added to this metric store as they are emitted, which is the case for the
+   * {@link co.cask.cdap.metrics.collect.LocalMetricsCollectionService}. Otherwise, time buckets are only complete
+   * after the metrics processor has processed all metrics topics up to their end.
+   */
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  public void setDirectWrite(@Named(DIRECT_WRITE) boolean directWrite) {
+    if (directWrite) {
+      consumerKeys = Collections.emptySet();
+    }
+  }
+
+  /**
+   * Returns the resolutions whose counters are rolled up from finer resolutions by {@link MetricsRollupService},
+   * rather than written when metrics are added.
+   */
+  static Set<Integer> getRollupResolutions(CConfiguration cConf) {
+    if (!cConf.getBoolean(Constants.Metrics.ROLLUP_ENABLED, false)) {
+      return Collections.emptySet();
+    }
+    // all resolutions but the finest and the "all time totals"
+    Set<Integer> rollupResolutions = new TreeSet<>();
+    for (int i = 1; i < RESOLUTIONS.length; i++) {
+      if (RESOLUTIONS[i] != TOTALS_RESOLUTION) {
+        rollupResolutions.add(RESOLUTIONS[i]);
+      }
+    }
+    return rollupResolutions;
+  }
+
+  /**
+   * Returns the lateness for the query result cache. When rollup is enabled, time buckets of rollup resolutions are
+   * only complete after they are rolled up, which happens up to the rollup lateness plus the rollup interval after
+   * the processed time of the metrics consumers passed the end of a time bucket.
+   */
+  static long getCacheLatenessSeconds(CConfiguration cConf) {
+    long latenessSeconds = cConf.getLong(Constants.Metrics.Query.CACHE_LATENESS_SECONDS, 0L);
+    if (!cConf.getBoolean(Constants.Metrics.ROLLUP_ENABLED, false)) {
+      return latenessSeconds;
+    }
+    // Allow one more interval for the rollup itself to complete
+    long rollupSeconds = cConf.getLong(Constants.Metrics.ROLLUP_LATENESS_SECONDS)
+      + 2 * cConf.getLong(Constants.Metrics.ROLLUP_INTERVAL_SECONDS);
+    return Math.max(latenessSeconds, rollupSeconds);
+  }
+
+  static DefaultCube createCube(final MetricDatasetFactory dsFactory, int[] resolutions,
+                                Map<Integer, Long> rollupStartTimes) {
+    FactTableSupplier factTableSupplier = new FactTableSupplier() {
+      @Override
+      public FactTable get(int resolution, int ignoredRollTime) {
+        // roll time will be taken from configuration todo: clean this up
+        return dsFactory.getOrCreateFactTable(resolution);
+      }
+    };
+    return new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS,
+                           rollupStartTimes);
   }
 
   @Override
@@ -250,6 +375,16 @@ public class DefaultMetricStore implements MetricStore {
         .addMeasurements(metrics);
       facts.add(fact);
     }
+
+    if (!rollupResolutions.isEmpty()) {
+      // Counters of time buckets that were rolled up already are written directly, so that metrics processed late
+      // are added to the rolled up counters
+      DefaultCube rollupCube = defaultCube.get();
+      for (Map.Entry<Integer, Long> entry
+        : MetricsRollupService.getRolledUpTimes(metaTable.get(), rollupResolutions).entrySet()) {
+        rollupCube.advanceRollupStartTime(entry.getKey(), entry.getValue());
+      }
+    }
     cube.get().add(facts);
   }
 
@@ -0,0 +1,276 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.store;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.data2.dataset2.lib.cube.DefaultCube;
+import co.cask.cdap.metrics.process.MetricsConsumerMetaTable;
+import co.cask.cdap.metrics.process.MetricsMetaKey;
+import co.cask.cdap.metrics.process.TopicIdMetaKey;
+import co.cask.cdap.proto.id.NamespaceId;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rolls up the counters of coarser metrics resolutions from finer resolutions, when it is enabled with
+ * {@link Constants.Metrics#ROLLUP_ENABLED}. A time bucket is rolled up once the metrics consumers have processed
+ * all metrics published until the allowed lateness of metrics has passed after its end. The progress of each
+ * resolution is checkpointed in the {@link MetricsConsumerMetaTable}. Counters that are added to a time bucket after
+ * it was rolled up are written to the rollup resolutions directly by {@link DefaultMetricStore}.
+ */
+public class MetricsRollupService extends AbstractScheduledService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MetricsRollupService.class);
+
+  // maximum number of time buckets of the finer resolution to roll up with one scan
+  private static final int MAX_ROLLUP_SOURCE_BUCKETS = 3600;
+
+  private final MetricDatasetFactory dsFactory;
+  private final Set<Integer> rollupResolutions;
+  private final long intervalSeconds;
+  private final long latenessSeconds;
+  private Set<MetricsMetaKey> consumerKeys;
+  private Map<Integer, Long> rollupStartTimes;
+  private DefaultCube cube;
+  private MetricsConsumerMetaTable metaTable;
+  private ScheduledExecutorService executor;
+
+  @Inject
+  public MetricsRollupService(CConfiguration cConf, MetricDatasetFactory dsFactory) {
+    this.dsFactory = dsFactory;
+    this.rollupResolutions = DefaultMetricStore.getRollupResolutions(cConf);
+    this.intervalSeconds = cConf.getLong(Constants.Metrics.ROLLUP_INTERVAL_SECONDS);
+    this.latenessSeconds = cConf.getLong(Constants.Metrics.ROLLUP_LATENESS_SECONDS);
+    this.consumerKeys = Collections.emptySet();
+  }
+
+  /**
+   * Sets the keys of the metrics consumers that write metrics to the metric store. Time buckets are only rolled up
+   * after all of them have processed the metrics of the time buckets, based on the processed times that they save in
+   * the {@link MetricsConsumerMetaTable}. If no consumer is set, metrics are expected to be written as they are
+   * emitted, which is the case for the {@link co.cask.cdap.metrics.collect.LocalMetricsCollectionService}.
+   * This method must be called before this service is started.
+   */
+  public void setConsumerKeys(Set<? extends MetricsMetaKey> consumerKeys) {
+    this.consumerKeys = ImmutableSet.copyOf(consumerKeys);
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    if (rollupResolutions.isEmpty()) {
+      LOG.info("Metrics rollup is disabled.");
+    } else {
+      LOG.info("Starting metrics rollup for resolutions {}.", rollupResolutions);
+    }
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  @Override
+  protected void runOneIteration() throws Exception {
+    if (rollupResolutions.isEmpty()) {
+      return;
+    }
+    try {
+      long processedTs = getProcessedTimeSeconds();
+      if (processedTs < 0) {
+        LOG.debug("Not all metrics consumers have saved their processed time yet, skipping metrics rollup.");
+        return;
+      }
+      rollup(processedTs);
+    } catch (Exception e) {
+      // the next iteration continues from the last checkpoint
+      LOG.warn("Failed to roll up metrics, will retry in {} seconds.", intervalSeconds, e);
+    }
+  }
+
+  @Override
+  protected Scheduler scheduler() {
+    return Scheduler.newFixedDelaySchedule(intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+  }
+
+  @Override
+  protected final ScheduledExecutorService executor() {
+    executor = Executors.newSingleThreadScheduledExecutor(
+      Threads.createDaemonThreadFactory("metrics-rollup"));
+    return executor;
+  }
+
+  private MetricsConsumerMetaTable getMetaTable() {
+    if (metaTable == null) {
+      metaTable = dsFactory.createConsumerMeta();
+    }
+    return metaTable;
+  }
+
+  private void init() throws Exception {
+    if (cube == null) {
+      rollupStartTimes = getRollupStartTimes(getMetaTable(), rollupResolutions,
+                                             TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+      cube = DefaultMetricStore.createCube(dsFactory, DefaultMetricStore.RESOLUTIONS, rollupStartTimes);
+    }
+  }
+
+  /**
+   * Returns the time in seconds before which all metrics have been processed by the metrics consumers, or {@code -1}
+   * if it is not known yet.
+   */
+  @VisibleForTesting
+  long getProcessedTimeSeconds() throws Exception {
+    return getProcessedTimeSeconds(consumerKeys.isEmpty() ? null : getMetaTable(), consumerKeys);
+  }
+
+  /**
+   * Returns the time in seconds before which all metrics have been processed by the given metrics consumers, or
+   * {@code -1} if not all of them have saved their processed time yet. If there is no consumer, metrics are written
+   * as they are emitted, hence the current time is returned.
+   */
+  static long getProcessedTimeSeconds(MetricsConsumerMetaTable metaTable,
+                                      Set<? extends MetricsMetaKey> consumerKeys) throws Exception {
+    if (consumerKeys.isEmpty()) {
+      return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+    long processedTime = Long.MAX_VALUE;
+    for (MetricsMetaKey consumerKey : consumerKeys) {
+      long time = metaTable.getProcessedTime(consumerKey);
+      if (time < 0) {
+        return -1L;
+      }
+      processedTime = Math.min(processedTime, time);
+    }
+    return TimeUnit.MILLISECONDS.toSeconds(processedTime);
+  }
+
+  /**
+   * Returns the keys under which the consumers of the metrics topics save their processed times.
+   */
+  public static Set<MetricsMetaKey> getConsumerKeys(CConfiguration cConf) {
+    Set<MetricsMetaKey> consumerKeys = new HashSet<>();
+    String topicPrefix = cConf.get(Constants.Metrics.TOPIC_PREFIX);
+    for (int i = 0; i < cConf.getInt(Constants.Metrics.MESSAGING_TOPIC_NUM); i++) {
+      consumerKeys.add(new TopicIdMetaKey(NamespaceId.SYSTEM.topic(topicPrefix + i)));
+    }
+    return consumerKeys;
+  }
+
+  /**
+   * Rolls up all time buckets that are complete when all metrics before the given time have been processed.
+   */
+  @VisibleForTesting
+  void rollup(long processedTimeSeconds) throws Exception {
+    init();
+
+    // Resolutions are rolled up from the finest to the coarsest, so that a coarser resolution that is rolled up
+    // from another rollup resolution is only rolled up to where the other one is complete.
+    long completeTs = processedTimeSeconds - latenessSeconds;
+    for (int resolution : rollupResolutions) {
+      RollupMetaKey metaKey = new RollupMetaKey(resolution);
+      long endTs = completeTs / resolution * resolution;
+      long startTs = metaTable.get(metaKey);
+      if (startTs < 0) {
+        // First rollup after it was enabled. Counters of earlier time buckets were written when metrics were added.
+        startTs = rollupStartTimes.get(resolution);
+      }
+
+      // Bound the number of finer time buckets scanned at once, such that catching up on a coarse resolution
+      // doesn't hold a long time range in memory. At least one time bucket is rolled up at once.
+      long maxRollupSeconds = (long) cube.getRollupSource(resolution) * MAX_ROLLUP_SOURCE_BUCKETS;
+      long rollupSeconds = Math.max(resolution, maxRollupSeconds / resolution * resolution);
+      while (startTs < endTs) {
+        long rollupEndTs = Math.min(endTs, startTs + rollupSeconds);
+        cube.rollup(resolution, startTs, rollupEndTs);
+        metaTable.save(Collections.singletonMap(metaKey, rollupEndTs));
+        LOG.trace("Rolled up resolution {} for time range [{}, {})", resolution, startTs, rollupEndTs);
+        startTs = rollupEndTs;
+      }
+      completeTs = Math.min(completeTs, startTs);
+    }
+  }
+
+  /**
+   * Returns the end of the time range that has been rolled up for each of the given resolutions that was rolled up.
+   */
+  static Map<Integer, Long> getRolledUpTimes(MetricsConsumerMetaTable metaTable,
+                                             Set<Integer> resolutions) throws Exception {
+    Map<Integer, Long> rolledUpTimes = new HashMap<>();
+    for (int resolution : resolutions) {
+      long rolledUpTs = metaTable.get(new RollupMetaKey(resolution));
+      if (rolledUpTs >= 0) {
+        rolledUpTimes.put(resolution, rolledUpTs);
+      }
+    }
+    return rolledUpTimes;
+  }
+
+  /**
+   * Returns the rollup start time of each of the given resolutions. Counters of time buckets from the start time
+   * are rolled up, while counters of earlier time buckets are written when metrics are added. The start time of a
+   * resolution is persisted the first time it is requested, as the end of the time bucket of the current time,
+   * such that all writers and the rollup agree on it.
+   */
+  static Map<Integer, Long> getRollupStartTimes(MetricsConsumerMetaTable metaTable, Set<Integer> resolutions,
+                                                long currentTimeSeconds) throws Exception {
+    Map<Integer, Long> startTimes = new HashMap<>();
+    for (int resolution : resolutions) {
+      long startTs = (currentTimeSeconds + resolution - 1) / resolution * resolution;
+      startTimes.put(resolution, metaTable.saveIfAbsent(new RollupMetaKey("rollup.start.", resolution), startTs));
+    }
+    return startTimes;
+  }
+
+  /**
+   * {@link MetricsMetaKey} for the rollup start time and checkpoint of a resolution.
+   */
+  private static final class RollupMetaKey implements MetricsMetaKey {
+
+    private final byte[] key;
+
+    RollupMetaKey(int resolution) {
+      this("rollup.", resolution);
+    }
+
+    RollupMetaKey(String prefix, int resolution) {
+      this.key = Bytes.toBytes(prefix + resolution);
+    }
+
+    @Override
+    public byte[] getKey() {
+      return key;
+    }
+  }
+}
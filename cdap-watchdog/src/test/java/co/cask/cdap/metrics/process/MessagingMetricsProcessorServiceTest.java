@@ -33,6 +33,7 @@ import co.cask.cdap.internal.io.DatumReaderFactory;
 import co.cask.cdap.internal.io.SchemaGenerator;
 
 import co.cask.cdap.metrics.store.MetricDatasetFactory;
+import co.cask.cdap.proto.id.NamespaceId;
 import org.apache.tephra.TransactionManager;
 import org.junit.Assert;
 import org.junit.Test;
@@ -105,6 +106,13 @@ public class MessagingMetricsProcessorServiceTest extends MetricsProcessorServic
       // Stop messagingMetricsProcessorService
       messagingMetricsProcessorService.stopAndWait();
     }
+
+    // All metrics were processed, hence the processed times of the topics must be saved for the metrics rollup
+    MetricsConsumerMetaTable metaTable = injector.getInstance(MetricDatasetFactory.class).createConsumerMeta();
+    for (int partition : partitions) {
+      TopicIdMetaKey metaKey = new TopicIdMetaKey(NamespaceId.SYSTEM.topic(TOPIC_PREFIX + partition));
+      Assert.assertTrue(metaTable.getProcessedTime(metaKey) > 0);
+    }
   }
 
   private void assertMetricsResult(Map<String, Long> expected, Map<String, Long> actual) {
@@ -0,0 +1,196 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.store;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.metrics.MetricDataQuery;
+import co.cask.cdap.api.metrics.MetricStore;
+import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.api.metrics.MetricValues;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.guice.IOModule;
+import co.cask.cdap.common.guice.NonCustomLocationUnitTestModule;
+import co.cask.cdap.common.kerberos.NoOpOwnerAdmin;
+import co.cask.cdap.common.kerberos.OwnerAdmin;
+import co.cask.cdap.common.namespace.guice.NamespaceClientRuntimeModule;
+import co.cask.cdap.data.runtime.DataFabricModules;
+import co.cask.cdap.data.runtime.DataSetServiceModules;
+import co.cask.cdap.data.runtime.DataSetsModules;
+import co.cask.cdap.data2.datafabric.dataset.service.DatasetService;
+import co.cask.cdap.data2.datafabric.dataset.service.executor.DatasetOpExecutor;
+import co.cask.cdap.explore.guice.ExploreClientModule;
+import co.cask.cdap.metrics.MetricsTestBase;
+import co.cask.cdap.metrics.process.MetricsConsumerMetaTable;
+import co.cask.cdap.metrics.process.TopicIdMetaKey;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.security.auth.context.AuthenticationContextModules;
+import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
+import co.cask.cdap.security.authorization.AuthorizationTestModule;
+import co.cask.cdap.security.impersonation.UGIProvider;
+import co.cask.cdap.security.impersonation.UnsupportedUGIProvider;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.google.inject.util.Modules;
+import org.apache.tephra.TransactionManager;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link MetricsRollupService}.
+ */
+public class MetricsRollupServiceTest extends MetricsTestBase {
+
+  private static final Map<String, String> TAGS = ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, "ns1",
+                                                                  Constants.Metrics.Tag.APP, "app1");
+
+  @Test
+  public void testRollup() throws Exception {
+    injector.getInstance(TransactionManager.class).startAndWait();
+    injector.getInstance(DatasetOpExecutor.class).startAndWait();
+    injector.getInstance(DatasetService.class).startAndWait();
+
+    CConfiguration rollupConf = CConfiguration.copy(cConf);
+    rollupConf.setBoolean(Constants.Metrics.ROLLUP_ENABLED, true);
+    // Time buckets in this test are long closed, hence don't cache query results
+    rollupConf.setLong(Constants.Metrics.Query.CACHE_MAX_DATA_POINTS, 0L);
+    MetricDatasetFactory dsFactory = injector.getInstance(MetricDatasetFactory.class);
+
+    // Rollup is enabled in the middle of a minute and of an hour
+    long hour = 3600L * 1000;
+    long enabledTs = hour + 30;
+    Map<Integer, Long> startTimes = MetricsRollupService.getRollupStartTimes(
+      dsFactory.createConsumerMeta(), DefaultMetricStore.getRollupResolutions(rollupConf), enabledTs);
+    Assert.assertEquals(ImmutableMap.of(60, hour + 60, 3600, hour + 3600), startTimes);
+
+    MetricStore metricStore = new DefaultMetricStore(rollupConf, dsFactory);
+    metricStore.add(ImmutableList.of(
+      new MetricValues(TAGS, "counter", enabledTs, 1, MetricType.COUNTER),
+      new MetricValues(TAGS, "counter", enabledTs + 40, 1, MetricType.COUNTER),
+      new MetricValues(TAGS, "gauge", enabledTs + 40, 5, MetricType.GAUGE),
+      new MetricValues(TAGS, "counter", enabledTs + 100, 1, MetricType.COUNTER),
+      new MetricValues(TAGS, "counter", hour + 3610, 1, MetricType.COUNTER)
+    ));
+
+    // Counters of the time buckets before the rollup start times are written when they are added
+    assertValues(metricStore, "counter", 60, hour, ImmutableMap.of(hour, 1L));
+    assertValues(metricStore, "counter", 3600, hour, ImmutableMap.of(hour, 3L));
+
+    // Roll up twice, the second one shouldn't change anything
+    MetricsRollupService rollupService = new MetricsRollupService(rollupConf, dsFactory);
+    for (int i = 0; i < 2; i++) {
+      rollupService.rollup(hour + 3 * 3600);
+      assertValues(metricStore, "counter", 60, hour,
+                   ImmutableMap.of(hour, 1L, hour + 60, 1L, hour + 120, 1L, hour + 3600, 1L));
+      assertValues(metricStore, "counter", 3600, hour, ImmutableMap.of(hour, 3L, hour + 3600, 1L));
+      assertValues(metricStore, "gauge", 60, hour, ImmutableMap.of(hour + 60, 5L));
+      assertValues(metricStore, "gauge", 3600, hour, ImmutableMap.of(hour, 5L));
+    }
+
+    // A counter processed after its time buckets were rolled up is added to the rolled up counters
+    metricStore.add(new MetricValues(TAGS, "counter", hour + 3620, 1, MetricType.COUNTER));
+    for (int i = 0; i < 2; i++) {
+      assertValues(metricStore, "counter", 60, hour,
+                   ImmutableMap.of(hour, 1L, hour + 60, 1L, hour + 120, 1L, hour + 3600, 2L));
+      assertValues(metricStore, "counter", 3600, hour, ImmutableMap.of(hour, 3L, hour + 3600, 2L));
+      rollupService.rollup(hour + 3 * 3600);
+    }
+
+    // Cache lateness must cover the rollup
+    Assert.assertTrue(DefaultMetricStore.getCacheLatenessSeconds(rollupConf)
+                        >= rollupConf.getLong(Constants.Metrics.ROLLUP_LATENESS_SECONDS)
+                        + rollupConf.getLong(Constants.Metrics.ROLLUP_INTERVAL_SECONDS));
+  }
+
+  @Test
+  public void testProcessedTime() throws Exception {
+    injector.getInstance(TransactionManager.class).startAndWait();
+    injector.getInstance(DatasetOpExecutor.class).startAndWait();
+    injector.getInstance(DatasetService.class).startAndWait();
+
+    CConfiguration rollupConf = CConfiguration.copy(cConf);
+    rollupConf.setBoolean(Constants.Metrics.ROLLUP_ENABLED, true);
+    MetricDatasetFactory dsFactory = injector.getInstance(MetricDatasetFactory.class);
+    MetricsConsumerMetaTable metaTable = dsFactory.createConsumerMeta();
+
+    TopicIdMetaKey key1 = new TopicIdMetaKey(NamespaceId.SYSTEM.topic("testProcessedTime1"));
+    TopicIdMetaKey key2 = new TopicIdMetaKey(NamespaceId.SYSTEM.topic("testProcessedTime2"));
+    MetricsRollupService rollupService = new MetricsRollupService(rollupConf, dsFactory);
+    rollupService.setConsumerKeys(ImmutableSet.of(key1, key2));
+
+    // Rollup has to wait until all consumers have processed metrics
+    metaTable.saveProcessedTimes(ImmutableMap.of(key1, 5000L));
+    Assert.assertEquals(-1L, rollupService.getProcessedTimeSeconds());
+
+    // Time buckets are complete up to the consumer that is the furthest behind
+    metaTable.saveProcessedTimes(ImmutableMap.of(key2, 3000L));
+    Assert.assertEquals(3L, rollupService.getProcessedTimeSeconds());
+    metaTable.saveProcessedTimes(ImmutableMap.of(key2, 8000L));
+    Assert.assertEquals(5L, rollupService.getProcessedTimeSeconds());
+  }
+
+  private void assertValues(MetricStore metricStore, String metricName, int resolution,
+                            long startTs, Map<Long, Long> expected) {
+    MetricDataQuery query = new MetricDataQuery(startTs, startTs + 3 * 3600, resolution, Integer.MAX_VALUE,
+                                                ImmutableMap.of("system." + metricName, AggregationFunction.SUM),
+                                                ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, "ns1"),
+                                                ImmutableList.<String>of(), null);
+    Map<Long, Long> values = new HashMap<>();
+    for (MetricTimeSeries timeSeries : metricStore.query(query)) {
+      for (TimeValue timeValue : timeSeries.getTimeValues()) {
+        values.put(timeValue.getTimestamp(), timeValue.getValue());
+      }
+    }
+    Assert.assertEquals(expected, values);
+  }
+
+  @Override
+  protected List<Module> getAdditionalModules() {
+    List<Module> list = new ArrayList<>();
+    list.add(new DataSetsModules().getStandaloneModules());
+    list.add(new IOModule());
+    list.add(Modules.override(
+      new NonCustomLocationUnitTestModule().getModule(),
+      new DataFabricModules().getInMemoryModules(),
+      new DataSetServiceModules().getInMemoryModules(),
+      new ExploreClientModule(),
+      new NamespaceClientRuntimeModule().getInMemoryModules(),
+      new AuthorizationTestModule(),
+      new AuthorizationEnforcementModule().getInMemoryModules(),
+      new AuthenticationContextModules().getMasterModule()
+    ).with(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(UGIProvider.class).to(UnsupportedUGIProvider.class);
+        bind(OwnerAdmin.class).to(NoOpOwnerAdmin.class);
+        bind(MetricDatasetFactory.class).to(DefaultMetricDatasetFactory.class).in(Scopes.SINGLETON);
+      }
+    }));
+    return list;
+  }
+}